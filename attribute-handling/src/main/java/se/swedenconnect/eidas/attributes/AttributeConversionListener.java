@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.attributes;
+
+/**
+ * A listener that is informed about each eIDAS attribute that is converted into a Swedish eID attribute. See
+ * {@link AttributeMappingService#toSwedishUserAttributes(java.util.Collection, java.util.function.Consumer,
+ * AttributeConversionListener)}.
+ *
+ * @author Martin Lindström
+ */
+@FunctionalInterface
+public interface AttributeConversionListener {
+
+  /**
+   * Invoked when a conversion of an eIDAS attribute has been performed.
+   *
+   * @param eidasAttribute the name of the eIDAS attribute
+   * @param outcome the outcome of the conversion
+   * @param duration the time (in nanoseconds) that the conversion took
+   */
+  void conversionPerformed(final String eidasAttribute, final Outcome outcome, final long duration);
+
+  /**
+   * The outcome of an attribute conversion.
+   */
+  enum Outcome {
+
+    /** The attribute was converted. */
+    SUCCESS,
+
+    /** The attribute could not be converted. */
+    FAILURE,
+
+    /** The attribute could not be converted since its value type is not supported. */
+    UNSUPPORTED_VALUE_TYPE
+  }
+
+}
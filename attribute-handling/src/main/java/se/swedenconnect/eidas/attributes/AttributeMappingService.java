@@ -21,6 +21,7 @@ import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Handles mappings between Swedish eID attributes and eIDAS attributes.
@@ -108,4 +109,35 @@ public interface AttributeMappingService {
    */
   List<UserAttribute> toSwedishUserAttributes(final Collection<UserAttribute> eidasAttributes);
 
+  /**
+   * See {@link #toSwedishUserAttributes(Collection)}. Instead of returning a list, the resulting Swedish eID attributes
+   * are passed to the supplied consumer as they are produced.
+   * <p>
+   * Note that the consumer must not modify the supplied collection of eIDAS attributes.
+   * </p>
+   *
+   * @param eidasAttributes the eIDAS attributes
+   * @param consumer the consumer receiving the Swedish eID attributes
+   */
+  default void toSwedishUserAttributes(
+      final Collection<UserAttribute> eidasAttributes, final Consumer<UserAttribute> consumer) {
+    this.toSwedishUserAttributes(eidasAttributes).forEach(consumer);
+  }
+
+  /**
+   * See {@link #toSwedishUserAttributes(Collection, Consumer)}. Each conversion of an eIDAS attribute is also reported
+   * to the supplied listener.
+   * <p>
+   * The default implementation does not report any conversions.
+   * </p>
+   *
+   * @param eidasAttributes the eIDAS attributes
+   * @param consumer the consumer receiving the Swedish eID attributes
+   * @param listener the listener that is informed about each conversion
+   */
+  default void toSwedishUserAttributes(final Collection<UserAttribute> eidasAttributes,
+      final Consumer<UserAttribute> consumer, final AttributeConversionListener listener) {
+    this.toSwedishUserAttributes(eidasAttributes, consumer);
+  }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.attributes;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.schema.XSString;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeValue;
+import se.swedenconnect.opensaml.saml2.attribute.AttributeTemplate;
+
+import java.util.Objects;
+
+/**
+ * Factory methods for the attribute objects created during attribute conversion.
+ * <p>
+ * The OpenSAML builders are looked up in the builder factory registry once and are then held by this class. This
+ * saves a registry lookup for every attribute and value that is created. The builders are resolved on first use, since
+ * OpenSAML may not be initialized when this class is loaded.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public final class AttributeObjectFactory {
+
+  /** The builder for {@link Attribute} objects. */
+  private static volatile XMLObjectBuilder<Attribute> attributeBuilder;
+
+  /** The builder for {@link XSString} attribute values. */
+  private static volatile XMLObjectBuilder<XSString> stringValueBuilder;
+
+  /**
+   * Creates an {@link Attribute} having the name, friendly name and name format of the supplied template.
+   *
+   * @param template the attribute template
+   * @param value the attribute value
+   * @return an {@link Attribute}
+   */
+  public static Attribute createAttribute(final AttributeTemplate template, final XMLObject value) {
+    final Attribute attribute = getAttributeBuilder().buildObject(Attribute.DEFAULT_ELEMENT_NAME);
+    attribute.setName(template.getName());
+    attribute.setFriendlyName(template.getFriendlyName());
+    attribute.setNameFormat(template.getNameFormat());
+    attribute.getAttributeValues().add(Objects.requireNonNull(value, "value must not be null"));
+    return attribute;
+  }
+
+  /**
+   * Creates an {@link Attribute} having the name, friendly name and name format of the supplied template and a string
+   * value.
+   *
+   * @param template the attribute template
+   * @param value the string value
+   * @return an {@link Attribute}
+   */
+  public static Attribute createAttribute(final AttributeTemplate template, final String value) {
+    return createAttribute(template, createStringValue(value));
+  }
+
+  /**
+   * Creates an {@link XSString} attribute value.
+   *
+   * @param value the string value
+   * @return an {@link XSString} attribute value
+   */
+  public static XSString createStringValue(final String value) {
+    final XSString stringValue = getStringValueBuilder().buildObject(AttributeValue.DEFAULT_ELEMENT_NAME,
+        XSString.TYPE_NAME);
+    stringValue.setValue(value);
+    return stringValue;
+  }
+
+  /**
+   * Gets the builder for {@link Attribute} objects.
+   *
+   * @return the builder
+   */
+  private static XMLObjectBuilder<Attribute> getAttributeBuilder() {
+    XMLObjectBuilder<Attribute> builder = attributeBuilder;
+    if (builder == null) {
+      builder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilderOrThrow(Attribute.DEFAULT_ELEMENT_NAME);
+      attributeBuilder = builder;
+    }
+    return builder;
+  }
+
+  /**
+   * Gets the builder for {@link XSString} attribute values.
+   *
+   * @return the builder
+   */
+  private static XMLObjectBuilder<XSString> getStringValueBuilder() {
+    XMLObjectBuilder<XSString> builder = stringValueBuilder;
+    if (builder == null) {
+      builder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilderOrThrow(XSString.TYPE_NAME);
+      stringValueBuilder = builder;
+    }
+    return builder;
+  }
+
+  // Hidden
+  private AttributeObjectFactory() {
+  }
+
+}
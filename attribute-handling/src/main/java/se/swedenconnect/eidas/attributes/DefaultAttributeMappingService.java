@@ -15,25 +15,49 @@
  */
 package se.swedenconnect.eidas.attributes;
 
-import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.schema.XSString;
 import org.opensaml.saml.saml2.core.Attribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.swedenconnect.eidas.attributes.conversion.AttributeConverter;
+import se.swedenconnect.eidas.attributes.conversion.AttributeTemplatePair;
+import se.swedenconnect.opensaml.eidas.ext.attributes.EidasAttributeValueType;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeUtils;
 import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
 import se.swedenconnect.spring.saml.idp.attributes.ImplicitRequestedAttribute;
 import se.swedenconnect.spring.saml.idp.attributes.RequestedAttribute;
 import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
+import se.swedenconnect.spring.saml.idp.attributes.eidas.EidasAttributeValue;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Default implementation of the {@link AttributeMappingService} interface.
+ * <p>
+ * When the service is created, the converters are indexed by the attribute names they support (see
+ * {@link AttributeConverter#getTemplates()}), so that finding the converter for an attribute does not require scanning
+ * all converters. Converters that can not list their attributes are scanned (in order) if no match is found in the
+ * index.
+ * </p>
  *
  * @author Martin Lindström
  */
@@ -42,8 +66,108 @@ public class DefaultAttributeMappingService implements AttributeMappingService {
   /** Logging instance. */
   private final static Logger log = LoggerFactory.getLogger(DefaultAttributeMappingService.class);
 
-  /** The converters used by the service. */
-  private final List<AttributeConverter> converters;
+  /** The default size for the requested attributes cache. */
+  public static final int DEFAULT_REQUESTED_ATTRIBUTES_CACHE_SIZE = 100;
+
+  /** The eIDAS minimum data set templates indexed by attribute name. */
+  private static final Map<String, EidasAttributeTemplate> MINIMUM_DATASET_TEMPLATES =
+      EidasAttributeTemplateConstants.MINIMUM_DATASET_TEMPLATES.stream()
+          .collect(Collectors.toUnmodifiableMap(EidasAttributeTemplate::getName, Function.identity()));
+
+  /** Adapter for {@link Attribute}. */
+  private static final AttributeAdapter<Attribute> SAML_ATTRIBUTE_ADAPTER = new AttributeAdapter<>() {
+
+    @Override
+    public String getName(final Attribute attribute) {
+      return attribute.getName();
+    }
+
+    @Override
+    public Attribute convert(final AttributeConverter converter, final Attribute eidasAttribute) {
+      return converter.toSwedishEidAttribute(eidasAttribute);
+    }
+
+    @Override
+    public String getStringValue(final Attribute attribute) {
+      return AttributeUtils.getAttributeStringValue(attribute);
+    }
+
+    @Override
+    public Attribute createPlaceOfBirth(final String value) {
+      return AttributeObjectFactory.createAttribute(AttributeConstants.ATTRIBUTE_TEMPLATE_PLACE_OF_BIRTH, value);
+    }
+
+    @Override
+    public boolean isSupportedValueType(final Attribute attribute) {
+      final List<XMLObject> values = attribute.getAttributeValues();
+      return values.isEmpty() || values.getFirst() instanceof EidasAttributeValueType
+          || values.getFirst() instanceof XSString;
+    }
+  };
+
+  /** Adapter for {@link UserAttribute}. */
+  private static final AttributeAdapter<UserAttribute> USER_ATTRIBUTE_ADAPTER = new AttributeAdapter<>() {
+
+    @Override
+    public String getName(final UserAttribute attribute) {
+      return attribute.getId();
+    }
+
+    @Override
+    public UserAttribute convert(final AttributeConverter converter, final UserAttribute eidasAttribute) {
+      return converter.toSwedishEidAttribute(eidasAttribute);
+    }
+
+    @Override
+    public String getStringValue(final UserAttribute attribute) {
+      final List<String> values = attribute.getStringValues();
+      return values.isEmpty() ? null : values.getFirst();
+    }
+
+    @Override
+    public UserAttribute createPlaceOfBirth(final String value) {
+      return new UserAttribute(AttributeConstants.ATTRIBUTE_NAME_PLACE_OF_BIRTH,
+          AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PLACE_OF_BIRTH, value);
+    }
+
+    @Override
+    public boolean isSupportedValueType(final UserAttribute attribute) {
+      final List<? extends Serializable> values = attribute.getValues();
+      return values.isEmpty() || values.getFirst() instanceof EidasAttributeValue
+          || values.getFirst() instanceof String;
+    }
+  };
+
+  /** Converters supporting conversion to eIDAS, indexed by the Swedish eID attribute name. */
+  private final Map<String, AttributeConverter> convertersBySwedishName;
+
+  /** eIDAS attribute templates, indexed by the Swedish eID attribute name. */
+  private final Map<String, EidasAttributeTemplate> eidasTemplatesBySwedishName;
+
+  /** Converters supporting conversion to Swedish eID attributes, indexed by the eIDAS attribute name. */
+  private final Map<String, AttributeConverter> convertersByEidasName;
+
+  /**
+   * The conversion to apply for each eIDAS attribute (see {@link #toSwedishAttributes(Collection, AttributeAdapter,
+   * Consumer)}), indexed by the eIDAS attribute name.
+   */
+  private final Map<String, EidasAttributeConversion> conversions;
+
+  /**
+   * Cache of requested attributes per request profile (see {@link #toEidasRequestedAttributes(Collection, boolean)}).
+   * May be {@code null}.
+   */
+  private volatile Map<RequestProfile, List<RequestedAttributePrototype>> requestedAttributesCache =
+      createLruCache(DEFAULT_REQUESTED_ATTRIBUTES_CACHE_SIZE);
+
+  /** The OpenSAML builder for eIDAS {@code RequestedAttribute} objects. Resolved on first use. */
+  private volatile XMLObjectBuilder<?> requestedAttributeBuilder;
+
+  /**
+   * The converters that were not indexed, i.e., the first converter that does not list its templates along with all
+   * following converters (to preserve the order in which the converters are tried).
+   */
+  private final List<AttributeConverter> unindexedConverters;
 
   /**
    * Constructor.
@@ -51,15 +175,101 @@ public class DefaultAttributeMappingService implements AttributeMappingService {
    * @param converters the converters used by the service
    */
   public DefaultAttributeMappingService(final List<AttributeConverter> converters) {
-    this.converters = Objects.requireNonNull(converters, "converters must not be null");
+    Objects.requireNonNull(converters, "converters must not be null");
+
+    final Map<String, AttributeConverter> bySwedishName = new HashMap<>();
+    final Map<String, EidasAttributeTemplate> templatesBySwedishName = new HashMap<>();
+    final Map<String, AttributeConverter> byEidasName = new HashMap<>();
+    int indexed = 0;
+    for (final AttributeConverter c : converters) {
+      final List<AttributeTemplatePair> templates = c.getTemplates();
+      if (templates == null) {
+        break;
+      }
+      // The first converter (in list order) supporting an attribute wins ...
+      //
+      for (final AttributeTemplatePair p : templates) {
+        final String swedishName = p.swedishEidTemplate().getName();
+        if (!bySwedishName.containsKey(swedishName) && c.supportsConversionToEidas(swedishName)) {
+          bySwedishName.put(swedishName, c);
+          templatesBySwedishName.put(swedishName, c.getEidasAttributeTemplate(swedishName));
+        }
+        final String eidasName = p.eidasTemplate().getName();
+        if (!byEidasName.containsKey(eidasName) && c.supportsConversionToSwedishAttribute(eidasName)) {
+          byEidasName.put(eidasName, c);
+        }
+      }
+      indexed++;
+    }
+    this.convertersBySwedishName = Collections.unmodifiableMap(bySwedishName);
+    this.eidasTemplatesBySwedishName = Collections.unmodifiableMap(templatesBySwedishName);
+    this.convertersByEidasName = Collections.unmodifiableMap(byEidasName);
+    this.unindexedConverters = List.copyOf(converters.subList(indexed, converters.size()));
+    if (!this.unindexedConverters.isEmpty()) {
+      log.info("{} attribute converter(s) can not be indexed - these will be scanned for each lookup",
+          this.unindexedConverters.size());
+    }
+
+    final Map<String, EidasAttributeConversion> conversions = new HashMap<>();
+    byEidasName.forEach((name, converter) ->
+        conversions.put(name, new EidasAttributeConversion(ConversionType.CONVERT, converter)));
+    conversions.put(
+        se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME,
+        new EidasAttributeConversion(ConversionType.PLACE_OF_BIRTH, this.getConverterForEidasAttribute(
+            se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME)));
+    conversions.put(
+        se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_TOWN_OF_BIRTH_ATTRIBUTE_NAME,
+        new EidasAttributeConversion(ConversionType.TOWN_OF_BIRTH, this.getConverterForEidasAttribute(
+            se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_TOWN_OF_BIRTH_ATTRIBUTE_NAME)));
+    conversions.put(
+        se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_COUNTRY_OF_BIRTH_ATTRIBUTE_NAME,
+        new EidasAttributeConversion(ConversionType.COUNTRY_OF_BIRTH, this.getConverterForEidasAttribute(
+            se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_COUNTRY_OF_BIRTH_ATTRIBUTE_NAME)));
+    this.conversions = Collections.unmodifiableMap(conversions);
+  }
+
+  /**
+   * Finds the converter that supports conversion of the given Swedish eID attribute into an eIDAS attribute.
+   *
+   * @param swedishAttribute the Swedish eID attribute name
+   * @return the converter, or {@code null} if no converter supports the attribute
+   */
+  private AttributeConverter getConverterForSwedishAttribute(final String swedishAttribute) {
+    final AttributeConverter converter = this.convertersBySwedishName.get(swedishAttribute);
+    if (converter != null || this.unindexedConverters.isEmpty()) {
+      return converter;
+    }
+    for (final AttributeConverter c : this.unindexedConverters) {
+      if (c.supportsConversionToEidas(swedishAttribute)) {
+        return c;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the converter that supports conversion of the given eIDAS attribute into a Swedish eID attribute.
+   *
+   * @param eidasAttribute the eIDAS attribute name
+   * @return the converter, or {@code null} if no converter supports the attribute
+   */
+  private AttributeConverter getConverterForEidasAttribute(final String eidasAttribute) {
+    final AttributeConverter converter = this.convertersByEidasName.get(eidasAttribute);
+    if (converter != null || this.unindexedConverters.isEmpty()) {
+      return converter;
+    }
+    for (final AttributeConverter c : this.unindexedConverters) {
+      if (c.supportsConversionToSwedishAttribute(eidasAttribute)) {
+        return c;
+      }
+    }
+    return null;
   }
 
   /** {@inheritDoc} */
   @Override
   public Attribute toEidasAttribute(final Attribute swedishAttribute) {
-    return this.converters.stream()
-        .filter(c -> c.supportsConversionToEidas(swedishAttribute.getName()))
-        .findFirst()
+    return Optional.ofNullable(this.getConverterForSwedishAttribute(swedishAttribute.getName()))
         .map(c -> c.toEidasAttribute(swedishAttribute))
         .orElse(null);
   }
@@ -69,93 +279,167 @@ public class DefaultAttributeMappingService implements AttributeMappingService {
   public se.swedenconnect.opensaml.eidas.ext.RequestedAttribute toEidasRequestedAttribute(
       final RequestedAttribute requestedBySwedishSp) {
 
-    EidasAttributeTemplate template = this.converters.stream()
-        .filter(c -> c.supportsConversionToEidas(requestedBySwedishSp.getId()))
-        .map(c -> c.getEidasAttributeTemplate(requestedBySwedishSp.getId()))
-        .findFirst()
-        .orElse(null);
+    final EidasAttributeTemplate template = this.getEidasTemplate(requestedBySwedishSp.getId());
+    if (template == null) {
+      return null;
+    }
+    final se.swedenconnect.opensaml.eidas.ext.RequestedAttribute requestedAttribute =
+        this.createRequestedAttribute(template);
+
+    // Check if the attribute is part of the minimum data set. If so, set isRequired.
+    requestedAttribute.setIsRequired(
+        AttributeMappingService.NATURAL_PERSON_MINIMUM_DATASET.contains(template.getName()));
+
+    return requestedAttribute;
+  }
+
+  /**
+   * Gets the eIDAS attribute template to use when requesting the given Swedish eID attribute.
+   *
+   * @param swedishAttribute the Swedish eID attribute name
+   * @return the eIDAS attribute template, or {@code null} if there is no mapping
+   */
+  private EidasAttributeTemplate getEidasTemplate(final String swedishAttribute) {
+    EidasAttributeTemplate template = this.eidasTemplatesBySwedishName.get(swedishAttribute);
+    if (template == null && !this.convertersBySwedishName.containsKey(swedishAttribute)) {
+      template = Optional.ofNullable(this.getConverterForSwedishAttribute(swedishAttribute))
+          .map(c -> c.getEidasAttributeTemplate(swedishAttribute))
+          .orElse(null);
+    }
 
     // Special handling for TownOfBirth and CountryOfBirth that does not have a Swedish counterpart.
     // So, we allow a Swedish SP to require these eIDAS attributes directly ...
     //
     if (template == null) {
       if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_COUNTRY_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(requestedBySwedishSp.getId())) {
+          .equals(swedishAttribute)) {
         template = EidasAttributeTemplateConstants.COUNTRY_OF_BIRTH_TEMPLATE;
       }
       else if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_TOWN_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(requestedBySwedishSp.getId())) {
+          .equals(swedishAttribute)) {
         template = EidasAttributeTemplateConstants.TOWN_OF_BIRTH_TEMPLATE;
       }
     }
-
-    if (template == null) {
-      return null;
-    }
-    final se.swedenconnect.opensaml.eidas.ext.RequestedAttribute requestedAttribute =
-        this.createRequestedAttribute(template);
-
-    // Check if the attribute is part of the minimum data set. If so, set isRequired.
-    requestedAttribute.setIsRequired(
-        AttributeMappingService.NATURAL_PERSON_MINIMUM_DATASET.contains(template.getName()));
-
-    return requestedAttribute;
+    return template;
   }
 
   private se.swedenconnect.opensaml.eidas.ext.RequestedAttribute createRequestedAttribute(
       final EidasAttributeTemplate template) {
-    final se.swedenconnect.opensaml.eidas.ext.RequestedAttribute requestedAttribute =
-        (se.swedenconnect.opensaml.eidas.ext.RequestedAttribute) XMLObjectSupport.buildXMLObject(
-            se.swedenconnect.opensaml.eidas.ext.RequestedAttribute.DEFAULT_ELEMENT_NAME);
-    requestedAttribute.setName(template.getName());
-    requestedAttribute.setFriendlyName(template.getFriendlyName());
-    requestedAttribute.setNameFormat(template.getNameFormat());
-    return requestedAttribute;
+    return new RequestedAttributePrototype(template, false).copy(this.getRequestedAttributeBuilder());
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Gets the OpenSAML builder for eIDAS {@code RequestedAttribute} objects. The builder is looked up on first use
+   * (OpenSAML must have been initialized) and then re-used.
+   *
+   * @return the builder
+   */
+  private XMLObjectBuilder<?> getRequestedAttributeBuilder() {
+    XMLObjectBuilder<?> builder = this.requestedAttributeBuilder;
+    if (builder == null) {
+      builder = XMLObjectProviderRegistrySupport.getBuilderFactory()
+          .getBuilderOrThrow(se.swedenconnect.opensaml.eidas.ext.RequestedAttribute.DEFAULT_ELEMENT_NAME);
+      this.requestedAttributeBuilder = builder;
+    }
+    return builder;
+  }
+
+  /**
+   * Implements caching of the requested attributes for each request profile, i.e., the set of requested attribute IDs
+   * and the {@code includeMinimumDataSet} flag (see {@link #setRequestedAttributesCacheSize(int)}). Implicitly
+   * requested attributes that are not required are ignored, and duplicate IDs are only requested once.
+   */
   @Override
   public List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> toEidasRequestedAttributes(
       final Collection<RequestedAttribute> requestedBySwedishSp, final boolean includeMinimumDataSet) {
 
-    final List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> requestedAttributes = new ArrayList<>();
-    requestedBySwedishSp.stream()
-        .filter(ra -> {
-          if (ra instanceof final ImplicitRequestedAttribute impl) {
-            // Don't include implicitly required attributes that are not required ...
-            return impl.isRequired();
-          }
-          return true;
-        })
-        .map(this::toEidasRequestedAttribute)
-        .filter(Objects::nonNull)
-        .forEach(requestedAttributes::add);
-
-    if (includeMinimumDataSet) {
+    final RequestProfile profile = RequestProfile.of(requestedBySwedishSp, includeMinimumDataSet);
+
+    final Map<RequestProfile, List<RequestedAttributePrototype>> cache = this.requestedAttributesCache;
+    List<RequestedAttributePrototype> prototypes = cache != null ? cache.get(profile) : null;
+    if (prototypes == null) {
+      prototypes = this.createPrototypes(profile);
+      if (cache != null) {
+        cache.put(profile, prototypes);
+      }
+    }
+
+    final XMLObjectBuilder<?> builder = this.getRequestedAttributeBuilder();
+    final List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> requestedAttributes =
+        new ArrayList<>(prototypes.size());
+    for (final RequestedAttributePrototype p : prototypes) {
+      requestedAttributes.add(p.copy(builder));
+    }
+    return requestedAttributes;
+  }
+
+  /**
+   * Calculates the requested attributes for the given request profile.
+   *
+   * @param profile the request profile
+   * @return an immutable list of requested attribute prototypes
+   */
+  private List<RequestedAttributePrototype> createPrototypes(final RequestProfile profile) {
+    final List<RequestedAttributePrototype> prototypes = new ArrayList<>();
+    final Set<String> requestedNames = new HashSet<>();
+    for (final String id : profile.ids()) {
+      final EidasAttributeTemplate template = this.getEidasTemplate(id);
+      if (template != null) {
+        prototypes.add(new RequestedAttributePrototype(template,
+            AttributeMappingService.NATURAL_PERSON_MINIMUM_DATASET.contains(template.getName())));
+        requestedNames.add(template.getName());
+      }
+    }
+
+    if (profile.includeMinimumDataSet()) {
       for (final String a : AttributeMappingService.NATURAL_PERSON_MINIMUM_DATASET) {
-        if (requestedAttributes.stream().noneMatch(ra -> Objects.equals(a, ra.getName()))) {
-          final EidasAttributeTemplate template = EidasAttributeTemplateConstants.MINIMUM_DATASET_TEMPLATES.stream()
-              .filter(t -> Objects.equals(t.getName(), a))
-              .findFirst()
+        if (!requestedNames.contains(a)) {
+          final EidasAttributeTemplate template = Optional.ofNullable(MINIMUM_DATASET_TEMPLATES.get(a))
               .orElseThrow(() -> new IllegalArgumentException("eIDAS minimum data set config error"));
-
-          final se.swedenconnect.opensaml.eidas.ext.RequestedAttribute requestedAttribute =
-              this.createRequestedAttribute(template);
-          requestedAttribute.setIsRequired(true);
-          requestedAttributes.add(requestedAttribute);
+          prototypes.add(new RequestedAttributePrototype(template, true));
         }
       }
     }
+    return List.copyOf(prototypes);
+  }
 
-    return requestedAttributes;
+  /**
+   * Assigns the maximum number of request profiles for which the eIDAS requested attributes are cached by
+   * {@link #toEidasRequestedAttributes(Collection, boolean)}. When the cache is full, the least recently used entry is
+   * evicted. A value of 0 disables caching. The default is {@value #DEFAULT_REQUESTED_ATTRIBUTES_CACHE_SIZE}.
+   *
+   * @param size the maximum number of cached request profiles
+   */
+  public void setRequestedAttributesCacheSize(final int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size must not be negative");
+    }
+    this.requestedAttributesCache = size > 0 ? createLruCache(size) : null;
+  }
+
+  /**
+   * Creates a synchronized LRU cache.
+   *
+   * @param maxSize the maximum number of entries
+   * @return a map
+   */
+  private static <K, V> Map<K, V> createLruCache(final int maxSize) {
+    return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+
+      @Serial
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+        return this.size() > maxSize;
+      }
+    });
   }
 
   /** {@inheritDoc} */
   @Override
   public Attribute toSwedishEidAttribute(final Attribute eidasAttribute) {
-    return this.converters.stream()
-        .filter(c -> c.supportsConversionToSwedishAttribute(eidasAttribute.getName()))
-        .findFirst()
+    return Optional.ofNullable(this.getConverterForEidasAttribute(eidasAttribute.getName()))
         .map(c -> c.toSwedishEidAttribute(eidasAttribute))
         .orElse(null);
   }
@@ -165,68 +449,15 @@ public class DefaultAttributeMappingService implements AttributeMappingService {
    */
   @Override
   public List<Attribute> toSwedishEidAttributes(final Collection<Attribute> eidasAttributes) {
-    final List<Attribute> swedishEidAttributes = new ArrayList<>();
-    boolean eidasPlaceOfBirth = false;
-    String townOfBirth = null;
-    String countryOfBirth = null;
-
-    for (final Attribute eidasAttribute : eidasAttributes) {
-      if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(eidasAttribute.getName())) {
-        eidasPlaceOfBirth = true;
-      }
-
-      if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_TOWN_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(eidasAttribute.getName())) {
-        if (!eidasPlaceOfBirth) {
-          townOfBirth = Optional.ofNullable(this.toSwedishEidAttribute(eidasAttribute))
-              .map(AttributeUtils::getAttributeStringValue)
-              .orElse(null);
-        }
-        else {
-          log.info("Ignoring '{}' - {} appears and have precedence", eidasAttribute.getName(),
-              se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME);
-        }
-      }
-      else if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_COUNTRY_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(eidasAttribute.getName())) {
-        if (!eidasPlaceOfBirth) {
-          countryOfBirth = Optional.ofNullable(this.toSwedishEidAttribute(eidasAttribute))
-              .map(AttributeUtils::getAttributeStringValue)
-              .orElse(null);
-        }
-        else {
-          log.info("Ignoring '{}' - {} appears and have precedence", eidasAttribute.getName(),
-              se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME);
-        }
-      }
-      else {
-        Optional.ofNullable(this.toSwedishEidAttribute(eidasAttribute)).ifPresent(swedishEidAttributes::add);
-      }
-    }
-    if (!eidasPlaceOfBirth && (townOfBirth != null || countryOfBirth != null)) {
-      final StringBuilder sb = new StringBuilder();
-      Optional.ofNullable(townOfBirth).ifPresent(sb::append);
-      if (countryOfBirth != null) {
-        if (!sb.isEmpty()) {
-          sb.append(", ");
-        }
-        sb.append(countryOfBirth);
-      }
-      swedishEidAttributes.add(AttributeConstants.ATTRIBUTE_TEMPLATE_PLACE_OF_BIRTH.createBuilder()
-          .value(sb.toString())
-          .build());
-    }
-
+    final List<Attribute> swedishEidAttributes = new ArrayList<>(eidasAttributes.size());
+    this.toSwedishAttributes(eidasAttributes, SAML_ATTRIBUTE_ADAPTER, swedishEidAttributes::add, null);
     return swedishEidAttributes;
   }
 
   /** {@inheritDoc} */
   @Override
   public UserAttribute toSwedishUserAttribute(final UserAttribute eidasAttribute) {
-    return this.converters.stream()
-        .filter(c -> c.supportsConversionToSwedishAttribute(eidasAttribute.getId()))
-        .findFirst()
+    return Optional.ofNullable(this.getConverterForEidasAttribute(eidasAttribute.getId()))
         .map(c -> c.toSwedishEidAttribute(eidasAttribute))
         .orElse(null);
   }
@@ -236,63 +467,293 @@ public class DefaultAttributeMappingService implements AttributeMappingService {
    */
   @Override
   public List<UserAttribute> toSwedishUserAttributes(final Collection<UserAttribute> eidasAttributes) {
-    final List<UserAttribute> swedishEidAttributes = new ArrayList<>();
+    final List<UserAttribute> swedishEidAttributes = new ArrayList<>(eidasAttributes.size());
+    this.toSwedishAttributes(eidasAttributes, USER_ATTRIBUTE_ADAPTER, swedishEidAttributes::add, null);
+    return swedishEidAttributes;
+  }
+
+  /**
+   * Implements special handling for PlaceOfBirth, CountryOfBirth and TownOfBirth ...
+   */
+  @Override
+  public void toSwedishUserAttributes(
+      final Collection<UserAttribute> eidasAttributes, final Consumer<UserAttribute> consumer) {
+    this.toSwedishAttributes(eidasAttributes, USER_ATTRIBUTE_ADAPTER, consumer, null);
+  }
+
+  /**
+   * Implements special handling for PlaceOfBirth, CountryOfBirth and TownOfBirth ...
+   */
+  @Override
+  public void toSwedishUserAttributes(final Collection<UserAttribute> eidasAttributes,
+      final Consumer<UserAttribute> consumer, final AttributeConversionListener listener) {
+    this.toSwedishAttributes(eidasAttributes, USER_ATTRIBUTE_ADAPTER, consumer,
+        Objects.requireNonNull(listener, "listener must not be null"));
+  }
+
+  /**
+   * Converts eIDAS attributes into Swedish eID attributes in one pass.
+   * <p>
+   * If PlaceOfBirth is present, it is converted, and TownOfBirth and CountryOfBirth are ignored. Otherwise,
+   * TownOfBirth and CountryOfBirth are merged into a Swedish placeOfBirth attribute that is passed to the consumer
+   * after all other attributes.
+   * </p>
+   *
+   * @param eidasAttributes the eIDAS attributes
+   * @param adapter the adapter for the attribute representation
+   * @param consumer the consumer receiving the Swedish eID attributes
+   * @param listener the listener that is informed about each conversion (may be {@code null})
+   */
+  private <A> void toSwedishAttributes(final Collection<A> eidasAttributes, final AttributeAdapter<A> adapter,
+      final Consumer<A> consumer, final AttributeConversionListener listener) {
+
     boolean eidasPlaceOfBirth = false;
     String townOfBirth = null;
     String countryOfBirth = null;
 
-    for (final UserAttribute eidasAttribute : eidasAttributes) {
-      if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(eidasAttribute.getId())) {
-        eidasPlaceOfBirth = true;
+    for (final A eidasAttribute : eidasAttributes) {
+      final String name = adapter.getName(eidasAttribute);
+      final EidasAttributeConversion conversion = this.getConversion(name);
+      if (conversion == null) {
+        continue;
       }
-
-      if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_TOWN_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(eidasAttribute.getId())) {
-        if (!eidasPlaceOfBirth) {
-          townOfBirth = Optional.ofNullable(this.toSwedishUserAttribute(eidasAttribute))
-              .map(UserAttribute::getStringValues)
-              .filter(v -> !v.isEmpty())
-              .map(List::getFirst)
-              .orElse(null);
-        }
-        else {
-          log.info("Ignoring '{}' - {} appears and have precedence", eidasAttribute.getId(),
+      final ConversionType type = conversion.type();
+      if (type == ConversionType.TOWN_OF_BIRTH || type == ConversionType.COUNTRY_OF_BIRTH) {
+        if (eidasPlaceOfBirth) {
+          log.info("Ignoring '{}' - {} appears and have precedence", name,
               se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME);
+          continue;
         }
-      }
-      else if (se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_COUNTRY_OF_BIRTH_ATTRIBUTE_NAME
-          .equals(eidasAttribute.getId())) {
-        if (!eidasPlaceOfBirth) {
-          countryOfBirth = Optional.ofNullable(this.toSwedishUserAttribute(eidasAttribute))
-              .map(UserAttribute::getStringValues)
-              .filter(v -> !v.isEmpty())
-              .map(List::getFirst)
-              .orElse(null);
+        final A swedishAttribute = this.convert(conversion, adapter, eidasAttribute, name, listener);
+        final String value = swedishAttribute != null ? adapter.getStringValue(swedishAttribute) : null;
+        if (type == ConversionType.TOWN_OF_BIRTH) {
+          townOfBirth = value;
         }
         else {
-          log.info("Ignoring '{}' - {} appears and have precedence", eidasAttribute.getId(),
-              se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants.EIDAS_PLACE_OF_BIRTH_ATTRIBUTE_NAME);
+          countryOfBirth = value;
         }
       }
       else {
-        Optional.ofNullable(this.toSwedishUserAttribute(eidasAttribute)).ifPresent(swedishEidAttributes::add);
+        if (type == ConversionType.PLACE_OF_BIRTH) {
+          eidasPlaceOfBirth = true;
+        }
+        final A swedishAttribute = this.convert(conversion, adapter, eidasAttribute, name, listener);
+        if (swedishAttribute != null) {
+          consumer.accept(swedishAttribute);
+        }
       }
     }
+
     if (!eidasPlaceOfBirth && (townOfBirth != null || countryOfBirth != null)) {
       final StringBuilder sb = new StringBuilder();
-      Optional.ofNullable(townOfBirth).ifPresent(sb::append);
+      if (townOfBirth != null) {
+        sb.append(townOfBirth);
+      }
       if (countryOfBirth != null) {
         if (!sb.isEmpty()) {
           sb.append(", ");
         }
         sb.append(countryOfBirth);
       }
-      swedishEidAttributes.add(new UserAttribute(AttributeConstants.ATTRIBUTE_NAME_PLACE_OF_BIRTH,
-          AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PLACE_OF_BIRTH, sb.toString()));
+      consumer.accept(adapter.createPlaceOfBirth(sb.toString()));
     }
+  }
 
-    return swedishEidAttributes;
+  /**
+   * Converts an eIDAS attribute and reports the conversion to the listener (if set).
+   *
+   * @param conversion the conversion to apply
+   * @param adapter the attribute adapter
+   * @param eidasAttribute the eIDAS attribute
+   * @param name the eIDAS attribute name
+   * @param listener the listener (may be {@code null})
+   * @return the Swedish eID attribute, or {@code null} if no conversion is possible
+   */
+  private <A> A convert(final EidasAttributeConversion conversion, final AttributeAdapter<A> adapter,
+      final A eidasAttribute, final String name, final AttributeConversionListener listener) {
+    if (listener == null || conversion.converter() == null) {
+      return conversion.convert(adapter, eidasAttribute);
+    }
+    final long start = System.nanoTime();
+    A swedishAttribute = null;
+    try {
+      swedishAttribute = conversion.convert(adapter, eidasAttribute);
+      return swedishAttribute;
+    }
+    finally {
+      final long duration = System.nanoTime() - start;
+      final AttributeConversionListener.Outcome outcome = swedishAttribute != null
+          ? AttributeConversionListener.Outcome.SUCCESS
+          : adapter.isSupportedValueType(eidasAttribute)
+              ? AttributeConversionListener.Outcome.FAILURE
+              : AttributeConversionListener.Outcome.UNSUPPORTED_VALUE_TYPE;
+      try {
+        listener.conversionPerformed(name, outcome, duration);
+      }
+      catch (final RuntimeException e) {
+        log.warn("Attribute conversion listener failed for '{}'", name, e);
+      }
+    }
+  }
+
+  /**
+   * Gets the conversion for the given eIDAS attribute.
+   *
+   * @param eidasAttribute the eIDAS attribute name
+   * @return the conversion, or {@code null} if the attribute can not be converted
+   */
+  private EidasAttributeConversion getConversion(final String eidasAttribute) {
+    final EidasAttributeConversion conversion = this.conversions.get(eidasAttribute);
+    if (conversion != null || this.unindexedConverters.isEmpty()) {
+      return conversion;
+    }
+    return Optional.ofNullable(this.getConverterForEidasAttribute(eidasAttribute))
+        .map(c -> new EidasAttributeConversion(ConversionType.CONVERT, c))
+        .orElse(null);
+  }
+
+  /**
+   * A request profile, i.e., the (normalized) attributes requested by an SP.
+   *
+   * @param ids the IDs of the requested attributes (in order of appearance)
+   * @param includeMinimumDataSet whether the minimum data set should be included
+   */
+  private record RequestProfile(List<String> ids, boolean includeMinimumDataSet) {
+
+    /**
+     * Creates a request profile. Implicitly requested attributes that are not required are not included, and
+     * duplicates are removed.
+     *
+     * @param requestedAttributes the requested attributes
+     * @param includeMinimumDataSet whether the minimum data set should be included
+     * @return a {@link RequestProfile}
+     */
+    static RequestProfile of(
+        final Collection<RequestedAttribute> requestedAttributes, final boolean includeMinimumDataSet) {
+      final Set<String> ids = new LinkedHashSet<>();
+      for (final RequestedAttribute ra : requestedAttributes) {
+        // Don't include implicitly required attributes that are not required ...
+        if (ra instanceof final ImplicitRequestedAttribute impl && !impl.isRequired()) {
+          continue;
+        }
+        ids.add(ra.getId());
+      }
+      return new RequestProfile(List.copyOf(ids), includeMinimumDataSet);
+    }
+  }
+
+  /**
+   * An immutable prototype for an eIDAS requested attribute. Since each {@code RequestedAttribute} gets attached to a
+   * specific {@code AuthnRequest}, the prototype is copied into a new object for each request. A field copy is used
+   * instead of a DOM clone (marshalling and unmarshalling), since the latter costs more than the object it copies.
+   *
+   * @param template the attribute template
+   * @param required the value for the {@code isRequired} attribute
+   */
+  private record RequestedAttributePrototype(EidasAttributeTemplate template, boolean required) {
+
+    /**
+     * Creates a new {@code RequestedAttribute} from the prototype.
+     *
+     * @param builder the builder for {@code RequestedAttribute} objects
+     * @return a new {@code RequestedAttribute}
+     */
+    se.swedenconnect.opensaml.eidas.ext.RequestedAttribute copy(final XMLObjectBuilder<?> builder) {
+      final se.swedenconnect.opensaml.eidas.ext.RequestedAttribute requestedAttribute =
+          (se.swedenconnect.opensaml.eidas.ext.RequestedAttribute) builder.buildObject(
+              se.swedenconnect.opensaml.eidas.ext.RequestedAttribute.DEFAULT_ELEMENT_NAME);
+      requestedAttribute.setName(this.template.getName());
+      requestedAttribute.setFriendlyName(this.template.getFriendlyName());
+      requestedAttribute.setNameFormat(this.template.getNameFormat());
+      requestedAttribute.setIsRequired(this.required);
+      return requestedAttribute;
+    }
+  }
+
+  /**
+   * The type of conversion to apply for an eIDAS attribute.
+   */
+  private enum ConversionType {
+
+    /** Convert the attribute using its converter. */
+    CONVERT,
+
+    /** The eIDAS PlaceOfBirth attribute. Converted, but also affects how TownOfBirth and CountryOfBirth are handled. */
+    PLACE_OF_BIRTH,
+
+    /** The eIDAS TownOfBirth attribute. Merged into the Swedish placeOfBirth attribute. */
+    TOWN_OF_BIRTH,
+
+    /** The eIDAS CountryOfBirth attribute. Merged into the Swedish placeOfBirth attribute. */
+    COUNTRY_OF_BIRTH
+  }
+
+  /**
+   * The conversion for an eIDAS attribute.
+   *
+   * @param type the conversion type
+   * @param converter the converter to use (may be {@code null})
+   */
+  private record EidasAttributeConversion(ConversionType type, AttributeConverter converter) {
+
+    /**
+     * Converts the supplied eIDAS attribute into a Swedish eID attribute.
+     *
+     * @param adapter the attribute adapter
+     * @param eidasAttribute the eIDAS attribute
+     * @return the Swedish eID attribute, or {@code null} if no conversion is possible
+     */
+    <A> A convert(final AttributeAdapter<A> adapter, final A eidasAttribute) {
+      return this.converter != null ? adapter.convert(this.converter, eidasAttribute) : null;
+    }
+  }
+
+  /**
+   * Makes it possible to use the same conversion logic for {@link Attribute} and {@link UserAttribute}.
+   */
+  private interface AttributeAdapter<A> {
+
+    /**
+     * Gets the attribute name.
+     *
+     * @param attribute the attribute
+     * @return the attribute name
+     */
+    String getName(final A attribute);
+
+    /**
+     * Converts an eIDAS attribute into a Swedish eID attribute.
+     *
+     * @param converter the converter
+     * @param eidasAttribute the eIDAS attribute
+     * @return the Swedish eID attribute or {@code null}
+     */
+    A convert(final AttributeConverter converter, final A eidasAttribute);
+
+    /**
+     * Gets the (first) string value of the attribute.
+     *
+     * @param attribute the attribute
+     * @return the string value or {@code null}
+     */
+    String getStringValue(final A attribute);
+
+    /**
+     * Creates a Swedish eID placeOfBirth attribute.
+     *
+     * @param value the attribute value
+     * @return an attribute
+     */
+    A createPlaceOfBirth(final String value);
+
+    /**
+     * Tells whether the value type of the supplied eIDAS attribute is supported by the converters, i.e., whether it is
+     * an eIDAS attribute value type (or a string). An attribute without values is regarded as supported.
+     *
+     * @param attribute the eIDAS attribute
+     * @return {@code true} if the value type is supported and {@code false} otherwise
+     */
+    boolean isSupportedValueType(final A attribute);
   }
 
 }
@@ -16,11 +16,15 @@
 package se.swedenconnect.eidas.attributes;
 
 import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.XMLObjectBuilder;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
 import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeValue;
 
 import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeTemplate;
 
+import javax.xml.namespace.QName;
 import java.io.Serial;
 
 /**
@@ -37,6 +41,9 @@ public class EidasAttributeTemplate extends AttributeTemplate {
   /** The class implementing the attribute's value. */
   private final Class<? extends XMLObject> valueClass;
 
+  /** The builder for the attribute value objects. Resolved on first use. */
+  private transient volatile ValueBuilder valueBuilder;
+
   /**
    * Creates an attribute template with the given name and friendly name, the default name format
    * {@code urn:oasis:names:tc:SAML:2.0:attrname-format:uri} ({@link Attribute#URI_REFERENCE}).
@@ -70,11 +77,47 @@ public class EidasAttributeTemplate extends AttributeTemplate {
    * <p>
    * Note: The contents of the value object still has to be assigned.
    * </p>
+   * <p>
+   * The OpenSAML builder for the value type is looked up once and is then held by the template.
+   * </p>
    *
    * @return the value object
    */
   public XMLObject createAttributeValueObject() {
-    return AttributeBuilder.createValueObject(this.valueClass);
+    ValueBuilder builder = this.valueBuilder;
+    if (builder == null) {
+      builder = this.resolveValueBuilder();
+      if (builder == null) {
+        return AttributeBuilder.createValueObject(this.valueClass);
+      }
+      this.valueBuilder = builder;
+    }
+    return builder.builder().buildObject(AttributeValue.DEFAULT_ELEMENT_NAME, builder.type());
+  }
+
+  /**
+   * Resolves the OpenSAML builder for the value class, using the schema type given by its {@code TYPE_NAME} field.
+   *
+   * @return a {@link ValueBuilder}, or {@code null} if the builder can not be resolved
+   */
+  private ValueBuilder resolveValueBuilder() {
+    try {
+      final QName type = (QName) this.valueClass.getField("TYPE_NAME").get(null);
+      final XMLObjectBuilder<?> builder = XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilder(type);
+      return builder != null ? new ValueBuilder(type, builder) : null;
+    }
+    catch (final ReflectiveOperationException | ClassCastException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The resolved builder for the attribute value objects.
+   *
+   * @param type the schema type of the value
+   * @param builder the OpenSAML builder
+   */
+  private record ValueBuilder(QName type, XMLObjectBuilder<?> builder) {
   }
 
 }
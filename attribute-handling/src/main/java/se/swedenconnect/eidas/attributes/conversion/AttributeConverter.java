@@ -21,6 +21,8 @@ import se.swedenconnect.eidas.attributes.EidasAttributeTemplate;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeTemplate;
 import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 
+import java.util.List;
+
 /**
  * Interface for attribute conversion between eIDAS and Swedish eID attribute values.
  *
@@ -88,4 +90,20 @@ public interface AttributeConverter {
    */
   AttributeTemplate getSwedishAttributeTemplate(final String eidasAttribute);
 
+  /**
+   * Gets the attribute template pairs that this converter is configured with. This makes it possible for users of the
+   * converter, such as {@link se.swedenconnect.eidas.attributes.DefaultAttributeMappingService}, to index converters by
+   * attribute name. Note that the predicates {@link #supportsConversionToEidas(String)} and
+   * {@link #supportsConversionToSwedishAttribute(String)} still decide whether a conversion is supported, but a converter
+   * that lists its templates must not support conversion of attributes that are not part of the list.
+   * <p>
+   * The default implementation returns {@code null}, meaning that the converter can not list the attributes it handles.
+   * </p>
+   *
+   * @return a list of template pairs, or {@code null} if not available
+   */
+  default List<AttributeTemplatePair> getTemplates() {
+    return null;
+  }
+
 }
@@ -17,22 +17,19 @@ package se.swedenconnect.eidas.attributes.conversion;
 
 import lombok.extern.slf4j.Slf4j;
 import org.opensaml.core.xml.XMLObject;
-import org.opensaml.core.xml.schema.XSString;
 import org.opensaml.saml.saml2.core.Attribute;
+import se.swedenconnect.eidas.attributes.AttributeObjectFactory;
 import se.swedenconnect.eidas.attributes.EidasAttributeTemplate;
 import se.swedenconnect.eidas.attributes.EidasAttributeTemplateConstants;
 import se.swedenconnect.opensaml.eidas.ext.attributes.CurrentAddressType;
-import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeUtils;
 import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
  * Specialized converter for the CurrentAddress attribute, since its value representation differs between eIDAS and the
- * Swedish eID framework.
+ * Swedish eID framework. See {@link CurrentAddressCodec}.
  *
  * @author Martin Lindström
  */
@@ -61,50 +58,10 @@ public class CurrentAddressAttributeConverter extends DefaultAttributeConverter
       if (!(eidasAttributeValue instanceof final CurrentAddressType currentAddress)) {
         return null;
       }
-      // Parse the string ...
-      final String[] parts = value.split(";");
-      for (final String p : parts) {
-        final String[] kv = p.split("=");
-        if (kv.length != 2) {
-          log.warn("Unknown token of CurrentAddress {}", p);
-          continue;
-        }
-        final String type = kv[0];
-        final String subValue = URLDecoder.decode(kv[1], StandardCharsets.UTF_8);
-        if (type.equalsIgnoreCase("PoBox")) {
-          currentAddress.setPoBox(subValue);
-        }
-        else if (type.equalsIgnoreCase("LocatorDesignator")) {
-          currentAddress.setLocatorDesignator(subValue);
-        }
-        else if (type.equalsIgnoreCase("LocatorName")) {
-          currentAddress.setLocatorName(subValue);
-        }
-        else if (type.equalsIgnoreCase("CvaddressArea")) {
-          currentAddress.setCvaddressArea(subValue);
-        }
-        else if (type.equalsIgnoreCase("Thoroughfare")) {
-          currentAddress.setThoroughfare(subValue);
-        }
-        else if (type.equalsIgnoreCase("PostName")) {
-          currentAddress.setPostName(subValue);
-        }
-        else if (type.equalsIgnoreCase("AdminunitFirstline")) {
-          currentAddress.setAdminunitFirstline(subValue);
-        }
-        else if (type.equalsIgnoreCase("AdminunitSecondline")) {
-          currentAddress.setAdminunitSecondline(subValue);
-        }
-        else if (type.equalsIgnoreCase("PostCode")) {
-          currentAddress.setPostCode(subValue);
-        }
-        else {
-          log.warn("Unknown CurrentAddress type - {}", type);
-        }
-      }
+      CurrentAddressCodec.decode(value, currentAddress);
       log.trace("Transformed Swedish eID attribute '{}' into eIDAS attribute '{}' ({})",
           swedishEidAttribute.getName(), template.getName(), template.getFriendlyName());
-      return template.createBuilder().value(currentAddress).build();
+      return AttributeObjectFactory.createAttribute(template, currentAddress);
     }
     catch (final Exception e) {
       log.error("Failed to create eIDAS attribute value object when transforming Swedish eID attribute '{}'",
@@ -115,18 +72,17 @@ public class CurrentAddressAttributeConverter extends DefaultAttributeConverter
 
   /** {@inheritDoc} */
   @Override
-  protected XMLObject toSwedishEidAttributeValue(final List<XMLObject> values) {
+  protected String toSwedishEidStringValue(final List<?> values) {
     if (values.isEmpty()) {
       return null;
     }
-    if (!(values.getFirst() instanceof final CurrentAddressType currentAddress)) {
+    if (values.getFirst() instanceof final CurrentAddressType currentAddress) {
+      return CurrentAddressCodec.encode(currentAddress);
+    }
+    if (values.getFirst() instanceof XMLObject) {
       return null;
     }
-
-    final String value = currentAddress.toSwedishEidString();
-    final XSString stringValue = AttributeBuilder.createValueObject(XSString.TYPE_NAME, XSString.class);
-    stringValue.setValue(value);
-    return stringValue;
+    return super.toSwedishEidStringValue(values);
   }
 
 }
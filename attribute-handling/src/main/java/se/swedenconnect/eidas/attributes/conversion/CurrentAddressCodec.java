@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.attributes.conversion;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.opensaml.eidas.ext.attributes.CurrentAddressType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Codec for the Swedish eID representation of the eIDAS CurrentAddress attribute, i.e., a string on the format
+ * {@code Key1=value1;Key2=value2}, where each value is URL-encoded (UTF-8) and each key is the name of a
+ * {@link CurrentAddressType} child element.
+ * <p>
+ * The decoder scans the string once. Keys are matched, ignoring case, against a table that is indexed by key length, and
+ * values are only copied when they contain escape sequences. The encoder produces the same string as
+ * {@link CurrentAddressType#toSwedishEidString()}.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+@Slf4j
+public final class CurrentAddressCodec {
+
+  /** The address elements in the order they are encoded. */
+  private static final List<Element> ELEMENTS = List.of(
+      new Element("PoBox", CurrentAddressType::getPoBox, CurrentAddressType::setPoBox),
+      new Element("LocatorDesignator", CurrentAddressType::getLocatorDesignator,
+          CurrentAddressType::setLocatorDesignator),
+      new Element("LocatorName", CurrentAddressType::getLocatorName, CurrentAddressType::setLocatorName),
+      new Element("CvaddressArea", CurrentAddressType::getCvaddressArea, CurrentAddressType::setCvaddressArea),
+      new Element("Thoroughfare", CurrentAddressType::getThoroughfare, CurrentAddressType::setThoroughfare),
+      new Element("PostName", CurrentAddressType::getPostName, CurrentAddressType::setPostName),
+      new Element("AdminunitFirstline", CurrentAddressType::getAdminunitFirstline,
+          CurrentAddressType::setAdminunitFirstline),
+      new Element("AdminunitSecondline", CurrentAddressType::getAdminunitSecondline,
+          CurrentAddressType::setAdminunitSecondline),
+      new Element("PostCode", CurrentAddressType::getPostCode, CurrentAddressType::setPostCode));
+
+  /** The address elements indexed by the length of their names. */
+  private static final Element[][] ELEMENTS_BY_LENGTH;
+
+  static {
+    final int maxLength = ELEMENTS.stream().mapToInt(e -> e.name().length()).max().orElse(0);
+    final List<List<Element>> byLength = new ArrayList<>();
+    for (int i = 0; i <= maxLength; i++) {
+      byLength.add(new ArrayList<>());
+    }
+    ELEMENTS.forEach(e -> byLength.get(e.name().length()).add(e));
+    ELEMENTS_BY_LENGTH = byLength.stream().map(l -> l.toArray(Element[]::new)).toArray(Element[][]::new);
+  }
+
+  /** For hex encoding. */
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  // Hidden
+  private CurrentAddressCodec() {
+  }
+
+  /**
+   * Decodes the Swedish eID string representation of a CurrentAddress and assigns the values to the supplied
+   * {@link CurrentAddressType} object.
+   * <p>
+   * Tokens that are not on the {@code key=value} format, and unknown keys, are logged and ignored.
+   * </p>
+   *
+   * @param value the string to decode
+   * @param currentAddress the object to update
+   * @throws IllegalArgumentException for invalid escape sequences
+   */
+  public static void decode(final String value, final CurrentAddressType currentAddress)
+      throws IllegalArgumentException {
+    Objects.requireNonNull(currentAddress, "currentAddress must not be null");
+
+    final int length = value.length();
+    int start = 0;
+    while (start < length) {
+      int end = value.indexOf(';', start);
+      if (end < 0) {
+        end = length;
+      }
+      if (end > start) {
+        final int eq = value.indexOf('=', start);
+        if (eq < 0 || eq >= end - 1 || value.lastIndexOf('=', end - 1) != eq) {
+          log.warn("Unknown token of CurrentAddress {}", value.substring(start, end));
+        }
+        else {
+          final Element element = getElement(value, start, eq);
+          if (element == null) {
+            log.warn("Unknown CurrentAddress type - {}", value.substring(start, eq));
+          }
+          else {
+            element.setter().accept(currentAddress, urlDecode(value, eq + 1, end));
+          }
+        }
+      }
+      start = end + 1;
+    }
+  }
+
+  /**
+   * Encodes the supplied {@link CurrentAddressType} into its Swedish eID string representation.
+   *
+   * @param currentAddress the address to encode
+   * @return the Swedish eID string representation
+   */
+  public static String encode(final CurrentAddressType currentAddress) {
+    final StringBuilder sb = new StringBuilder(128);
+    for (final Element e : ELEMENTS) {
+      final String value = e.getter().apply(currentAddress);
+      if (value != null) {
+        if (!sb.isEmpty()) {
+          sb.append(';');
+        }
+        sb.append(e.name()).append('=');
+        urlEncode(value, sb);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Finds the address element whose name (ignoring case) is found between {@code start} and {@code end} in
+   * {@code value}.
+   *
+   * @param value the string
+   * @param start the start index
+   * @param end the end index (exclusive)
+   * @return the matching element, or {@code null}
+   */
+  private static Element getElement(final String value, final int start, final int end) {
+    final int length = end - start;
+    if (length >= ELEMENTS_BY_LENGTH.length) {
+      return null;
+    }
+    for (final Element e : ELEMENTS_BY_LENGTH[length]) {
+      if (value.regionMatches(true, start, e.name(), 0, length)) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * URL-decodes the part of the string between {@code start} and {@code end}. Gives the same result as
+   * {@link java.net.URLDecoder#decode(String, java.nio.charset.Charset)} using UTF-8, except that escape sequences
+   * holding a sign character (e.g., {@code %+1}) are rejected.
+   *
+   * @param value the string
+   * @param start the start index
+   * @param end the end index (exclusive)
+   * @return the decoded string
+   * @throws IllegalArgumentException for invalid escape sequences
+   */
+  static String urlDecode(final String value, final int start, final int end) throws IllegalArgumentException {
+    int i = start;
+    while (i < end) {
+      final char c = value.charAt(i);
+      if (c == '%' || c == '+') {
+        break;
+      }
+      i++;
+    }
+    if (i == end) {
+      // Nothing to decode ...
+      return value.substring(start, end);
+    }
+
+    final char[] chars = new char[end - start];
+    value.getChars(start, i, chars, 0);
+    int pos = i - start;
+    byte[] bytes = null;
+    while (i < end) {
+      final char c = value.charAt(i);
+      if (c == '+') {
+        chars[pos++] = ' ';
+        i++;
+      }
+      else if (c == '%') {
+        // Collect all consecutive escaped bytes, and decode them as UTF-8 ...
+        if (bytes == null) {
+          bytes = new byte[(end - i) / 3];
+        }
+        int n = 0;
+        while (i + 2 < end && value.charAt(i) == '%') {
+          final int hi = Character.digit(value.charAt(i + 1), 16);
+          final int lo = Character.digit(value.charAt(i + 2), 16);
+          if (hi < 0 || lo < 0) {
+            throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern");
+          }
+          bytes[n++] = (byte) ((hi << 4) + lo);
+          i += 3;
+        }
+        if (i < end && value.charAt(i) == '%') {
+          throw new IllegalArgumentException("Incomplete trailing escape (%) pattern");
+        }
+        final String decoded = new String(bytes, 0, n, StandardCharsets.UTF_8);
+        decoded.getChars(0, decoded.length(), chars, pos);
+        pos += decoded.length();
+      }
+      else {
+        chars[pos++] = c;
+        i++;
+      }
+    }
+    return new String(chars, 0, pos);
+  }
+
+  /**
+   * URL-encodes the supplied string using UTF-8 and appends the result to the supplied builder. Gives the same result
+   * as {@link java.net.URLEncoder#encode(String, java.nio.charset.Charset)} with the exception that a space character
+   * is encoded as {@code %20} (and not {@code +}).
+   *
+   * @param value the string to encode
+   * @param sb the builder to append the result to
+   */
+  static void urlEncode(final String value, final StringBuilder sb) {
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+          || c == '.' || c == '-' || c == '*' || c == '_') {
+        sb.append(c);
+      }
+      else if (c < 0x80) {
+        appendEscaped(sb, c);
+      }
+      else {
+        // Encode the run of non-ASCII characters as UTF-8 ...
+        int runEnd = i + 1;
+        while (runEnd < length && value.charAt(runEnd) >= 0x80) {
+          runEnd++;
+        }
+        for (final byte b : value.substring(i, runEnd).getBytes(StandardCharsets.UTF_8)) {
+          appendEscaped(sb, b & 0xff);
+        }
+        i = runEnd - 1;
+      }
+    }
+  }
+
+  private static void appendEscaped(final StringBuilder sb, final int b) {
+    sb.append('%').append(HEX[b >> 4]).append(HEX[b & 0x0f]);
+  }
+
+  /**
+   * Represents an address element.
+   *
+   * @param name the element name
+   * @param getter the getter for the element value
+   * @param setter the setter for the element value
+   */
+  private record Element(String name, Function<CurrentAddressType, String> getter,
+      BiConsumer<CurrentAddressType, String> setter) {
+  }
+
+}
@@ -19,21 +19,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.opensaml.core.xml.XMLObject;
 import org.opensaml.core.xml.schema.XSString;
 import org.opensaml.saml.saml2.core.Attribute;
+import se.swedenconnect.eidas.attributes.AttributeObjectFactory;
 import se.swedenconnect.eidas.attributes.EidasAttributeTemplate;
 import se.swedenconnect.opensaml.eidas.ext.attributes.EidasAttributeValueType;
 import se.swedenconnect.opensaml.eidas.ext.attributes.TransliterationStringType;
-import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeTemplate;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeUtils;
 import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 import se.swedenconnect.spring.saml.idp.attributes.eidas.EidasAttributeValue;
 import se.swedenconnect.spring.saml.idp.attributes.eidas.TransliterationString;
 
-import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
 
 /**
  * Default implementation for the {@link AttributeConverter} interface.
@@ -50,6 +51,12 @@ public class DefaultAttributeConverter implements AttributeConverter {
   /** A list of the attributes that this converter handles. */
   protected final List<AttributeTemplatePair> templates;
 
+  /** The template pairs indexed by the Swedish eID attribute name. */
+  private final Map<String, AttributeTemplatePair> templatesBySwedishName;
+
+  /** The template pairs indexed by the eIDAS attribute name. */
+  private final Map<String, AttributeTemplatePair> templatesByEidasName;
+
   /**
    * Constructor assigning support for one attribute mapping.
    *
@@ -58,7 +65,7 @@ public class DefaultAttributeConverter implements AttributeConverter {
    */
   public DefaultAttributeConverter(
       final EidasAttributeTemplate eidasTemplate, final AttributeTemplate swedishEidTemplate) {
-    this.templates = List.of(new AttributeTemplatePair(eidasTemplate, swedishEidTemplate));
+    this(List.of(new AttributeTemplatePair(eidasTemplate, swedishEidTemplate)));
   }
 
   /**
@@ -68,13 +75,29 @@ public class DefaultAttributeConverter implements AttributeConverter {
    */
   public DefaultAttributeConverter(final List<AttributeTemplatePair> templates) {
     this.templates = Objects.requireNonNull(templates, "templates must not be null");
+
+    // If several pairs have the same name, the first one is used ...
+    //
+    final Map<String, AttributeTemplatePair> bySwedishName = new HashMap<>();
+    final Map<String, AttributeTemplatePair> byEidasName = new HashMap<>();
+    for (final AttributeTemplatePair p : templates) {
+      bySwedishName.putIfAbsent(p.swedishEidTemplate().getName(), p);
+      byEidasName.putIfAbsent(p.eidasTemplate().getName(), p);
+    }
+    this.templatesBySwedishName = Collections.unmodifiableMap(bySwedishName);
+    this.templatesByEidasName = Collections.unmodifiableMap(byEidasName);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<AttributeTemplatePair> getTemplates() {
+    return this.templates;
   }
 
   /** {@inheritDoc} */
   @Override
   public boolean supportsConversionToEidas(final String swedishEidAttribute) {
-    return this.templates.stream().anyMatch(p -> Objects.equals(
-        p.swedishEidTemplate().getName(), swedishEidAttribute));
+    return this.templatesBySwedishName.containsKey(swedishEidAttribute);
   }
 
   /** {@inheritDoc} */
@@ -95,11 +118,11 @@ public class DefaultAttributeConverter implements AttributeConverter {
         ((EidasAttributeValueType) eidasAttributeValue).parseStringValue(value);
         log.trace("Transformed Swedish eID attribute '{}' into eIDAS attribute '{}' ({})",
             swedishEidAttribute.getName(), template.getName(), template.getFriendlyName());
-        return template.createBuilder().value(eidasAttributeValue).build();
+        return AttributeObjectFactory.createAttribute(template, eidasAttributeValue);
       }
       // This is how we hope eIDAS attributes will turn out, so we'll add support for it.
       else if (eidasAttributeValue instanceof XSString) {
-        return template.createBuilder().value(value).build();
+        return AttributeObjectFactory.createAttribute(template, value);
       }
       else {
         log.info("Unknown type for eIDAS attribute value ({}) - can not convert Swedish eID attribute '{}'",
@@ -117,10 +140,8 @@ public class DefaultAttributeConverter implements AttributeConverter {
   /** {@inheritDoc} */
   @Override
   public EidasAttributeTemplate getEidasAttributeTemplate(final String swedishEidAttribute) {
-    return this.templates.stream()
-        .filter(p -> Objects.equals(p.swedishEidTemplate().getName(), swedishEidAttribute))
+    return Optional.ofNullable(this.templatesBySwedishName.get(swedishEidAttribute))
         .map(AttributeTemplatePair::eidasTemplate)
-        .findFirst()
         .orElse(null);
   }
 
@@ -140,8 +161,7 @@ public class DefaultAttributeConverter implements AttributeConverter {
   /** {@inheritDoc} */
   @Override
   public boolean supportsConversionToSwedishAttribute(final String eidasAttribute) {
-    return this.templates.stream().anyMatch(p -> Objects.equals(
-        p.eidasTemplate().getName(), eidasAttribute));
+    return this.templatesByEidasName.containsKey(eidasAttribute);
   }
 
   /** {@inheritDoc} */
@@ -159,7 +179,7 @@ public class DefaultAttributeConverter implements AttributeConverter {
     if (attributeValue != null) {
       log.trace("Transformed eIDAS attribute '{}' into Swedish eID attribute '{}' ({})", eidasAttribute.getName(),
           template.getName(), template.getFriendlyName());
-      return template.createBuilder().value(attributeValue).build();
+      return AttributeObjectFactory.createAttribute(template, attributeValue);
     }
     else {
       log.info("No attribute value conversion was possible for eIDAS attribute '{}'", eidasAttribute.getName());
@@ -179,6 +199,10 @@ public class DefaultAttributeConverter implements AttributeConverter {
       return null;
     }
     final String stringValue = this.toSwedishEidAttributeValue(eidasAttribute);
+    if (stringValue == null) {
+      log.info("No attribute value conversion was possible for eIDAS attribute '{}'", eidasAttribute.getId());
+      return null;
+    }
     log.trace("Transformed eIDAS attribute '{}' into Swedish eID attribute '{}' ({})", eidasAttribute.getId(),
         template.getName(), template.getFriendlyName());
     return new UserAttribute(template.getName(), template.getFriendlyName(), stringValue);
@@ -200,10 +224,8 @@ public class DefaultAttributeConverter implements AttributeConverter {
   /** {@inheritDoc} */
   @Override
   public AttributeTemplate getSwedishAttributeTemplate(final String eidasAttribute) {
-    return this.templates.stream()
-        .filter(p -> Objects.equals(p.eidasTemplate().getName(), eidasAttribute))
+    return Optional.ofNullable(this.templatesByEidasName.get(eidasAttribute))
         .map(AttributeTemplatePair::swedishEidTemplate)
-        .findFirst()
         .orElse(null);
   }
 
@@ -211,9 +233,40 @@ public class DefaultAttributeConverter implements AttributeConverter {
    * Given the eIDAS attribute value(s) the method returns the corresponding attribute value to use for the Swedish eID
    * attribute.
    * <p>
+   * The value is calculated by {@link #toSwedishEidStringValue(List)}.
+   * </p>
+   *
+   * @param values the value(s) to transform
+   * @return the attribute value to be used for the Swedish eID attribute
+   */
+  protected XMLObject toSwedishEidAttributeValue(final List<XMLObject> values) {
+    return Optional.ofNullable(this.toSwedishEidStringValue(values))
+        .map(AttributeObjectFactory::createStringValue)
+        .orElse(null);
+  }
+
+  /**
+   * Extracts a string value from the given eIDAS {@link UserAttribute}.
+   * <p>
+   * The value is calculated by {@link #toSwedishEidStringValue(List)}.
+   * </p>
+   *
+   * @param eidasAttribute the eIDAS attribute
+   * @return the string value
+   */
+  protected String toSwedishEidAttributeValue(final UserAttribute eidasAttribute) {
+    return this.toSwedishEidStringValue(eidasAttribute.getValues());
+  }
+
+  /**
+   * Given the eIDAS attribute value(s) the method returns the string value to use for the Swedish eID attribute. The
+   * values are either OpenSAML objects (from an {@link Attribute}) or {@link UserAttribute} values, and both
+   * representations must give the same result. Subclasses that need a specialized conversion should override this
+   * method.
+   * <p>
    * If more than one eIDAS attribute value is supplied, it probably means that the type is a transliteration string. In
    * that case, we use the value that has the {@code LatinScript} attribute set. If the types are not transliteration
-   * strings, we first value is used.
+   * strings, the first value is used.
    * </p>
    * <p>
    * The default implementation handles all eIDAS attribute values that implements the {@link EidasAttributeValueType}
@@ -221,56 +274,55 @@ public class DefaultAttributeConverter implements AttributeConverter {
    * </p>
    *
    * @param values the value(s) to transform
-   * @return the attribute value to be used for the Swedish eID attribute
+   * @return the string value to be used for the Swedish eID attribute, or {@code null} if no conversion is possible
    */
-  protected XMLObject toSwedishEidAttributeValue(final List<XMLObject> values) {
-
-    final Function<List<XMLObject>, XMLObject> singleFunc = vl -> vl.stream()
-        .filter(TransliterationStringType.class::isInstance)
-        .filter(v -> ((TransliterationStringType) v).getLatinScript())
-        .findFirst()
-        .orElseGet(values::getFirst);
+  protected String toSwedishEidStringValue(final List<?> values) {
+    if (values.isEmpty()) {
+      return null;
+    }
+    final Object eidasValue = values.size() == 1
+        ? values.getFirst()
+        : values.stream()
+            .filter(DefaultAttributeConverter::isLatinScript)
+            .findFirst()
+            .orElseGet(values::getFirst);
 
-    final XMLObject eidasValue = values.size() == 1 ? values.getFirst() : singleFunc.apply(values);
-    if (eidasValue instanceof EidasAttributeValueType) {
-      final String value = ((EidasAttributeValueType) eidasValue).toStringValue();
-      final XSString stringValue = AttributeBuilder.createValueObject(XSString.TYPE_NAME, XSString.class);
-      stringValue.setValue(value);
-      return stringValue;
+    if (eidasValue instanceof final EidasAttributeValueType eidasAttributeValue) {
+      return eidasAttributeValue.toStringValue();
     }
-    else if (eidasValue instanceof XSString) {
-      final XSString stringValue = AttributeBuilder.createValueObject(XSString.TYPE_NAME, XSString.class);
-      stringValue.setValue(((XSString) eidasValue).getValue());
-      return stringValue;
+    else if (eidasValue instanceof final XSString stringValue) {
+      return stringValue.getValue();
     }
-    else {
-      log.info("Unsupported eIDAS attribute value type: {}", eidasValue.getElementQName());
+    else if (eidasValue instanceof final EidasAttributeValue<?> eidasAttributeValue) {
+      return eidasAttributeValue.getValueAsString();
+    }
+    else if (eidasValue instanceof final XMLObject xmlObject) {
+      log.info("Unsupported eIDAS attribute value type: {}", xmlObject.getElementQName());
       return null;
     }
+    else {
+      return eidasValue.toString();
+    }
   }
 
   /**
-   * Extracts a string value from the given eIDAS {@link UserAttribute}.
+   * Tells whether the supplied value is a transliteration string having the {@code LatinScript} attribute set.
+   * <p>
+   * The {@link TransliterationString} value class only exposes the {@code LatinScript} flag through its XML form, so
+   * this form is created for such values. This only happens for attributes having several values.
+   * </p>
    *
-   * @param eidasAttribute the eIDAS attribute
-   * @return the string value
+   * @param value the value
+   * @return {@code true} if the value is a transliteration string in latin script and {@code false} otherwise
    */
-  protected String toSwedishEidAttributeValue(final UserAttribute eidasAttribute) {
-    final List<? extends Serializable> values = eidasAttribute.getValues();
-    if (values.getFirst() instanceof TransliterationString) {
-      final XMLObject attributeValue = this.toSwedishEidAttributeValue(values.stream()
-          .map(TransliterationString.class::cast)
-          .map(TransliterationString::createXmlObject)
-          .map(XMLObject.class::cast)
-          .toList());
-      return ((XSString) attributeValue).getValue();
-    }
-    else if (values.getFirst() instanceof EidasAttributeValue) {
-      return ((EidasAttributeValue<?>) values.getFirst()).getValueAsString();
+  private static boolean isLatinScript(final Object value) {
+    if (value instanceof final TransliterationStringType transliterationString) {
+      return transliterationString.getLatinScript();
     }
-    else {
-      return values.getFirst().toString();
+    else if (value instanceof final TransliterationString transliterationString) {
+      return transliterationString.createXmlObject().getLatinScript();
     }
+    return false;
   }
 
 }
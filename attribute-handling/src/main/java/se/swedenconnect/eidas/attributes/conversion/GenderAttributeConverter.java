@@ -16,18 +16,16 @@
 package se.swedenconnect.eidas.attributes.conversion;
 
 import org.opensaml.core.xml.XMLObject;
-import org.opensaml.core.xml.schema.XSString;
 import org.opensaml.saml.saml2.core.Attribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.swedenconnect.eidas.attributes.AttributeObjectFactory;
 import se.swedenconnect.eidas.attributes.EidasAttributeTemplate;
 import se.swedenconnect.eidas.attributes.EidasAttributeTemplateConstants;
 import se.swedenconnect.opensaml.eidas.ext.attributes.GenderType;
 import se.swedenconnect.opensaml.eidas.ext.attributes.GenderTypeEnumeration;
-import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeUtils;
 import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
-import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 import se.swedenconnect.spring.saml.idp.attributes.eidas.Gender;
 
 import java.util.List;
@@ -75,7 +73,7 @@ public class GenderAttributeConverter extends DefaultAttributeConverter {
       }
       log.trace("Transformed Swedish eID attribute '{}' into eIDAS attribute '{}' ({})",
           swedishEidAttribute.getName(), template.getName(), template.getFriendlyName());
-      return template.createBuilder().value(genderValue).build();
+      return AttributeObjectFactory.createAttribute(template, genderValue);
     }
     catch (final Exception e) {
       log.error("Failed to create eIDAS attribute value object when transforming Swedish eID attribute '{}'",
@@ -86,35 +84,20 @@ public class GenderAttributeConverter extends DefaultAttributeConverter {
 
   /** {@inheritDoc} */
   @Override
-  protected XMLObject toSwedishEidAttributeValue(final List<XMLObject> values) {
+  protected String toSwedishEidStringValue(final List<?> values) {
     if (values.isEmpty()) {
       return null;
     }
-    if (!(values.getFirst() instanceof final GenderType genderValue)) {
-      return null;
-    }
-    final String value;
-    if (genderValue.getGender().equals(GenderTypeEnumeration.MALE)) {
-      value = "M";
+    final String gender;
+    if (values.getFirst() instanceof final GenderType genderValue) {
+      gender = genderValue.getGender() != null ? genderValue.getGender().getValue() : null;
     }
-    else if (genderValue.getGender().equals(GenderTypeEnumeration.FEMALE)) {
-      value = "F";
+    else if (values.getFirst() instanceof final Gender genderValue) {
+      gender = genderValue.getValueAsString();
     }
     else {
-      value = "U";
-    }
-    final XSString stringValue = AttributeBuilder.createValueObject(XSString.TYPE_NAME, XSString.class);
-    stringValue.setValue(value);
-    return stringValue;
-  }
-
-  /** {@inheritDoc} */
-  @Override
-  protected String toSwedishEidAttributeValue(final UserAttribute eidasAttribute) {
-    if (eidasAttribute.getValues().isEmpty()) {
       return null;
     }
-    final String gender = ((Gender) eidasAttribute.getValues().getFirst()).getValueAsString();
     if (GenderTypeEnumeration.MALE.getValue().equalsIgnoreCase(gender)) {
       return "M";
     }
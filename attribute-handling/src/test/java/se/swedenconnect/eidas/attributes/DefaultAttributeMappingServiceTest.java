@@ -19,7 +19,11 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.saml.saml2.core.Attribute;
+import se.swedenconnect.eidas.attributes.conversion.AttributeConverter;
 import se.swedenconnect.eidas.attributes.conversion.AttributeConverterConstants;
+import se.swedenconnect.eidas.attributes.conversion.AttributeTemplatePair;
+import se.swedenconnect.eidas.attributes.conversion.DefaultAttributeConverter;
+import se.swedenconnect.eidas.attributes.conversion.GenderAttributeConverter;
 import se.swedenconnect.opensaml.eidas.ext.attributes.BirthNameType;
 import se.swedenconnect.opensaml.eidas.ext.attributes.CountryOfBirthType;
 import se.swedenconnect.opensaml.eidas.ext.attributes.CurrentFamilyNameType;
@@ -33,8 +37,10 @@ import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
 import se.swedenconnect.spring.saml.idp.attributes.RequestedAttribute;
 import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 /**
@@ -295,6 +301,17 @@ public class DefaultAttributeMappingServiceTest extends OpenSamlTestBase {
         .findFirst()
         .orElse(null));
 
+    // 2c. The same using the streaming API ...
+    //
+    final List<UserAttribute> res2c = new ArrayList<>();
+    service.toSwedishUserAttributes(
+        Stream.of(eidasPersonIdentifier, eidasCountryOfBirth, eidasTownOfBirth).map(UserAttribute::new).toList(),
+        res2c::add);
+    Assertions.assertEquals(res2b.stream().map(UserAttribute::getId).toList(),
+        res2c.stream().map(UserAttribute::getId).toList());
+    Assertions.assertEquals(res2b.stream().map(UserAttribute::getStringValues).toList(),
+        res2c.stream().map(UserAttribute::getStringValues).toList());
+
     // 3 and 4. PlaceOfBirth is not set, one of CountryOfBirth and TownOfBirth is set
     //
     final List<Attribute> res3 = service.toSwedishEidAttributes(
@@ -326,6 +343,140 @@ public class DefaultAttributeMappingServiceTest extends OpenSamlTestBase {
         .orElse(null));
   }
 
+  @Test
+  void testConversionListener() {
+    // A converter that never manages to convert the family name ...
+    final AttributeConverter failing = new DefaultAttributeConverter(
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE, AttributeConstants.ATTRIBUTE_TEMPLATE_SN) {
+
+      @Override
+      public UserAttribute toSwedishEidAttribute(final UserAttribute eidasAttribute) {
+        return null;
+      }
+    };
+    final DefaultAttributeMappingService service = new DefaultAttributeMappingService(
+        Stream.concat(Stream.of(failing), AttributeConverterConstants.DEFAULT_CONVERTERS.stream()).toList());
+
+    final PersonIdentifierType eidasPersonIdentifierValue =
+        (PersonIdentifierType) XMLObjectSupport.buildXMLObject(PersonIdentifierType.TYPE_NAME);
+    eidasPersonIdentifierValue.setValue("ES/AT/02635542Y");
+    final Attribute eidasPersonIdentifier = EidasAttributeTemplateConstants.PERSON_IDENTIFIER_TEMPLATE.createBuilder()
+        .value(eidasPersonIdentifierValue)
+        .build();
+
+    final CurrentFamilyNameType eidasFamilyNameValue =
+        (CurrentFamilyNameType) XMLObjectSupport.buildXMLObject(CurrentFamilyNameType.TYPE_NAME);
+    eidasFamilyNameValue.setValue("Eriksson");
+    final Attribute eidasFamilyName = EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.createBuilder()
+        .value(eidasFamilyNameValue)
+        .build();
+
+    final List<String> reported = new ArrayList<>();
+    final List<UserAttribute> result = new ArrayList<>();
+    service.toSwedishUserAttributes(List.of(
+            new UserAttribute(eidasPersonIdentifier),
+            new UserAttribute(eidasFamilyName),
+            new UserAttribute(EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.getName(), null, "Eriksson"),
+            new UserAttribute(EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.getName(), null, 42),
+            new UserAttribute("urn:not:supported", null, "value")),
+        result::add,
+        (name, outcome, duration) -> {
+          Assertions.assertTrue(duration >= 0);
+          reported.add(name + ":" + outcome);
+        });
+
+    Assertions.assertEquals(1, result.size());
+    Assertions.assertEquals(AttributeConstants.ATTRIBUTE_NAME_EIDAS_PERSON_IDENTIFIER, result.getFirst().getId());
+    Assertions.assertEquals(List.of(
+        EidasAttributeTemplateConstants.PERSON_IDENTIFIER_TEMPLATE.getName() + ":SUCCESS",
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.getName() + ":FAILURE",
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.getName() + ":FAILURE",
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.getName() + ":UNSUPPORTED_VALUE_TYPE"),
+        reported);
+  }
+
+  @Test
+  void testConverterIndex() {
+    final DefaultAttributeMappingService service =
+        new DefaultAttributeMappingService(AttributeConverterConstants.DEFAULT_CONVERTERS);
+
+    // The indexed lookup should give the same result as trying the converters in order ...
+    //
+    final List<AttributeTemplatePair> pairs = AttributeConverterConstants.DEFAULT_CONVERTERS.stream()
+        .flatMap(c -> c.getTemplates().stream())
+        .toList();
+    for (final AttributeTemplatePair p : pairs) {
+      final String swedishName = p.swedishEidTemplate().getName();
+      final String expected = AttributeConverterConstants.DEFAULT_CONVERTERS.stream()
+          .filter(c -> c.supportsConversionToEidas(swedishName))
+          .map(c -> c.getEidasAttributeTemplate(swedishName).getName())
+          .findFirst()
+          .orElse(null);
+      Assertions.assertEquals(expected, Optional.ofNullable(
+              service.toEidasRequestedAttribute(new RequestedAttribute(swedishName, null, false)))
+          .map(se.swedenconnect.opensaml.eidas.ext.RequestedAttribute::getName)
+          .orElse(null), swedishName);
+    }
+  }
+
+  @Test
+  void testUnindexedConverter() {
+    // A converter that does not list its templates, placed before the default converters ...
+    final AttributeConverter gender = new GenderAttributeConverter();
+    final AttributeConverter unindexed = new AttributeConverter() {
+      @Override
+      public boolean supportsConversionToEidas(final String swedishEidAttribute) {
+        return gender.supportsConversionToEidas(swedishEidAttribute);
+      }
+
+      @Override
+      public Attribute toEidasAttribute(final Attribute swedishEidAttribute) {
+        return gender.toEidasAttribute(swedishEidAttribute);
+      }
+
+      @Override
+      public EidasAttributeTemplate getEidasAttributeTemplate(final String swedishEidAttribute) {
+        return gender.getEidasAttributeTemplate(swedishEidAttribute);
+      }
+
+      @Override
+      public boolean supportsConversionToSwedishAttribute(final String eidasAttribute) {
+        return gender.supportsConversionToSwedishAttribute(eidasAttribute);
+      }
+
+      @Override
+      public Attribute toSwedishEidAttribute(final Attribute eidasAttribute) {
+        return gender.toSwedishEidAttribute(eidasAttribute);
+      }
+
+      @Override
+      public UserAttribute toSwedishEidAttribute(final UserAttribute eidasAttribute) {
+        return gender.toSwedishEidAttribute(eidasAttribute);
+      }
+
+      @Override
+      public AttributeTemplate getSwedishAttributeTemplate(final String eidasAttribute) {
+        return gender.getSwedishAttributeTemplate(eidasAttribute);
+      }
+    };
+
+    final DefaultAttributeMappingService service = new DefaultAttributeMappingService(
+        Stream.concat(Stream.of(unindexed), AttributeConverterConstants.DEFAULT_CONVERTERS.stream()).toList());
+
+    final Attribute eidasGender = service.toEidasAttribute(
+        AttributeConstants.ATTRIBUTE_TEMPLATE_GENDER.createBuilder().value("F").build());
+    Assertions.assertNotNull(eidasGender);
+    Assertions.assertEquals(EidasAttributeTemplateConstants.GENDER_TEMPLATE.getName(), eidasGender.getName());
+    Assertions.assertEquals(AttributeConstants.ATTRIBUTE_NAME_GENDER,
+        service.toSwedishEidAttribute(eidasGender).getName());
+
+    final Attribute eidasSn = service.toEidasAttribute(
+        AttributeConstants.ATTRIBUTE_TEMPLATE_SN.createBuilder().value("Eriksson").build());
+    Assertions.assertNotNull(eidasSn);
+    Assertions.assertEquals(EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.getName(),
+        eidasSn.getName());
+  }
+
   @Test
   void testToEidasRequestedAttribute() {
     final DefaultAttributeMappingService service =
@@ -439,4 +590,49 @@ public class DefaultAttributeMappingServiceTest extends OpenSamlTestBase {
         EidasAttributeTemplateConstants.TOWN_OF_BIRTH_TEMPLATE.getName())));
   }
 
+  @Test
+  void testToEidasRequestedAttributesCached() {
+    final DefaultAttributeMappingService service =
+        new DefaultAttributeMappingService(AttributeConverterConstants.DEFAULT_CONVERTERS);
+    final DefaultAttributeMappingService uncachedService =
+        new DefaultAttributeMappingService(AttributeConverterConstants.DEFAULT_CONVERTERS);
+    uncachedService.setRequestedAttributesCacheSize(0);
+
+    final List<RequestedAttribute> ras = List.of(
+        new RequestedAttribute(
+            AttributeConstants.ATTRIBUTE_NAME_PLACE_OF_BIRTH,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PLACE_OF_BIRTH,
+            false),
+        new RequestedAttribute(
+            AttributeConstants.ATTRIBUTE_NAME_GIVEN_NAME,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_GIVEN_NAME,
+            true),
+        new RequestedAttribute(
+            AttributeConstants.ATTRIBUTE_NAME_GIVEN_NAME,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_GIVEN_NAME,
+            true));
+
+    for (final boolean includeMinimumDataSet : List.of(true, false, true)) {
+      final List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> eidas1 =
+          service.toEidasRequestedAttributes(ras, includeMinimumDataSet);
+      final List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> eidas2 =
+          service.toEidasRequestedAttributes(ras, includeMinimumDataSet);
+      final List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> expected =
+          uncachedService.toEidasRequestedAttributes(ras, includeMinimumDataSet);
+
+      Assertions.assertEquals(includeMinimumDataSet ? 5 : 2, eidas1.size());
+      Assertions.assertEquals(expected.size(), eidas1.size());
+      Assertions.assertEquals(expected.size(), eidas2.size());
+      for (int i = 0; i < expected.size(); i++) {
+        Assertions.assertEquals(expected.get(i).getName(), eidas1.get(i).getName());
+        Assertions.assertEquals(expected.get(i).isRequired(), eidas1.get(i).isRequired());
+        Assertions.assertEquals(expected.get(i).getName(), eidas2.get(i).getName());
+        Assertions.assertEquals(expected.get(i).isRequired(), eidas2.get(i).isRequired());
+
+        // Each call must produce new objects, since they are added to an AuthnRequest
+        Assertions.assertNotSame(eidas1.get(i), eidas2.get(i));
+      }
+    }
+  }
+
 }
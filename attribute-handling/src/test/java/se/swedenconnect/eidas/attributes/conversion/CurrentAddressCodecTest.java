@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.attributes.conversion;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.eidas.attributes.OpenSamlTestBase;
+import se.swedenconnect.opensaml.eidas.ext.attributes.CurrentAddressType;
+import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Test cases for CurrentAddressCodec.
+ *
+ * @author Martin Lindström
+ */
+public class CurrentAddressCodecTest extends OpenSamlTestBase {
+
+  private static final String CHARACTERS = "aZ09.-*_~ +%=;/åäöÖ€😀!#";
+
+  @Test
+  void testDecode() {
+    final CurrentAddressType address = AttributeBuilder.createValueObject(CurrentAddressType.class);
+    CurrentAddressCodec.decode(
+        "locatordesignator=6%20tr;LocatorName=10;THOROUGHFARE=Korta+gatan;Unknown=x;PostName;;PostName=S%C3%B6dert%C3%A4lje;"
+            + "PostCode=15135;PoBox=a=b;CvaddressArea=",
+        address);
+
+    Assertions.assertEquals("6 tr", address.getLocatorDesignator());
+    Assertions.assertEquals("10", address.getLocatorName());
+    Assertions.assertEquals("Korta gatan", address.getThoroughfare());
+    Assertions.assertEquals("Södertälje", address.getPostName());
+    Assertions.assertEquals("15135", address.getPostCode());
+    Assertions.assertNull(address.getPoBox());
+    Assertions.assertNull(address.getCvaddressArea());
+    Assertions.assertNull(address.getAdminunitFirstline());
+    Assertions.assertNull(address.getAdminunitSecondline());
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> CurrentAddressCodec.decode("PostName=%C3%B", address));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> CurrentAddressCodec.decode("PostName=%XY", address));
+  }
+
+  @Test
+  void testEncode() {
+    final CurrentAddressType address = AttributeBuilder.createValueObject(CurrentAddressType.class);
+    Assertions.assertEquals(address.toSwedishEidString(), CurrentAddressCodec.encode(address));
+
+    address.setLocatorDesignator("6 tr");
+    address.setLocatorName("10");
+    address.setThoroughfare("Korta gatan");
+    address.setPostName("Södertälje");
+    address.setPostCode("15135");
+    address.setAdminunitFirstline("SE");
+    address.setAdminunitSecondline("Stockholms län");
+    address.setCvaddressArea("a+b;c=d");
+    address.setPoBox("Box 1");
+    Assertions.assertEquals(address.toSwedishEidString(), CurrentAddressCodec.encode(address));
+
+    final CurrentAddressType decoded = AttributeBuilder.createValueObject(CurrentAddressType.class);
+    CurrentAddressCodec.decode(CurrentAddressCodec.encode(address), decoded);
+    Assertions.assertEquals(address.toSwedishEidString(), decoded.toSwedishEidString());
+  }
+
+  @Test
+  void testUrlEncoding() {
+    final Random random = new Random(4711);
+    for (int n = 0; n < 10_000; n++) {
+      final StringBuilder sb = new StringBuilder();
+      final int length = random.nextInt(12);
+      for (int i = 0; i < length; i++) {
+        sb.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+      }
+      final String value = sb.toString();
+
+      final StringBuilder encoded = new StringBuilder();
+      CurrentAddressCodec.urlEncode(value, encoded);
+      Assertions.assertEquals(URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20"),
+          encoded.toString(), value);
+      Assertions.assertEquals(URLDecoder.decode(encoded.toString(), StandardCharsets.UTF_8),
+          CurrentAddressCodec.urlDecode(encoded.toString(), 0, encoded.length()), value);
+
+      String expected;
+      try {
+        expected = URLDecoder.decode(value, StandardCharsets.UTF_8);
+      }
+      catch (final IllegalArgumentException e) {
+        expected = null;
+      }
+      if (expected != null && !value.contains("%+") && !value.contains("%-")) {
+        Assertions.assertEquals(expected, CurrentAddressCodec.urlDecode(value, 0, value.length()), value);
+      }
+    }
+  }
+
+}
@@ -32,6 +32,7 @@ import se.swedenconnect.opensaml.eidas.ext.attributes.PlaceOfBirthType;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeTemplate;
 import se.swedenconnect.opensaml.saml2.attribute.AttributeUtils;
 import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
+import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 
 import java.util.List;
 
@@ -285,4 +286,34 @@ public class DefaultAttributeConverterTest extends OpenSamlTestBase {
     Assertions.assertEquals("Smith", AttributeUtils.getAttributeStringValue(swAttr));
   }
 
+  @Test
+  public void testTransliteratedUserAttribute() {
+    final DefaultAttributeConverter converter = new DefaultAttributeConverter(
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE, AttributeConstants.ATTRIBUTE_TEMPLATE_SN);
+
+    final CurrentFamilyNameType value1 = (CurrentFamilyNameType)
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.createAttributeValueObject();
+    value1.setValue("Παπαδόπουλος");
+    value1.setLatinScript(false);
+
+    final CurrentFamilyNameType value2 = (CurrentFamilyNameType)
+        EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.createAttributeValueObject();
+    value2.setValue("Papadopoulos");
+
+    final Attribute eidasAttr = EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.createBuilder()
+        .value(value1).value(value2).build();
+
+    UserAttribute swAttr = converter.toSwedishEidAttribute(new UserAttribute(eidasAttr));
+    Assertions.assertNotNull(swAttr);
+    Assertions.assertEquals(AttributeConstants.ATTRIBUTE_NAME_SN, swAttr.getId());
+    Assertions.assertEquals("Papadopoulos", swAttr.getStringValues().getFirst());
+
+    // The same with only one value ...
+    final Attribute eidasAttr2 = EidasAttributeTemplateConstants.CURRENT_FAMILY_NAME_TEMPLATE.createBuilder()
+        .value(value2).build();
+    swAttr = converter.toSwedishEidAttribute(new UserAttribute(eidasAttr2));
+    Assertions.assertNotNull(swAttr);
+    Assertions.assertEquals("Papadopoulos", swAttr.getStringValues().getFirst());
+  }
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import se.swedenconnect.eidas.attributes.DefaultAttributeMappingService;
+import se.swedenconnect.eidas.attributes.conversion.AttributeConverter;
+import se.swedenconnect.eidas.attributes.conversion.AttributeConverterConstants;
+import se.swedenconnect.spring.saml.idp.attributes.RequestedAttribute;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for the per-attribute converter lookups made by {@link DefaultAttributeMappingService} using the
+ * {@link AttributeConverterConstants#DEFAULT_CONVERTERS} set. Each invocation looks up all attribute names handled by the
+ * default converters, along with one name that is not handled.
+ *
+ * @author Martin Lindström
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeConverterLookupBenchmark {
+
+  private static final String UNKNOWN_NAME = "urn:oid:1.2.3.4.5";
+
+  private List<AttributeConverter> converters;
+
+  private DefaultAttributeMappingService service;
+
+  /** The Swedish eID attribute names of the default converters. */
+  private String[] swedishNames;
+
+  /** The eIDAS attribute names of the default converters. */
+  private String[] eidasNames;
+
+  /** A requested attribute for each Swedish eID attribute name. */
+  private RequestedAttribute[] requestedAttributes;
+
+  @Setup
+  public void setup() throws Exception {
+    OpenSamlSupport.initialize();
+    this.converters = AttributeConverterConstants.DEFAULT_CONVERTERS;
+    this.service = new DefaultAttributeMappingService(this.converters);
+
+    this.swedishNames = Stream.concat(
+            this.converters.stream().flatMap(c -> c.getTemplates().stream()).map(p -> p.swedishEidTemplate().getName()),
+            Stream.of(UNKNOWN_NAME))
+        .distinct()
+        .toArray(String[]::new);
+    this.eidasNames = Stream.concat(
+            this.converters.stream().flatMap(c -> c.getTemplates().stream()).map(p -> p.eidasTemplate().getName()),
+            Stream.of(UNKNOWN_NAME))
+        .distinct()
+        .toArray(String[]::new);
+    this.requestedAttributes = Stream.of(this.swedishNames)
+        .map(n -> new RequestedAttribute(n, null, false))
+        .toArray(RequestedAttribute[]::new);
+  }
+
+  @Benchmark
+  public void toEidasRequestedAttribute(final Blackhole blackhole) {
+    for (final RequestedAttribute ra : this.requestedAttributes) {
+      blackhole.consume(this.service.toEidasRequestedAttribute(ra));
+    }
+  }
+
+  @Benchmark
+  public void converterTemplateLookups(final Blackhole blackhole) {
+    for (final AttributeConverter c : this.converters) {
+      for (final String name : this.swedishNames) {
+        blackhole.consume(c.getEidasAttributeTemplate(name));
+      }
+      for (final String name : this.eidasNames) {
+        blackhole.consume(c.getSwedishAttributeTemplate(name));
+      }
+    }
+  }
+
+}
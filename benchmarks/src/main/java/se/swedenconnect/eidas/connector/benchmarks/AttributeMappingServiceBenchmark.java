@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.swedenconnect.eidas.attributes.DefaultAttributeMappingService;
+import se.swedenconnect.eidas.attributes.conversion.AttributeConverterConstants;
+import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
+import se.swedenconnect.spring.saml.idp.attributes.RequestedAttribute;
+import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for {@link DefaultAttributeMappingService}, covering the conversions made for each authentication, i.e.,
+ * {@link DefaultAttributeMappingService#toEidasRequestedAttributes(java.util.Collection, boolean)} when sending a
+ * request, and {@link DefaultAttributeMappingService#toSwedishUserAttributes(java.util.Collection)} when processing a
+ * response.
+ *
+ * @author Martin Lindström
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeMappingServiceBenchmark {
+
+  private DefaultAttributeMappingService service;
+
+  /** Attributes requested by a typical Swedish SP. */
+  private List<RequestedAttribute> requestedAttributes;
+
+  /** Attributes received in a typical eIDAS assertion. */
+  private List<UserAttribute> eidasAttributes;
+
+  @Setup
+  public void setup() throws Exception {
+    OpenSamlSupport.initialize();
+    this.service = new DefaultAttributeMappingService(AttributeConverterConstants.DEFAULT_CONVERTERS);
+
+    this.requestedAttributes = List.of(
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_EIDAS_PERSON_IDENTIFIER,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_EIDAS_PERSON_IDENTIFIER, true),
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_GIVEN_NAME,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_GIVEN_NAME, true),
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_SN,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_SN, true),
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_DATE_OF_BIRTH,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_DATE_OF_BIRTH, true),
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_PLACE_OF_BIRTH,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PLACE_OF_BIRTH, false),
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_GENDER,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_GENDER, false),
+        new RequestedAttribute(AttributeConstants.ATTRIBUTE_NAME_C,
+            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_C, false));
+
+    // Create the eIDAS attributes by converting Swedish attributes ...
+    //
+    this.eidasAttributes = Stream.of(
+            AttributeConstants.ATTRIBUTE_TEMPLATE_EIDAS_PERSON_IDENTIFIER.createBuilder()
+                .value("DK/SE/09208-2002-2-194967071622").build(),
+            AttributeConstants.ATTRIBUTE_TEMPLATE_GIVEN_NAME.createBuilder().value("Kalle").build(),
+            AttributeConstants.ATTRIBUTE_TEMPLATE_SN.createBuilder().value("Kula").build(),
+            AttributeConstants.ATTRIBUTE_TEMPLATE_DATE_OF_BIRTH.createBuilder().value("1965-09-22").build(),
+            AttributeConstants.ATTRIBUTE_TEMPLATE_BIRTH_NAME.createBuilder().value("Kalle Karlsson").build(),
+            AttributeConstants.ATTRIBUTE_TEMPLATE_PLACE_OF_BIRTH.createBuilder().value("Enköping").build(),
+            AttributeConstants.ATTRIBUTE_TEMPLATE_GENDER.createBuilder().value("M").build())
+        .map(this.service::toEidasAttribute)
+        .filter(Objects::nonNull)
+        .map(UserAttribute::new)
+        .toList();
+  }
+
+  /**
+   * Parameters for {@link #toEidasRequestedAttributes(RequestParameters)}.
+   */
+  @State(Scope.Benchmark)
+  public static class RequestParameters {
+
+    /** Whether the eIDAS minimum data set should be included in the requested attributes. */
+    @Param({ "false", "true" })
+    public boolean includeMinimumDataSet;
+
+    /** The size of the requested attributes cache (0 means no caching). */
+    @Param({ "0", "100" })
+    public int requestedAttributesCacheSize;
+
+    @Setup
+    public void setup(final AttributeMappingServiceBenchmark benchmark) {
+      benchmark.service.setRequestedAttributesCacheSize(this.requestedAttributesCacheSize);
+    }
+  }
+
+  @Benchmark
+  public List<se.swedenconnect.opensaml.eidas.ext.RequestedAttribute> toEidasRequestedAttributes(
+      final RequestParameters parameters) {
+    return this.service.toEidasRequestedAttributes(this.requestedAttributes, parameters.includeMinimumDataSet);
+  }
+
+  @Benchmark
+  public List<UserAttribute> toSwedishUserAttributes() {
+    return this.service.toSwedishUserAttributes(this.eidasAttributes);
+  }
+
+}
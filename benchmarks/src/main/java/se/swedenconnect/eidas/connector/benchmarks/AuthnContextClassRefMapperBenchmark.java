@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opensaml.saml.saml2.core.RequestedAuthnContext;
+import se.swedenconnect.eidas.connector.authn.sp.AuthnContextClassRefMapper;
+import se.swedenconnect.opensaml.eidas.common.EidasConstants;
+import se.swedenconnect.opensaml.sweid.saml2.authn.LevelOfAssuranceUris;
+import se.swedenconnect.spring.saml.idp.error.Saml2ErrorStatusException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link AuthnContextClassRefMapper}, compared to the previous implementation where the requested and
+ * supported URI:s were represented by objects created for each call (see {@link PreviousAuthnContextClassRefMapper}).
+ * Each invocation uses the next combination of requested Swedish URI:s and supported eIDAS URI:s from a fixed set of
+ * realistic combinations.
+ *
+ * @author Martin Lindström
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthnContextClassRefMapperBenchmark {
+
+  /** URI:s requested by Swedish SP:s. */
+  private static final List<List<String>> REQUESTED = List.of(
+      List.of(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL),
+      List.of(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH),
+      List.of(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL,
+          LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF),
+      List.of(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW, LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF,
+          LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL,
+          LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF,
+          LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH, LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF),
+      List.of());
+
+  /** URI:s supported by foreign IdP:s (as declared in the EU metadata). */
+  private static final List<List<String>> SUPPORTED = List.of(
+      List.of(EidasConstants.EIDAS_LOA_SUBSTANTIAL, EidasConstants.EIDAS_LOA_HIGH),
+      List.of(EidasConstants.EIDAS_LOA_LOW, EidasConstants.EIDAS_LOA_SUBSTANTIAL, EidasConstants.EIDAS_LOA_HIGH),
+      List.of(EidasConstants.EIDAS_LOA_HIGH),
+      List.of(EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED, EidasConstants.EIDAS_LOA_HIGH));
+
+  private List<String>[] requested;
+
+  private List<String>[] supported;
+
+  private String[] returned;
+
+  private int next;
+
+  @SuppressWarnings("unchecked")
+  @Setup
+  public void setup() throws Exception {
+    OpenSamlSupport.initialize();
+
+    // Only use the combinations that give a match, and find an eIDAS URI that the foreign IdP may return
+    // for the combination ...
+    //
+    final int size = REQUESTED.size() * SUPPORTED.size();
+    this.requested = new List[size];
+    this.supported = new List[size];
+    this.returned = new String[size];
+    int count = 0;
+    for (final List<String> r : REQUESTED) {
+      for (final List<String> s : SUPPORTED) {
+        if (!AuthnContextClassRefMapper.canAuthenticate(s, r)) {
+          continue;
+        }
+        final String returnedUri = s.stream()
+            .filter(uri -> isValidReturnUri(uri, r))
+            .findFirst()
+            .orElse(null);
+        if (returnedUri != null) {
+          this.requested[count] = r;
+          this.supported[count] = s;
+          this.returned[count] = returnedUri;
+          count++;
+        }
+      }
+    }
+    this.requested = Arrays.copyOf(this.requested, count);
+    this.supported = Arrays.copyOf(this.supported, count);
+    this.returned = Arrays.copyOf(this.returned, count);
+  }
+
+  private static boolean isValidReturnUri(final String eidasUri, final List<String> requested) {
+    try {
+      AuthnContextClassRefMapper.calculateReturnAuthnContextUri(eidasUri, requested);
+      return true;
+    }
+    catch (final Saml2ErrorStatusException e) {
+      return false;
+    }
+  }
+
+  private int nextIndex() {
+    final int index = this.next;
+    this.next = index + 1 == this.requested.length ? 0 : index + 1;
+    return index;
+  }
+
+  @Benchmark
+  public boolean canAuthenticate() {
+    final int i = this.nextIndex();
+    return AuthnContextClassRefMapper.canAuthenticate(this.supported[i], this.requested[i]);
+  }
+
+  @Benchmark
+  public boolean canAuthenticatePrevious() {
+    final int i = this.nextIndex();
+    return PreviousAuthnContextClassRefMapper.canAuthenticate(this.supported[i], this.requested[i]);
+  }
+
+  @Benchmark
+  public RequestedAuthnContext calculateRequestedAuthnContext() throws Saml2ErrorStatusException {
+    final int i = this.nextIndex();
+    return AuthnContextClassRefMapper.calculateRequestedAuthnContext(this.supported[i], this.requested[i]);
+  }
+
+  @Benchmark
+  public RequestedAuthnContext calculateRequestedAuthnContextPrevious() throws Saml2ErrorStatusException {
+    final int i = this.nextIndex();
+    return PreviousAuthnContextClassRefMapper.calculateRequestedAuthnContext(this.supported[i], this.requested[i]);
+  }
+
+  @Benchmark
+  public String calculateReturnAuthnContextUri() throws Saml2ErrorStatusException {
+    final int i = this.nextIndex();
+    return AuthnContextClassRefMapper.calculateReturnAuthnContextUri(this.returned[i], this.requested[i]);
+  }
+
+  @Benchmark
+  public String calculateReturnAuthnContextUriPrevious() throws Saml2ErrorStatusException {
+    final int i = this.nextIndex();
+    return PreviousAuthnContextClassRefMapper.calculateReturnAuthnContextUri(this.returned[i], this.requested[i]);
+  }
+
+}
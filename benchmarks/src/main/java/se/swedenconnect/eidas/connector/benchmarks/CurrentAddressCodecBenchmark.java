@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.swedenconnect.eidas.attributes.conversion.CurrentAddressCodec;
+import se.swedenconnect.opensaml.eidas.ext.attributes.CurrentAddressType;
+import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link CurrentAddressCodec}, compared to the previous implementation where the Swedish eID string
+ * was parsed using {@code String.split} and {@link URLDecoder}, and encoded using
+ * {@link CurrentAddressType#toSwedishEidString()}.
+ *
+ * @author Martin Lindström
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurrentAddressCodecBenchmark {
+
+  /** A typical address in its Swedish eID representation. */
+  private static final String ADDRESS =
+      "LocatorDesignator=6%20tr;LocatorName=10;Thoroughfare=Korta%20gatan;PostName=S%C3%B6dert%C3%A4lje;"
+          + "PostCode=15135;AdminunitFirstline=SE";
+
+  private CurrentAddressType address;
+
+  @Setup
+  public void setup() throws Exception {
+    OpenSamlSupport.initialize();
+    this.address = AttributeBuilder.createValueObject(CurrentAddressType.class);
+    CurrentAddressCodec.decode(ADDRESS, this.address);
+  }
+
+  @Benchmark
+  public CurrentAddressType decode() {
+    final CurrentAddressType currentAddress = AttributeBuilder.createValueObject(CurrentAddressType.class);
+    CurrentAddressCodec.decode(ADDRESS, currentAddress);
+    return currentAddress;
+  }
+
+  @Benchmark
+  public CurrentAddressType decodeSplit() {
+    final CurrentAddressType currentAddress = AttributeBuilder.createValueObject(CurrentAddressType.class);
+    for (final String p : ADDRESS.split(";")) {
+      final String[] kv = p.split("=");
+      if (kv.length != 2) {
+        continue;
+      }
+      final String type = kv[0];
+      final String subValue = URLDecoder.decode(kv[1], StandardCharsets.UTF_8);
+      if (type.equalsIgnoreCase("PoBox")) {
+        currentAddress.setPoBox(subValue);
+      }
+      else if (type.equalsIgnoreCase("LocatorDesignator")) {
+        currentAddress.setLocatorDesignator(subValue);
+      }
+      else if (type.equalsIgnoreCase("LocatorName")) {
+        currentAddress.setLocatorName(subValue);
+      }
+      else if (type.equalsIgnoreCase("CvaddressArea")) {
+        currentAddress.setCvaddressArea(subValue);
+      }
+      else if (type.equalsIgnoreCase("Thoroughfare")) {
+        currentAddress.setThoroughfare(subValue);
+      }
+      else if (type.equalsIgnoreCase("PostName")) {
+        currentAddress.setPostName(subValue);
+      }
+      else if (type.equalsIgnoreCase("AdminunitFirstline")) {
+        currentAddress.setAdminunitFirstline(subValue);
+      }
+      else if (type.equalsIgnoreCase("AdminunitSecondline")) {
+        currentAddress.setAdminunitSecondline(subValue);
+      }
+      else if (type.equalsIgnoreCase("PostCode")) {
+        currentAddress.setPostCode(subValue);
+      }
+    }
+    return currentAddress;
+  }
+
+  @Benchmark
+  public String encode() {
+    return CurrentAddressCodec.encode(this.address);
+  }
+
+  @Benchmark
+  public String encodeToSwedishEidString() {
+    return this.address.toSwedishEidString();
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Generates corpora of eIDAS person identifiers (on the form {@code XX/SE/identifier}) with formats resembling those
+ * actually issued by the different countries. The corpora are generated using a fixed seed, so the same input is used
+ * for each benchmark run.
+ *
+ * @author Martin Lindström
+ */
+public final class IdentifierCorpus {
+
+  /** The countries for which we have identifier formats. */
+  public static final List<String> COUNTRIES = List.of("NO", "DK", "DE", "AT", "ES", "IT", "NL", "BE", "XA");
+
+  /** Identifier formats per country. */
+  private static final Map<String, Function<Random, String>> FORMATS = Map.of(
+      // National identity number (11 digits)
+      "NO", r -> digits(r, 11),
+      // Long, dash separated identifier
+      "DK", r -> "%s-%s-%s-%s".formatted(digits(r, 5), digits(r, 4), digits(r, 1), digits(r, 15)),
+      // Pseudonymous, long identifiers
+      "DE", r -> hex(r, 64),
+      // Base64 encoded (bPK)
+      "AT", r -> base64(r, 28),
+      // DNI
+      "ES", r -> digits(r, 8) + (char) ('A' + r.nextInt(26)),
+      // Codice fiscale with prefix
+      "IT", r -> "TINIT-" + letters(r, 6) + digits(r, 2) + letters(r, 1) + digits(r, 2) + letters(r, 1)
+          + digits(r, 3) + letters(r, 1),
+      // Pseudonym
+      "NL", r -> "s" + digits(r, 8) + ":" + hex(r, 40),
+      // National register number, with formatting
+      "BE", r -> "%s.%s.%s-%s.%s".formatted(digits(r, 2), digits(r, 2), digits(r, 2), digits(r, 3), digits(r, 2)),
+      // Test country
+      "XA", r -> digits(r, 5 + r.nextInt(6)));
+
+  private static final String BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+  // Hidden constructor
+  private IdentifierCorpus() {
+  }
+
+  /**
+   * Generates a corpus of identifiers for the given country.
+   *
+   * @param country the country code
+   * @param size the number of identifiers
+   * @return a list of identifiers on the form {@code XX/SE/identifier}
+   */
+  public static List<String> generate(final String country, final int size) {
+    final Function<Random, String> format = FORMATS.get(country);
+    if (format == null) {
+      throw new IllegalArgumentException("No identifier format for " + country);
+    }
+    final Random random = new Random(country.hashCode());
+    return IntStream.range(0, size)
+        .mapToObj(i -> "%s/SE/%s".formatted(country, format.apply(random)))
+        .toList();
+  }
+
+  private static String digits(final Random random, final int length) {
+    return chars(random, length, "0123456789");
+  }
+
+  private static String letters(final Random random, final int length) {
+    return chars(random, length, "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+  }
+
+  private static String hex(final Random random, final int length) {
+    return chars(random, length, "0123456789abcdef");
+  }
+
+  private static String base64(final Random random, final int length) {
+    return chars(random, length - 1, BASE64_ALPHABET) + "=";
+  }
+
+  private static String chars(final Random random, final int length, final String alphabet) {
+    final StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import se.swedenconnect.opensaml.OpenSAMLInitializer;
+import se.swedenconnect.opensaml.OpenSAMLSecurityDefaultsConfig;
+import se.swedenconnect.opensaml.OpenSAMLSecurityExtensionConfig;
+import se.swedenconnect.opensaml.sweid.xmlsec.config.SwedishEidSecurityConfiguration;
+
+/**
+ * Support for initializing OpenSAML in benchmarks.
+ *
+ * @author Martin Lindström
+ */
+public final class OpenSamlSupport {
+
+  // Hidden constructor
+  private OpenSamlSupport() {
+  }
+
+  /**
+   * Initializes the OpenSAML library (if not already initialized).
+   *
+   * @throws Exception for init errors
+   */
+  public static synchronized void initialize() throws Exception {
+    final OpenSAMLInitializer bootstrapper = OpenSAMLInitializer.getInstance();
+    if (!bootstrapper.isInitialized()) {
+      bootstrapper.initialize(
+          new OpenSAMLSecurityDefaultsConfig(new SwedishEidSecurityConfiguration()),
+          new OpenSAMLSecurityExtensionConfig());
+    }
+  }
+
+}
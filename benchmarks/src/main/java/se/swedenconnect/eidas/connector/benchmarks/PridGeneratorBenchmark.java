@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenBase64Eidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenColResistEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenDefaultEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenTestEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenerator;
+import se.swedenconnect.eidas.connector.prid.generator.PridGeneratorException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link PridGenerator} implementations.
+ * <p>
+ * Each benchmark case is given as {@code algorithm:country}, where the combinations are those that are meaningful for
+ * a real PRID policy (for example, the {@code special-characters-eIDAS} algorithm requires at least 16 characters).
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PridGeneratorBenchmark {
+
+  /** The number of identifiers in each corpus. Must be a power of 2. */
+  private static final int CORPUS_SIZE = 1024;
+
+  /** The benchmark case, on the form {@code algorithm:country}. */
+  @Param({
+      "default-eIDAS:NO", "default-eIDAS:DK", "default-eIDAS:ES", "default-eIDAS:IT", "default-eIDAS:BE",
+      "default-eIDAS:DE", "colresist-eIDAS:DE", "colresist-eIDAS:NL", "special-characters-eIDAS:AT",
+      "special-characters-eIDAS:DE", "test-eIDAS:XA" })
+  public String benchmarkCase;
+
+  private PridGenerator generator;
+
+  private String country;
+
+  private String[] identifiers;
+
+  private int next;
+
+  @Setup
+  public void setup() {
+    final String[] parts = this.benchmarkCase.split(":");
+    this.generator = List.of(new PridGenDefaultEidas(), new PridGenColResistEidas(), new PridGenBase64Eidas(),
+        new PridGenTestEidas()).stream()
+        .filter(g -> g.getAlgorithmName().equals(parts[0]))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown algorithm: " + parts[0]));
+    this.country = parts[1];
+    this.identifiers = IdentifierCorpus.generate(this.country, CORPUS_SIZE).toArray(String[]::new);
+  }
+
+  @Benchmark
+  public String getPridIdentifierComponent() throws PridGeneratorException {
+    return this.generator.getPridIdentifierComponent(this.identifiers[this.next++ & (CORPUS_SIZE - 1)], this.country);
+  }
+
+}
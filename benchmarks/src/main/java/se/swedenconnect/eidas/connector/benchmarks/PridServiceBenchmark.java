@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenBase64Eidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenColResistEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenDefaultEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenTestEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGeneratorException;
+import se.swedenconnect.eidas.connector.prid.service.CountryPolicyNotFoundException;
+import se.swedenconnect.eidas.connector.prid.service.PridResult;
+import se.swedenconnect.eidas.connector.prid.service.PridResultCache;
+import se.swedenconnect.eidas.connector.prid.service.PridService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link PridService#generatePrid(String, String)} using a policy covering all countries of the
+ * {@link IdentifierCorpus}. The input is a mix of identifiers from all countries.
+ *
+ * @author Martin Lindström
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PridServiceBenchmark {
+
+  /** The number of identifiers per country. */
+  private static final int IDENTIFIERS_PER_COUNTRY = 256;
+
+  /** Whether the PRID result cache should be used. */
+  @Param({ "false", "true" })
+  public boolean cache;
+
+  private PridService pridService;
+
+  private String[][] input;
+
+  @Setup
+  public void setup() throws Exception {
+    this.pridService = new PridService(new ClassPathResource("prid-policy.yml"), List.of(
+        new PridGenDefaultEidas(), new PridGenColResistEidas(), new PridGenBase64Eidas(), new PridGenTestEidas()));
+    if (this.cache) {
+      this.pridService.setResultCache(
+          new PridResultCache(PridResultCache.DEFAULT_MAX_SIZE, PridResultCache.DEFAULT_TIME_TO_LIVE));
+    }
+    this.pridService.afterPropertiesSet();
+
+    final List<String[]> all = new ArrayList<>();
+    for (final String country : IdentifierCorpus.COUNTRIES) {
+      IdentifierCorpus.generate(country, IDENTIFIERS_PER_COUNTRY).forEach(id -> all.add(new String[] { id, country }));
+    }
+    Collections.shuffle(all, new Random(4711));
+    this.input = all.toArray(String[][]::new);
+  }
+
+  /**
+   * Per-thread position in the input.
+   */
+  @State(Scope.Thread)
+  public static class Position {
+    private int next;
+  }
+
+  @Benchmark
+  public PridResult generatePrid(final Position position)
+      throws PridGeneratorException, CountryPolicyNotFoundException {
+    final String[] entry = this.input[position.next++ % this.input.length];
+    return this.pridService.generatePrid(entry[0], entry[1]);
+  }
+
+  /**
+   * Runs {@link #generatePrid(Position)} using several threads to detect contention.
+   */
+  @Benchmark
+  @Threads(4)
+  public PridResult generatePridConcurrent(final Position position)
+      throws PridGeneratorException, CountryPolicyNotFoundException {
+    final String[] entry = this.input[position.next++ % this.input.length];
+    return this.pridService.generatePrid(entry[0], entry[1]);
+  }
+
+}
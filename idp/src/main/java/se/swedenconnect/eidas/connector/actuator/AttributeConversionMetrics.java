@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.actuator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import se.swedenconnect.eidas.attributes.AttributeConversionListener;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes metrics for the conversion of eIDAS attributes into Swedish eID attributes. The meters are tagged with the
+ * eIDAS attribute name ({@code attribute}) and the country that issued the attribute ({@code country}):
+ * <ul>
+ * <li>{@code connector.attribute.conversions} - A timer for all conversions.</li>
+ * <li>{@code connector.attribute.conversion.failures} - A counter for failed conversions. The {@code reason} tag is
+ * {@code failure} or {@code unsupported-value-type}.</li>
+ * </ul>
+ *
+ * @author Martin Lindström
+ */
+@Component
+public class AttributeConversionMetrics implements MeterBinder {
+
+  /** The name of the conversions timer. */
+  public static final String CONVERSIONS_METER_NAME = "connector.attribute.conversions";
+
+  /** The name of the failures counter. */
+  public static final String FAILURES_METER_NAME = "connector.attribute.conversion.failures";
+
+  /** The registry. Assigned when the binder is bound. */
+  private volatile MeterRegistry registry;
+
+  /** The timers, indexed by attribute name and country. */
+  private final ConcurrentMap<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+
+  /** The failure counters, indexed by attribute name, country and reason. */
+  private final ConcurrentMap<FailureKey, Counter> failures = new ConcurrentHashMap<>();
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    this.registry = Objects.requireNonNull(registry, "registry must not be null");
+    this.timers.clear();
+    this.failures.clear();
+  }
+
+  /**
+   * Gets a listener that records the conversions of attributes issued by the given country.
+   *
+   * @param country the country code
+   * @return an {@link AttributeConversionListener}
+   */
+  public AttributeConversionListener getListener(final String country) {
+    final String countryTag = Objects.requireNonNullElse(country, "unknown");
+    return (attribute, outcome, duration) -> this.record(attribute, countryTag, outcome, duration);
+  }
+
+  /**
+   * Records a conversion.
+   *
+   * @param attribute the eIDAS attribute name
+   * @param country the country code
+   * @param outcome the outcome of the conversion
+   * @param duration the duration (in nanoseconds)
+   */
+  private void record(final String attribute, final String country,
+      final AttributeConversionListener.Outcome outcome, final long duration) {
+    final MeterRegistry meterRegistry = this.registry;
+    if (meterRegistry == null) {
+      return;
+    }
+    this.timers.computeIfAbsent(new MeterKey(attribute, country), k -> Timer.builder(CONVERSIONS_METER_NAME)
+            .tags("attribute", k.attribute(), "country", k.country())
+            .description("The time spent converting eIDAS attributes into Swedish eID attributes")
+            .register(meterRegistry))
+        .record(duration, TimeUnit.NANOSECONDS);
+
+    if (outcome != AttributeConversionListener.Outcome.SUCCESS) {
+      final String reason = outcome == AttributeConversionListener.Outcome.UNSUPPORTED_VALUE_TYPE
+          ? "unsupported-value-type"
+          : "failure";
+      this.failures.computeIfAbsent(new FailureKey(attribute, country, reason), k -> Counter.builder(FAILURES_METER_NAME)
+              .tags("attribute", k.attribute(), "country", k.country(), "reason", k.reason())
+              .description("The number of eIDAS attributes that could not be converted into Swedish eID attributes")
+              .register(meterRegistry))
+          .increment();
+    }
+  }
+
+  // The key for the timers
+  private record MeterKey(String attribute, String country) {
+  }
+
+  // The key for the failure counters
+  private record FailureKey(String attribute, String country, String reason) {
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.actuator;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.stereotype.Component;
+import se.swedenconnect.eidas.connector.authn.idm.DefaultIdmClient;
+import se.swedenconnect.eidas.connector.authn.idm.IdmClient;
+
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * Exposes gauges for the HTTP connection pool used when calling the IdM server (if the IdM feature is active and
+ * HTTP/2 is not used).
+ *
+ * @author Martin Lindström
+ */
+@Component
+public class IdmConnectionPoolMetrics implements MeterBinder {
+
+  /** The IdM client. */
+  private final IdmClient idmClient;
+
+  /**
+   * Constructor.
+   *
+   * @param idmClient the IdM client
+   */
+  public IdmConnectionPoolMetrics(final IdmClient idmClient) {
+    this.idmClient = Objects.requireNonNull(idmClient, "idmClient must not be null");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    if (!(this.idmClient instanceof final DefaultIdmClient client) || client.getConnectionPoolStats() == null) {
+      return;
+    }
+    this.registerGauge(registry, client, "leased", "The number of connections currently in use",
+        PoolStats::getLeased);
+    this.registerGauge(registry, client, "pending", "The number of requests waiting for a connection",
+        PoolStats::getPending);
+    this.registerGauge(registry, client, "available", "The number of idle connections", PoolStats::getAvailable);
+    Gauge.builder("connector.idm.connections.max", client, c -> getStat(c, PoolStats::getMax))
+        .description("The maximum number of connections to the IdM server")
+        .register(registry);
+  }
+
+  private void registerGauge(final MeterRegistry registry, final DefaultIdmClient client, final String state,
+      final String description, final ToIntFunction<PoolStats> stat) {
+    Gauge.builder("connector.idm.connections", client, c -> getStat(c, stat))
+        .tags("state", state)
+        .description(description)
+        .register(registry);
+  }
+
+  private static double getStat(final DefaultIdmClient client, final ToIntFunction<PoolStats> stat) {
+    final PoolStats stats = client.getConnectionPoolStats();
+    return stats != null ? stat.applyAsInt(stats) : Double.NaN;
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import se.swedenconnect.eidas.connector.authn.idm.AbstractOAuth2Handler;
+import se.swedenconnect.eidas.connector.authn.idm.AccessTokenCache;
+import se.swedenconnect.eidas.connector.authn.idm.OAuth2Handler;
+
+import java.util.Objects;
+
+/**
+ * Exposes metrics for the cached OAuth2 access tokens that are used for calls to the IdM Query API (if the IdM feature
+ * is active). The metrics for the cache of access tokens for get calls follow the Micrometer cache conventions and are
+ * tagged with {@code cache=idm-get-tokens}.
+ *
+ * @author Martin Lindström
+ */
+@Component
+public class OAuth2TokenMetrics implements MeterBinder {
+
+  /** The cache name used for tagging. */
+  public static final String GET_TOKEN_CACHE_NAME = "idm-get-tokens";
+
+  /** The OAuth2 handler (not available if the IdM feature is inactive). */
+  private final ObjectProvider<OAuth2Handler> oauth2Handler;
+
+  /**
+   * Constructor.
+   *
+   * @param oauth2Handler provider for the OAuth2 handler
+   */
+  public OAuth2TokenMetrics(final ObjectProvider<OAuth2Handler> oauth2Handler) {
+    this.oauth2Handler = Objects.requireNonNull(oauth2Handler, "oauth2Handler must not be null");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    if (!(this.oauth2Handler.getIfAvailable() instanceof final AbstractOAuth2Handler handler)) {
+      return;
+    }
+    FunctionCounter.builder("connector.idm.access-token.refreshes", handler, AbstractOAuth2Handler::getRefreshCount)
+        .description("The number of times the access token for IdM check calls was refreshed in the background")
+        .register(registry);
+    FunctionCounter.builder("connector.idm.access-token.refresh.failures", handler,
+            AbstractOAuth2Handler::getRefreshFailureCount)
+        .description("The number of failed background refreshes of the access token for IdM check calls")
+        .register(registry);
+    FunctionCounter.builder("connector.idm.access-token.synchronous-issuances", handler,
+            AbstractOAuth2Handler::getSynchronousIssuanceCount)
+        .description("The number of times the access token for IdM check calls had to be issued synchronously")
+        .register(registry);
+
+    final AccessTokenCache cache = handler.getGetTokenCache();
+    if (cache == null) {
+      return;
+    }
+    FunctionCounter.builder("cache.gets", cache, AccessTokenCache::getHitCount)
+        .tags("cache", GET_TOKEN_CACHE_NAME, "result", "hit")
+        .description("The number of times cache lookup methods have returned a cached value")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", cache, AccessTokenCache::getMissCount)
+        .tags("cache", GET_TOKEN_CACHE_NAME, "result", "miss")
+        .description("The number of times cache lookup methods have not returned a value")
+        .register(registry);
+    FunctionCounter.builder("cache.evictions", cache, AccessTokenCache::getEvictionCount)
+        .tags("cache", GET_TOKEN_CACHE_NAME)
+        .description("The number of times the cache was evicted")
+        .register(registry);
+    Gauge.builder("cache.size", cache, AccessTokenCache::size)
+        .tags("cache", GET_TOKEN_CACHE_NAME)
+        .description("The number of entries in the cache")
+        .register(registry);
+  }
+
+}
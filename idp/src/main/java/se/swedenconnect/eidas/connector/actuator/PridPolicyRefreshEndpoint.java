@@ -56,7 +56,8 @@ public class PridPolicyRefreshEndpoint {
   }
 
   /**
-   * Endpoint that performs an update of the PRID policy configuration.
+   * Endpoint that performs an update of the PRID policy configuration. If the policy file has not been changed since
+   * it was last loaded, no update is made.
    *
    * @return the refresh status
    */
@@ -65,6 +66,8 @@ public class PridPolicyRefreshEndpoint {
     log.debug("Request to refresh PRID policy configuration received");
     final PridPolicyValidation result = this.pridService.updatePolicy();
     final RefreshStatus status = new RefreshStatus(result);
+    status.setGeneration(this.pridService.getPolicyGeneration());
+    status.setHash(this.pridService.getPolicyHash());
     log.debug("PRID policy refresh status: {}", status);
     if (!result.hasErrors()) {
       status.setPolicy(this.pridService.getPolicy().getPolicy());
@@ -87,6 +90,12 @@ public class PridPolicyRefreshEndpoint {
     /** Validation errors. */
     private List<String> errors;
 
+    /** The generation of the currently installed policy. Incremented each time a changed policy is installed. */
+    private Long generation;
+
+    /** The SHA-256 hash (hex-encoded) of the policy file contents for the currently installed policy. */
+    private String hash;
+
     /** The policy. */
     private Map<String, CountryPolicy> policy;
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.actuator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import se.swedenconnect.eidas.connector.prid.service.PridResultCache;
+import se.swedenconnect.eidas.connector.prid.service.PridService;
+
+import java.util.Objects;
+
+/**
+ * Exposes metrics for the PRID result cache (if enabled). The meter names follow the Micrometer cache conventions
+ * ({@code cache.gets}, {@code cache.evictions} and {@code cache.size}) and are tagged with
+ * {@code cache=prid-results}.
+ *
+ * @author Martin Lindström
+ */
+@Component
+public class PridResultCacheMetrics implements MeterBinder {
+
+  /** The cache name used for tagging. */
+  public static final String CACHE_NAME = "prid-results";
+
+  /** The PRID service. */
+  private final PridService pridService;
+
+  /**
+   * Constructor.
+   *
+   * @param pridService the PRID service
+   */
+  public PridResultCacheMetrics(final PridService pridService) {
+    this.pridService = Objects.requireNonNull(pridService, "pridService must not be null");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    final PridResultCache cache = this.pridService.getResultCache();
+    if (cache == null) {
+      return;
+    }
+    FunctionCounter.builder("cache.gets", cache, PridResultCache::getHitCount)
+        .tags("cache", CACHE_NAME, "result", "hit")
+        .description("The number of times cache lookup methods have returned a cached value")
+        .register(registry);
+    FunctionCounter.builder("cache.gets", cache, PridResultCache::getMissCount)
+        .tags("cache", CACHE_NAME, "result", "miss")
+        .description("The number of times cache lookup methods have not returned a value")
+        .register(registry);
+    FunctionCounter.builder("cache.evictions", cache, PridResultCache::getEvictionCount)
+        .tags("cache", CACHE_NAME)
+        .description("The number of times the cache was evicted")
+        .register(registry);
+    Gauge.builder("cache.size", cache, PridResultCache::size)
+        .tags("cache", CACHE_NAME)
+        .description("The number of entries in the cache")
+        .register(registry);
+  }
+
+}
@@ -275,7 +275,7 @@ public class EidasAuthenticationController extends AbstractAuthenticationControl
       // Generate AuthnRequest
       //
       final RequestHttpObject<AuthnRequest> authnRequest = this.getProvider().generateAuthnRequest(
-          httpRequest, selectedCountry, inputToken);
+          httpRequest, httpResponse, selectedCountry, inputToken);
 
       // Save the country as "selected" ...
       //
@@ -325,7 +325,7 @@ public class EidasAuthenticationController extends AbstractAuthenticationControl
       // Process the response ...
       //
       final EidasAuthenticationToken token =
-          this.getProvider().processSamlResponse(httpRequest, samlResponse, relayState);
+          this.getProvider().processSamlResponse(httpRequest, httpResponse, samlResponse, relayState);
 
       // OK, now we have an authentication token. Time to complete the authentication ...
       //
@@ -487,6 +487,24 @@ public class EidasAuthenticationController extends AbstractAuthenticationControl
     return this.completeAuthentication(httpRequest, httpResponse, token, true, false);
   }
 
+  /**
+   * Directs the user to the Identity Matching service. Since the user may create or remove an IdM record at the
+   * service, any cached IdM record status is invalidated before the user is redirected.
+   *
+   * @param httpRequest the HTTP servlet request
+   * @return a {@link ModelAndView} redirecting the user to the IdM service
+   */
+  @GetMapping(EidasAuthenticationProvider.AUTHN_PATH + "/idm")
+  public ModelAndView idmService(final HttpServletRequest httpRequest) {
+    final String idmServiceUrl = this.eidasUiModelFactory.getIdmServiceUrl();
+    if (idmServiceUrl == null) {
+      throw new UnrecoverableSaml2IdpException(UnrecoverableSaml2IdpError.INTERNAL,
+          "Identity Matching feature is not active", null);
+    }
+    this.getProvider().invalidateIdmRecordStatus(httpRequest);
+    return new ModelAndView("redirect:" + idmServiceUrl);
+  }
+
   /**
    * Delivers the sign consent page.
    *
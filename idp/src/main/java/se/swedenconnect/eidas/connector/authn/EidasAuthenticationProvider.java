@@ -16,6 +16,7 @@
 package se.swedenconnect.eidas.connector.authn;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import org.opensaml.saml.common.assertion.ValidationContext;
@@ -24,10 +25,12 @@ import org.opensaml.saml.saml2.core.Status;
 import org.opensaml.saml.saml2.core.StatusCode;
 import org.opensaml.saml.saml2.core.StatusMessage;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.core.Authentication;
 import org.springframework.util.StringUtils;
+import se.swedenconnect.eidas.attributes.AttributeConversionListener;
 import se.swedenconnect.eidas.attributes.AttributeMappingService;
 import se.swedenconnect.eidas.connector.authn.idm.IdmClient;
 import se.swedenconnect.eidas.connector.authn.idm.IdmException;
@@ -37,7 +40,9 @@ import se.swedenconnect.eidas.connector.authn.metadata.EuMetadataProvider;
 import se.swedenconnect.eidas.connector.authn.sp.AuthnContextClassRefMapper;
 import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequest;
 import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequestGenerator;
+import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequestRepository;
 import se.swedenconnect.eidas.connector.authn.sp.EidasResponseValidationException;
+import se.swedenconnect.eidas.connector.authn.sp.SessionEidasAuthnRequestRepository;
 import se.swedenconnect.eidas.connector.events.BeforeEidasAuthenticationEvent;
 import se.swedenconnect.eidas.connector.events.ErrorEidasResponseEvent;
 import se.swedenconnect.eidas.connector.events.IdentityMatchingErrorEvent;
@@ -64,13 +69,16 @@ import se.swedenconnect.spring.saml.idp.authentication.Saml2UserDetails;
 import se.swedenconnect.spring.saml.idp.authentication.provider.external.AbstractUserRedirectAuthenticationProvider;
 import se.swedenconnect.spring.saml.idp.authentication.provider.external.RedirectForAuthenticationToken;
 import se.swedenconnect.spring.saml.idp.authentication.provider.external.ResumedAuthenticationToken;
+import se.swedenconnect.spring.saml.idp.authnrequest.Saml2AuthnRequestAuthenticationToken;
 import se.swedenconnect.spring.saml.idp.error.Saml2ErrorStatus;
 import se.swedenconnect.spring.saml.idp.error.Saml2ErrorStatusException;
 import se.swedenconnect.spring.saml.idp.error.UnrecoverableSaml2IdpError;
 import se.swedenconnect.spring.saml.idp.error.UnrecoverableSaml2IdpException;
 
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -78,6 +86,14 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
@@ -86,7 +102,8 @@ import java.util.function.Predicate;
  * @author Martin Lindström
  */
 @Slf4j
-public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticationProvider {
+public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticationProvider
+    implements DisposableBean {
 
   /** The authentication path, i.e., where the SAML engine should direct the user for authentication. */
   public static final String AUTHN_PATH = "/extauth";
@@ -98,11 +115,18 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
   public static final String EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF = "http://eidas.europa.eu/LoA/test";
 
   /** The session key where we store the eIDAS AuthnRequest. */
-  public static final String EIDAS_AUTHNREQUEST_SESSION_KEY = EidasAuthnRequest.class.getName();
+  public static final String EIDAS_AUTHNREQUEST_SESSION_KEY = SessionEidasAuthnRequestRepository.SESSION_KEY;
 
   /** The session key where we store the eIDAS authentication token. */
   public static final String EIDAS_AUTHNTOKEN_SESSION_KEY = EidasAuthenticationToken.class.getName();
 
+  /**
+   * The session key where we record that the user has been directed to the Identity Matching service, and that the
+   * cached IdM record status for the user should be invalidated once the user is known.
+   */
+  public static final String IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY =
+      EidasAuthenticationProvider.class.getName() + ".IdmRecordStatusInvalidated";
+
   /** The event publisher. */
   private final ApplicationEventPublisher eventPublisher;
 
@@ -139,6 +163,21 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
   /** Whitelisted SP:s that are allowed to send "ping" requests. */
   private final List<String> pingWhitelist;
 
+  /** Creates the listener that is informed about attribute conversions for a given country. May be {@code null}. */
+  private Function<String, AttributeConversionListener> attributeConversionListenerFactory;
+
+  /** The maximum size (in bytes) of an assertion that is included in the authServerSignature attribute. */
+  private int authServerSignatureMaxSize = Integer.MAX_VALUE;
+
+  /** The repository where sent authentication requests are saved. */
+  private EidasAuthnRequestRepository authnRequestRepository = new SessionEidasAuthnRequestRepository();
+
+  /** Executor for IdM record checks started during response processing. If {@code null}, no checks are started. */
+  private ExecutorService idmRecordCheckExecutor;
+
+  /** The maximum time to wait for an IdM record check started during response processing. */
+  private Duration idmRecordCheckTimeout;
+
   /**
    * Constructor.
    *
@@ -195,6 +234,72 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
 
   }
 
+  /**
+   * Assigns a function that, given a country code, creates the {@link AttributeConversionListener} that is informed
+   * about the conversion of each eIDAS attribute received from that country. Used for metrics.
+   *
+   * @param attributeConversionListenerFactory the listener factory
+   */
+  public void setAttributeConversionListenerFactory(
+      final Function<String, AttributeConversionListener> attributeConversionListenerFactory) {
+    this.attributeConversionListenerFactory = attributeConversionListenerFactory;
+  }
+
+  /**
+   * Assigns the maximum size (in bytes) of an assertion that is included (Base64-encoded) in the authServerSignature
+   * attribute. If the received assertion is larger, no authServerSignature attribute is released. The default is no
+   * limit.
+   *
+   * @param authServerSignatureMaxSize the maximum size in bytes
+   */
+  public void setAuthServerSignatureMaxSize(final int authServerSignatureMaxSize) {
+    if (authServerSignatureMaxSize <= 0) {
+      throw new IllegalArgumentException("authServerSignatureMaxSize must be greater than 0");
+    }
+    this.authServerSignatureMaxSize = authServerSignatureMaxSize;
+  }
+
+  /**
+   * Assigns the repository where sent authentication requests are saved (until the response is received). The default
+   * is a {@link SessionEidasAuthnRequestRepository}.
+   *
+   * @param authnRequestRepository the repository
+   */
+  public void setAuthnRequestRepository(final EidasAuthnRequestRepository authnRequestRepository) {
+    this.authnRequestRepository =
+        Objects.requireNonNull(authnRequestRepository, "authnRequestRepository must not be null");
+  }
+
+  /**
+   * Tells the provider to start checking whether the user has an Identity Matching record as soon as the PRID is known
+   * during response processing, instead of waiting until {@link #hasIdmRecord(EidasAuthenticationToken,
+   * Saml2UserAuthenticationInputToken)} is called. Only applies to authentications that are not made on behalf of a
+   * signature service.
+   * <p>
+   * The provider takes over the ownership of the executor, and closes it when the provider is destroyed.
+   * </p>
+   *
+   * @param executor the executor for running the checks
+   * @param timeout the maximum time to wait for a started check
+   */
+  public void setSpeculativeIdmRecordCheck(final ExecutorService executor, final Duration timeout) {
+    this.idmRecordCheckExecutor = Objects.requireNonNull(executor, "executor must not be null");
+    this.idmRecordCheckTimeout = Objects.requireNonNull(timeout, "timeout must not be null");
+    if (!timeout.isPositive()) {
+      throw new IllegalArgumentException("timeout must be positive");
+    }
+  }
+
+  /**
+   * Closes the executor used for IdM record checks (if assigned).
+   */
+  @Override
+  public void destroy() {
+    if (this.idmRecordCheckExecutor != null) {
+      this.idmRecordCheckExecutor.close();
+    }
+  }
+
   /**
    * The method will be called when we have received the SAML response from the foreign IdP.
    */
@@ -225,18 +330,20 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
    * Processes a SAML response received from the foreign IdP.
    *
    * @param httpRequest the HTTP servlet request
+   * @param httpResponse the HTTP servlet response
    * @param samlResponse the SAML response
    * @param relayState the RelayState variable
    * @return an {@link EidasAuthenticationToken}
    * @throws Saml2ErrorStatusException for errors
    */
   public EidasAuthenticationToken processSamlResponse(final HttpServletRequest httpRequest,
-      final String samlResponse, final String relayState) throws Saml2ErrorStatusException {
+      final HttpServletResponse httpResponse, final String samlResponse, final String relayState)
+      throws Saml2ErrorStatusException {
 
     try {
       // First get hold of the corresponding authentication request ...
       //
-      final EidasAuthnRequest eidasAuthnRequest = this.getEidasAuthnRequest(httpRequest);
+      final EidasAuthnRequest eidasAuthnRequest = this.getEidasAuthnRequest(httpRequest, httpResponse);
 
       // Process the SAML response ...
       //
@@ -271,61 +378,85 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
         throw e;
       }
 
-      // Map eIDAS attributes to Swedish eID attributes ...
+      // Invoke the PRID service to resolve the eIDAS person identifier to a Swedish
+      // PRID attribute ...
+      //
+      final PridResult pridResult;
+      try {
+        pridResult = this.pridService.generatePrid(
+            (String) eidasToken.getPrincipal(), eidasToken.getAuthnRequest().getCountry());
+      }
+      catch (final IllegalArgumentException | PridGeneratorException | CountryPolicyNotFoundException e) {
+        log.error("Failed to generate PRID attribute from ID '{}' ({}) - {}",
+            eidasToken.getPrincipal(), eidasToken.getAuthnRequest().getCountry(),
+            e.getMessage(), e);
+
+        this.eventPublisher.publishEvent(new ResponseProcessingErrorEvent(inputToken, e.getMessage()));
+
+        throw new Saml2ErrorStatusException(StatusCode.RESPONDER, StatusCode.AUTHN_FAILED,
+            null, "Failed to create PRID attribute", e.getMessage(), e);
+      }
+
+      // Now that the PRID is known, we can start checking whether the user has an IdM record. This runs while
+      // we complete the token. If the user has visited the IdM service during the session, the cached record
+      // status for the user can not be trusted ...
       //
-      this.attributeMappingService.toSwedishUserAttributes(eidasToken.getAttributes())
-          .forEach(eidasToken::addAttribute);
+      final HttpSession session = httpRequest.getSession(false);
+      if (session != null && session.getAttribute(IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY) != null) {
+        session.removeAttribute(IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY);
+        this.idmClient.invalidateCachedRecordStatus(pridResult.prid());
+      }
+      this.startIdmRecordCheck(eidasToken, pridResult.prid(), inputToken);
+
+      // Map eIDAS attributes to Swedish eID attributes. The converted attributes are collected and added to the token
+      // in one call (along with the country, transactionIdentifier and authServerSignature attributes) ...
+      //
+      final List<UserAttribute> swedishAttributes = new ArrayList<>();
+      if (this.attributeConversionListenerFactory != null) {
+        this.attributeMappingService.toSwedishUserAttributes(eidasToken.getAttributes(), swedishAttributes::add,
+            this.attributeConversionListenerFactory.apply(eidasToken.getAuthnRequest().getCountry()));
+      }
+      else {
+        this.attributeMappingService.toSwedishUserAttributes(eidasToken.getAttributes(), swedishAttributes::add);
+      }
 
       // Add country attribute ...
       //
-      eidasToken.addAttribute(new UserAttribute(
+      swedishAttributes.add(new UserAttribute(
           AttributeConstants.ATTRIBUTE_NAME_C,
           AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_C,
           eidasToken.getAuthnRequest().getCountry()));
 
       // Add the ID of the assertion as a transactionIdentifier attribute ...
       //
-      eidasToken.addAttribute(new UserAttribute(
+      swedishAttributes.add(new UserAttribute(
           AttributeConstants.ATTRIBUTE_NAME_TRANSACTION_IDENTIFIER,
           AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_TRANSACTION_IDENTIFIER,
           eidasToken.getAssertion().getID()));
 
-      // Add the entire assertion as a Base64 encoded blob to the authServerSignature attribute ...
+      // Add the entire assertion as a Base64 encoded blob to the authServerSignature attribute (unless it is
+      // too large) ...
       //
-      Optional.ofNullable(eidasToken.getAssertionBase64())
+      Optional.ofNullable(eidasToken.getAssertionBase64(this.authServerSignatureMaxSize))
           .ifPresent(a ->
-              eidasToken.addAttribute(new UserAttribute(
+              swedishAttributes.add(new UserAttribute(
                   AttributeConstants.ATTRIBUTE_NAME_AUTH_SERVER_SIGNATURE,
                   AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_AUTH_SERVER_SIGNATURE,
                   a)));
 
-      // Invoke the PRID service to resolve the eIDAS person identifier to a Swedish
-      // PRID attribute ...
-      //
-      try {
-        final PridResult pridResult = this.pridService.generatePrid(
-            (String) eidasToken.getPrincipal(), eidasToken.getAuthnRequest().getCountry());
-
-        eidasToken.addAttribute(new UserAttribute(
-            AttributeConstants.ATTRIBUTE_NAME_PRID,
-            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PRID,
-            pridResult.prid()));
-
-        eidasToken.addAttribute(new UserAttribute(
-            AttributeConstants.ATTRIBUTE_NAME_PRID_PERSISTENCE,
-            AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PRID_PERSISTENCE,
-            pridResult.pridPersistence()));
-      }
-      catch (final IllegalArgumentException | PridGeneratorException | CountryPolicyNotFoundException e) {
-        log.error("Failed to generate PRID attribute from ID '{}' ({}) - {}",
-            eidasToken.getPrincipal(), eidasToken.getAuthnRequest().getCountry(),
-            e.getMessage(), e);
+      eidasToken.addAttributes(swedishAttributes);
 
-        this.eventPublisher.publishEvent(new ResponseProcessingErrorEvent(inputToken, e.getMessage()));
+      // Add the PRID attributes ...
+      //
+      eidasToken.addAttribute(new UserAttribute(
+          AttributeConstants.ATTRIBUTE_NAME_PRID,
+          AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PRID,
+          pridResult.prid()));
 
-        throw new Saml2ErrorStatusException(StatusCode.RESPONDER, StatusCode.AUTHN_FAILED,
-            null, "Failed to create PRID attribute", e.getMessage(), e);
-      }
+      eidasToken.addAttribute(new UserAttribute(
+          AttributeConstants.ATTRIBUTE_NAME_PRID_PERSISTENCE,
+          AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PRID_PERSISTENCE,
+          pridResult.pridPersistence()));
 
       return eidasToken;
     }
@@ -514,7 +645,10 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
   public boolean hasIdmRecord(final EidasAuthenticationToken token,
       final Saml2UserAuthenticationInputToken inputToken) {
     try {
-      return this.idmClient.hasRecord(token);
+      final CompletableFuture<Boolean> check = token.removeIdmRecordCheck();
+      return check != null
+          ? this.getIdmRecordCheckResult(check)
+          : this.idmClient.hasRecord(token);
     }
     catch (final IdmException e) {
       this.eventPublisher.publishEvent(new IdentityMatchingErrorEvent(inputToken, token, e));
@@ -522,6 +656,93 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
     }
   }
 
+  /**
+   * If speculative IdM record checks are enabled, the IdM feature is active, and the IdM client supports record checks
+   * by PRID, the method starts an asynchronous check of whether the user has an IdM record and assigns it to the
+   * supplied token. Signature services are not included since the IdM status may already be known from an earlier
+   * authentication in the same session.
+   *
+   * @param token the authentication token
+   * @param prid the PRID of the user
+   * @param inputToken the SAML input token
+   */
+  private void startIdmRecordCheck(final EidasAuthenticationToken token, final String prid,
+      final Saml2UserAuthenticationInputToken inputToken) {
+    if (this.idmRecordCheckExecutor == null || !this.idmClient.isActive()
+        || !this.idmClient.supportsRecordCheckByPrid()) {
+      return;
+    }
+    final boolean signatureService = Optional.ofNullable(inputToken.getAuthnRequestToken())
+        .map(Saml2AuthnRequestAuthenticationToken::isSignatureServicePeer)
+        .orElse(false);
+    if (signatureService) {
+      return;
+    }
+    try {
+      token.setIdmRecordCheck(CompletableFuture.supplyAsync(() -> {
+        try {
+          return this.idmClient.hasRecord(prid);
+        }
+        catch (final IdmException e) {
+          throw new CompletionException(e);
+        }
+      }, this.idmRecordCheckExecutor));
+    }
+    catch (final RejectedExecutionException e) {
+      log.info("Could not start IdM record check for '{}' - {}", prid, e.getMessage());
+    }
+  }
+
+  /**
+   * Waits for the result of an IdM record check started during response processing.
+   *
+   * @param check the started check
+   * @return {@code true} if the user has a record and {@code false} otherwise
+   * @throws IdmException for errors checking the IdM record, or if the check did not complete in time
+   */
+  private boolean getIdmRecordCheckResult(final CompletableFuture<Boolean> check) throws IdmException {
+    try {
+      return check.get(this.idmRecordCheckTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    catch (final ExecutionException e) {
+      if (e.getCause() instanceof final IdmException idmException) {
+        throw idmException;
+      }
+      throw new IdmException("Failure querying for IdM record - " + e.getCause().getMessage(), e.getCause());
+    }
+    catch (final TimeoutException e) {
+      check.cancel(true);
+      log.warn("IdM record check did not complete within {}", this.idmRecordCheckTimeout);
+      throw new IdmException("Timeout querying for IdM record", e);
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IdmException("Interrupted while querying for IdM record", e);
+    }
+  }
+
+  /**
+   * Invoked when the user is directed to the Identity Matching service, where IdM records may be created or removed.
+   * Any cached record status for the user is invalidated. Since the user may not yet be known, a flag is also saved in
+   * the session, so that the cached record status is invalidated once the user has authenticated (see
+   * {@link #IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY}). Only the record status of the calling user is affected.
+   *
+   * @param httpRequest the HTTP servlet request
+   */
+  public void invalidateIdmRecordStatus(final HttpServletRequest httpRequest) {
+    final HttpSession session = httpRequest.getSession();
+    session.setAttribute(IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY, Boolean.TRUE);
+
+    Optional.of(session)
+        .map(s -> s.getAttribute(EIDAS_AUTHNTOKEN_SESSION_KEY))
+        .filter(EidasAuthenticationToken.class::isInstance)
+        .map(EidasAuthenticationToken.class::cast)
+        .map(t -> t.getAttribute(AttributeConstants.ATTRIBUTE_NAME_PRID))
+        .filter(a -> !a.getValues().isEmpty())
+        .map(a -> a.getStringValues().get(0))
+        .ifPresent(this.idmClient::invalidateCachedRecordStatus);
+  }
+
   /**
    * Gets the Identity Matching record for the given user and updates the supplied {@link EidasAuthenticationToken} with
    * the attributes found in the IdM record.
@@ -584,13 +805,15 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
    * Generates an authentication request for the given country.
    *
    * @param httpServletRequest the HTTP servlet request
+   * @param httpServletResponse the HTTP servlet response
    * @param country the recipient country
    * @param token the input token
    * @return an {@code AuthnRequest}
    * @throws Saml2ErrorStatusException for errors generating the request
    */
   public RequestHttpObject<AuthnRequest> generateAuthnRequest(final HttpServletRequest httpServletRequest,
-      final String country, final Saml2UserAuthenticationInputToken token) throws Saml2ErrorStatusException {
+      final HttpServletResponse httpServletResponse, final String country,
+      final Saml2UserAuthenticationInputToken token) throws Saml2ErrorStatusException {
 
     final CountryMetadata countryMetadata = this.metadataProvider.getCountry(country);
     if (countryMetadata == null) {
@@ -612,11 +835,12 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
       this.eventPublisher.publishEvent(new BeforeEidasAuthenticationEvent(token, countryMetadata.getCountryCode(),
           authnRequest.getRequest(), relayState, authnRequest.getMethod()));
 
-      // Save request in session ...
+      // Save request (in session, or in a cookie) ...
       //
-      httpServletRequest.getSession().setAttribute(EIDAS_AUTHNREQUEST_SESSION_KEY,
+      this.authnRequestRepository.saveAuthnRequest(
           new EidasAuthnRequest(authnRequest.getRequest(), relayState,
-              token.getAuthnRequestToken().getAuthnRequest().getID(), countryMetadata.getCountryCode()));
+              token.getAuthnRequestToken().getAuthnRequest().getID(), countryMetadata.getCountryCode()),
+          httpServletRequest, httpServletResponse);
 
       return authnRequest;
     }
@@ -719,30 +943,40 @@ public class EidasAuthenticationProvider extends AbstractUserRedirectAuthenticat
   }
 
   /**
-   * Gets the authentication request that we saved in the session before we sent the authentication request.
+   * Gets the authentication request that we saved before we sent the authentication request.
    * <p>
-   * Once read from the session the object will be removed from session storage.
+   * Once read, the object will be removed from the repository.
    * </p>
    *
    * @param httpRequest the HTTP servlet request
+   * @param httpResponse the HTTP servlet response
    * @return an {@link EidasAuthnRequest}
    * @throws UnrecoverableSaml2IdpException for session errors
    */
-  private EidasAuthnRequest getEidasAuthnRequest(final HttpServletRequest httpRequest)
+  private EidasAuthnRequest getEidasAuthnRequest(
+      final HttpServletRequest httpRequest, final HttpServletResponse httpResponse)
       throws UnrecoverableSaml2IdpException {
 
-    final HttpSession session = httpRequest.getSession();
-    final EidasAuthnRequest authnRequest = (EidasAuthnRequest) session.getAttribute(EIDAS_AUTHNREQUEST_SESSION_KEY);
+    final Saml2UserAuthenticationInputToken inputToken =
+        Optional.ofNullable(this.getTokenRepository().getExternalAuthenticationToken(httpRequest))
+            .map(RedirectForAuthenticationToken::getAuthnInputToken)
+            .orElse(null);
+
+    final EidasAuthnRequest authnRequest = this.authnRequestRepository.removeAuthnRequest(httpRequest, httpResponse);
     if (authnRequest == null) {
       final String msg = "Received SAML response, but no authentication requests exists in session";
-      throw new UnrecoverableSaml2IdpException(UnrecoverableSaml2IdpError.INVALID_SESSION, msg,
-          Optional.ofNullable(this.getTokenRepository().getExternalAuthenticationToken(httpRequest))
-              .map(RedirectForAuthenticationToken::getAuthnInputToken)
-              .orElse(null));
+      throw new UnrecoverableSaml2IdpException(UnrecoverableSaml2IdpError.INVALID_SESSION, msg, inputToken);
     }
 
-    // Remove the authn request from the session ...
-    session.removeAttribute(EIDAS_AUTHNREQUEST_SESSION_KEY);
+    // Make sure that the saved request belongs to the request from the Swedish SP that is being processed.
+    // The saved request may have been stored outside the session (in a cookie), so a saved request that can not
+    // be bound to an ongoing flow is never accepted ...
+    //
+    if (inputToken == null || !Objects.equals(authnRequest.getAssociatedRequestId(),
+        inputToken.getAuthnRequestToken().getAuthnRequest().getID())) {
+      final String msg = "Received SAML response, but saved authentication request does not match current session";
+      throw new UnrecoverableSaml2IdpException(UnrecoverableSaml2IdpError.INVALID_SESSION, msg, inputToken);
+    }
 
     return authnRequest;
   }
@@ -19,8 +19,6 @@ import jakarta.annotation.Nullable;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import net.shibboleth.shared.xml.SerializeSupport;
-import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.AuthenticatingAuthority;
 import org.opensaml.saml.saml2.core.AuthnContext;
@@ -31,22 +29,24 @@ import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import se.swedenconnect.eidas.connector.ApplicationVersion;
 import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequest;
-import se.swedenconnect.opensaml.common.utils.SerializableOpenSamlObject;
 import se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants;
 import se.swedenconnect.opensaml.saml2.response.ResponseProcessingResult;
 import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
 import se.swedenconnect.spring.saml.idp.attributes.eidas.EidasAttributeValue;
 import se.swedenconnect.spring.saml.idp.authentication.Saml2UserAuthenticationInputToken;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Serial;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 /**
@@ -60,6 +60,9 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
   @Serial
   private static final long serialVersionUID = ApplicationVersion.SERIAL_VERSION_UID;
 
+  /** The principal name used if the person identifier attribute is not available. */
+  private static final String UNKNOWN_PRINCIPAL = "unknown";
+
   /** The ID for the response. */
   @Getter
   private final String responseId;
@@ -72,12 +75,21 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
   @Getter
   private final Instant responseIssueInstant;
 
-  /** The SAML assertion. */
-  private final SerializableOpenSamlObject<Assertion> assertion;
+  /** The SAML assertion (and its encoding). */
+  private final LazyOpenSamlObject<Assertion> assertion;
 
   /** Attributes from the assertion. */
   private final List<UserAttribute> attributes;
 
+  /** Read-only view of {@code attributes}. */
+  private transient List<UserAttribute> attributesView;
+
+  /**
+   * The attributes indexed by their names. If the same attribute name appears more than once, the first attribute (in
+   * insertion order) is indexed. Built on first use.
+   */
+  private transient Map<String, UserAttribute> attributesByName;
+
   /** The corresponding request. */
   @Getter
   private final EidasAuthnRequest authnRequest;
@@ -99,6 +111,9 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
   /** For caching the principal name. */
   private transient String principalCache;
 
+  /** A check, started during response processing, of whether the user has an Identity Matching record. */
+  private transient CompletableFuture<Boolean> idmRecordCheck;
+
   /**
    * Constructor.
    *
@@ -114,7 +129,7 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
     this.responseId = result.getResponseId();
     this.inResponseTo = result.getInResponseTo();
     this.responseIssueInstant = result.getIssueInstant();
-    this.assertion = new SerializableOpenSamlObject<>(result.getAssertion());
+    this.assertion = LazyOpenSamlObject.ofReceived(result.getAssertion());
     this.authnRequest = Objects.requireNonNull(authnRequest, "authnRequest must not be null");
 
     this.attributes = new ArrayList<>();
@@ -145,27 +160,54 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
    */
   @Nullable
   public String getAssertionBase64() {
-    final Assertion assertion = this.getAssertion();
-    if (assertion == null) {
+    return this.getAssertionBase64(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the SAML {@link Assertion} in Base64 encoding, provided that the size of the serialized assertion does not
+   * exceed {@code maxSize}.
+   * <p>
+   * The assertion is serialized at most once. Note that a newly decrypted assertion still holds the DOM that it was
+   * unmarshalled from, and in these cases marshalling will not build a new DOM.
+   * </p>
+   *
+   * @param maxSize the maximum size (in bytes) of the serialized assertion
+   * @return the Base64-encoded {@link Assertion}, or {@code null} if not available or if the assertion is too large
+   */
+  @Nullable
+  public String getAssertionBase64(final int maxSize) {
+    final byte[] encoding;
+    try {
+      encoding = this.assertion.getEncoding();
+    }
+    catch (final IllegalStateException e) {
+      log.error("Failed to marshall OpenSAML object", e);
       return null;
     }
-    try (final ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-      SerializeSupport.writeNode(XMLObjectSupport.marshall(assertion), bos);
-      return Base64.getEncoder().encodeToString(bos.toByteArray());
+    if (encoding == null) {
+      return null;
     }
-    catch (final Exception e) {
-      log.error("Failed to marshall OpenSAML object", e);
+    if (encoding.length > maxSize) {
+      log.info("Size of assertion ({} bytes) exceeds {} bytes - will not Base64-encode assertion [{}]",
+          encoding.length, maxSize, this.logString);
       return null;
     }
+    return Base64.getEncoder().encodeToString(encoding);
   }
 
   /**
-   * Returns a read-only list of the attributes received.
+   * Returns a read-only list of the attributes received (in the order they were added).
+   * <p>
+   * Note: The returned list is a view that reflects attributes added after the call.
+   * </p>
    *
    * @return attribute list
    */
   public List<UserAttribute> getAttributes() {
-    return Collections.unmodifiableList(this.attributes);
+    if (this.attributesView == null) {
+      this.attributesView = Collections.unmodifiableList(this.attributes);
+    }
+    return this.attributesView;
   }
 
   /**
@@ -176,9 +218,25 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
   public void addAttribute(final UserAttribute attribute) {
     if (attribute != null) {
       this.attributes.add(attribute);
+      this.indexAttribute(attribute);
+    }
+  }
+
+  /**
+   * Adds the supplied attributes (in order). {@code null} elements are ignored.
+   *
+   * @param attributes the attributes to add
+   */
+  public void addAttributes(final Collection<UserAttribute> attributes) {
+    if (attributes == null || attributes.isEmpty()) {
+      return;
+    }
+    if (this.attributes instanceof final ArrayList<UserAttribute> list) {
+      list.ensureCapacity(list.size() + attributes.size());
+    }
+    for (final UserAttribute attribute : attributes) {
+      this.addAttribute(attribute);
     }
-    // Clear cache
-    this.principalCache = null;
   }
 
   /**
@@ -188,10 +246,30 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
    * @return the {@link UserAttribute} or {@code null} if not available
    */
   public UserAttribute getAttribute(final String attributeName) {
-    return this.attributes.stream()
-        .filter(a -> Objects.equals(attributeName, a.getId()))
-        .findFirst()
-        .orElse(null);
+    if (this.attributesByName == null) {
+      final Map<String, UserAttribute> index = new HashMap<>();
+      for (final UserAttribute attribute : this.attributes) {
+        index.putIfAbsent(attribute.getId(), attribute);
+      }
+      this.attributesByName = index;
+    }
+    return this.attributesByName.get(attributeName);
+  }
+
+  /**
+   * Updates the attribute index (if built) and the principal cache for an added attribute.
+   *
+   * @param attribute the added attribute
+   */
+  private void indexAttribute(final UserAttribute attribute) {
+    if (this.attributesByName != null) {
+      this.attributesByName.putIfAbsent(attribute.getId(), attribute);
+    }
+    // The principal is only affected if it was not found before ...
+    if (UNKNOWN_PRINCIPAL.equals(this.principalCache)
+        && AttributeConstants.EIDAS_PERSON_IDENTIFIER_ATTRIBUTE_NAME.equals(attribute.getId())) {
+      this.principalCache = null;
+    }
   }
 
   /**
@@ -269,7 +347,7 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
               .map(List::getFirst)
               .map(EidasAttributeValue.class::cast)
               .map(EidasAttributeValue::getValueAsString)
-              .orElse("unknown");
+              .orElse(UNKNOWN_PRINCIPAL);
     }
     return this.principalCache;
   }
@@ -280,4 +358,25 @@ public class EidasAuthenticationToken extends AbstractAuthenticationToken {
     return this.getAssertion();
   }
 
+  /**
+   * Assigns a started check of whether the user has an Identity Matching record.
+   *
+   * @param idmRecordCheck the started check
+   */
+  void setIdmRecordCheck(final CompletableFuture<Boolean> idmRecordCheck) {
+    this.idmRecordCheck = idmRecordCheck;
+  }
+
+  /**
+   * Gets, and removes, the check of whether the user has an Identity Matching record that was started during response
+   * processing.
+   *
+   * @return the started check, or {@code null} if no check was started (or if the token has been serialized)
+   */
+  CompletableFuture<Boolean> removeIdmRecordCheck() {
+    final CompletableFuture<Boolean> check = this.idmRecordCheck;
+    this.idmRecordCheck = null;
+    return check;
+  }
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn;
+
+import net.shibboleth.shared.xml.SerializeSupport;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A holder for OpenSAML objects that are stored in the user session.
+ * <p>
+ * Compared to {@code SerializableOpenSamlObject}, the serialized form is compact: it only contains a version byte and
+ * the (deflated) XML encoding of the object. If the holder is created with the encoding that the object was
+ * unmarshalled from (for example, the bytes of a signed assertion), that encoding is stored as is. After
+ * deserialization, the object is unmarshalled on first access (see {@link #get()}), so a session attribute that is
+ * only passed along never has to be unmarshalled.
+ * </p>
+ *
+ * @param <T> the type of the object
+ * @author Martin Lindström
+ */
+public final class LazyOpenSamlObject<T extends XMLObject> implements Externalizable {
+
+  @Serial
+  private static final long serialVersionUID = 1L;
+
+  /** The current version of the serialized form. */
+  private static final byte VERSION = 1;
+
+  /** The maximum size of an encoding that we accept when deserializing. */
+  private static final int MAX_ENCODING_SIZE = 16 * 1024 * 1024;
+
+  /** The OpenSAML object (may be {@code null} if not yet unmarshalled). */
+  private transient T object;
+
+  /** The XML encoding of the object (may be {@code null} if not yet marshalled). */
+  private transient byte[] encoding;
+
+  /**
+   * Constructor.
+   *
+   * @param object the OpenSAML object
+   */
+  public LazyOpenSamlObject(final T object) {
+    this(object, null);
+  }
+
+  /**
+   * Constructor assigning the object along with its XML encoding.
+   *
+   * @param object the OpenSAML object
+   * @param encoding the XML encoding of the object (if {@code null}, the encoding is created when needed)
+   */
+  public LazyOpenSamlObject(final T object, final byte[] encoding) {
+    this.object = Objects.requireNonNull(object, "object must not be null");
+    this.encoding = encoding;
+  }
+
+  /**
+   * Creates a holder for an object that has been unmarshalled from a received message. The DOM that the object was
+   * unmarshalled from (for a signed assertion, the signed form) is serialized directly and stored as is, so the stored
+   * encoding is not affected by any later changes to the object.
+   *
+   * @param object the OpenSAML object
+   * @param <T> the type of the object
+   * @return a {@link LazyOpenSamlObject}
+   * @throws IllegalStateException if the DOM can not be serialized
+   */
+  public static <T extends XMLObject> LazyOpenSamlObject<T> ofReceived(final T object) {
+    Objects.requireNonNull(object, "object must not be null");
+    if (object.getDOM() == null) {
+      return new LazyOpenSamlObject<>(object);
+    }
+    try (final ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+      SerializeSupport.writeNode(object.getDOM(), bos);
+      return new LazyOpenSamlObject<>(object, bos.toByteArray());
+    }
+    catch (final IOException e) {
+      throw new IllegalStateException("Failed to serialize OpenSAML object", e);
+    }
+  }
+
+  /**
+   * Constructor used for deserialization only.
+   */
+  public LazyOpenSamlObject() {
+  }
+
+  /**
+   * Gets the OpenSAML object. If the holder has been deserialized, the object is unmarshalled on the first call.
+   *
+   * @return the OpenSAML object
+   * @throws IllegalStateException if the object can not be unmarshalled
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized T get() {
+    if (this.object == null && this.encoding != null) {
+      try {
+        this.object = (T) XMLObjectSupport.unmarshallFromInputStream(
+            XMLObjectProviderRegistrySupport.getParserPool(), new ByteArrayInputStream(this.encoding));
+      }
+      catch (final Exception e) {
+        throw new IllegalStateException("Failed to unmarshall OpenSAML object", e);
+      }
+    }
+    return this.object;
+  }
+
+  /**
+   * Gets the XML encoding of the object. If the holder was created without an encoding, the object is marshalled on
+   * the first call.
+   * <p>
+   * Note: The returned array must not be modified.
+   * </p>
+   *
+   * @return the XML encoding
+   * @throws IllegalStateException if the object can not be marshalled
+   */
+  public synchronized byte[] getEncoding() {
+    if (this.encoding == null && this.object != null) {
+      try (final ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+        SerializeSupport.writeNode(XMLObjectSupport.marshall(this.object), bos);
+        this.encoding = bos.toByteArray();
+      }
+      catch (final Exception e) {
+        throw new IllegalStateException("Failed to marshall OpenSAML object", e);
+      }
+    }
+    return this.encoding;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void writeExternal(final ObjectOutput out) throws IOException {
+    final byte[] contents = this.getEncoding();
+    if (contents == null) {
+      throw new InvalidObjectException("No OpenSAML object to serialize");
+    }
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(contents);
+      deflater.finish();
+      byte[] deflated = new byte[Math.max(64, contents.length / 2)];
+      int size = 0;
+      while (!deflater.finished()) {
+        if (size == deflated.length) {
+          deflated = Arrays.copyOf(deflated, deflated.length * 2);
+        }
+        size += deflater.deflate(deflated, size, deflated.length - size);
+      }
+      out.writeByte(VERSION);
+      out.writeInt(contents.length);
+      out.writeInt(size);
+      out.write(deflated, 0, size);
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void readExternal(final ObjectInput in) throws IOException {
+    final byte version = in.readByte();
+    if (version != VERSION) {
+      throw new InvalidObjectException("Unsupported version of serialized OpenSAML object: " + version);
+    }
+    final int length = in.readInt();
+    final int deflatedLength = in.readInt();
+    if (length < 0 || length > MAX_ENCODING_SIZE || deflatedLength < 0 || deflatedLength > MAX_ENCODING_SIZE) {
+      throw new InvalidObjectException("Invalid length of serialized OpenSAML object");
+    }
+    final byte[] deflated = new byte[deflatedLength];
+    in.readFully(deflated);
+
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(deflated);
+      final byte[] contents = new byte[length];
+      int offset = 0;
+      while (offset < length && !inflater.finished()) {
+        final int n = inflater.inflate(contents, offset, length - offset);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        offset += n;
+      }
+      if (offset != length || !inflater.finished()) {
+        throw new InvalidObjectException("Invalid contents of serialized OpenSAML object");
+      }
+      this.encoding = contents;
+      this.object = null;
+    }
+    catch (final DataFormatException e) {
+      throw new InvalidObjectException("Invalid contents of serialized OpenSAML object");
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+}
@@ -25,24 +25,74 @@ import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.oauth2.sdk.Scope;
 import com.nimbusds.oauth2.sdk.id.ClientID;
+import lombok.extern.slf4j.Slf4j;
 import se.swedenconnect.security.credential.PkiCredential;
 import se.swedenconnect.security.credential.nimbus.JwkTransformerFunction;
 
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Abstract base implementation of the {@link OAuth2Handler} interface.
  *
  * @author Martin Lindström
  */
+@Slf4j
 public abstract class AbstractOAuth2Handler implements OAuth2Handler {
 
+  /** The default fraction of the access token lifetime after which a new token is obtained in the background. */
+  public static final double DEFAULT_REFRESH_THRESHOLD = 0.75;
+
+  /** The default time to wait after a failed background refresh before a new refresh is attempted. */
+  public static final Duration DEFAULT_REFRESH_RETRY_DELAY = Duration.ofSeconds(5);
+
   /** The cached access token for the HEAD calls. */
-  private BearerAccessTokenHolder cachedAccessToken;
+  private volatile BearerAccessTokenHolder cachedAccessToken;
+
+  /** Whether a background refresh of the cached access token is ongoing. */
+  private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+  /** Lock used when no valid access token is available and a token has to be issued synchronously. */
+  private final Object issuanceLock = new Object();
+
+  /** The fraction of the access token lifetime after which a new token is obtained in the background. */
+  private double refreshThreshold = DEFAULT_REFRESH_THRESHOLD;
+
+  /** The time to wait after a failed background refresh before a new refresh is attempted. */
+  private Duration refreshRetryDelay = DEFAULT_REFRESH_RETRY_DELAY;
+
+  /** The time of the last failed background refresh. Is {@code null} if the last refresh succeeded. */
+  private volatile Instant lastRefreshFailure;
+
+  /** The number of background refreshes of the cached access token. */
+  private final LongAdder refreshes = new LongAdder();
+
+  /** The number of failed background refreshes of the cached access token. */
+  private final LongAdder refreshFailures = new LongAdder();
+
+  /** The number of times the access token had to be issued synchronously. */
+  private final LongAdder synchronousIssuances = new LongAdder();
+
+  /** Optional cache for access tokens used for GET calls. */
+  private AccessTokenCache getTokenCache;
+
+  /**
+   * Ongoing issuances of access tokens for GET calls (when a cache is used), indexed by PRID. Used so that concurrent
+   * cache misses for the same PRID wait for one issuance instead of obtaining one token each.
+   */
+  private final ConcurrentMap<String, CompletableFuture<BearerAccessTokenHolder>> getTokenIssuances =
+      new ConcurrentHashMap<>();
 
   /** The OAuth2 credential - used to sign OAuth2 items. */
   private final PkiCredential oauth2Credential;
@@ -84,27 +134,205 @@ public abstract class AbstractOAuth2Handler implements OAuth2Handler {
     this.oauth2Jwk = this.createJwk(this.oauth2Credential);
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Assigns the fraction (0-1) of the access token lifetime after which a new access token (for HEAD calls) is
+   * obtained in the background. The default is {@value #DEFAULT_REFRESH_THRESHOLD}.
+   *
+   * @param refreshThreshold the fraction of the token lifetime
+   */
+  public void setRefreshThreshold(final double refreshThreshold) {
+    if (refreshThreshold <= 0 || refreshThreshold > 1) {
+      throw new IllegalArgumentException("refreshThreshold must be greater than 0 and at most 1");
+    }
+    this.refreshThreshold = refreshThreshold;
+  }
+
+  /**
+   * Assigns the time to wait after a failed background refresh of the access token (for HEAD calls) before a new
+   * refresh is attempted. During this time, the current token is used. The default is
+   * {@link #DEFAULT_REFRESH_RETRY_DELAY}.
+   *
+   * @param refreshRetryDelay the retry delay
+   */
+  public void setRefreshRetryDelay(final Duration refreshRetryDelay) {
+    if (Objects.requireNonNull(refreshRetryDelay, "refreshRetryDelay must not be null").isNegative()) {
+      throw new IllegalArgumentException("refreshRetryDelay must not be negative");
+    }
+    this.refreshRetryDelay = refreshRetryDelay;
+  }
+
+  /**
+   * Gets an OAuth2 access token for the HEAD call to the IdM Query API.
+   * <p>
+   * The cached token is returned without locking. When the configured fraction of the token lifetime has passed, a new
+   * token is obtained in the background while callers continue to get the current token. If the background refresh
+   * fails, a new refresh is not attempted until the retry delay has passed. Only if there is no valid token, the token
+   * is issued synchronously.
+   * </p>
+   */
   @Override
-  public synchronized String getCheckAccessToken() throws IdmException {
+  public String getCheckAccessToken() throws IdmException {
 
-    final String header = Optional.ofNullable(this.cachedAccessToken)
-        .filter(BearerAccessTokenHolder::isValid)
-        .map(BearerAccessTokenHolder::getBearerAccessToken)
-        .orElse(null);
+    final BearerAccessTokenHolder token = this.cachedAccessToken;
+    if (token != null && token.isValid()) {
+      if (token.isRefreshDue(this.refreshThreshold)) {
+        this.refreshInBackground();
+      }
+      return token.getBearerAccessToken();
+    }
 
-    if (header != null) {
-      return header;
+    synchronized (this.issuanceLock) {
+      final BearerAccessTokenHolder current = this.cachedAccessToken;
+      if (current != null && current.isValid()) {
+        return current.getBearerAccessToken();
+      }
+      this.synchronousIssuances.increment();
+      final BearerAccessTokenHolder issued = this.obtainAccessToken(this.clientId.getValue(), this.checkScope);
+      this.cachedAccessToken = issued;
+      return issued.getBearerAccessToken();
     }
-    this.cachedAccessToken = this.obtainAccessToken(this.clientId.getValue(), this.checkScope);
+  }
+
+  /**
+   * Starts a background refresh of the cached access token (unless one already is ongoing, or the last refresh failed
+   * less than the retry delay ago).
+   */
+  private void refreshInBackground() {
+    final Instant lastFailure = this.lastRefreshFailure;
+    if (lastFailure != null && Instant.now().isBefore(lastFailure.plus(this.refreshRetryDelay))) {
+      return;
+    }
+    if (!this.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      Thread.ofVirtual().name("idm-access-token-refresh").start(() -> {
+        try {
+          this.cachedAccessToken = this.obtainAccessToken(this.clientId.getValue(), this.checkScope);
+          this.lastRefreshFailure = null;
+          this.refreshes.increment();
+        }
+        catch (final Exception e) {
+          this.lastRefreshFailure = Instant.now();
+          this.refreshFailures.increment();
+          log.warn("Failed to refresh access token - {}", e.getMessage(), e);
+        }
+        finally {
+          this.refreshing.set(false);
+        }
+      });
+    }
+    catch (final RuntimeException e) {
+      this.lastRefreshFailure = Instant.now();
+      this.refreshing.set(false);
+      this.refreshFailures.increment();
+      log.warn("Failed to start refresh of access token - {}", e.getMessage(), e);
+    }
+  }
 
-    return this.cachedAccessToken.getBearerAccessToken();
+  /**
+   * Assigns a cache for the access tokens used for GET calls. If assigned, a token issued for a PRID is re-used for
+   * subsequent calls for the same PRID as long as it is valid. Concurrent calls for a PRID that is not cached share one
+   * issued token.
+   *
+   * @param getTokenCache the cache
+   */
+  public void setGetTokenCache(final AccessTokenCache getTokenCache) {
+    this.getTokenCache = getTokenCache;
+  }
+
+  /**
+   * Gets the cache for the access tokens used for GET calls.
+   *
+   * @return the cache, or {@code null} if no cache is used
+   */
+  public AccessTokenCache getGetTokenCache() {
+    return this.getTokenCache;
+  }
+
+  /**
+   * Gets the number of background refreshes of the access token used for HEAD calls.
+   *
+   * @return the number of refreshes
+   */
+  public long getRefreshCount() {
+    return this.refreshes.sum();
+  }
+
+  /**
+   * Gets the number of failed background refreshes of the access token used for HEAD calls.
+   *
+   * @return the number of failed refreshes
+   */
+  public long getRefreshFailureCount() {
+    return this.refreshFailures.sum();
+  }
+
+  /**
+   * Gets the number of times the access token used for HEAD calls had to be issued synchronously, i.e., when no valid
+   * token was available.
+   *
+   * @return the number of synchronous issuances
+   */
+  public long getSynchronousIssuanceCount() {
+    return this.synchronousIssuances.sum();
   }
 
   /** {@inheritDoc} */
   @Override
   public String getGetAccessToken(final String prid) throws IdmException {
-    return this.obtainAccessToken(prid, this.getScope).getBearerAccessToken();
+    if (this.getTokenCache == null) {
+      return this.obtainAccessToken(prid, this.getScope).getBearerAccessToken();
+    }
+    final BearerAccessTokenHolder cached = this.getTokenCache.get(prid);
+    if (cached != null) {
+      return cached.getBearerAccessToken();
+    }
+
+    // If another thread already is obtaining a token for the PRID, we wait for that token ...
+    //
+    final CompletableFuture<BearerAccessTokenHolder> issuance = new CompletableFuture<>();
+    final CompletableFuture<BearerAccessTokenHolder> ongoing = this.getTokenIssuances.putIfAbsent(prid, issuance);
+    if (ongoing != null) {
+      return this.waitForIssuance(ongoing).getBearerAccessToken();
+    }
+    try {
+      final BearerAccessTokenHolder token = this.obtainAccessToken(prid, this.getScope);
+      this.getTokenCache.put(prid, token);
+      issuance.complete(token);
+      return token.getBearerAccessToken();
+    }
+    catch (final IdmException | RuntimeException e) {
+      issuance.completeExceptionally(e);
+      throw e;
+    }
+    finally {
+      this.getTokenIssuances.remove(prid, issuance);
+    }
+  }
+
+  /**
+   * Waits for an access token that is being obtained by another thread.
+   *
+   * @param issuance the ongoing issuance
+   * @return the {@link BearerAccessTokenHolder}
+   * @throws IdmException if the issuance failed, or if the thread was interrupted
+   */
+  private BearerAccessTokenHolder waitForIssuance(final CompletableFuture<BearerAccessTokenHolder> issuance)
+      throws IdmException {
+    try {
+      return issuance.get();
+    }
+    catch (final ExecutionException e) {
+      if (e.getCause() instanceof final IdmException idmException) {
+        throw idmException;
+      }
+      throw new IdmException("Failed to obtain access token - " + e.getCause().getMessage(), e.getCause());
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IdmException("Interrupted while waiting for access token", e);
+    }
   }
 
   /**
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.idm;
+
+import se.swedenconnect.eidas.connector.cache.BoundedCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A bounded cache for access tokens issued for a given subject, e.g., the tokens used when reading IdM records for a
+ * PRID. By re-using tokens, the (possibly expensive) signing of a new token is avoided for repeated calls for the same
+ * subject.
+ * <p>
+ * A cached token is only returned if it is valid for at least {@link #MIN_REMAINING_LIFETIME}. Entries are evicted
+ * when they no longer are usable, or, in insertion order, when the cache has reached its maximum size.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class AccessTokenCache {
+
+  /** The default maximum number of entries. */
+  public static final int DEFAULT_MAX_SIZE = 1_000;
+
+  /** The minimum remaining lifetime a token must have for it to be returned from the cache. */
+  public static final Duration MIN_REMAINING_LIFETIME = Duration.ofSeconds(10);
+
+  /** The cached entries. */
+  private final BoundedCache<String, BearerAccessTokenHolder> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   */
+  public AccessTokenCache(final int maxSize) {
+    this(maxSize, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   * @param clock the clock to use when checking expiration
+   */
+  public AccessTokenCache(final int maxSize, final Clock clock) {
+    this.cache = new BoundedCache<>(maxSize, clock);
+  }
+
+  /**
+   * Gets a cached access token for the given subject.
+   *
+   * @param subject the subject of the access token
+   * @return the cached {@link BearerAccessTokenHolder}, or {@code null} if there is no (usable) entry
+   */
+  public BearerAccessTokenHolder get(final String subject) {
+    return this.cache.get(subject);
+  }
+
+  /**
+   * Adds an access token to the cache. Tokens without an expiration time are not cached.
+   *
+   * @param subject the subject of the access token
+   * @param token the access token
+   */
+  public void put(final String subject, final BearerAccessTokenHolder token) {
+    Objects.requireNonNull(subject, "subject must not be null");
+    Objects.requireNonNull(token, "token must not be null");
+    if (token.getExpires() == null) {
+      return;
+    }
+    this.cache.put(subject, token, token.getExpires().minus(MIN_REMAINING_LIFETIME));
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void clear() {
+    this.cache.clear();
+  }
+
+  /**
+   * Gets the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return this.cache.size();
+  }
+
+  /**
+   * Gets the maximum number of entries.
+   *
+   * @return the maximum number of entries
+   */
+  public int getMaxSize() {
+    return this.cache.getMaxSize();
+  }
+
+  /**
+   * Gets the number of cache hits.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return this.cache.getHitCount();
+  }
+
+  /**
+   * Gets the number of cache misses.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return this.cache.getMissCount();
+  }
+
+  /**
+   * Gets the number of evicted entries (expired entries and entries removed due to size restrictions).
+   *
+   * @return the number of evicted entries
+   */
+  public long getEvictionCount() {
+    return this.cache.getEvictionCount();
+  }
+
+}
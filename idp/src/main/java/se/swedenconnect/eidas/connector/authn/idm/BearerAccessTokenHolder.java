@@ -29,6 +29,11 @@ public class BearerAccessTokenHolder {
    */
   private final String accessToken;
 
+  /**
+   * The time when the holder was created.
+   */
+  private final Instant created;
+
   /**
    * The expiration time.
    */
@@ -42,6 +47,7 @@ public class BearerAccessTokenHolder {
    */
   public BearerAccessTokenHolder(final String authorizationHeader, final Instant expires) {
     this.accessToken = authorizationHeader;
+    this.created = Instant.now();
     this.expires = expires;
   }
 
@@ -54,6 +60,15 @@ public class BearerAccessTokenHolder {
     return this.accessToken;
   }
 
+  /**
+   * Gets the expiration time of the access token.
+   *
+   * @return the expiration time
+   */
+  public Instant getExpires() {
+    return this.expires;
+  }
+
   /**
    * Whether the access token still is valid.
    *
@@ -63,4 +78,19 @@ public class BearerAccessTokenHolder {
     return this.expires != null && Instant.now().plusSeconds(10).isBefore(this.expires);
   }
 
+  /**
+   * Tells whether the given fraction of the access token lifetime has passed, meaning that it is time to obtain a new
+   * token.
+   *
+   * @param fraction the fraction (0-1) of the token lifetime
+   * @return {@code true} if the fraction of the lifetime has passed and {@code false} otherwise
+   */
+  public boolean isRefreshDue(final double fraction) {
+    if (this.expires == null) {
+      return true;
+    }
+    final long lifetime = this.expires.toEpochMilli() - this.created.toEpochMilli();
+    return Instant.now().toEpochMilli() >= this.created.toEpochMilli() + (long) (lifetime * fraction);
+  }
+
 }
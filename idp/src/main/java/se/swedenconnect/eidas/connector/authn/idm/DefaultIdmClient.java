@@ -16,32 +16,34 @@
 package se.swedenconnect.eidas.connector.authn.idm;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.impl.io.BasicHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
-import org.apache.hc.client5.http.io.HttpClientConnectionManager;
-import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
-import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
 import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
-import org.apache.hc.core5.http.config.Registry;
-import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.pool.PoolStats;
 import org.apache.hc.core5.ssl.SSLContexts;
 import org.apache.hc.core5.ssl.TrustStrategy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.ssl.SslBundle;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
 import se.swedenconnect.eidas.connector.authn.EidasAuthenticationToken;
 import se.swedenconnect.eidas.connector.config.DevelopmentMode;
+import se.swedenconnect.eidas.connector.config.IdmProperties;
 import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
 
 import javax.net.ssl.SSLContext;
@@ -55,7 +57,7 @@ import java.util.Optional;
  * @author Martin Lindström
  */
 @Slf4j
-public class DefaultIdmClient implements IdmClient {
+public class DefaultIdmClient implements IdmClient, DisposableBean {
 
   /** The base path to IdM. */
   public static final String IDM_BASE_PATH = "/api/v1/mrecord";
@@ -72,36 +74,97 @@ public class DefaultIdmClient implements IdmClient {
   /** The RestClient. */
   private final RestClient restClient;
 
+  /** The underlying HTTP client. Closed when the bean is destroyed. */
+  private final AutoCloseable httpClient;
+
+  /** The HTTP connection pool (not used if HTTP/2 is enabled). */
+  private final PoolingHttpClientConnectionManager connectionManager;
+
+  /** Optional cache for the results of record existence checks. */
+  private IdmRecordCache recordCache;
+
   /** Constant for binding URI that we should not receive ... */
   private static final String REGISTERED_USER_BINDING = "http://id.swedenconnect.se/id-binding/process/registered";
 
   /**
-   * Constructor.
+   * Constructor using the default HTTP client settings.
    *
    * @param idmApiBaseUrl the base URL for the API
    * @param oauth2 the OAuth2 handler
    * @param trustBundle SSL Bundle holding the trust configuration for TLS-calls against the IdM server (optional)
    */
   public DefaultIdmClient(final String idmApiBaseUrl, final OAuth2Handler oauth2, final SslBundle trustBundle) {
+    this(idmApiBaseUrl, oauth2, trustBundle, new IdmProperties.HttpClientProperties());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param idmApiBaseUrl the base URL for the API
+   * @param oauth2 the OAuth2 handler
+   * @param trustBundle SSL Bundle holding the trust configuration for TLS-calls against the IdM server (optional)
+   * @param httpClientSettings the settings for the HTTP client used when calling the IdM server (settings that are
+   *     not assigned are given their default values)
+   */
+  public DefaultIdmClient(final String idmApiBaseUrl, final OAuth2Handler oauth2, final SslBundle trustBundle,
+      final IdmProperties.HttpClientProperties httpClientSettings) {
 
     Objects.requireNonNull(idmApiBaseUrl, "idmApiBaseUrl must not be null");
     this.oauth2 = Objects.requireNonNull(oauth2, "oauth2 must not be null");
+    Objects.requireNonNull(httpClientSettings, "httpClientSettings must not be null").afterPropertiesSet();
+
+    final boolean noHostnameVerification = trustBundle == null && DevelopmentMode.isActive();
+    final SSLContext sslContext = trustBundle != null
+        ? trustBundle.createSslContext()
+        : noHostnameVerification ? developmentModeSslContext() : null;
 
     final RestClient.Builder builder = RestClient.builder().baseUrl(idmApiBaseUrl);
-    if (trustBundle != null) {
-      final SSLConnectionSocketFactory sslSocketFactory =
-          SSLConnectionSocketFactoryBuilder.create().setSslContext(trustBundle.createSslContext()).build();
-      final HttpClientConnectionManager cm =
-          PoolingHttpClientConnectionManagerBuilder.create().setSSLSocketFactory(sslSocketFactory).build();
-      final HttpClient httpClient = HttpClients.custom().setConnectionManager(cm).evictExpiredConnections().build();
-      builder.requestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
+    if (httpClientSettings.isHttp2() && !noHostnameVerification) {
+      this.connectionManager = null;
+      final java.net.http.HttpClient client = createHttp2Client(sslContext, httpClientSettings);
+      final JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(client);
+      requestFactory.setReadTimeout(httpClientSettings.getResponseTimeout());
+      builder.requestFactory(requestFactory);
+      this.httpClient = client;
     }
-    else if (DevelopmentMode.isActive()) {
-      builder.requestFactory(developmentModeSettings());
+    else {
+      if (httpClientSettings.isHttp2()) {
+        log.warn("HTTP/2 can not be used for IdM calls in development mode without a trust bundle - using HTTP/1.1");
+      }
+      this.connectionManager = createConnectionManager(sslContext, noHostnameVerification, httpClientSettings);
+      final CloseableHttpClient client = createHttpClient(this.connectionManager, httpClientSettings);
+      builder.requestFactory(new HttpComponentsClientHttpRequestFactory(client));
+      this.httpClient = client;
     }
     this.restClient = builder.build();
   }
 
+  /**
+   * Closes the HTTP client, including its connection pool and the thread evicting idle connections.
+   */
+  @Override
+  public void destroy() throws Exception {
+    this.httpClient.close();
+  }
+
+  /**
+   * Assigns a cache for the results of record existence checks (see {@link #hasRecord(EidasAuthenticationToken)}).
+   *
+   * @param recordCache the cache
+   */
+  public void setRecordCache(final IdmRecordCache recordCache) {
+    this.recordCache = recordCache;
+  }
+
+  /**
+   * Gets the statistics for the HTTP connection pool used when calling the IdM server.
+   *
+   * @return the pool statistics, or {@code null} if no connection pool is used (HTTP/2)
+   */
+  public PoolStats getConnectionPoolStats() {
+    return this.connectionManager != null ? this.connectionManager.getTotalStats() : null;
+  }
+
   /**
    * Returns {@code true}.
    */
@@ -134,31 +197,58 @@ public class DefaultIdmClient implements IdmClient {
   /** {@inheritDoc} */
   @Override
   public boolean hasRecord(final EidasAuthenticationToken token) throws IdmException {
+    return this.hasRecord(this.getPridAttribute(token));
+  }
 
-    final String prid = this.getPridAttribute(token);
+  /**
+   * Returns {@code true}.
+   */
+  @Override
+  public boolean supportsRecordCheckByPrid() {
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean hasRecord(final String prid) throws IdmException {
+
+    if (this.recordCache != null) {
+      final Boolean cached = this.recordCache.hasRecord(prid);
+      if (cached != null) {
+        log.debug("Using cached IdM record status for user '{}' (has record: {})", prid, cached);
+        return cached;
+      }
+    }
 
     log.debug("Querying Identity Matching API for existence of record for user '{}' ...", prid);
 
     final String accessToken = this.oauth2.getCheckAccessToken();
 
     try {
-      return this.restClient.head()
+      final Boolean hasRecord = this.restClient.head()
           .uri(IDM_API_PATH, prid)
           .header(HttpHeaders.AUTHORIZATION, accessToken)
           .exchange((request, response) -> {
             if (response.getStatusCode().is2xxSuccessful()) {
               log.debug("IdM reported that there is an IdM record for '{}'", prid);
-              return true;
+              return Boolean.TRUE;
             }
             else if (response.getStatusCode().isSameCodeAs(HttpStatusCode.valueOf(HttpStatus.NOT_FOUND.value()))) {
               log.debug("IdM reported that there is no IdM record for '{}'", prid);
-              return false;
+              return Boolean.FALSE;
             }
             else {
               log.warn("Error checking for IdM record for '{}' - {}", prid, response.getStatusCode());
-              return false;
+              return null;
             }
           });
+
+      // Only definite answers are cached ...
+      //
+      if (hasRecord != null && this.recordCache != null) {
+        this.recordCache.put(prid, hasRecord);
+      }
+      return Boolean.TRUE.equals(hasRecord);
     }
     catch (final RestClientResponseException e) {
       log.info("Failed to query IdM service", e);
@@ -228,6 +318,9 @@ public class DefaultIdmClient implements IdmClient {
     }
     catch (final RestClientResponseException e) {
       if (e.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)) {
+        if (this.recordCache != null) {
+          this.recordCache.invalidate(prid);
+        }
         throw new IdmException("User '%s' has no Identity Matching record".formatted(prid), e);
       }
       final String msg = "Error querying for IdM record - %d %s"
@@ -240,6 +333,14 @@ public class DefaultIdmClient implements IdmClient {
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void invalidateCachedRecordStatus(final String prid) {
+    if (this.recordCache != null && prid != null) {
+      this.recordCache.invalidate(prid);
+    }
+  }
+
   /**
    * Extracts the PRID attribute value from the user authentication token.
    *
@@ -254,33 +355,89 @@ public class DefaultIdmClient implements IdmClient {
         .orElseThrow(() -> new IdmException("No PRID attribute available for user"));
   }
 
-  private static ClientHttpRequestFactory developmentModeSettings() {
+  /**
+   * Creates a HTTP connection pool according to the supplied settings.
+   *
+   * @param sslContext the SSL context to use for TLS connections ({@code null} for the system default)
+   * @param noHostnameVerification whether host names should not be verified (development mode only)
+   * @param settings the HTTP client settings
+   * @return a connection pool
+   */
+  private static PoolingHttpClientConnectionManager createConnectionManager(final SSLContext sslContext,
+      final boolean noHostnameVerification, final IdmProperties.HttpClientProperties settings) {
+
+    final SSLConnectionSocketFactory sslSocketFactory = sslContext == null
+        ? SSLConnectionSocketFactory.getSystemSocketFactory()
+        : noHostnameVerification
+            ? new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE)
+            : SSLConnectionSocketFactoryBuilder.create().setSslContext(sslContext).build();
+
+    return PoolingHttpClientConnectionManagerBuilder.create()
+        .setSSLSocketFactory(sslSocketFactory)
+        .setMaxConnTotal(settings.getMaxConnections())
+        .setMaxConnPerRoute(settings.getMaxConnectionsPerRoute())
+        .setDefaultConnectionConfig(ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.of(settings.getConnectTimeout()))
+            .setSocketTimeout(Timeout.of(settings.getSocketTimeout()))
+            .setTimeToLive(TimeValue.of(settings.getTimeToLive()))
+            .build())
+        .build();
+  }
+
+  /**
+   * Creates an HTTP client for HTTP/1.1 calls using the supplied connection pool. The client owns the connection pool.
+   *
+   * @param connectionManager the connection pool
+   * @param settings the HTTP client settings
+   * @return a {@link CloseableHttpClient}
+   */
+  private static CloseableHttpClient createHttpClient(
+      final PoolingHttpClientConnectionManager connectionManager, final IdmProperties.HttpClientProperties settings) {
+
+    final HttpClientBuilder httpClientBuilder = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.of(settings.getConnectionRequestTimeout()))
+            .setResponseTimeout(Timeout.of(settings.getResponseTimeout()))
+            .setConnectionKeepAlive(TimeValue.of(settings.getKeepAlive()))
+            .build())
+        .evictExpiredConnections()
+        .evictIdleConnections(TimeValue.of(settings.getKeepAlive()));
+    if (DevelopmentMode.isActive()) {
+      httpClientBuilder.disableRedirectHandling();
+    }
+    return httpClientBuilder.build();
+  }
+
+  /**
+   * Creates an HTTP client that uses HTTP/2 (with fallback to HTTP/1.1). Requests to the IdM server are multiplexed
+   * over a single connection, so no connection pool is used.
+   *
+   * @param sslContext the SSL context to use for TLS connections ({@code null} for the system default)
+   * @param settings the HTTP client settings
+   * @return a {@link java.net.http.HttpClient}
+   */
+  private static java.net.http.HttpClient createHttp2Client(
+      final SSLContext sslContext, final IdmProperties.HttpClientProperties settings) {
+
+    final java.net.http.HttpClient.Builder httpClientBuilder = java.net.http.HttpClient.newBuilder()
+        .version(java.net.http.HttpClient.Version.HTTP_2)
+        .connectTimeout(settings.getConnectTimeout())
+        .followRedirects(java.net.http.HttpClient.Redirect.NEVER);
+    if (sslContext != null) {
+      httpClientBuilder.sslContext(sslContext);
+    }
+    return httpClientBuilder.build();
+  }
+
+  private static SSLContext developmentModeSslContext() {
     try {
       // For this example we trust all SSL/TLS certs. DO NOT COPY AND USE IN PRODUCTION!
       //
       final TrustStrategy acceptingTrustStrategy = (cert, authType) -> true;
-      final SSLContext sslContext = SSLContexts.custom()
+      return SSLContexts.custom()
           .loadTrustMaterial(null, acceptingTrustStrategy)
           .build();
-      final SSLConnectionSocketFactory sslsf =
-          new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
-      final Registry<ConnectionSocketFactory> socketFactoryRegistry =
-          RegistryBuilder.<ConnectionSocketFactory> create()
-              .register("https", sslsf)
-              .register("http", new PlainConnectionSocketFactory())
-              .build();
-
-      final BasicHttpClientConnectionManager connectionManager =
-          new BasicHttpClientConnectionManager(socketFactoryRegistry);
-      final CloseableHttpClient httpClient = HttpClients.custom()
-          .setConnectionManager(connectionManager)
-          .disableRedirectHandling()
-          .build();
-
-      final HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
-      requestFactory.setHttpClient(httpClient);
-
-      return requestFactory;
     }
     catch (final Exception e) {
       throw new IllegalArgumentException("Failed to configure RestClient", e);
@@ -42,11 +42,41 @@ public interface IdmClient {
    * Tells whether the user identified by {@code token} has a record at the Identity Matching service.
    *
    * @param token the user authentication token
-   * @return {@code true} if the user has a record and {@code false otherwise}
+   * @return {@code true} if the user has a record and {@code false} otherwise
    * @throws IdmException for errors communicating with the Identity Matching service
    */
   boolean hasRecord(final EidasAuthenticationToken token) throws IdmException;
 
+  /**
+   * Tells whether the implementation supports {@link #hasRecord(String)}, i.e., checking for a record before the user
+   * authentication token is complete.
+   * <p>
+   * The default implementation returns {@code false}.
+   * </p>
+   *
+   * @return {@code true} if {@link #hasRecord(String)} is supported and {@code false} otherwise
+   */
+  default boolean supportsRecordCheckByPrid() {
+    return false;
+  }
+
+  /**
+   * Tells whether the user identified by {@code prid} has a record at the Identity Matching service. Used to check for
+   * a record before the user authentication token is complete. Should only be invoked if
+   * {@link #supportsRecordCheckByPrid()} returns {@code true}.
+   * <p>
+   * The default implementation throws {@link UnsupportedOperationException}.
+   * </p>
+   *
+   * @param prid the PRID of the user
+   * @return {@code true} if the user has a record and {@code false} otherwise
+   * @throws IdmException for errors communicating with the Identity Matching service
+   * @throws UnsupportedOperationException if the implementation does not support checks by PRID
+   */
+  default boolean hasRecord(final String prid) throws IdmException {
+    throw new UnsupportedOperationException("Record check by PRID is not supported");
+  }
+
   /**
    * The method will attempt to get the Identity Matching record for the authenticated user, and if a valid record
    * exists update the supplied token with attributes for the Swedish identity and information about the identity
@@ -58,4 +88,16 @@ public interface IdmClient {
    */
   IdmRecord getRecord(final EidasAuthenticationToken token) throws IdmException;
 
+  /**
+   * Invalidates any cached information about whether a user has an Identity Matching record. Invoked when the user is
+   * directed to the Identity Matching service, where records may be created or removed.
+   * <p>
+   * The default implementation does nothing.
+   * </p>
+   *
+   * @param prid the PRID of the user
+   */
+  default void invalidateCachedRecordStatus(final String prid) {
+  }
+
 }
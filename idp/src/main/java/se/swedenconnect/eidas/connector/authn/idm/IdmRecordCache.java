@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.idm;
+
+import se.swedenconnect.eidas.connector.cache.BoundedCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A bounded cache that remembers whether a user, identified by the PRID attribute, has an Identity Matching record.
+ * <p>
+ * Since most users do not have an IdM record, and those users will be queried each time they authenticate, "no record"
+ * results are cached as well as positive results. Positive and negative results have separate time-to-live settings.
+ * Entries are evicted when they have expired, or, in insertion order, when the cache has reached its maximum size.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class IdmRecordCache {
+
+  /** The default maximum number of entries. */
+  public static final int DEFAULT_MAX_SIZE = 10_000;
+
+  /** The default time-to-live for entries telling that a user has an IdM record. */
+  public static final Duration DEFAULT_POSITIVE_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+  /** The default time-to-live for entries telling that a user does not have an IdM record. */
+  public static final Duration DEFAULT_NEGATIVE_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+  /** The time-to-live for positive entries. */
+  private final Duration positiveTimeToLive;
+
+  /** The time-to-live for negative entries. */
+  private final Duration negativeTimeToLive;
+
+  /** The cached entries. */
+  private final BoundedCache<String, Boolean> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   * @param positiveTimeToLive the time-to-live for entries telling that a user has an IdM record
+   * @param negativeTimeToLive the time-to-live for entries telling that a user does not have an IdM record
+   */
+  public IdmRecordCache(final int maxSize, final Duration positiveTimeToLive, final Duration negativeTimeToLive) {
+    this(maxSize, positiveTimeToLive, negativeTimeToLive, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   * @param positiveTimeToLive the time-to-live for entries telling that a user has an IdM record
+   * @param negativeTimeToLive the time-to-live for entries telling that a user does not have an IdM record
+   * @param clock the clock to use when checking expiration
+   */
+  public IdmRecordCache(final int maxSize, final Duration positiveTimeToLive, final Duration negativeTimeToLive,
+      final Clock clock) {
+    this.positiveTimeToLive = Objects.requireNonNull(positiveTimeToLive, "positiveTimeToLive must not be null");
+    this.negativeTimeToLive = Objects.requireNonNull(negativeTimeToLive, "negativeTimeToLive must not be null");
+    if (this.positiveTimeToLive.toMillis() <= 0 || this.negativeTimeToLive.toMillis() <= 0) {
+      throw new IllegalArgumentException("time-to-live values must be positive");
+    }
+    this.cache = new BoundedCache<>(maxSize, clock);
+  }
+
+  /**
+   * Tells whether the given user has an IdM record.
+   *
+   * @param prid the PRID of the user
+   * @return {@link Boolean#TRUE} if the user has an IdM record, {@link Boolean#FALSE} if the user does not have a
+   *     record, and {@code null} if there is no (valid) cache entry for the user
+   */
+  public Boolean hasRecord(final String prid) {
+    return this.cache.get(prid);
+  }
+
+  /**
+   * Saves whether the given user has an IdM record.
+   *
+   * @param prid the PRID of the user
+   * @param hasRecord whether the user has an IdM record
+   */
+  public void put(final String prid, final boolean hasRecord) {
+    this.cache.put(Objects.requireNonNull(prid, "prid must not be null"), hasRecord,
+        hasRecord ? this.positiveTimeToLive : this.negativeTimeToLive);
+  }
+
+  /**
+   * Removes the entry for the given user.
+   *
+   * @param prid the PRID of the user
+   */
+  public void invalidate(final String prid) {
+    this.cache.remove(prid);
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void clear() {
+    this.cache.clear();
+  }
+
+  /**
+   * Gets the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return this.cache.size();
+  }
+
+  /**
+   * Gets the number of cache hits.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return this.cache.getHitCount();
+  }
+
+  /**
+   * Gets the number of cache misses.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return this.cache.getMissCount();
+  }
+
+}
@@ -44,6 +44,19 @@ public class NoopIdmClient implements IdmClient {
     return false;
   }
 
+  /**
+   * Returns {@code true}.
+   */
+  @Override
+  public boolean supportsRecordCheckByPrid() {
+    return true;
+  }
+
+  @Override
+  public boolean hasRecord(final String prid) {
+    return false;
+  }
+
   /**
    * Will always return {@code false}.
    */
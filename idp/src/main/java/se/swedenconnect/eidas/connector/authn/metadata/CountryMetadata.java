@@ -17,6 +17,7 @@ package se.swedenconnect.eidas.connector.authn.metadata;
 
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import se.swedenconnect.eidas.connector.authn.EidasAuthenticationProvider;
+import se.swedenconnect.eidas.connector.authn.sp.AuthnContextClassRefMapper;
 import se.swedenconnect.opensaml.eidas.common.EidasConstants;
 import se.swedenconnect.opensaml.sweid.saml2.authn.LevelOfAssuranceUris;
 
@@ -28,25 +29,41 @@ import java.util.Set;
 
 /**
  * Representation of a country.
+ * <p>
+ * All values that are derived from the metadata entry are calculated when the object is created, so that a
+ * {@code CountryMetadata} object is immutable and may be shared by several threads.
+ * </p>
  *
  * @author Martin Lindström
  */
 public class CountryMetadata implements Comparable<CountryMetadata> {
 
+  /** If the foreign IdP did not declare any URI:s we support anything since we can't know what is supported. */
+  private static final int ALL_SWEDISH_ASSURANCE_LEVELS = AuthnContextClassRefMapper.getSwedishUrisMask(List.of(
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF));
+
   /** The metadata entry for the country. */
   private final EntityDescriptor entityDescriptor;
 
   /** The ISO code for the country. */
-  private String countryCode;
+  private final String countryCode;
 
   /** The assurance levels. */
-  private List<String> assuranceLevels;
+  private final List<String> assuranceLevels;
 
-  /** The swedish LoA URI:s that are supported. */
-  private List<String> supportedSwedishAssuranceLevels;
+  /**
+   * The swedish LoA URI:s that are supported, represented as a bit mask (see
+   * {@link AuthnContextClassRefMapper#getSwedishUrisMask(java.util.Collection)}).
+   */
+  private final int supportedSwedishAssuranceLevels;
 
   /** Hide from discovery? */
-  private Boolean hideFromDiscovery;
+  private final boolean hideFromDiscovery;
 
   /**
    * Constructor.
@@ -55,6 +72,12 @@ public class CountryMetadata implements Comparable<CountryMetadata> {
    */
   public CountryMetadata(final EntityDescriptor entityDescriptor) {
     this.entityDescriptor = Objects.requireNonNull(entityDescriptor, "entityDescriptor must not be null");
+    this.countryCode = Optional.ofNullable(MetadataFunctions.getNodeCountry(this.entityDescriptor))
+        .map(String::toUpperCase)
+        .orElse(null);
+    this.assuranceLevels = List.copyOf(MetadataFunctions.getAssuranceLevels(this.entityDescriptor));
+    this.supportedSwedishAssuranceLevels = calculateSupportedSwedishAssuranceLevels(this.assuranceLevels);
+    this.hideFromDiscovery = MetadataFunctions.getHideFromDiscovery(this.entityDescriptor);
   }
 
   /**
@@ -72,12 +95,6 @@ public class CountryMetadata implements Comparable<CountryMetadata> {
    * @return the country code
    */
   public String getCountryCode() {
-    if (this.countryCode == null) {
-      this.countryCode = MetadataFunctions.getNodeCountry(this.entityDescriptor);
-      if (this.countryCode != null) {
-        this.countryCode = this.countryCode.toUpperCase();
-      }
-    }
     return this.countryCode;
   }
 
@@ -96,9 +113,6 @@ public class CountryMetadata implements Comparable<CountryMetadata> {
    * @return the assurance levels
    */
   public List<String> getAssuranceLevels() {
-    if (this.assuranceLevels == null) {
-      this.assuranceLevels = MetadataFunctions.getAssuranceLevels(this.entityDescriptor);
-    }
     return this.assuranceLevels;
   }
 
@@ -114,64 +128,50 @@ public class CountryMetadata implements Comparable<CountryMetadata> {
         || requestedAuthnContextClassRefs.contains(EidasAuthenticationProvider.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF)) {
       return true; // Special case
     }
-    final List<String> supported = this.getSupportedSwedishAssuranceLevels();
-    return requestedAuthnContextClassRefs.stream().anyMatch(supported::contains);
+    return (AuthnContextClassRefMapper.getSwedishUrisMask(requestedAuthnContextClassRefs)
+        & this.supportedSwedishAssuranceLevels) != 0;
   }
 
   /**
-   * Given the eIDAS assurance levels, this method tells which assurance levels Swedish assurance levels that are
-   * supported.
+   * Given the eIDAS assurance levels, this method calculates which Swedish assurance levels that are supported.
    *
-   * @return a list of URI:s
+   * @param idpLevels the eIDAS assurance levels declared by the country
+   * @return a bit mask of the supported Swedish URI:s
    */
-  private List<String> getSupportedSwedishAssuranceLevels() {
-    if (this.supportedSwedishAssuranceLevels == null) {
-      final Set<String> supported = new HashSet<>();
-      final List<String> idpLevels = this.getAssuranceLevels();
-      for (final String uri : idpLevels) {
-        if (EidasConstants.EIDAS_LOA_LOW.equals(uri)) {
-          supported.addAll(List.of(
-              LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW,
-              LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF));
-        }
-        else if (EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED.equals(uri)
-            || EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2.equals(uri)) {
-          supported.add(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW);
-        }
-        else if (EidasConstants.EIDAS_LOA_SUBSTANTIAL.equals(uri)) {
-          supported.addAll(List.of(
-              LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL,
-              LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF));
-        }
-        else if (EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED.equals(uri)
-            || EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2.equals(uri)) {
-          supported.add(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL);
-        }
-        else if (EidasConstants.EIDAS_LOA_HIGH.equals(uri)) {
-          supported.addAll(List.of(
-              LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH,
-              LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF));
-        }
-        else if (EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED.equals(uri)
-            || EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2.equals(uri)) {
-          supported.add(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH);
-        }
-      }
-      this.supportedSwedishAssuranceLevels = supported.stream().toList();
-
-      if (this.supportedSwedishAssuranceLevels.isEmpty()) {
-        // If there is no URI:s it must mean that the foreign IdP did not declare any URI:s.
-        // In these cases we support anything since we can't know what is supported.
-        this.supportedSwedishAssuranceLevels = List.of(
+  private static int calculateSupportedSwedishAssuranceLevels(final List<String> idpLevels) {
+    final Set<String> supported = new HashSet<>();
+    for (final String uri : idpLevels) {
+      if (EidasConstants.EIDAS_LOA_LOW.equals(uri)) {
+        supported.addAll(List.of(
             LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW,
-            LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF,
+            LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF));
+      }
+      else if (EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED.equals(uri)
+          || EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2.equals(uri)) {
+        supported.add(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW);
+      }
+      else if (EidasConstants.EIDAS_LOA_SUBSTANTIAL.equals(uri)) {
+        supported.addAll(List.of(
             LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL,
-            LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF,
+            LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF));
+      }
+      else if (EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED.equals(uri)
+          || EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2.equals(uri)) {
+        supported.add(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL);
+      }
+      else if (EidasConstants.EIDAS_LOA_HIGH.equals(uri)) {
+        supported.addAll(List.of(
             LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH,
-            LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF);
+            LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF));
+      }
+      else if (EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED.equals(uri)
+          || EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2.equals(uri)) {
+        supported.add(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH);
       }
     }
-    return this.supportedSwedishAssuranceLevels;
+    return supported.isEmpty()
+        ? ALL_SWEDISH_ASSURANCE_LEVELS
+        : AuthnContextClassRefMapper.getSwedishUrisMask(supported);
   }
 
   /**
@@ -180,9 +180,6 @@ public class CountryMetadata implements Comparable<CountryMetadata> {
    * @return {@code true} if the country should be hidden from discovery and {@code false} otherwise
    */
   public boolean isHideFromDiscovery() {
-    if (this.hideFromDiscovery == null) {
-      this.hideFromDiscovery = MetadataFunctions.getHideFromDiscovery(this.entityDescriptor);
-    }
     return this.hideFromDiscovery;
   }
 
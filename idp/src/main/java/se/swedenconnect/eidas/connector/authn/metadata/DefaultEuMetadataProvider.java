@@ -23,35 +23,45 @@ import org.springframework.context.ApplicationEventPublisher;
 import se.swedenconnect.eidas.connector.events.EuMetadataEvent;
 import se.swedenconnect.opensaml.saml2.metadata.provider.MetadataProvider;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Default implementation of the {@link EuMetadataProvider} interface.
+ * <p>
+ * The country index is an immutable snapshot that is read without any locking. The snapshot is re-built by
+ * {@link #refreshIndex()}, that is invoked periodically (see {@link #scheduledRefreshIndex()}) and re-indexes the
+ * countries only if the underlying metadata provider reports that its metadata has been updated. This means that
+ * request threads never have to wait for indexing, or for the publishing of {@link EuMetadataEvent}s.
+ * </p>
  *
  * @author Martin Lindström
  */
 @Slf4j
 public class DefaultEuMetadataProvider implements EuMetadataProvider, InitializingBean {
 
+  /** The default interval for checking whether the underlying metadata provider has been updated. */
+  public static final Duration DEFAULT_INDEX_REFRESH_INTERVAL = Duration.ofSeconds(10);
+
   /** The underlying metadata provider. */
   private final MetadataProvider provider;
 
   /** The system event publisher. */
   private final ApplicationEventPublisher publisher;
 
-  /** An index of country codes and their respective entity descriptors. */
-  private Map<String, CountryMetadata> countries = Collections.emptyMap();
+  /** The current country index. Is {@code null} before the first indexing. */
+  private final AtomicReference<CountryIndex> index = new AtomicReference<>();
 
-  /** The last time the country list was indexed. */
-  private Instant countryIndexingTime = Instant.ofEpochMilli(0L);
+  /** The interval for checking whether the underlying metadata provider has been updated. */
+  private Duration indexRefreshInterval = DEFAULT_INDEX_REFRESH_INTERVAL;
 
   /**
    * Constructor.
@@ -64,6 +74,28 @@ public class DefaultEuMetadataProvider implements EuMetadataProvider, Initializi
     this.publisher = Objects.requireNonNull(publisher, "publisher must not be null");
   }
 
+  /**
+   * Assigns the interval for checking whether the underlying metadata provider has been updated (see
+   * {@link #scheduledRefreshIndex()}). The default is {@link #DEFAULT_INDEX_REFRESH_INTERVAL}.
+   *
+   * @param indexRefreshInterval the interval
+   */
+  public void setIndexRefreshInterval(final Duration indexRefreshInterval) {
+    if (!Objects.requireNonNull(indexRefreshInterval, "indexRefreshInterval must not be null").isPositive()) {
+      throw new IllegalArgumentException("indexRefreshInterval must be positive");
+    }
+    this.indexRefreshInterval = indexRefreshInterval;
+  }
+
+  /**
+   * Gets the interval for checking whether the underlying metadata provider has been updated.
+   *
+   * @return the interval
+   */
+  public Duration getIndexRefreshInterval() {
+    return this.indexRefreshInterval;
+  }
+
   /** {@inheritDoc} */
   @Override
   public MetadataProvider getProvider() {
@@ -73,7 +105,7 @@ public class DefaultEuMetadataProvider implements EuMetadataProvider, Initializi
   /** {@inheritDoc} */
   @Override
   public CountryMetadata getCountry(final String countryCode) {
-    return this.getCountryMap().get(Optional.ofNullable(countryCode).map(String::toUpperCase).orElse(""));
+    return this.getIndex().countries().get(Optional.ofNullable(countryCode).map(String::toUpperCase).orElse(""));
   }
 
   /** {@inheritDoc} */
@@ -87,14 +119,12 @@ public class DefaultEuMetadataProvider implements EuMetadataProvider, Initializi
   /** {@inheritDoc} */
   @Override
   public List<CountryMetadata> getCountries(final List<String> requestedCountries) {
-    final Collection<CountryMetadata> availableCountries = this.getCountryMap().values();
+    final CountryIndex current = this.getIndex();
     if (requestedCountries == null || requestedCountries.isEmpty()) {
-      return availableCountries.stream()
-          .filter(c -> !c.isHideFromDiscovery())
-          .toList();
+      return current.discoverable();
     }
     else {
-      return availableCountries.stream()
+      return current.all().stream()
           .filter(c -> requestedCountries.stream()
               .anyMatch(r -> r.equalsIgnoreCase(c.getCountryCode())))
           .toList();
@@ -104,71 +134,129 @@ public class DefaultEuMetadataProvider implements EuMetadataProvider, Initializi
   /** {@inheritDoc} */
   @Override
   public List<CountryMetadata> getAllCountries() {
-    return this.getCountryMap().values().stream().toList();
+    return this.getIndex().all();
   }
 
-  private synchronized Map<String, CountryMetadata> getCountryMap() {
-    if (Optional.ofNullable(this.provider.getLastUpdate()).orElseGet(Instant::now)
-        .isAfter(this.countryIndexingTime)) {
-      try {
-        final List<String> eventInfo = new ArrayList<>();
-        final Map<String, CountryMetadata> cm = new HashMap<>();
-        for (final EntityDescriptor ed : this.provider.getIdentityProviders()) {
-          final CountryMetadata c = new CountryMetadata(ed);
-          final String countryCode = c.getCountryCode();
-          if (countryCode != null) {
-            cm.put(countryCode, c);
-          }
-          else {
-            final String info =
-                "Found IdP '%s' in EU metadata that does not have NodeCountry extension".formatted(ed.getEntityID());
-            log.error("{}", info);
-            eventInfo.add(info);
-          }
-        }
-        if (this.countries.isEmpty() && !cm.isEmpty()) {
-          eventInfo.add("Initial load of EU metadata");
-        }
-        final List<String> removedCountries = this.countries.values().stream()
-            .map(CountryMetadata::getCountryCode)
-            .filter(countryCode -> !cm.containsKey(countryCode))
-            .toList();
-        final List<String> addedCountries = cm.values().stream()
-            .map(CountryMetadata::getCountryCode)
-            .filter(countryCode -> !this.countries.containsKey(countryCode))
-            .toList();
-
-        if (!removedCountries.isEmpty() || !addedCountries.isEmpty()) {
-          if (!this.countries.isEmpty()) {
-            log.info("EU metadata was updated - added: {} removed: {}", addedCountries, removedCountries);
-          }
+  /**
+   * Periodically checks whether the underlying metadata provider has been updated, and if so, re-builds the country
+   * index. Should be scheduled with a fixed delay of {@link #getIndexRefreshInterval()}.
+   */
+  public void scheduledRefreshIndex() {
+    this.refreshIndex();
+  }
+
+  /**
+   * Re-builds the country index if the underlying metadata provider has been updated since the last indexing (or if no
+   * indexing has been made). Readers are not blocked during the re-build, they will see the previous index until the
+   * new one has been published.
+   */
+  public synchronized void refreshIndex() {
+    final CountryIndex current = this.index.get();
+    if (current != null && !Optional.ofNullable(this.provider.getLastUpdate()).orElseGet(Instant::now)
+        .isAfter(current.indexingTime())) {
+      return;
+    }
+    final Map<String, CountryMetadata> previous = Optional.ofNullable(current)
+        .map(CountryIndex::countries)
+        .orElseGet(Collections::emptyMap);
+    try {
+      final List<String> eventInfo = new ArrayList<>();
+      final Map<String, CountryMetadata> cm = new HashMap<>();
+      for (final EntityDescriptor ed : this.provider.getIdentityProviders()) {
+        final CountryMetadata c = new CountryMetadata(ed);
+        final String countryCode = c.getCountryCode();
+        if (countryCode != null) {
+          cm.put(countryCode, c);
         }
         else {
-          log.debug("EU metadata was updated - no changed countries");
+          final String info =
+              "Found IdP '%s' in EU metadata that does not have NodeCountry extension".formatted(ed.getEntityID());
+          log.error("{}", info);
+          eventInfo.add(info);
         }
+      }
+      if (previous.isEmpty() && !cm.isEmpty()) {
+        eventInfo.add("Initial load of EU metadata");
+      }
+      final List<String> removedCountries = previous.values().stream()
+          .map(CountryMetadata::getCountryCode)
+          .filter(countryCode -> !cm.containsKey(countryCode))
+          .toList();
+      final List<String> addedCountries = cm.values().stream()
+          .map(CountryMetadata::getCountryCode)
+          .filter(countryCode -> !previous.containsKey(countryCode))
+          .toList();
 
-        final EuMetadataEvent event = new EuMetadataEvent(Instant.now(), removedCountries, addedCountries);
-        if (!eventInfo.isEmpty()) {
-          event.addInformation(String.join(";", eventInfo));
+      if (!removedCountries.isEmpty() || !addedCountries.isEmpty()) {
+        if (!previous.isEmpty()) {
+          log.info("EU metadata was updated - added: {} removed: {}", addedCountries, removedCountries);
         }
-        this.publisher.publishEvent(event);
+      }
+      else {
+        log.debug("EU metadata was updated - no changed countries");
+      }
+
+      // Publish the new index before the event is sent, so that listeners see the updated country list ...
+      //
+      this.index.set(CountryIndex.of(cm, Instant.now()));
 
-        this.countries = cm;
-        this.countryIndexingTime = Instant.now();
+      final EuMetadataEvent event = new EuMetadataEvent(Instant.now(), removedCountries, addedCountries);
+      if (!eventInfo.isEmpty()) {
+        event.addInformation(String.join(";", eventInfo));
       }
-      catch (final ResolverException e) {
-        log.error("Failed to list metadata from {}", this.provider.getID(), e);
-        this.publisher.publishEvent(new EuMetadataEvent(Instant.now(), e));
+      this.publisher.publishEvent(event);
+    }
+    catch (final ResolverException e) {
+      log.error("Failed to list metadata from {}", this.provider.getID(), e);
+      if (current == null) {
+        // Make sure that readers have something to read. The next scheduled refresh will try again.
+        this.index.compareAndSet(null, CountryIndex.of(Collections.emptyMap(), Instant.ofEpochMilli(0L)));
       }
+      this.publisher.publishEvent(new EuMetadataEvent(Instant.now(), e));
     }
-    return this.countries;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Gets the current country index. Only if no index has been built yet (i.e., before the bean has been initialized)
+   * will the index be built by the calling thread.
+   *
+   * @return the current {@link CountryIndex}
+   */
+  private CountryIndex getIndex() {
+    final CountryIndex current = this.index.get();
+    if (current != null) {
+      return current;
+    }
+    this.refreshIndex();
+    return this.index.get();
+  }
+
+  /**
+   * Performs the initial indexing of the EU metadata.
+   */
   @Override
   public void afterPropertiesSet() {
+    this.refreshIndex();
     log.info("Initial contents of EU metadata: {}",
         this.getCountries().stream().map(CountryMetadata::getCountryCode).toList());
   }
 
+  /**
+   * Immutable snapshot of the indexed countries.
+   *
+   * @param countries country codes mapped to their metadata
+   * @param all all countries
+   * @param discoverable the countries that are not marked as "hide from discovery"
+   * @param indexingTime the time when the index was built
+   */
+  private record CountryIndex(Map<String, CountryMetadata> countries, List<CountryMetadata> all,
+      List<CountryMetadata> discoverable, Instant indexingTime) {
+
+    static CountryIndex of(final Map<String, CountryMetadata> countries, final Instant indexingTime) {
+      final List<CountryMetadata> all = List.copyOf(countries.values());
+      return new CountryIndex(Collections.unmodifiableMap(countries), all,
+          all.stream().filter(c -> !c.isHideFromDiscovery()).toList(), indexingTime);
+    }
+  }
+
 }
@@ -28,13 +28,18 @@ import se.swedenconnect.spring.saml.idp.error.Saml2ErrorStatusException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.function.Function;
+import java.util.Map;
 
 /**
  * Handles mappings between eIDAS and Swedish AuthnContextClassRef URI:s.
+ * <p>
+ * The requested Swedish URI:s and the supported eIDAS URI:s are represented as bit masks, and all possible outcomes
+ * are calculated once (when the class is loaded) and stored in decision tables indexed by these masks. This means that
+ * a mapping only involves calculating the masks and a table lookup.
+ * </p>
  *
  * @author Martin Lindström
  */
@@ -44,6 +49,18 @@ public class AuthnContextClassRefMapper {
   /** Special purpose AuthnContext Class Ref for eIDAS test. */
   public static final String EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF = "http://eidas.europa.eu/LoA/test";
 
+  /**
+   * Decision table for requested AuthnContext calculation. Indexed by the requested Swedish URI:s mask and the
+   * supported eIDAS URI:s mask. A {@code null} entry means that there is no match.
+   */
+  private static final RequestedAuthnContextTemplate[][] DECISION_TABLE = buildDecisionTable();
+
+  /**
+   * Decision table for mapping a received eIDAS URI into a Swedish URI. Indexed by the eIDAS URI index (see
+   * {@link EidasUris#toIndex(String)}) and the requested Swedish URI:s mask.
+   */
+  private static final String[][] RETURN_URI_TABLE = buildReturnUriTable();
+
   /**
    * Based on the AuthnContextClassRef URI:s supported by a foreign IdP and the AuthnContextClassRef URI:s requsted by a
    * Swedish SP the method returns the {@link RequestedAuthnContext} element.
@@ -57,10 +74,16 @@ public class AuthnContextClassRefMapper {
       final List<String> supportedEidasUris, final List<String> requestedSwedishUris)
       throws Saml2ErrorStatusException {
 
-    final SwedishRequestedUris requested = new SwedishRequestedUris(requestedSwedishUris);
-    final EidasUris supported = new EidasUris(supportedEidasUris);
+    final RequestedAuthnContextTemplate template = DECISION_TABLE[SwedishRequestedUris.toMask(requestedSwedishUris)]
+        [EidasUris.toMask(supportedEidasUris)];
 
-    return supported.getRequestedAuthnContext(requested);
+    if (template == null) {
+      // We should never end up here since a country should not be selectable if canAuthenticate
+      // returns false. But we need to handle this ...
+      //
+      throw new Saml2ErrorStatusException(Saml2ErrorStatus.NO_AUTHN_CONTEXT);
+    }
+    return template.createRequestedAuthnContext();
   }
 
   /**
@@ -69,15 +92,29 @@ public class AuthnContextClassRefMapper {
    *
    * @param supportedEidasUris the AuthnContextClassRef URI:s supported by the foreign IdP
    * @param requestedSwedishUris the AuthnContextClassRef URI:s requsted by the Swedish SP
-   * @return {@code true} if authentication can be done and {@code false} otherwise
+   * @return {@code true} if authentication can be done and {@code false} otherwise
    */
   public static boolean canAuthenticate(
       final List<String> supportedEidasUris, final List<String> requestedSwedishUris) {
 
-    final SwedishRequestedUris requested = new SwedishRequestedUris(requestedSwedishUris);
-    final EidasUris supported = new EidasUris(supportedEidasUris);
+    return DECISION_TABLE[SwedishRequestedUris.toMask(requestedSwedishUris)]
+        [EidasUris.toMask(supportedEidasUris)] != null;
+  }
 
-    return supported.canAuthenticate(requested);
+  /**
+   * Gets a bit mask representing the supplied Swedish AuthnContextClassRef URI:s. The mask uses the same flags as is
+   * used internally by the mapper when calculating matches, so two masks can be compared using a simple AND. Unknown
+   * URI:s are ignored.
+   *
+   * @param swedishUris the Swedish AuthnContextClassRef URI:s
+   * @return a bit mask where each supported URI is represented by a flag
+   */
+  public static int getSwedishUrisMask(final Collection<String> swedishUris) {
+    int mask = 0;
+    for (final String uri : swedishUris) {
+      mask |= SwedishRequestedUris.toFlag(uri);
+    }
+    return mask;
   }
 
   /**
@@ -100,47 +137,17 @@ public class AuthnContextClassRefMapper {
       return EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF;
     }
 
-    final SwedishRequestedUris requested = new SwedishRequestedUris(requestedSwedishUris);
-    final List<Function<SwedishRequestedUris, String>> mappings =
-        switch (eidasUri) {
-          case EidasConstants.EIDAS_LOA_HIGH -> List.of(
-              SwedishRequestedUris::getHighNotified,
-              SwedishRequestedUris::getHighNotifiedAcceptsNn,
-              SwedishRequestedUris::getSubstantialNotified,
-              SwedishRequestedUris::getSubstantialAcceptsNn,
-              SwedishRequestedUris::getLowNotified,
-              SwedishRequestedUris::getLowAcceptsNn);
-          case EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED, EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2 -> List.of(
-              SwedishRequestedUris::getHighNotifiedAcceptsNn,
-              SwedishRequestedUris::getSubstantialAcceptsNn,
-              SwedishRequestedUris::getLowAcceptsNn);
-          case EidasConstants.EIDAS_LOA_SUBSTANTIAL -> List.of(
-              SwedishRequestedUris::getSubstantialNotified,
-              SwedishRequestedUris::getSubstantialAcceptsNn,
-              SwedishRequestedUris::getLowNotified,
-              SwedishRequestedUris::getLowAcceptsNn);
-          case EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED, EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2 ->
-              List.of(
-                  SwedishRequestedUris::getSubstantialAcceptsNn,
-                  SwedishRequestedUris::getLowAcceptsNn);
-          case EidasConstants.EIDAS_LOA_LOW -> List.of(
-              SwedishRequestedUris::getLowNotified,
-              SwedishRequestedUris::getLowAcceptsNn);
-          case EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED, EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2 -> List.of(
-              SwedishRequestedUris::getLowAcceptsNn);
-          case null, default -> Collections.emptyList();
-        };
-
-    return mappings.stream()
-        .map(f -> f.apply(requested))
-        .filter(Objects::nonNull)
-        .findFirst()
-        .orElseThrow(() -> {
-          final String msg = "Could not map %s to any of the requested AuthnContext URI:s %s"
-              .formatted(eidasUri, requestedSwedishUris);
-          log.error(msg);
-          return new Saml2ErrorStatusException(Saml2ErrorStatus.NO_AUTHN_CONTEXT, msg);
-        });
+    final int eidasIndex = EidasUris.toIndex(eidasUri);
+    final String uri = eidasIndex >= 0
+        ? RETURN_URI_TABLE[eidasIndex][SwedishRequestedUris.toMask(requestedSwedishUris)]
+        : null;
+    if (uri == null) {
+      final String msg = "Could not map %s to any of the requested AuthnContext URI:s %s"
+          .formatted(eidasUri, requestedSwedishUris);
+      log.error(msg);
+      throw new Saml2ErrorStatusException(Saml2ErrorStatus.NO_AUTHN_CONTEXT, msg);
+    }
+    return uri;
   }
 
   /**
@@ -231,6 +238,60 @@ public class AuthnContextClassRefMapper {
     }
   }
 
+  /**
+   * Builds the decision table for all combinations of requested Swedish URI:s and supported eIDAS URI:s.
+   *
+   * @return the decision table
+   */
+  private static RequestedAuthnContextTemplate[][] buildDecisionTable() {
+    // Many combinations give the same result, so we let them share the same template ...
+    final Map<RequestedAuthnContextTemplate, RequestedAuthnContextTemplate> templates = new HashMap<>();
+
+    final RequestedAuthnContextTemplate[][] table =
+        new RequestedAuthnContextTemplate[SwedishRequestedUris.MASK_SIZE][EidasUris.MASK_SIZE];
+    for (int requested = 0; requested < SwedishRequestedUris.MASK_SIZE; requested++) {
+      for (int supported = 0; supported < EidasUris.MASK_SIZE; supported++) {
+        final RequestedAuthnContextTemplate template =
+            EidasUris.toTemplate(EidasUris.match((byte) requested, (byte) supported));
+        table[requested][supported] = template != null ? templates.computeIfAbsent(template, t -> t) : null;
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Builds the decision table for mapping received eIDAS URI:s into Swedish URI:s.
+   *
+   * @return the decision table
+   */
+  private static String[][] buildReturnUriTable() {
+    final String[][] table = new String[EidasUris.INDEX_SIZE][SwedishRequestedUris.MASK_SIZE];
+    for (int eidasIndex = 0; eidasIndex < EidasUris.INDEX_SIZE; eidasIndex++) {
+      final byte[] mappings = switch (eidasIndex) {
+        case EidasUris.INDEX_HIGH -> new byte[] { SwedishRequestedUris.HIGH_NF, SwedishRequestedUris.HIGH_NF_NN,
+            SwedishRequestedUris.SUB_NF, SwedishRequestedUris.SUB_NF_NN,
+            SwedishRequestedUris.LOW_NF, SwedishRequestedUris.LOW_NF_NN };
+        case EidasUris.INDEX_HIGH_NN -> new byte[] { SwedishRequestedUris.HIGH_NF_NN, SwedishRequestedUris.SUB_NF_NN,
+            SwedishRequestedUris.LOW_NF_NN };
+        case EidasUris.INDEX_SUB -> new byte[] { SwedishRequestedUris.SUB_NF, SwedishRequestedUris.SUB_NF_NN,
+            SwedishRequestedUris.LOW_NF, SwedishRequestedUris.LOW_NF_NN };
+        case EidasUris.INDEX_SUB_NN -> new byte[] { SwedishRequestedUris.SUB_NF_NN, SwedishRequestedUris.LOW_NF_NN };
+        case EidasUris.INDEX_LOW -> new byte[] { SwedishRequestedUris.LOW_NF, SwedishRequestedUris.LOW_NF_NN };
+        case EidasUris.INDEX_LOW_NN -> new byte[] { SwedishRequestedUris.LOW_NF_NN };
+        default -> new byte[0];
+      };
+      for (int requested = 0; requested < SwedishRequestedUris.MASK_SIZE; requested++) {
+        for (final byte flag : mappings) {
+          if ((requested & flag) == flag) {
+            table[eidasIndex][requested] = SwedishRequestedUris.toUri(flag);
+            break;
+          }
+        }
+      }
+    }
+    return table;
+  }
+
   /**
    * Representation of requested Swedish AuthnContextClassRef URI:s.
    * <p>
@@ -260,156 +321,72 @@ public class AuthnContextClassRefMapper {
     /** Low notified. */
     private static final byte LOW_NF_NN = 0b00000001;
 
-    /** The representation of requested URI:s. */
-    private byte requested = 0b0;
+    /** All non-test flags. */
+    private static final byte ALL = HIGH_NF | HIGH_NF_NN | SUB_NF | SUB_NF_NN | LOW_NF | LOW_NF_NN;
+
+    /** The number of possible masks. */
+    private static final int MASK_SIZE = TEST << 1;
 
     /**
-     * Constructor.
+     * Calculates the mask for the requested URI:s.
      *
      * @param requestedUris a list of the requested URI:s
+     * @return the mask
      */
-    public SwedishRequestedUris(final List<String> requestedUris) {
+    public static int toMask(final List<String> requestedUris) {
       if (requestedUris.contains(EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF)) {
-        this.requested = TEST;
+        return TEST;
       }
       else if (requestedUris.isEmpty()) {
         // Nothing specified - allow all
-        this.requested = HIGH_NF | HIGH_NF_NN | SUB_NF | SUB_NF_NN | LOW_NF | LOW_NF_NN;
+        return ALL;
       }
       else {
+        int requested = 0b0;
         for (final String uri : requestedUris) {
-          this.requested |= switch (uri) {
-            case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF -> HIGH_NF;
-            case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH -> HIGH_NF_NN;
-            case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF -> SUB_NF;
-            case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL -> SUB_NF_NN;
-            case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF -> LOW_NF;
-            case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW -> LOW_NF_NN;
-            default -> 0b0;
-          };
+          requested |= toFlag(uri);
         }
+        return requested;
       }
     }
 
     /**
-     * Predicate telling whether the test URI is specified
-     *
-     * @return whether the test URI is specified
-     */
-    public boolean isTestUri() {
-      return this.test(TEST);
-    }
-
-    /**
-     * Predicate telling whether high notified is requested.
-     *
-     * @return whether high notified is requested
-     */
-    public boolean highNotified() {
-      return this.test(HIGH_NF);
-    }
-
-    /**
-     * Gets the URI for high notified if set, else {@code null}
-     *
-     * @return the URI for high notified if set, else {@code null}
-     */
-    public String getHighNotified() {
-      return this.highNotified() ? LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF : null;
-    }
-
-    /**
-     * Predicate telling whether high notified or non-notified is requested
-     *
-     * @return whether high notified or non-notified is requested
-     */
-    public boolean highAcceptsNn() {
-      return this.test(HIGH_NF_NN);
-    }
-
-    /**
-     * Gets the URI for high notified accepting non-notified if set, else {@code null}
+     * Maps a Swedish URI to its flag.
      *
-     * @return the URI for high notified accepting non-notified if set, else {@code null}
+     * @param uri the URI
+     * @return the flag for the URI, or 0 if the URI is not known
      */
-    public String getHighNotifiedAcceptsNn() {
-      return this.highAcceptsNn() ? LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH : null;
+    public static byte toFlag(final String uri) {
+      return switch (uri) {
+        case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF -> HIGH_NF;
+        case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH -> HIGH_NF_NN;
+        case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF -> SUB_NF;
+        case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL -> SUB_NF_NN;
+        case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF -> LOW_NF;
+        case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW -> LOW_NF_NN;
+        case null, default -> 0b0;
+      };
     }
 
     /**
-     * Predicate telling whether substantial notified is requested.
+     * Maps a flag to its Swedish URI.
      *
-     * @return whether substantial notified is requested
+     * @param flag the flag
+     * @return the URI, or {@code null} if the flag does not represent a Swedish URI
      */
-    public boolean substantialNotified() {
-      return this.test(SUB_NF);
+    public static String toUri(final byte flag) {
+      return switch (flag) {
+        case HIGH_NF -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF;
+        case HIGH_NF_NN -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH;
+        case SUB_NF -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF;
+        case SUB_NF_NN -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL;
+        case LOW_NF -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF;
+        case LOW_NF_NN -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW;
+        default -> null;
+      };
     }
 
-    /**
-     * Gets the URI for substantial notified if set, else {@code null}
-     *
-     * @return the URI for substantial notified if set, else {@code null}
-     */
-    public String getSubstantialNotified() {
-      return this.substantialNotified() ? LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF : null;
-    }
-
-    /**
-     * Predicate telling whether substantial notified or non-notified is requested
-     *
-     * @return whether substantial notified or non-notified is requested
-     */
-    public boolean substantialAcceptsNn() {
-      return this.test(SUB_NF_NN);
-    }
-
-    /**
-     * Gets the URI for substantial notified accepting non-notified if set, else {@code null}
-     *
-     * @return the URI for substantial notified accepting non-notified if set, else {@code null}
-     */
-    public String getSubstantialAcceptsNn() {
-      return this.substantialAcceptsNn() ? LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL : null;
-    }
-
-    /**
-     * Predicate telling whether low notified is requested.
-     *
-     * @return whether low notified is requested
-     */
-    public boolean lowNotified() {
-      return this.test(LOW_NF);
-    }
-
-    /**
-     * Gets the URI for low notified if set, else {@code null}
-     *
-     * @return the URI for low notified if set, else {@code null}
-     */
-    public String getLowNotified() {
-      return this.lowNotified() ? LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF : null;
-    }
-
-    /**
-     * Predicate telling whether low notified or non-notified is requested
-     *
-     * @return whether low notified or non-notified is requested
-     */
-    public boolean lowAcceptsNn() {
-      return this.test(LOW_NF_NN);
-    }
-
-    /**
-     * Gets the URI for low notified accepting non-notified if set, else {@code null}
-     *
-     * @return the URI for low notified accepting non-notified if set, else {@code null}
-     */
-    public String getLowAcceptsNn() {
-      return this.lowAcceptsNn() ? LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW : null;
-    }
-
-    private boolean test(final int value) {
-      return (this.requested & value) == value;
+    private SwedishRequestedUris() {
     }
 
   }
@@ -442,8 +419,29 @@ public class AuthnContextClassRefMapper {
     /** For checking if any non-notified are set. */
     private static final byte EIDAS_NN = 0b00000111;
 
-    /** Represents the supported URI:s. */
-    private byte supported = 0b0;
+    /** The number of possible masks. */
+    private static final int MASK_SIZE = EIDAS_HIGH << 1;
+
+    /** Index for high notified (used for the return URI table). */
+    private static final int INDEX_HIGH = 0;
+
+    /** Index for high non-notified (used for the return URI table). */
+    private static final int INDEX_HIGH_NN = 1;
+
+    /** Index for substantial notified (used for the return URI table). */
+    private static final int INDEX_SUB = 2;
+
+    /** Index for substantial non-notified (used for the return URI table). */
+    private static final int INDEX_SUB_NN = 3;
+
+    /** Index for low notified (used for the return URI table). */
+    private static final int INDEX_LOW = 4;
+
+    /** Index for low non-notified (used for the return URI table). */
+    private static final int INDEX_LOW_NN = 5;
+
+    /** The number of indexes. */
+    private static final int INDEX_SIZE = 6;
 
     /** An array of all URI:s and their byte values. */
     private static final Uri[] uris = {
@@ -457,14 +455,15 @@ public class AuthnContextClassRefMapper {
     };
 
     /**
-     * Constructor.
+     * Calculates the mask for the supported URI:s.
      *
      * @param supportedUris a list of the supported AuthnContextClassRef URI:s
+     * @return the mask
      */
-    public EidasUris(final List<String> supportedUris) {
-
+    public static int toMask(final List<String> supportedUris) {
+      int supported = 0b0;
       for (final String uri : supportedUris) {
-        this.supported |= switch (uri) {
+        supported |= switch (uri) {
           case EidasConstants.EIDAS_LOA_HIGH -> EIDAS_HIGH;
           case EidasConstants.EIDAS_LOA_SUBSTANTIAL -> EIDAS_SUB;
           case EidasConstants.EIDAS_LOA_LOW -> EIDAS_LOW;
@@ -475,52 +474,49 @@ public class AuthnContextClassRefMapper {
           default -> 0b0;
         };
       }
+      return supported;
     }
 
     /**
-     * Predicate that tells whether the supplied URI:s match the supported, i.e., whether an authentication is
-     * possible.
+     * Maps an eIDAS URI to its index in the return URI table.
      *
-     * @param requested the requested Swedish URI:s
-     * @return {@code true} if authentication is possible and {@code false} otherwise
+     * @param uri the eIDAS URI
+     * @return the index, or -1 if the URI is not known
      */
-    public boolean canAuthenticate(final SwedishRequestedUris requested) {
-      return this.getRequestedAuthnContextMatch(requested).value() != 0;
+    public static int toIndex(final String uri) {
+      return switch (uri) {
+        case EidasConstants.EIDAS_LOA_HIGH -> INDEX_HIGH;
+        case EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED, EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2 -> INDEX_HIGH_NN;
+        case EidasConstants.EIDAS_LOA_SUBSTANTIAL -> INDEX_SUB;
+        case EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED, EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2 ->
+            INDEX_SUB_NN;
+        case EidasConstants.EIDAS_LOA_LOW -> INDEX_LOW;
+        case EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED, EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2 -> INDEX_LOW_NN;
+        case null, default -> -1;
+      };
     }
 
     /**
-     * Based on the requested Swedish AuthnContectClassRef URI:s the method calculates which eIDAS URI:s that should be
-     * included as a {@link RequestedAuthnContext} element in the request.
+     * Based on a match result, the method calculates which eIDAS URI:s that should be included in a
+     * {@link RequestedAuthnContext} element.
      *
-     * @param requested the requested Swedish URI:s
-     * @return {@link RequestedAuthnContext}
-     * @throws Saml2ErrorStatusException if no match is found
+     * @param result the match result
+     * @return a template for the {@link RequestedAuthnContext}, or {@code null} if there is no match
      */
-    public RequestedAuthnContext getRequestedAuthnContext(final SwedishRequestedUris requested)
-        throws Saml2ErrorStatusException {
-
-      final MatchResult result = this.getRequestedAuthnContextMatch(requested);
+    public static RequestedAuthnContextTemplate toTemplate(final MatchResult result) {
       if (result.value() == 0) {
-        // We should never end up here since a country should not be selectable if canAuthenticate
-        // returns false. But we need to handle this ...
-        //
-        throw new Saml2ErrorStatusException(Saml2ErrorStatus.NO_AUTHN_CONTEXT);
+        return null;
       }
-
       if ((result.value() & SwedishRequestedUris.TEST) == SwedishRequestedUris.TEST) {
-        return RequestedAuthnContextBuilder.builder()
-            .comparison(AuthnContextComparisonTypeEnumeration.EXACT)
-            .authnContextClassRefs(AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF)
-            .build();
+        return new RequestedAuthnContextTemplate(AuthnContextComparisonTypeEnumeration.EXACT,
+            List.of(AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF));
       }
       if (result.comparison() == AuthnContextComparisonTypeEnumeration.EXACT) {
-        return RequestedAuthnContextBuilder.builder()
-            .comparison(AuthnContextComparisonTypeEnumeration.EXACT)
-            .authnContextClassRefs(Arrays.stream(uris)
+        return new RequestedAuthnContextTemplate(AuthnContextComparisonTypeEnumeration.EXACT,
+            Arrays.stream(uris)
                 .filter(u -> (result.value() & u.value()) == u.value())
                 .map(Uri::uri)
-                .toList())
-            .build();
+                .toList());
       }
       else {
         final String uri = (result.value() & EIDAS_LOW) == EIDAS_LOW
@@ -529,14 +525,18 @@ public class AuthnContextClassRefMapper {
                 ? EidasConstants.EIDAS_LOA_SUBSTANTIAL
                 : EidasConstants.EIDAS_LOA_HIGH;
 
-        return RequestedAuthnContextBuilder.builder()
-            .comparison(AuthnContextComparisonTypeEnumeration.MINIMUM)
-            .authnContextClassRefs(uri)
-            .build();
+        return new RequestedAuthnContextTemplate(AuthnContextComparisonTypeEnumeration.MINIMUM, List.of(uri));
       }
     }
 
-    private MatchResult getRequestedAuthnContextMatch(final SwedishRequestedUris requested) {
+    /**
+     * Calculates the match between the requested Swedish URI:s and the supported eIDAS URI:s.
+     *
+     * @param requested the requested Swedish URI:s mask
+     * @param supported the supported eIDAS URI:s mask
+     * @return a {@link MatchResult}
+     */
+    public static MatchResult match(final byte requested, final byte supported) {
 
       // Represents the minimum matching URI:s. Only the lowest will be used if no non-notified are present.
       byte minimumMatching = 0b0;
@@ -544,38 +544,38 @@ public class AuthnContextClassRefMapper {
       // Represents the exact matching URI:s. Used if non-notified are present.
       byte exactMatching = 0b0;
 
-      if (requested.isTestUri()) {
+      if (test(requested, SwedishRequestedUris.TEST)) {
         return new MatchResult(AuthnContextComparisonTypeEnumeration.EXACT, SwedishRequestedUris.TEST);
       }
 
-      if (requested.highNotified()) {
-        minimumMatching |= (byte) (EIDAS_HIGH & this.supported);
+      if (test(requested, SwedishRequestedUris.HIGH_NF)) {
+        minimumMatching |= (byte) (EIDAS_HIGH & supported);
       }
-      if (requested.highAcceptsNn()) {
-        exactMatching |= (byte) ((EIDAS_HIGH_NN & this.supported) | (EIDAS_HIGH & this.supported));
-        minimumMatching |= (byte) (EIDAS_HIGH & this.supported);
+      if (test(requested, SwedishRequestedUris.HIGH_NF_NN)) {
+        exactMatching |= (byte) ((EIDAS_HIGH_NN & supported) | (EIDAS_HIGH & supported));
+        minimumMatching |= (byte) (EIDAS_HIGH & supported);
       }
-      if (requested.substantialNotified()) {
-        minimumMatching |= (byte) (EIDAS_SUB & this.supported);
+      if (test(requested, SwedishRequestedUris.SUB_NF)) {
+        minimumMatching |= (byte) (EIDAS_SUB & supported);
       }
-      if (requested.substantialAcceptsNn()) {
-        exactMatching |= (byte) ((EIDAS_HIGH & this.supported)
-            | (EIDAS_HIGH_NN & this.supported)
-            | (EIDAS_SUB & this.supported)
-            | (EIDAS_SUB_NN & this.supported));
-        minimumMatching |= (byte) (EIDAS_SUB & this.supported);
+      if (test(requested, SwedishRequestedUris.SUB_NF_NN)) {
+        exactMatching |= (byte) ((EIDAS_HIGH & supported)
+            | (EIDAS_HIGH_NN & supported)
+            | (EIDAS_SUB & supported)
+            | (EIDAS_SUB_NN & supported));
+        minimumMatching |= (byte) (EIDAS_SUB & supported);
       }
-      if (requested.lowNotified()) {
-        minimumMatching |= (byte) (EIDAS_LOW & this.supported);
+      if (test(requested, SwedishRequestedUris.LOW_NF)) {
+        minimumMatching |= (byte) (EIDAS_LOW & supported);
       }
-      if (requested.lowAcceptsNn()) {
-        exactMatching |= (byte) ((EIDAS_HIGH & this.supported)
-            | (EIDAS_HIGH_NN & this.supported)
-            | (EIDAS_SUB & this.supported)
-            | (EIDAS_SUB_NN & this.supported)
-            | (EIDAS_LOW & this.supported)
-            | (EIDAS_LOW_NN & this.supported));
-        minimumMatching |= (byte) (EIDAS_LOW & this.supported);
+      if (test(requested, SwedishRequestedUris.LOW_NF_NN)) {
+        exactMatching |= (byte) ((EIDAS_HIGH & supported)
+            | (EIDAS_HIGH_NN & supported)
+            | (EIDAS_SUB & supported)
+            | (EIDAS_SUB_NN & supported)
+            | (EIDAS_LOW & supported)
+            | (EIDAS_LOW_NN & supported));
+        minimumMatching |= (byte) (EIDAS_LOW & supported);
       }
 
       if ((exactMatching & EIDAS_NN) != 0) {
@@ -586,6 +586,13 @@ public class AuthnContextClassRefMapper {
       }
     }
 
+    private static boolean test(final byte mask, final byte value) {
+      return (mask & value) == value;
+    }
+
+    private EidasUris() {
+    }
+
     // Represents a mapping between URI:s and their byte values
     private record Uri(String uri, String additionalUri, byte value) {
       public Uri(final String uri, final byte value) {
@@ -593,10 +600,27 @@ public class AuthnContextClassRefMapper {
       }
     }
 
-    // Internal for representing a match result between requested and supported URI:s
-    private record MatchResult(AuthnContextComparisonTypeEnumeration comparison, byte value) {
-    }
+  }
 
+  // Internal for representing a match result between requested and supported URI:s
+  private record MatchResult(AuthnContextComparisonTypeEnumeration comparison, byte value) {
+  }
+
+  /**
+   * An immutable template for a {@link RequestedAuthnContext}. Since the resulting XML object will be added to an
+   * {@code AuthnRequest} (i.e., get a parent) a new object is created each time the template is used.
+   *
+   * @param comparison the comparison
+   * @param uris the AuthnContextClassRef URI:s
+   */
+  private record RequestedAuthnContextTemplate(AuthnContextComparisonTypeEnumeration comparison, List<String> uris) {
+
+    RequestedAuthnContext createRequestedAuthnContext() {
+      return RequestedAuthnContextBuilder.builder()
+          .comparison(this.comparison)
+          .authnContextClassRefs(this.uris)
+          .build();
+    }
   }
 
 }
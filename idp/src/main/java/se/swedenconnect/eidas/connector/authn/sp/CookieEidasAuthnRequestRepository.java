@@ -0,0 +1,359 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.sp;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnContextComparisonTypeEnumeration;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.NameIDPolicy;
+import org.opensaml.saml.saml2.core.RequestedAuthnContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.util.WebUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An {@link EidasAuthnRequestRepository} that does not use the session. Instead, the state needed to process the SAML
+ * response (request ID, relay state, country, the ID of the Swedish SP request and the requested LoA:s, along with the
+ * request parameters that are checked during response validation) is encrypted and authenticated using AES-GCM and
+ * saved in a cookie scoped to the assertion consumer path.
+ * <p>
+ * The {@link AuthnRequest} that is returned by {@link #removeAuthnRequest(HttpServletRequest, HttpServletResponse)} is
+ * rebuilt from the saved state. It does not contain the request extensions or the signature of the original request.
+ * </p>
+ * <p>
+ * In a clustered deployment, all nodes must be configured with the same key.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+@Slf4j
+public class CookieEidasAuthnRequestRepository implements EidasAuthnRequestRepository {
+
+  /** The default cookie name. */
+  public static final String DEFAULT_COOKIE_NAME = "EIDAS_PENDING_REQUEST";
+
+  /** The default max age for a saved request. */
+  public static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(30);
+
+  /** The format version of the cookie value. */
+  private static final byte VERSION = 1;
+
+  /** The length of the AES-GCM initialization vector. */
+  private static final int IV_LENGTH = 12;
+
+  /** The length of the AES-GCM authentication tag (in bits). */
+  private static final int TAG_LENGTH = 128;
+
+  /** The cipher transformation. */
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+  /** Random source for initialization vectors. */
+  private static final SecureRandom random = new SecureRandom();
+
+  /** The AES key. */
+  private final SecretKey key;
+
+  /** The cookie name. */
+  private final String cookieName;
+
+  /** The cookie domain. */
+  private final String cookieDomain;
+
+  /** The cookie path. */
+  private final String cookiePath;
+
+  /** The max age for a saved request. */
+  private final Duration maxAge;
+
+  /** The clock. */
+  private final Clock clock;
+
+  /**
+   * Constructor.
+   *
+   * @param key the AES key (128, 192 or 256 bits)
+   * @param cookieName the cookie name
+   * @param cookieDomain the cookie domain (may be {@code null})
+   * @param cookiePath the cookie path
+   * @param maxAge the max age for a saved request
+   */
+  public CookieEidasAuthnRequestRepository(final SecretKey key, final String cookieName, final String cookieDomain,
+      final String cookiePath, final Duration maxAge) {
+    this(key, cookieName, cookieDomain, cookiePath, maxAge, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param key the AES key (128, 192 or 256 bits)
+   * @param cookieName the cookie name
+   * @param cookieDomain the cookie domain (may be {@code null})
+   * @param cookiePath the cookie path
+   * @param maxAge the max age for a saved request
+   * @param clock the clock to use when checking expiration
+   */
+  public CookieEidasAuthnRequestRepository(final SecretKey key, final String cookieName, final String cookieDomain,
+      final String cookiePath, final Duration maxAge, final Clock clock) {
+    this.key = Objects.requireNonNull(key, "key must not be null");
+    if (!"AES".equalsIgnoreCase(key.getAlgorithm()) || key.getEncoded() == null
+        || !List.of(16, 24, 32).contains(key.getEncoded().length)) {
+      throw new IllegalArgumentException("key must be a 128, 192 or 256 bit AES key");
+    }
+    this.cookieName = Objects.requireNonNull(cookieName, "cookieName must not be null");
+    this.cookieDomain = cookieDomain;
+    this.cookiePath = Objects.requireNonNull(cookiePath, "cookiePath must not be null");
+    this.maxAge = Objects.requireNonNull(maxAge, "maxAge must not be null");
+    if (!maxAge.isPositive()) {
+      throw new IllegalArgumentException("maxAge must be positive");
+    }
+    this.clock = Objects.requireNonNull(clock, "clock must not be null");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void saveAuthnRequest(
+      final EidasAuthnRequest authnRequest, final HttpServletRequest request, final HttpServletResponse response) {
+    response.addHeader(HttpHeaders.SET_COOKIE, this.createCookie(this.seal(authnRequest), this.maxAge).toString());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public EidasAuthnRequest removeAuthnRequest(final HttpServletRequest request, final HttpServletResponse response) {
+    final Cookie cookie = WebUtils.getCookie(request, this.cookieName);
+    if (cookie == null) {
+      return null;
+    }
+    response.addHeader(HttpHeaders.SET_COOKIE, this.createCookie("", Duration.ZERO).toString());
+    return this.unseal(cookie.getValue());
+  }
+
+  /**
+   * Encrypts the state of the supplied request.
+   *
+   * @param authnRequest the request
+   * @return the Base64url-encoded encryption
+   */
+  String seal(final EidasAuthnRequest authnRequest) {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
+    try (final DataOutputStream out = new DataOutputStream(bos)) {
+      final AuthnRequest request = authnRequest.getAuthnRequest();
+
+      out.writeLong(this.clock.millis() + this.maxAge.toMillis());
+      out.writeUTF(request.getID());
+      out.writeLong(Optional.ofNullable(request.getIssueInstant()).map(Instant::toEpochMilli).orElse(0L));
+      writeString(out, request.getDestination());
+      writeString(out, request.getAssertionConsumerServiceURL());
+      writeString(out, request.getProtocolBinding());
+      writeString(out, Optional.ofNullable(request.getIssuer()).map(Issuer::getValue).orElse(null));
+      writeBoolean(out, request.isForceAuthn());
+      writeBoolean(out, request.isPassive());
+
+      final NameIDPolicy nameIDPolicy = request.getNameIDPolicy();
+      out.writeBoolean(nameIDPolicy != null);
+      if (nameIDPolicy != null) {
+        writeString(out, nameIDPolicy.getFormat());
+        writeBoolean(out, nameIDPolicy.getAllowCreate());
+      }
+
+      final RequestedAuthnContext requestedAuthnContext = request.getRequestedAuthnContext();
+      out.writeBoolean(requestedAuthnContext != null);
+      if (requestedAuthnContext != null) {
+        writeString(out, Optional.ofNullable(requestedAuthnContext.getComparison()).map(Enum::name).orElse(null));
+        final List<AuthnContextClassRef> refs = requestedAuthnContext.getAuthnContextClassRefs();
+        out.writeShort(refs.size());
+        for (final AuthnContextClassRef ref : refs) {
+          out.writeUTF(ref.getURI());
+        }
+      }
+
+      writeString(out, authnRequest.getRelayState());
+      out.writeUTF(authnRequest.getAssociatedRequestId());
+      out.writeUTF(authnRequest.getCountry());
+    }
+    catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    try {
+      final byte[] iv = new byte[IV_LENGTH];
+      random.nextBytes(iv);
+      final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.ENCRYPT_MODE, this.key, new GCMParameterSpec(TAG_LENGTH, iv));
+      cipher.updateAAD(new byte[] { VERSION });
+      final byte[] encryption = cipher.doFinal(bos.toByteArray());
+
+      final byte[] value = new byte[1 + IV_LENGTH + encryption.length];
+      value[0] = VERSION;
+      System.arraycopy(iv, 0, value, 1, IV_LENGTH);
+      System.arraycopy(encryption, 0, value, 1 + IV_LENGTH, encryption.length);
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+    catch (final GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to encrypt request state", e);
+    }
+  }
+
+  /**
+   * Decrypts a value created by {@link #seal(EidasAuthnRequest)}.
+   *
+   * @param value the Base64url-encoded encryption
+   * @return an {@link EidasAuthnRequest}, or {@code null} if the value is invalid or has expired
+   */
+  EidasAuthnRequest unseal(final String value) {
+    final byte[] plaintext;
+    try {
+      final byte[] bytes = Base64.getUrlDecoder().decode(value);
+      if (bytes.length <= 1 + IV_LENGTH || bytes[0] != VERSION) {
+        log.info("Invalid value for {} cookie - unsupported format", this.cookieName);
+        return null;
+      }
+      final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.DECRYPT_MODE, this.key, new GCMParameterSpec(TAG_LENGTH, bytes, 1, IV_LENGTH));
+      cipher.updateAAD(bytes, 0, 1);
+      plaintext = cipher.doFinal(bytes, 1 + IV_LENGTH, bytes.length - 1 - IV_LENGTH);
+    }
+    catch (final IllegalArgumentException | GeneralSecurityException e) {
+      log.info("Invalid value for {} cookie - {}", this.cookieName, e.getMessage());
+      return null;
+    }
+
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(plaintext))) {
+      final long expires = in.readLong();
+      if (expires <= this.clock.millis()) {
+        log.info("Saved request state in {} cookie has expired", this.cookieName);
+        return null;
+      }
+
+      final AuthnRequest request = (AuthnRequest) XMLObjectSupport.buildXMLObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+      request.setID(in.readUTF());
+      final long issueInstant = in.readLong();
+      request.setIssueInstant(issueInstant != 0L ? Instant.ofEpochMilli(issueInstant) : null);
+      request.setDestination(readString(in));
+      request.setAssertionConsumerServiceURL(readString(in));
+      request.setProtocolBinding(readString(in));
+      final String issuer = readString(in);
+      if (issuer != null) {
+        final Issuer issuerObject = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
+        issuerObject.setValue(issuer);
+        request.setIssuer(issuerObject);
+      }
+      request.setForceAuthn(readBoolean(in));
+      request.setIsPassive(readBoolean(in));
+
+      if (in.readBoolean()) {
+        final NameIDPolicy nameIDPolicy =
+            (NameIDPolicy) XMLObjectSupport.buildXMLObject(NameIDPolicy.DEFAULT_ELEMENT_NAME);
+        nameIDPolicy.setFormat(readString(in));
+        nameIDPolicy.setAllowCreate(readBoolean(in));
+        request.setNameIDPolicy(nameIDPolicy);
+      }
+
+      if (in.readBoolean()) {
+        final RequestedAuthnContext requestedAuthnContext =
+            (RequestedAuthnContext) XMLObjectSupport.buildXMLObject(RequestedAuthnContext.DEFAULT_ELEMENT_NAME);
+        final String comparison = readString(in);
+        if (comparison != null) {
+          requestedAuthnContext.setComparison(AuthnContextComparisonTypeEnumeration.valueOf(comparison));
+        }
+        final int size = in.readUnsignedShort();
+        final List<AuthnContextClassRef> refs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          final AuthnContextClassRef ref =
+              (AuthnContextClassRef) XMLObjectSupport.buildXMLObject(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
+          ref.setURI(in.readUTF());
+          refs.add(ref);
+        }
+        requestedAuthnContext.getAuthnContextClassRefs().addAll(refs);
+        request.setRequestedAuthnContext(requestedAuthnContext);
+      }
+
+      final String relayState = readString(in);
+      final String associatedRequestId = in.readUTF();
+      final String country = in.readUTF();
+
+      return new EidasAuthnRequest(request, relayState, associatedRequestId, country);
+    }
+    catch (final IOException | IllegalArgumentException e) {
+      log.info("Invalid value for {} cookie - {}", this.cookieName, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Creates a cookie with the given value and max age.
+   *
+   * @param value the value
+   * @param maxAge the max age
+   * @return a {@link ResponseCookie}
+   */
+  private ResponseCookie createCookie(final String value, final Duration maxAge) {
+    return ResponseCookie.from(this.cookieName, value)
+        .domain(this.cookieDomain)
+        .path(this.cookiePath)
+        .sameSite("None")
+        .httpOnly(true)
+        .secure(true)
+        .maxAge(maxAge)
+        .build();
+  }
+
+  private static void writeString(final DataOutputStream out, final String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeBoolean(final DataOutputStream out, final Boolean value) throws IOException {
+    out.writeByte(value == null ? 0 : value ? 1 : 2);
+  }
+
+  private static Boolean readBoolean(final DataInputStream in) throws IOException {
+    final byte value = in.readByte();
+    return value == 0 ? null : value == 1;
+  }
+
+}
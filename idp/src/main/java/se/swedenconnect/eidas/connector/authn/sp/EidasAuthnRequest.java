@@ -22,10 +22,14 @@ import java.util.Objects;
 import org.opensaml.saml.saml2.core.AuthnRequest;
 
 import se.swedenconnect.eidas.connector.ApplicationVersion;
-import se.swedenconnect.opensaml.common.utils.SerializableOpenSamlObject;
+import se.swedenconnect.eidas.connector.authn.LazyOpenSamlObject;
 
 /**
  * For storing authentication requests in the user session.
+ * <p>
+ * The {@link AuthnRequest} is held by a {@link LazyOpenSamlObject}, meaning that it is stored in a compact form in the
+ * session and is only unmarshalled if it is accessed.
+ * </p>
  *
  * @author Martin Lindström
  */
@@ -35,7 +39,7 @@ public class EidasAuthnRequest implements Serializable {
   private static final long serialVersionUID = ApplicationVersion.SERIAL_VERSION_UID;
 
   /** The authentication request. */
-  private final SerializableOpenSamlObject<AuthnRequest> authnRequest;
+  private final LazyOpenSamlObject<AuthnRequest> authnRequest;
 
   /** The relay state. */
   private final String relayState;
@@ -57,7 +61,7 @@ public class EidasAuthnRequest implements Serializable {
   public EidasAuthnRequest(
       final AuthnRequest authnRequest, final String relayState, final String associatedRequestId,
       final String country) {
-    this.authnRequest = new SerializableOpenSamlObject<>(
+    this.authnRequest = new LazyOpenSamlObject<>(
         Objects.requireNonNull(authnRequest, "authnRequest must not be null"));
     this.relayState = relayState;
     this.associatedRequestId = Objects.requireNonNull(associatedRequestId, "associatedRequestId must not be null");
@@ -66,6 +70,11 @@ public class EidasAuthnRequest implements Serializable {
 
   /**
    * Gets the authentication request.
+   * <p>
+   * Note: If the request was saved using a {@link CookieEidasAuthnRequestRepository}, the returned request has been
+   * rebuilt from the saved state and does not contain the extensions (e.g., the requested attributes and the SP type)
+   * or the signature of the request that was sent.
+   * </p>
    *
    * @return the authentication request
    */
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.sp;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * A repository for the {@link EidasAuthnRequest} that is saved when an authentication request is sent to a foreign
+ * eIDAS proxy service, and read back when the corresponding SAML response is received.
+ *
+ * @author Martin Lindström
+ */
+public interface EidasAuthnRequestRepository {
+
+  /**
+   * Saves the supplied {@link EidasAuthnRequest}.
+   *
+   * @param authnRequest the request to save
+   * @param request the HTTP servlet request
+   * @param response the HTTP servlet response
+   */
+  void saveAuthnRequest(
+      final EidasAuthnRequest authnRequest, final HttpServletRequest request, final HttpServletResponse response);
+
+  /**
+   * Gets the saved {@link EidasAuthnRequest} and removes it from the repository.
+   *
+   * @param request the HTTP servlet request
+   * @param response the HTTP servlet response
+   * @return the saved {@link EidasAuthnRequest}, or {@code null} if no (valid) request is available
+   */
+  EidasAuthnRequest removeAuthnRequest(final HttpServletRequest request, final HttpServletResponse response);
+
+}
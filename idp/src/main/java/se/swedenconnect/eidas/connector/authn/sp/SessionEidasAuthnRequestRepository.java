@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.sp;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * An {@link EidasAuthnRequestRepository} that stores the {@link EidasAuthnRequest} in the user session.
+ *
+ * @author Martin Lindström
+ */
+public class SessionEidasAuthnRequestRepository implements EidasAuthnRequestRepository {
+
+  /** The session key under which the request is stored. */
+  public static final String SESSION_KEY = EidasAuthnRequest.class.getName();
+
+  /** {@inheritDoc} */
+  @Override
+  public void saveAuthnRequest(
+      final EidasAuthnRequest authnRequest, final HttpServletRequest request, final HttpServletResponse response) {
+    request.getSession().setAttribute(SESSION_KEY, authnRequest);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public EidasAuthnRequest removeAuthnRequest(final HttpServletRequest request, final HttpServletResponse response) {
+    final HttpSession session = request.getSession();
+    final EidasAuthnRequest authnRequest = (EidasAuthnRequest) session.getAttribute(SESSION_KEY);
+    if (authnRequest != null) {
+      session.removeAttribute(SESSION_KEY);
+    }
+    return authnRequest;
+  }
+
+}
@@ -66,6 +66,15 @@ public class EidasUiModelFactory extends AbstractUiModelFactory<EidasUiModel> {
     this.idmHideBannerCookieGenerator = idmHideBannerCookieGenerator;
   }
 
+  /**
+   * Gets the IdM service URL.
+   *
+   * @return the IdM service URL, or {@code null} if the IdM feature is not active
+   */
+  public String getIdmServiceUrl() {
+    return this.idmServiceUrl;
+  }
+
   /**
    * Creates an {@link EidasUiModel}.
    *
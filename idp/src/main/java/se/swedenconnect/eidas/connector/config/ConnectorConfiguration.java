@@ -18,6 +18,7 @@ package se.swedenconnect.eidas.connector.config;
 import org.opensaml.saml.saml2.metadata.EntityDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.security.autoconfigure.actuate.web.servlet.EndpointRequest;
@@ -32,19 +33,25 @@ import org.springframework.context.annotation.DependsOn;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.FixedDelayTask;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.util.StringUtils;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 import se.swedenconnect.eidas.attributes.AttributeMappingService;
+import se.swedenconnect.eidas.connector.actuator.AttributeConversionMetrics;
 import se.swedenconnect.eidas.connector.authn.EidasAuthenticationController;
 import se.swedenconnect.eidas.connector.authn.EidasAuthenticationProvider;
+import se.swedenconnect.eidas.connector.authn.idm.AccessTokenCache;
 import se.swedenconnect.eidas.connector.authn.idm.DefaultIdmClient;
 import se.swedenconnect.eidas.connector.authn.idm.IdmClient;
+import se.swedenconnect.eidas.connector.authn.idm.IdmRecordCache;
 import se.swedenconnect.eidas.connector.authn.idm.NoopIdmClient;
 import se.swedenconnect.eidas.connector.authn.idm.OAuth2Handler;
 import se.swedenconnect.eidas.connector.authn.idm.OAuth2Server;
 import se.swedenconnect.eidas.connector.authn.metadata.DefaultEuMetadataProvider;
 import se.swedenconnect.eidas.connector.authn.metadata.EuMetadataProvider;
+import se.swedenconnect.eidas.connector.authn.sp.CookieEidasAuthnRequestRepository;
 import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequestGenerator;
 import se.swedenconnect.eidas.connector.authn.sp.EidasResponseProcessor;
 import se.swedenconnect.eidas.connector.authn.sp.EidasSpMetadataController;
@@ -52,6 +59,7 @@ import se.swedenconnect.eidas.connector.prid.generator.PridGenBase64Eidas;
 import se.swedenconnect.eidas.connector.prid.generator.PridGenColResistEidas;
 import se.swedenconnect.eidas.connector.prid.generator.PridGenDefaultEidas;
 import se.swedenconnect.eidas.connector.prid.generator.PridGenTestEidas;
+import se.swedenconnect.eidas.connector.prid.service.PridResultCache;
 import se.swedenconnect.eidas.connector.prid.service.PridService;
 import se.swedenconnect.opensaml.saml2.metadata.provider.MetadataProvider;
 import se.swedenconnect.opensaml.sweid.saml2.metadata.entitycategory.EntityCategoryRegistry;
@@ -64,9 +72,15 @@ import se.swedenconnect.spring.saml.idp.metadata.EntityCategoryHelper;
 import se.swedenconnect.spring.saml.idp.response.ThymeleafResponsePage;
 import se.swedenconnect.spring.saml.idp.settings.IdentityProviderSettings;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executors;
 
 /**
  * Configuration class for the IdP part of the Sweden Connect eIDAS Connector.
@@ -224,9 +238,25 @@ public class ConnectorConfiguration {
    * @return the {@link EuMetadataProvider}
    */
   @Bean
-  EuMetadataProvider euMetadataProvider(
+  DefaultEuMetadataProvider euMetadataProvider(
       final MetadataProvider metadataProvider, final ApplicationEventPublisher publisher) {
-    return new DefaultEuMetadataProvider(metadataProvider, publisher);
+    final DefaultEuMetadataProvider provider = new DefaultEuMetadataProvider(metadataProvider, publisher);
+    provider.setIndexRefreshInterval(
+        Duration.ofSeconds(this.connectorProperties.getEuMetadata().getIndexRefreshInterval()));
+    return provider;
+  }
+
+  /**
+   * Schedules the periodic re-indexing of the EU metadata.
+   *
+   * @param euMetadataProvider the EU metadata provider
+   * @return a {@link SchedulingConfigurer}
+   */
+  @Bean
+  SchedulingConfigurer euMetadataIndexRefresh(final DefaultEuMetadataProvider euMetadataProvider) {
+    final Duration interval = euMetadataProvider.getIndexRefreshInterval();
+    return registrar -> registrar.addFixedDelayTask(
+        new FixedDelayTask(euMetadataProvider::scheduledRefreshIndex, interval, interval));
   }
 
   /**
@@ -259,6 +289,12 @@ public class ConnectorConfiguration {
 
       Optional.ofNullable(this.connectorProperties.getIdm().getOauth2().getServer().getLifetime())
           .ifPresent(server::setLifeTime);
+      server.setRefreshThreshold(this.connectorProperties.getIdm().getOauth2().getCheckTokenRefreshThreshold());
+      final IdmProperties.OAuth2Properties.GetTokenCacheProperties getTokenCache =
+          this.connectorProperties.getIdm().getOauth2().getGetTokenCache();
+      if (getTokenCache.isEnabled()) {
+        server.setGetTokenCache(new AccessTokenCache(getTokenCache.getMaxSize()));
+      }
 
       return server;
     }
@@ -274,13 +310,17 @@ public class ConnectorConfiguration {
         final SslBundle sslBundle = StringUtils.hasText(this.connectorProperties.getIdm().getTrustBundle())
             ? this.sslBundles.getBundle(this.connectorProperties.getIdm().getTrustBundle())
             : null;
-        return new DefaultIdmClient(this.connectorProperties.getIdm().getApiBaseUrl(), oauth2, sslBundle);
+        return this.configureIdmClient(
+            new DefaultIdmClient(this.connectorProperties.getIdm().getApiBaseUrl(), oauth2, sslBundle,
+                this.connectorProperties.getIdm().getHttpClient()));
       }
       catch (final NoSuchSslBundleException e) {
         log.warn("Configured SSL bundle '{}' does not exist - correct configuration!",
             this.connectorProperties.getIdm().getTrustBundle());
 
-        return new DefaultIdmClient(this.connectorProperties.getIdm().getApiBaseUrl(), oauth2, null);
+        return this.configureIdmClient(
+            new DefaultIdmClient(this.connectorProperties.getIdm().getApiBaseUrl(), oauth2, null,
+                this.connectorProperties.getIdm().getHttpClient()));
       }
     }
     else {
@@ -289,6 +329,15 @@ public class ConnectorConfiguration {
     }
   }
 
+  private DefaultIdmClient configureIdmClient(final DefaultIdmClient idmClient) {
+    final IdmProperties.RecordCacheProperties cache = this.connectorProperties.getIdm().getCache();
+    if (cache.isEnabled()) {
+      idmClient.setRecordCache(new IdmRecordCache(
+          cache.getMaxSize(), cache.getPositiveTimeToLive(), cache.getNegativeTimeToLive()));
+    }
+    return idmClient;
+  }
+
   @Bean
   EidasAuthenticationProvider eidasAuthenticationProvider(
       final ApplicationEventPublisher eventPublisher,
@@ -298,22 +347,56 @@ public class ConnectorConfiguration {
       final EuMetadataProvider euMetadataProvider,
       final AttributeMappingService attributeMappingService,
       final PridService pridService,
-      final IdmClient idmClient) {
-    return new EidasAuthenticationProvider(this.idpSettings.getBaseUrl(),
+      final IdmClient idmClient,
+      final ObjectProvider<AttributeConversionMetrics> attributeConversionMetrics) {
+    final EidasAuthenticationProvider provider = new EidasAuthenticationProvider(this.idpSettings.getBaseUrl(),
         eventPublisher, metadata, authnRequestGenerator, eidasResponseProcessor, euMetadataProvider,
         attributeMappingService, pridService, idmClient, this.connectorProperties.getIdp().getSupportedLoas(),
         this.connectorProperties.getIdp().getEntityCategories(), this.connectorProperties.getIdp().getPingWhitelist());
+    attributeConversionMetrics.ifAvailable(m -> provider.setAttributeConversionListenerFactory(m::getListener));
+    Optional.ofNullable(this.connectorProperties.getEidas().getAuthServerSignatureMaxSize())
+        .ifPresent(s -> provider.setAuthServerSignatureMaxSize((int) s.toBytes()));
+
+    final IdmProperties.SpeculativeCheckProperties speculativeCheck =
+        this.connectorProperties.getIdm().getSpeculativeCheck();
+    if (speculativeCheck.isEnabled() && idmClient.isActive() && idmClient.supportsRecordCheckByPrid()) {
+      provider.setSpeculativeIdmRecordCheck(
+          Executors.newVirtualThreadPerTaskExecutor(), speculativeCheck.getTimeout());
+    }
+
+    final EidasAuthenticationProperties.StatelessRequestsProperties statelessRequests =
+        this.connectorProperties.getEidas().getStatelessRequests();
+    if (statelessRequests.isEnabled()) {
+      final SecretKey key = new SecretKeySpec(Base64.getDecoder().decode(statelessRequests.getKey()), "AES");
+      final String contextPath = Optional.ofNullable(URI.create(this.idpSettings.getBaseUrl()).getPath())
+          .filter(p -> !"/".equals(p))
+          .orElse("");
+      provider.setAuthnRequestRepository(new CookieEidasAuthnRequestRepository(key,
+          statelessRequests.getCookieName(), this.connectorProperties.getDomain(),
+          contextPath + EidasAuthenticationController.ASSERTION_CONSUMER_PATH, statelessRequests.getMaxAge()));
+      log.info("Saving the state of sent authentication requests in the {} cookie", statelessRequests.getCookieName());
+    }
+    return provider;
   }
 
   @Bean
   PridService pridService() {
-    return new PridService(
+    final PridService pridService = new PridService(
         this.connectorProperties.getPrid().getPolicyResource(),
         List.of(
             new PridGenDefaultEidas(this.connectorProperties.getCountry()),
             new PridGenColResistEidas(this.connectorProperties.getCountry()),
             new PridGenBase64Eidas(this.connectorProperties.getCountry()),
             new PridGenTestEidas(this.connectorProperties.getCountry())));
+    pridService.setWatchPolicyResource(this.connectorProperties.getPrid().isWatch());
+
+    final ConnectorConfigurationProperties.PridResultCacheProperties cacheProperties =
+        this.connectorProperties.getPrid().getCache();
+    if (cacheProperties.isEnabled()) {
+      pridService.setResultCache(
+          new PridResultCache(cacheProperties.getMaxSize(), cacheProperties.getTimeToLive()));
+    }
+    return pridService;
   }
 
 }
@@ -26,11 +26,14 @@ import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import se.swedenconnect.eidas.connector.authn.metadata.DefaultEuMetadataProvider;
 import se.swedenconnect.eidas.connector.authn.sp.EidasSpMetadataController;
+import se.swedenconnect.eidas.connector.prid.service.PridResultCache;
 import se.swedenconnect.spring.saml.idp.autoconfigure.settings.IdentityProviderConfigurationProperties;
 
 import java.io.File;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 
 /**
  * Main configuration properties.
@@ -148,6 +151,12 @@ public class ConnectorConfigurationProperties implements InitializingBean {
   @Data
   public static class EuMetadataProperties implements InitializingBean {
 
+    /**
+     * The default interval (in seconds) for checking whether the EU metadata has been updated.
+     */
+    public static final int DEFAULT_INDEX_REFRESH_INTERVAL =
+        (int) DefaultEuMetadataProvider.DEFAULT_INDEX_REFRESH_INTERVAL.toSeconds();
+
     /**
      * The location of the metadata. Can be a URL, a file, or even a classpath resource.
      */
@@ -184,6 +193,12 @@ public class ConnectorConfigurationProperties implements InitializingBean {
      */
     private IdentityProviderConfigurationProperties.MetadataProviderConfigurationProperties.HttpProxy httpProxy;
 
+    /**
+     * Indicates how often the connector should check whether the EU metadata has been updated, and if so, re-index the
+     * countries (value is given in seconds).
+     */
+    private Integer indexRefreshInterval;
+
     /** {@inheritDoc} */
     @Override
     public void afterPropertiesSet() {
@@ -191,6 +206,10 @@ public class ConnectorConfigurationProperties implements InitializingBean {
       if (this.validationCertificate == null) {
         log.warn("connector.eu-metadata.validation-certificate has not been set - Metadata can not be trusted");
       }
+      if (this.indexRefreshInterval == null) {
+        this.indexRefreshInterval = DEFAULT_INDEX_REFRESH_INTERVAL;
+      }
+      Assert.isTrue(this.indexRefreshInterval > 0, "connector.eu-metadata.index-refresh-interval must be positive");
     }
 
   }
@@ -213,6 +232,19 @@ public class ConnectorConfigurationProperties implements InitializingBean {
      */
     private Integer updateInterval;
 
+    /**
+     * Whether the policy file should be watched for changes, meaning that changes are applied directly (and not only
+     * when the policy is re-loaded according to the update-interval setting). Only applies if the policy resource is a
+     * file.
+     */
+    private boolean watch = true;
+
+    /**
+     * Configuration for caching of calculated PRID results.
+     */
+    @NestedConfigurationProperty
+    private PridResultCacheProperties cache = new PridResultCacheProperties();
+
     /** {@inheritDoc} */
     @Override
     public void afterPropertiesSet() {
@@ -220,6 +252,43 @@ public class ConnectorConfigurationProperties implements InitializingBean {
       if (this.updateInterval == null) {
         this.updateInterval = DEFAULT_UPDATE_INTERVAL;
       }
+      this.cache.afterPropertiesSet();
+    }
+
+  }
+
+  /**
+   * Configuration properties for the PRID result cache.
+   */
+  @Data
+  public static class PridResultCacheProperties implements InitializingBean {
+
+    /**
+     * Whether calculated PRID results should be cached.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The maximum number of cached PRID results.
+     */
+    private Integer maxSize;
+
+    /**
+     * The time-to-live for cached PRID results.
+     */
+    private Duration timeToLive;
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (this.maxSize == null) {
+        this.maxSize = PridResultCache.DEFAULT_MAX_SIZE;
+      }
+      Assert.isTrue(this.maxSize > 0, "connector.prid.cache.max-size must be greater than 0");
+      if (this.timeToLive == null) {
+        this.timeToLive = PridResultCache.DEFAULT_TIME_TO_LIVE;
+      }
+      Assert.isTrue(this.timeToLive.isPositive(), "connector.prid.cache.time-to-live must be positive");
     }
 
   }
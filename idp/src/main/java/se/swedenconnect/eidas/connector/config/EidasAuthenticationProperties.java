@@ -23,10 +23,14 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import se.swedenconnect.eidas.connector.authn.sp.CookieEidasAuthnRequestRepository;
 import se.swedenconnect.security.credential.config.properties.PkiCredentialConfigurationProperties;
 
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 /**
@@ -71,6 +75,14 @@ public class EidasAuthenticationProperties implements InitializingBean {
   @Setter
   private String preferredBinding;
 
+  /**
+   * The maximum size of a received assertion that is included in the {@code authServerSignature} attribute. If the
+   * assertion is larger, no {@code authServerSignature} attribute is released. If not set, there is no limit.
+   */
+  @Getter
+  @Setter
+  private DataSize authServerSignatureMaxSize;
+
   /**
    * An ordered list of supported NameID formats.
    */
@@ -91,6 +103,12 @@ public class EidasAuthenticationProperties implements InitializingBean {
   @Getter
   private final SpCredentialProperties credentials = new SpCredentialProperties();
 
+  /**
+   * Configuration for saving the state of sent authentication requests in a cookie instead of in the session.
+   */
+  @Getter
+  private final StatelessRequestsProperties statelessRequests = new StatelessRequestsProperties();
+
   /**
    * Metadata configuration for the eIDAS SP.
    */
@@ -119,13 +137,85 @@ public class EidasAuthenticationProperties implements InitializingBean {
       }
     }
 
+    if (this.authServerSignatureMaxSize != null
+        && (this.authServerSignatureMaxSize.toBytes() <= 0
+        || this.authServerSignatureMaxSize.toBytes() > Integer.MAX_VALUE)) {
+      throw new IllegalArgumentException("Invalid value for connector.eidas.auth-server-signature-max-size");
+    }
+
     if (this.supportedNameIds.isEmpty()) {
       this.supportedNameIds.addAll(List.of(NameID.PERSISTENT, NameID.TRANSIENT, NameID.UNSPECIFIED));
     }
+    this.statelessRequests.afterPropertiesSet();
     Assert.notNull(this.metadata, "connector.eidas.metadata.* must be set");
     this.metadata.afterPropertiesSet();
   }
 
+  /**
+   * Configuration for saving the state of sent authentication requests in an encrypted cookie instead of in the
+   * session.
+   */
+  public static class StatelessRequestsProperties implements InitializingBean {
+
+    /**
+     * Whether the state of sent authentication requests should be saved in an encrypted cookie instead of in the
+     * session.
+     */
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    /**
+     * The Base64-encoded AES key (128, 192 or 256 bits) used to encrypt the cookie. Must be the same on all nodes in
+     * a clustered deployment. Must be set if stateless requests are enabled.
+     */
+    @Getter
+    @Setter
+    private String key;
+
+    /**
+     * The name of the cookie.
+     */
+    @Getter
+    @Setter
+    private String cookieName;
+
+    /**
+     * The maximum time between sending an authentication request and receiving the response.
+     */
+    @Getter
+    @Setter
+    private Duration maxAge;
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (!StringUtils.hasText(this.cookieName)) {
+        this.cookieName = CookieEidasAuthnRequestRepository.DEFAULT_COOKIE_NAME;
+      }
+      if (this.maxAge == null) {
+        this.maxAge = CookieEidasAuthnRequestRepository.DEFAULT_MAX_AGE;
+      }
+      Assert.isTrue(this.maxAge.isPositive(), "connector.eidas.stateless-requests.max-age must be positive");
+      if (this.enabled) {
+        Assert.hasText(this.key,
+            "connector.eidas.stateless-requests.key must be set when stateless requests are enabled");
+      }
+      if (StringUtils.hasText(this.key)) {
+        final int length;
+        try {
+          length = Base64.getDecoder().decode(this.key).length;
+        }
+        catch (final IllegalArgumentException e) {
+          throw new IllegalArgumentException("Invalid value for connector.eidas.stateless-requests.key", e);
+        }
+        Assert.isTrue(length == 16 || length == 24 || length == 32,
+            "connector.eidas.stateless-requests.key must be a 128, 192 or 256 bit key");
+      }
+    }
+
+  }
+
   /**
    * Connector SP credentials.
    */
@@ -20,6 +20,9 @@ import lombok.Setter;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.util.Assert;
+import se.swedenconnect.eidas.connector.authn.idm.AbstractOAuth2Handler;
+import se.swedenconnect.eidas.connector.authn.idm.AccessTokenCache;
+import se.swedenconnect.eidas.connector.authn.idm.IdmRecordCache;
 import se.swedenconnect.security.credential.config.properties.PkiCredentialConfigurationProperties;
 
 import java.time.Duration;
@@ -61,6 +64,12 @@ public class IdmProperties implements InitializingBean {
   @Setter
   private String trustBundle;
 
+  /**
+   * Settings for the HTTP client used when calling the IdM server.
+   */
+  @Getter
+  private final HttpClientProperties httpClient = new HttpClientProperties();
+
   /**
    * Connector OAuth2 client settings.
    */
@@ -68,6 +77,18 @@ public class IdmProperties implements InitializingBean {
   @Setter
   private OAuth2Properties oauth2;
 
+  /**
+   * Settings for caching whether users have an IdM record.
+   */
+  @Getter
+  private final RecordCacheProperties cache = new RecordCacheProperties();
+
+  /**
+   * Settings for checking whether users have an IdM record already during processing of the eIDAS response.
+   */
+  @Getter
+  private final SpeculativeCheckProperties speculativeCheck = new SpeculativeCheckProperties();
+
   /** {@inheritDoc} */
   @Override
   public void afterPropertiesSet() {
@@ -88,6 +109,234 @@ public class IdmProperties implements InitializingBean {
       Assert.notNull(this.oauth2, "connector.idm.oauth2.* must be set");
       this.oauth2.afterPropertiesSet();
     }
+    this.httpClient.afterPropertiesSet();
+    this.cache.afterPropertiesSet();
+    this.speculativeCheck.afterPropertiesSet();
+  }
+
+  /**
+   * Settings for the HTTP client used when calling the IdM server.
+   */
+  public static class HttpClientProperties implements InitializingBean {
+
+    /** The default maximum number of pooled connections. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+    /** The default maximum number of pooled connections per route. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+
+    /** The default timeout for establishing a connection. */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    /** The default socket (read) timeout. */
+    public static final Duration DEFAULT_SOCKET_TIMEOUT = Duration.ofSeconds(10);
+
+    /** The default timeout for waiting for a response. */
+    public static final Duration DEFAULT_RESPONSE_TIMEOUT = Duration.ofSeconds(10);
+
+    /** The default timeout for obtaining a connection from the pool. */
+    public static final Duration DEFAULT_CONNECTION_REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    /** The default keep-alive time for idle connections. */
+    public static final Duration DEFAULT_KEEP_ALIVE = Duration.ofSeconds(30);
+
+    /** The default time-to-live for pooled connections. */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+    /**
+     * The maximum number of pooled connections.
+     */
+    @Getter
+    @Setter
+    private Integer maxConnections;
+
+    /**
+     * The maximum number of pooled connections per route (host).
+     */
+    @Getter
+    @Setter
+    private Integer maxConnectionsPerRoute;
+
+    /**
+     * The timeout for establishing a connection.
+     */
+    @Getter
+    @Setter
+    private Duration connectTimeout;
+
+    /**
+     * The socket (read) timeout.
+     */
+    @Getter
+    @Setter
+    private Duration socketTimeout;
+
+    /**
+     * The timeout for waiting for a response.
+     */
+    @Getter
+    @Setter
+    private Duration responseTimeout;
+
+    /**
+     * The timeout for obtaining a connection from the pool.
+     */
+    @Getter
+    @Setter
+    private Duration connectionRequestTimeout;
+
+    /**
+     * The time an idle connection is kept alive if the server does not say otherwise.
+     */
+    @Getter
+    @Setter
+    private Duration keepAlive;
+
+    /**
+     * The maximum time a pooled connection is used before it is closed.
+     */
+    @Getter
+    @Setter
+    private Duration timeToLive;
+
+    /**
+     * Whether HTTP/2 should be used. If enabled, requests are multiplexed over a single connection and the
+     * connection pool settings do not apply. Not used in development mode without a trust bundle, since host name
+     * verification can not be turned off for the HTTP/2 client.
+     */
+    @Getter
+    @Setter
+    private boolean http2 = false;
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (this.maxConnections == null) {
+        this.maxConnections = DEFAULT_MAX_CONNECTIONS;
+      }
+      Assert.isTrue(this.maxConnections > 0, "connector.idm.http-client.max-connections must be greater than 0");
+      if (this.maxConnectionsPerRoute == null) {
+        this.maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+      }
+      Assert.isTrue(this.maxConnectionsPerRoute > 0,
+          "connector.idm.http-client.max-connections-per-route must be greater than 0");
+      if (this.connectTimeout == null) {
+        this.connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+      }
+      Assert.isTrue(this.connectTimeout.isPositive(), "connector.idm.http-client.connect-timeout must be positive");
+      if (this.socketTimeout == null) {
+        this.socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+      }
+      Assert.isTrue(this.socketTimeout.isPositive(), "connector.idm.http-client.socket-timeout must be positive");
+      if (this.responseTimeout == null) {
+        this.responseTimeout = DEFAULT_RESPONSE_TIMEOUT;
+      }
+      Assert.isTrue(this.responseTimeout.isPositive(), "connector.idm.http-client.response-timeout must be positive");
+      if (this.connectionRequestTimeout == null) {
+        this.connectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+      }
+      Assert.isTrue(this.connectionRequestTimeout.isPositive(),
+          "connector.idm.http-client.connection-request-timeout must be positive");
+      if (this.keepAlive == null) {
+        this.keepAlive = DEFAULT_KEEP_ALIVE;
+      }
+      Assert.isTrue(this.keepAlive.isPositive(), "connector.idm.http-client.keep-alive must be positive");
+      if (this.timeToLive == null) {
+        this.timeToLive = DEFAULT_TIME_TO_LIVE;
+      }
+      Assert.isTrue(this.timeToLive.isPositive(), "connector.idm.http-client.time-to-live must be positive");
+    }
+
+  }
+
+  /**
+   * Properties for checking whether users have an IdM record already during processing of the eIDAS response.
+   */
+  public static class SpeculativeCheckProperties implements InitializingBean {
+
+    /**
+     * The default maximum time to wait for a started check.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Whether the IdM record check should be started asynchronously as soon as the PRID is known, instead of after
+     * the eIDAS response has been completely processed. Does not apply to signature services.
+     */
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    /**
+     * The maximum time to wait for a started check.
+     */
+    @Getter
+    @Setter
+    private Duration timeout;
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (this.timeout == null) {
+        this.timeout = DEFAULT_TIMEOUT;
+      }
+      Assert.isTrue(this.timeout.isPositive(), "connector.idm.speculative-check.timeout must be positive");
+    }
+
+  }
+
+  /**
+   * Properties for caching whether users have an IdM record.
+   */
+  public static class RecordCacheProperties implements InitializingBean {
+
+    /**
+     * Whether the results of IdM record existence checks should be cached.
+     */
+    @Getter
+    @Setter
+    private boolean enabled = false;
+
+    /**
+     * The maximum number of cached results.
+     */
+    @Getter
+    @Setter
+    private Integer maxSize;
+
+    /**
+     * The time-to-live for cached results telling that a user has an IdM record.
+     */
+    @Getter
+    @Setter
+    private Duration positiveTimeToLive;
+
+    /**
+     * The time-to-live for cached results telling that a user does not have an IdM record.
+     */
+    @Getter
+    @Setter
+    private Duration negativeTimeToLive;
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (this.maxSize == null) {
+        this.maxSize = IdmRecordCache.DEFAULT_MAX_SIZE;
+      }
+      Assert.isTrue(this.maxSize > 0, "connector.idm.cache.max-size must be greater than 0");
+      if (this.positiveTimeToLive == null) {
+        this.positiveTimeToLive = IdmRecordCache.DEFAULT_POSITIVE_TIME_TO_LIVE;
+      }
+      Assert.isTrue(this.positiveTimeToLive.isPositive(),
+          "connector.idm.cache.positive-time-to-live must be positive");
+      if (this.negativeTimeToLive == null) {
+        this.negativeTimeToLive = IdmRecordCache.DEFAULT_NEGATIVE_TIME_TO_LIVE;
+      }
+      Assert.isTrue(this.negativeTimeToLive.isPositive(),
+          "connector.idm.cache.negative-time-to-live must be positive");
+    }
+
   }
 
   /**
@@ -133,6 +382,21 @@ public class IdmProperties implements InitializingBean {
     @NestedConfigurationProperty
     private PkiCredentialConfigurationProperties credential;
 
+    /**
+     * The fraction (0-1) of the access token lifetime after which a new access token for check calls is obtained in
+     * the background. The current token is used until the new one has been obtained.
+     */
+    @Getter
+    @Setter
+    private Double checkTokenRefreshThreshold;
+
+    /**
+     * Settings for caching the access tokens issued for get calls (per PRID).
+     */
+    @Getter
+    @Setter
+    private GetTokenCacheProperties getTokenCache = new GetTokenCacheProperties();
+
     /**
      * Settings if the eIDAS connector should act as an OAuth2 client. Mutually exclusive with 'server'.
      */
@@ -155,6 +419,15 @@ public class IdmProperties implements InitializingBean {
       Assert.notEmpty(this.checkScopes, "connector.idm.oauth2.check-scopes must contain at least one scope");
       Assert.notEmpty(this.getScopes, "connector.idm.oauth2.get-scopes must contain at least one scope");
       Assert.hasText(this.resourceId, "connector.idm.oauth2.resource-id must be assigned");
+      if (this.checkTokenRefreshThreshold == null) {
+        this.checkTokenRefreshThreshold = AbstractOAuth2Handler.DEFAULT_REFRESH_THRESHOLD;
+      }
+      Assert.isTrue(this.checkTokenRefreshThreshold > 0 && this.checkTokenRefreshThreshold <= 1,
+          "connector.idm.oauth2.check-token-refresh-threshold must be greater than 0 and at most 1");
+      if (this.getTokenCache == null) {
+        this.getTokenCache = new GetTokenCacheProperties();
+      }
+      this.getTokenCache.afterPropertiesSet();
 
       if (this.client == null && this.server == null) {
         throw new IllegalArgumentException(
@@ -172,6 +445,36 @@ public class IdmProperties implements InitializingBean {
       }
     }
 
+    /**
+     * Settings for caching the access tokens issued for get calls.
+     */
+    public static class GetTokenCacheProperties implements InitializingBean {
+
+      /**
+       * Whether access tokens for get calls should be re-used for repeated calls for the same PRID.
+       */
+      @Getter
+      @Setter
+      private boolean enabled = false;
+
+      /**
+       * The maximum number of cached access tokens.
+       */
+      @Getter
+      @Setter
+      private Integer maxSize;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        if (this.maxSize == null) {
+          this.maxSize = AccessTokenCache.DEFAULT_MAX_SIZE;
+        }
+        Assert.isTrue(this.maxSize > 0, "connector.idm.oauth2.get-token-cache.max-size must be greater than 0");
+      }
+
+    }
+
     /**
      * Settings if the eIDAS connector should act as an OAuth2 client.
      */
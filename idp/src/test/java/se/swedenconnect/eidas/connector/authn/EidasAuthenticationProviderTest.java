@@ -0,0 +1,334 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.AuthnContext;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnContextComparisonTypeEnumeration;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.AuthnStatement;
+import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.metadata.EntityDescriptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import se.swedenconnect.eidas.attributes.AttributeMappingService;
+import se.swedenconnect.eidas.connector.OpenSamlTestBase;
+import se.swedenconnect.eidas.connector.authn.idm.IdmClient;
+import se.swedenconnect.eidas.connector.authn.idm.IdmException;
+import se.swedenconnect.eidas.connector.authn.metadata.EuMetadataProvider;
+import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequest;
+import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequestGenerator;
+import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequestRepository;
+import se.swedenconnect.eidas.connector.events.IdentityMatchingErrorEvent;
+import se.swedenconnect.eidas.connector.prid.service.PridResult;
+import se.swedenconnect.eidas.connector.prid.service.PridService;
+import se.swedenconnect.opensaml.eidas.common.EidasConstants;
+import se.swedenconnect.opensaml.saml2.core.build.RequestedAuthnContextBuilder;
+import se.swedenconnect.opensaml.saml2.response.ResponseProcessingResult;
+import se.swedenconnect.opensaml.saml2.response.ResponseProcessor;
+import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
+import se.swedenconnect.opensaml.sweid.saml2.authn.LevelOfAssuranceUris;
+import se.swedenconnect.spring.saml.idp.authentication.Saml2UserAuthenticationInputToken;
+import se.swedenconnect.spring.saml.idp.authentication.provider.external.ExternalAuthenticatorTokenRepository;
+import se.swedenconnect.spring.saml.idp.authentication.provider.external.RedirectForAuthenticationToken;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+/**
+ * Test cases for EidasAuthenticationProvider.
+ *
+ * @author Martin Lindström
+ */
+public class EidasAuthenticationProviderTest extends OpenSamlTestBase {
+
+  private static final String REQUEST_ID = "_7f8e5b2c1a9d4e3f6b0c8a7d5e4f3a2b";
+
+  private static final String COUNTRY = "DE";
+
+  private static final String PERSON_IDENTIFIER = "DE/SE/1234567890";
+
+  private static final String PRID = "DE:1234567890";
+
+  private ApplicationEventPublisher eventPublisher;
+
+  private ResponseProcessor responseProcessor;
+
+  private IdmClient idmClient;
+
+  private Saml2UserAuthenticationInputToken inputToken;
+
+  private EidasAuthenticationProvider provider;
+
+  @BeforeEach
+  void init() throws Exception {
+    this.eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+    this.responseProcessor = Mockito.mock(ResponseProcessor.class);
+    this.idmClient = Mockito.mock(IdmClient.class);
+
+    final PridService pridService = Mockito.mock(PridService.class);
+    Mockito.when(pridService.generatePrid(PERSON_IDENTIFIER, COUNTRY)).thenReturn(new PridResult(PRID, "A"));
+
+    this.provider = new EidasAuthenticationProvider("https://connector.example.com/idp",
+        this.eventPublisher, Mockito.mock(EntityDescriptor.class),
+        Mockito.mock(EidasAuthnRequestGenerator.class), this.responseProcessor, Mockito.mock(EuMetadataProvider.class),
+        Mockito.mock(AttributeMappingService.class), pridService, this.idmClient,
+        List.of(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL), List.of(), List.of());
+
+    // The SAML input token for the ongoing authentication ...
+    //
+    this.inputToken = Mockito.mock(Saml2UserAuthenticationInputToken.class, Mockito.RETURNS_DEEP_STUBS);
+    Mockito.when(this.inputToken.getLogString()).thenReturn("test");
+    Mockito.when(this.inputToken.getAuthnRequestToken().getAuthnRequest().getID()).thenReturn(REQUEST_ID);
+    Mockito.when(this.inputToken.getAuthnRequestToken().isSignatureServicePeer()).thenReturn(false);
+    Mockito.when(this.inputToken.getAuthnRequirements().getAuthnContextRequirements())
+        .thenReturn(List.of(LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL));
+
+    final RedirectForAuthenticationToken redirectToken = Mockito.mock(RedirectForAuthenticationToken.class);
+    Mockito.when(redirectToken.getAuthnInputToken()).thenReturn(this.inputToken);
+    final ExternalAuthenticatorTokenRepository tokenRepository =
+        Mockito.mock(ExternalAuthenticatorTokenRepository.class);
+    Mockito.when(tokenRepository.getExternalAuthenticationToken(Mockito.any())).thenReturn(redirectToken);
+    this.provider.setTokenRepository(tokenRepository);
+
+    // The authentication request sent to the foreign IdP ...
+    //
+    final AuthnRequest authnRequest = (AuthnRequest) XMLObjectSupport.buildXMLObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+    authnRequest.setID("_3c2b1a0f9e8d7c6b5a4f3e2d1c0b9a8f");
+    authnRequest.setRequestedAuthnContext(RequestedAuthnContextBuilder.builder()
+        .comparison(AuthnContextComparisonTypeEnumeration.MINIMUM)
+        .authnContextClassRefs(EidasConstants.EIDAS_LOA_SUBSTANTIAL)
+        .build());
+    final EidasAuthnRequest eidasAuthnRequest = Mockito.mock(EidasAuthnRequest.class);
+    Mockito.when(eidasAuthnRequest.getAuthnRequest()).thenReturn(authnRequest);
+    Mockito.when(eidasAuthnRequest.getAssociatedRequestId()).thenReturn(REQUEST_ID);
+    Mockito.when(eidasAuthnRequest.getCountry()).thenReturn(COUNTRY);
+
+    final EidasAuthnRequestRepository authnRequestRepository = Mockito.mock(EidasAuthnRequestRepository.class);
+    Mockito.when(authnRequestRepository.removeAuthnRequest(Mockito.any(), Mockito.any())).thenReturn(eidasAuthnRequest);
+    this.provider.setAuthnRequestRepository(authnRequestRepository);
+
+    // The result of processing the response from the foreign IdP ...
+    //
+    final ResponseProcessingResult result = Mockito.mock(ResponseProcessingResult.class);
+    Mockito.when(result.getResponseId()).thenReturn("_ea3a5c8a7ba2c1e0a1b5d0bb8c43d1e1");
+    Mockito.when(result.getInResponseTo()).thenReturn(authnRequest.getID());
+    Mockito.when(result.getIssueInstant()).thenReturn(Instant.now());
+    Mockito.when(result.getResponse())
+        .thenReturn((Response) XMLObjectSupport.buildXMLObject(Response.DEFAULT_ELEMENT_NAME));
+    Mockito.when(result.getAssertion()).thenReturn(createAssertion());
+    Mockito.when(result.getAttributes())
+        .thenReturn(List.of(EidasAuthenticationTokenTest.createPersonIdentifier(PERSON_IDENTIFIER)));
+    Mockito.when(this.responseProcessor.processSamlResponse(Mockito.any(), Mockito.any(), Mockito.any(),
+        Mockito.any())).thenReturn(result);
+  }
+
+  @AfterEach
+  void destroy() {
+    this.provider.destroy();
+  }
+
+  @Test
+  void testAuthServerSignature() throws Exception {
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+
+    final String expected = token.getAssertionBase64();
+    Assertions.assertNotNull(expected);
+    Assertions.assertEquals(List.of(expected),
+        token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_AUTH_SERVER_SIGNATURE).getStringValues());
+    Assertions.assertEquals(List.of(PRID),
+        token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_PRID).getStringValues());
+  }
+
+  @Test
+  void testAuthServerSignatureMaxSize() throws Exception {
+    this.provider.setAuthServerSignatureMaxSize(100);
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+
+    // The assertion is too large, so no authServerSignature attribute is released ...
+    Assertions.assertNull(token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_AUTH_SERVER_SIGNATURE));
+
+    // But the other attributes are ...
+    Assertions.assertNotNull(token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_C));
+    Assertions.assertNotNull(token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_TRANSACTION_IDENTIFIER));
+    Assertions.assertEquals(List.of(PRID),
+        token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_PRID).getStringValues());
+  }
+
+  @Test
+  void testInvalidAuthServerSignatureMaxSize() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> this.provider.setAuthServerSignatureMaxSize(0));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> this.provider.setAuthServerSignatureMaxSize(-1));
+  }
+
+  @Test
+  void testIdmRecordStatusInvalidated() throws Exception {
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.getSession().setAttribute(EidasAuthenticationProvider.IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY, true);
+
+    // The flag is consumed when the user is known, and only the record status of the user is invalidated ...
+    //
+    this.processSamlResponse(request);
+    Mockito.verify(this.idmClient).invalidateCachedRecordStatus(PRID);
+    Mockito.verify(this.idmClient, Mockito.times(1)).invalidateCachedRecordStatus(Mockito.any());
+    Assertions.assertNull(
+        request.getSession().getAttribute(EidasAuthenticationProvider.IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY));
+
+    this.processSamlResponse(request);
+    Mockito.verify(this.idmClient, Mockito.times(1)).invalidateCachedRecordStatus(Mockito.any());
+  }
+
+  @Test
+  void testIdmRecordStatusNotInvalidated() throws Exception {
+    this.processSamlResponse(new MockHttpServletRequest());
+    Mockito.verify(this.idmClient, Mockito.never()).invalidateCachedRecordStatus(Mockito.any());
+  }
+
+  @Test
+  void testInvalidateIdmRecordStatus() throws Exception {
+    // The user is not known yet, so only the session flag is set ...
+    //
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    this.provider.invalidateIdmRecordStatus(request);
+    Mockito.verify(this.idmClient, Mockito.never()).invalidateCachedRecordStatus(Mockito.any());
+    Assertions.assertNotNull(
+        request.getSession().getAttribute(EidasAuthenticationProvider.IDM_RECORD_STATUS_INVALIDATED_SESSION_KEY));
+
+    // The user has authenticated ...
+    //
+    final MockHttpServletRequest request2 = new MockHttpServletRequest();
+    this.provider.saveEidasAuthenticationToken(request2, this.processSamlResponse(request2));
+    this.provider.invalidateIdmRecordStatus(request2);
+    Mockito.verify(this.idmClient).invalidateCachedRecordStatus(PRID);
+    Mockito.verify(this.idmClient, Mockito.times(1)).invalidateCachedRecordStatus(Mockito.any());
+  }
+
+  @Test
+  void testSpeculativeIdmRecordCheck() throws Exception {
+    this.enableSpeculativeIdmRecordCheck(Duration.ofSeconds(5));
+    Mockito.when(this.idmClient.hasRecord(PRID)).thenReturn(true);
+
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+    Assertions.assertTrue(this.provider.hasIdmRecord(token, this.inputToken));
+    Mockito.verify(this.idmClient).hasRecord(PRID);
+    Mockito.verify(this.idmClient, Mockito.never()).hasRecord(Mockito.any(EidasAuthenticationToken.class));
+
+    // The started check is only used once ...
+    Mockito.when(this.idmClient.hasRecord(token)).thenReturn(false);
+    Assertions.assertFalse(this.provider.hasIdmRecord(token, this.inputToken));
+    Mockito.verify(this.idmClient).hasRecord(token);
+  }
+
+  @Test
+  void testSpeculativeIdmRecordCheckTimeout() throws Exception {
+    this.enableSpeculativeIdmRecordCheck(Duration.ofMillis(50));
+    final CountDownLatch latch = new CountDownLatch(1);
+    Mockito.when(this.idmClient.hasRecord(PRID)).thenAnswer(i -> {
+      latch.await();
+      return true;
+    });
+
+    try {
+      final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+      Assertions.assertFalse(this.provider.hasIdmRecord(token, this.inputToken));
+      Mockito.verify(this.eventPublisher).publishEvent(Mockito.any(IdentityMatchingErrorEvent.class));
+      Mockito.verify(this.idmClient, Mockito.never()).hasRecord(Mockito.any(EidasAuthenticationToken.class));
+    }
+    finally {
+      latch.countDown();
+    }
+  }
+
+  @Test
+  void testSpeculativeIdmRecordCheckError() throws Exception {
+    this.enableSpeculativeIdmRecordCheck(Duration.ofSeconds(5));
+    Mockito.when(this.idmClient.hasRecord(PRID)).thenThrow(new IdmException("IdM service unavailable"));
+
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+    Assertions.assertFalse(this.provider.hasIdmRecord(token, this.inputToken));
+    Mockito.verify(this.eventPublisher).publishEvent(Mockito.any(IdentityMatchingErrorEvent.class));
+  }
+
+  @Test
+  void testSpeculativeIdmRecordCheckNotSupported() throws Exception {
+    this.enableSpeculativeIdmRecordCheck(Duration.ofSeconds(5));
+    Mockito.when(this.idmClient.supportsRecordCheckByPrid()).thenReturn(false);
+
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+    Mockito.when(this.idmClient.hasRecord(token)).thenReturn(true);
+    Assertions.assertTrue(this.provider.hasIdmRecord(token, this.inputToken));
+    Mockito.verify(this.idmClient, Mockito.never()).hasRecord(Mockito.anyString());
+  }
+
+  @Test
+  void testSpeculativeIdmRecordCheckSignatureService() throws Exception {
+    this.enableSpeculativeIdmRecordCheck(Duration.ofSeconds(5));
+    Mockito.when(this.inputToken.getAuthnRequestToken().isSignatureServicePeer()).thenReturn(true);
+
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+    Mockito.when(this.idmClient.hasRecord(token)).thenReturn(true);
+    Assertions.assertTrue(this.provider.hasIdmRecord(token, this.inputToken));
+    Mockito.verify(this.idmClient, Mockito.never()).hasRecord(Mockito.anyString());
+  }
+
+  @Test
+  void testSpeculativeIdmRecordCheckNotEnabled() throws Exception {
+    Mockito.when(this.idmClient.isActive()).thenReturn(true);
+    Mockito.when(this.idmClient.supportsRecordCheckByPrid()).thenReturn(true);
+
+    final EidasAuthenticationToken token = this.processSamlResponse(new MockHttpServletRequest());
+    Mockito.when(this.idmClient.hasRecord(token)).thenReturn(true);
+    Assertions.assertTrue(this.provider.hasIdmRecord(token, this.inputToken));
+    Mockito.verify(this.idmClient, Mockito.never()).hasRecord(Mockito.anyString());
+  }
+
+  private void enableSpeculativeIdmRecordCheck(final Duration timeout) {
+    Mockito.when(this.idmClient.isActive()).thenReturn(true);
+    Mockito.when(this.idmClient.supportsRecordCheckByPrid()).thenReturn(true);
+    this.provider.setSpeculativeIdmRecordCheck(Executors.newVirtualThreadPerTaskExecutor(), timeout);
+  }
+
+  private EidasAuthenticationToken processSamlResponse(final MockHttpServletRequest request) throws Exception {
+    return this.provider.processSamlResponse(request, new MockHttpServletResponse(), "response", "relay-state");
+  }
+
+  private static Assertion createAssertion() {
+    final Assertion assertion = EidasAuthenticationTokenTest.createAssertion();
+    final AuthnContextClassRef classRef =
+        (AuthnContextClassRef) XMLObjectSupport.buildXMLObject(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
+    classRef.setURI(EidasConstants.EIDAS_LOA_SUBSTANTIAL);
+    final AuthnContext authnContext = (AuthnContext) XMLObjectSupport.buildXMLObject(AuthnContext.DEFAULT_ELEMENT_NAME);
+    authnContext.setAuthnContextClassRef(classRef);
+    final AuthnStatement authnStatement =
+        (AuthnStatement) XMLObjectSupport.buildXMLObject(AuthnStatement.DEFAULT_ELEMENT_NAME);
+    authnStatement.setAuthnInstant(Instant.now());
+    authnStatement.setAuthnContext(authnContext);
+    assertion.getAuthnStatements().add(authnStatement);
+    return assertion;
+  }
+
+}
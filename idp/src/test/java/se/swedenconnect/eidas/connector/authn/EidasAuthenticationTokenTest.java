@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import se.swedenconnect.eidas.connector.OpenSamlTestBase;
+import se.swedenconnect.eidas.connector.authn.sp.EidasAuthnRequest;
+import se.swedenconnect.opensaml.eidas.ext.attributes.AttributeConstants;
+import se.swedenconnect.opensaml.eidas.ext.attributes.PersonIdentifierType;
+import se.swedenconnect.opensaml.saml2.attribute.AttributeBuilder;
+import se.swedenconnect.opensaml.saml2.response.ResponseProcessingResult;
+import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
+import se.swedenconnect.spring.saml.idp.authentication.Saml2UserAuthenticationInputToken;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Test cases for EidasAuthenticationToken.
+ *
+ * @author Martin Lindström
+ */
+public class EidasAuthenticationTokenTest extends OpenSamlTestBase {
+
+  private static final String NAME = "urn:oid:2.5.4.42";
+
+  private static final String NAME2 = "urn:oid:2.5.4.4";
+
+  @Test
+  void testGetAttributeFirstWins() {
+    final EidasAuthenticationToken token = createToken();
+    token.addAttribute(new UserAttribute(NAME, "givenName", "Kalle"));
+    token.addAttribute(new UserAttribute(NAME, "givenName", "Nisse"));
+
+    // The index is built on first use ...
+    Assertions.assertEquals(List.of("Kalle"), token.getAttribute(NAME).getStringValues());
+
+    // Attributes added after the index was built do not replace the first attribute ...
+    token.addAttribute(new UserAttribute(NAME, "givenName", "Olle"));
+    Assertions.assertEquals(List.of("Kalle"), token.getAttribute(NAME).getStringValues());
+
+    // But all attributes are listed ...
+    Assertions.assertEquals(3, token.getAttributes().size());
+  }
+
+  @Test
+  void testIndexUpdatedAfterBuild() {
+    final EidasAuthenticationToken token = createToken();
+    token.addAttribute(new UserAttribute(NAME, "givenName", "Kalle"));
+
+    // Build the index ...
+    Assertions.assertNull(token.getAttribute(NAME2));
+
+    token.addAttribute(new UserAttribute(NAME2, "sn", "Kula"));
+    Assertions.assertEquals(List.of("Kula"), token.getAttribute(NAME2).getStringValues());
+
+    token.addAttributes(List.of(new UserAttribute("urn:oid:2.5.4.6", "c", "SE")));
+    Assertions.assertEquals(List.of("SE"), token.getAttribute("urn:oid:2.5.4.6").getStringValues());
+    Assertions.assertEquals(List.of("Kalle"), token.getAttribute(NAME).getStringValues());
+  }
+
+  @Test
+  void testAddAttributes() {
+    final EidasAuthenticationToken token = createToken();
+    token.addAttributes(null);
+    token.addAttributes(List.of());
+    token.addAttributes(Arrays.asList(
+        new UserAttribute(NAME, "givenName", "Kalle"), null, new UserAttribute(NAME2, "sn", "Kula")));
+
+    Assertions.assertEquals(List.of(NAME, NAME2), token.getAttributes().stream().map(UserAttribute::getId).toList());
+  }
+
+  @Test
+  void testPrincipalAfterAddAttributes() {
+    final EidasAuthenticationToken token = createToken();
+
+    // No person identifier ...
+    Assertions.assertEquals("unknown", token.getPrincipal());
+
+    // Adding other attributes does not change the principal ...
+    token.addAttributes(List.of(new UserAttribute(NAME, "givenName", "Kalle")));
+    Assertions.assertEquals("unknown", token.getPrincipal());
+
+    // But adding the person identifier does ...
+    token.addAttributes(List.of(
+        new UserAttribute(NAME2, "sn", "Kula"),
+        new UserAttribute(createPersonIdentifier("SE/SE/198001011234"))));
+    Assertions.assertEquals("SE/SE/198001011234", token.getPrincipal());
+
+    // The first person identifier is the principal ...
+    token.addAttributes(List.of(new UserAttribute(createPersonIdentifier("SE/SE/199001011234"))));
+    Assertions.assertEquals("SE/SE/198001011234", token.getPrincipal());
+  }
+
+  @Test
+  void testPrincipalFromResponse() {
+    final EidasAuthenticationToken token = createToken(createPersonIdentifier("SE/SE/198001011234"));
+    Assertions.assertEquals("SE/SE/198001011234", token.getPrincipal());
+
+    token.addAttribute(new UserAttribute(createPersonIdentifier("SE/SE/199001011234")));
+    Assertions.assertEquals("SE/SE/198001011234", token.getPrincipal());
+  }
+
+  @Test
+  void testGetAssertionBase64() {
+    final EidasAuthenticationToken token = createToken();
+    final String encoding = token.getAssertionBase64();
+    Assertions.assertNotNull(encoding);
+    final int size = Base64.getDecoder().decode(encoding).length;
+
+    Assertions.assertEquals(encoding, token.getAssertionBase64(size));
+    Assertions.assertNull(token.getAssertionBase64(size - 1));
+    Assertions.assertNull(token.getAssertionBase64(0));
+  }
+
+  static EidasAuthenticationToken createToken(final Attribute... attributes) {
+    return createToken(createAssertion(), attributes);
+  }
+
+  static EidasAuthenticationToken createToken(final Assertion assertion, final Attribute... attributes) {
+    final ResponseProcessingResult result = Mockito.mock(ResponseProcessingResult.class);
+    Mockito.when(result.getResponseId()).thenReturn("_ea3a5c8a7ba2c1e0a1b5d0bb8c43d1e1");
+    Mockito.when(result.getInResponseTo()).thenReturn("_c7a4f1cf61cdd3ea4d2d3c4d6a0b1c9e");
+    Mockito.when(result.getIssueInstant()).thenReturn(Instant.now());
+    Mockito.when(result.getAssertion()).thenReturn(assertion);
+    Mockito.when(result.getAttributes()).thenReturn(List.of(attributes));
+
+    final Saml2UserAuthenticationInputToken inputToken = Mockito.mock(Saml2UserAuthenticationInputToken.class);
+    Mockito.when(inputToken.getLogString()).thenReturn("test");
+
+    return new EidasAuthenticationToken(result, Mockito.mock(EidasAuthnRequest.class), inputToken);
+  }
+
+  static Assertion createAssertion() {
+    final Assertion assertion = (Assertion) XMLObjectSupport.buildXMLObject(Assertion.DEFAULT_ELEMENT_NAME);
+    assertion.setID("_b4a7c6e5d0f1e2a3b4c5d6e7f8a9b0c1");
+    assertion.setIssueInstant(Instant.now());
+    return assertion;
+  }
+
+  static Attribute createPersonIdentifier(final String id) {
+    final PersonIdentifierType value = AttributeBuilder.createValueObject(PersonIdentifierType.class);
+    value.setValue(id);
+    return AttributeBuilder.builder(AttributeConstants.EIDAS_PERSON_IDENTIFIER_ATTRIBUTE_NAME)
+        .friendlyName(AttributeConstants.EIDAS_PERSON_IDENTIFIER_ATTRIBUTE_FRIENDLY_NAME)
+        .value(value)
+        .build();
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import se.swedenconnect.eidas.connector.OpenSamlTestBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Test cases for LazyOpenSamlObject.
+ *
+ * @author Martin Lindström
+ */
+public class LazyOpenSamlObjectTest extends OpenSamlTestBase {
+
+  @Test
+  void testSerialize() throws Exception {
+    final AuthnRequest authnRequest = createAuthnRequest();
+    final LazyOpenSamlObject<AuthnRequest> holder = new LazyOpenSamlObject<>(authnRequest);
+
+    final LazyOpenSamlObject<AuthnRequest> holder2 = serializeDeserialize(holder);
+    Assertions.assertArrayEquals(holder.getEncoding(), holder2.getEncoding());
+    Assertions.assertEquals(authnRequest.getID(), holder2.get().getID());
+    Assertions.assertEquals(authnRequest.getDestination(), holder2.get().getDestination());
+    Assertions.assertSame(holder2.get(), holder2.get());
+  }
+
+  @Test
+  void testSerializeWithEncoding() throws Exception {
+    final AuthnRequest authnRequest = createAuthnRequest();
+    final byte[] encoding = new LazyOpenSamlObject<>(authnRequest).getEncoding();
+
+    // The supplied encoding is stored as is ...
+    final LazyOpenSamlObject<AuthnRequest> holder = new LazyOpenSamlObject<>(authnRequest, encoding);
+    Assertions.assertSame(encoding, holder.getEncoding());
+
+    final LazyOpenSamlObject<AuthnRequest> holder2 = serializeDeserialize(holder);
+    Assertions.assertEquals(new String(encoding, StandardCharsets.UTF_8),
+        new String(holder2.getEncoding(), StandardCharsets.UTF_8));
+    Assertions.assertEquals(authnRequest.getID(), holder2.get().getID());
+  }
+
+  @Test
+  void testOfReceived() throws Exception {
+    final byte[] received = new LazyOpenSamlObject<>(createAuthnRequest()).getEncoding();
+    final AuthnRequest authnRequest = (AuthnRequest) XMLObjectSupport.unmarshallFromInputStream(
+        XMLObjectProviderRegistrySupport.getParserPool(), new ByteArrayInputStream(received));
+
+    // The received encoding is kept even if the object is changed ...
+    final LazyOpenSamlObject<AuthnRequest> holder = LazyOpenSamlObject.ofReceived(authnRequest);
+    authnRequest.setDestination("https://other.example.com/sso");
+    Assertions.assertEquals(new String(received, StandardCharsets.UTF_8),
+        new String(holder.getEncoding(), StandardCharsets.UTF_8));
+
+    // An object that was not unmarshalled is marshalled when needed ...
+    final AuthnRequest built = createAuthnRequest();
+    Assertions.assertEquals(built.getID(), serializeDeserialize(LazyOpenSamlObject.ofReceived(built)).get().getID());
+  }
+
+  @Test
+  void testInvalidVersion() throws Exception {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (final ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeByte(2);
+      oos.writeInt(100);
+      oos.writeInt(10);
+    }
+    final LazyOpenSamlObject<AuthnRequest> holder = new LazyOpenSamlObject<>();
+    try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      Assertions.assertThrows(InvalidObjectException.class, () -> holder.readExternal(ois));
+    }
+  }
+
+  private static AuthnRequest createAuthnRequest() {
+    final AuthnRequest authnRequest = (AuthnRequest) XMLObjectSupport.buildXMLObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+    authnRequest.setID("_c7a4f1cf61cdd3ea4d2d3c4d6a0b1c9e");
+    authnRequest.setIssueInstant(Instant.now());
+    authnRequest.setDestination("https://eidas.example.com/sso");
+    return authnRequest;
+  }
+
+  private static byte[] serialize(final Object object) throws Exception {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (final ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(object);
+    }
+    return bos.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T serializeDeserialize(final T object) throws Exception {
+    try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialize(object)))) {
+      return (T) ois.readObject();
+    }
+  }
+
+}
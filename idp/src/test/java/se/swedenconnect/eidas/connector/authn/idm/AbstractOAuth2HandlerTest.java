@@ -0,0 +1,294 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.idm;
+
+import com.nimbusds.oauth2.sdk.Scope;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.security.credential.BasicCredential;
+import se.swedenconnect.security.credential.PkiCredential;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Test cases for AbstractOAuth2Handler.
+ *
+ * @author Martin Lindström
+ */
+public class AbstractOAuth2HandlerTest {
+
+  private static PkiCredential credential;
+
+  @BeforeAll
+  static void init() throws Exception {
+    final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    final KeyPair keyPair = generator.generateKeyPair();
+    credential = new BasicCredential(keyPair.getPublic(), keyPair.getPrivate());
+  }
+
+  @Test
+  void testRefreshInBackground() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    handler.setRefreshThreshold(0.000001);
+
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    Assertions.assertEquals(1, handler.getSynchronousIssuanceCount());
+
+    // The refresh is due. The current token is returned while the new token is obtained ...
+    //
+    final CountDownLatch latch = new CountDownLatch(1);
+    handler.block = latch;
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    latch.countDown();
+    waitFor(handler::getRefreshCount, 1);
+
+    // Only one refresh was started ...
+    Assertions.assertEquals(2, handler.issued.get());
+
+    handler.block = null;
+    Assertions.assertEquals("Bearer token-2", handler.getCheckAccessToken());
+    Assertions.assertEquals(1, handler.getSynchronousIssuanceCount());
+    Assertions.assertEquals(0, handler.getRefreshFailureCount());
+  }
+
+  @Test
+  void testNoRefreshBeforeThreshold() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    Assertions.assertEquals(1, handler.issued.get());
+    Assertions.assertEquals(0, handler.getRefreshCount());
+  }
+
+  @Test
+  void testSynchronousIssuance() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+
+    // Tokens that expire within 10 seconds are not valid, so each call issues a token ...
+    //
+    handler.lifetime = Duration.ofSeconds(5);
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    Assertions.assertEquals("Bearer token-2", handler.getCheckAccessToken());
+    Assertions.assertEquals(2, handler.getSynchronousIssuanceCount());
+    Assertions.assertEquals(0, handler.getRefreshCount());
+
+    handler.lifetime = Duration.ofMinutes(10);
+    Assertions.assertEquals("Bearer token-3", handler.getCheckAccessToken());
+    Assertions.assertEquals("Bearer token-3", handler.getCheckAccessToken());
+    Assertions.assertEquals(3, handler.getSynchronousIssuanceCount());
+  }
+
+  @Test
+  void testSynchronousIssuanceFailure() {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    handler.error = new IdmException("OAuth2 server unavailable");
+    Assertions.assertThrows(IdmException.class, handler::getCheckAccessToken);
+    Assertions.assertEquals(0, handler.getRefreshFailureCount());
+  }
+
+  @Test
+  void testRefreshFailure() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    handler.setRefreshThreshold(0.000001);
+    handler.setRefreshRetryDelay(Duration.ofHours(1));
+
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+
+    // The background refresh fails, and the current token is still used ...
+    //
+    handler.error = new IdmException("OAuth2 server unavailable");
+    Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    waitFor(handler::getRefreshFailureCount, 1);
+
+    // No new refresh is attempted until the retry delay has passed ...
+    //
+    for (int i = 0; i < 10; i++) {
+      Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+    }
+    Assertions.assertEquals(2, handler.issued.get());
+    Assertions.assertEquals(1, handler.getRefreshFailureCount());
+
+    // After the delay, a new refresh is attempted ...
+    //
+    handler.setRefreshRetryDelay(Duration.ZERO);
+    handler.error = null;
+    final Instant timeout = Instant.now().plusSeconds(5);
+    while (handler.getRefreshCount() < 1 && Instant.now().isBefore(timeout)) {
+      Assertions.assertEquals("Bearer token-1", handler.getCheckAccessToken());
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(1, handler.getRefreshCount());
+    Assertions.assertEquals("Bearer token-3", handler.getCheckAccessToken());
+    Assertions.assertEquals(1, handler.getRefreshFailureCount());
+    Assertions.assertEquals(1, handler.getSynchronousIssuanceCount());
+  }
+
+  @Test
+  void testIllegalArguments() {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    Assertions.assertThrows(IllegalArgumentException.class, () -> handler.setRefreshThreshold(0));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> handler.setRefreshThreshold(1.1));
+    Assertions.assertThrows(NullPointerException.class, () -> handler.setRefreshRetryDelay(null));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> handler.setRefreshRetryDelay(Duration.ofSeconds(-1)));
+  }
+
+  @Test
+  void testGetAccessTokenCoalescing() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    handler.setGetTokenCache(new AccessTokenCache(10));
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    handler.block = latch;
+
+    final Callable<String> call = () -> handler.getGetAccessToken("DE:123456");
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<String> first = executor.submit(call);
+      waitFor(handler.issued::get, 1);
+      final Future<String> second = executor.submit(call);
+
+      // The second caller waits for the token being issued for the first caller ...
+      Thread.sleep(100);
+      Assertions.assertFalse(second.isDone());
+      latch.countDown();
+
+      Assertions.assertEquals("Bearer token-1", first.get(5, TimeUnit.SECONDS));
+      Assertions.assertEquals("Bearer token-1", second.get(5, TimeUnit.SECONDS));
+      Assertions.assertEquals(1, handler.issued.get());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    handler.block = null;
+    Assertions.assertEquals("Bearer token-1", handler.getGetAccessToken("DE:123456"));
+    Assertions.assertEquals("Bearer token-2", handler.getGetAccessToken("NO:123456"));
+    Assertions.assertEquals(2, handler.issued.get());
+  }
+
+  @Test
+  void testGetAccessTokenCoalescingFailure() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    handler.setGetTokenCache(new AccessTokenCache(10));
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    handler.block = latch;
+    handler.error = new IdmException("OAuth2 server unavailable");
+
+    final Callable<String> call = () -> handler.getGetAccessToken("DE:123456");
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<String> first = executor.submit(call);
+      waitFor(handler.issued::get, 1);
+      final Future<String> second = executor.submit(call);
+      Thread.sleep(100);
+      latch.countDown();
+
+      // Both callers get the error, and it is not cached ...
+      final ExecutionException e1 =
+          Assertions.assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+      Assertions.assertSame(handler.error, e1.getCause());
+      final ExecutionException e2 =
+          Assertions.assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+      Assertions.assertSame(handler.error, e2.getCause());
+      Assertions.assertEquals(1, handler.issued.get());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    handler.block = null;
+    handler.error = null;
+    Assertions.assertEquals("Bearer token-2", handler.getGetAccessToken("DE:123456"));
+  }
+
+  @Test
+  void testGetAccessTokenNoCache() throws Exception {
+    final TestOAuth2Handler handler = new TestOAuth2Handler();
+    Assertions.assertEquals("Bearer token-1", handler.getGetAccessToken("DE:123456"));
+    Assertions.assertEquals("Bearer token-2", handler.getGetAccessToken("DE:123456"));
+  }
+
+  private static void waitFor(final LongSupplier counter, final long expected) throws InterruptedException {
+    final Instant timeout = Instant.now().plusSeconds(5);
+    while (counter.getAsLong() < expected && Instant.now().isBefore(timeout)) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(expected, counter.getAsLong());
+  }
+
+  /**
+   * Handler that issues access tokens named {@code token-<n>}.
+   */
+  private static class TestOAuth2Handler extends AbstractOAuth2Handler {
+
+    /** The number of issued (or attempted) tokens. */
+    private final AtomicInteger issued = new AtomicInteger();
+
+    /** The lifetime of issued tokens. */
+    private volatile Duration lifetime = Duration.ofMinutes(10);
+
+    /** If set, issuance fails with this error. */
+    private volatile IdmException error;
+
+    /** If set, issuance waits for this latch. */
+    private volatile CountDownLatch block;
+
+    TestOAuth2Handler() {
+      super("https://connector.example.com", List.of("idm:check"), List.of("idm:get"), credential);
+    }
+
+    @Override
+    protected BearerAccessTokenHolder obtainAccessToken(final String subject, final Scope scope)
+        throws IdmException {
+      final int n = this.issued.incrementAndGet();
+      final CountDownLatch latch = this.block;
+      if (latch != null) {
+        try {
+          latch.await();
+        }
+        catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IdmException("Interrupted", e);
+        }
+      }
+      if (this.error != null) {
+        throw this.error;
+      }
+      return new BearerAccessTokenHolder("Bearer token-" + n, Instant.now().plus(this.lifetime));
+    }
+
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.idm;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test cases for {@link AccessTokenCache}.
+ *
+ * @author Martin Lindström
+ */
+public class AccessTokenCacheTest {
+
+  private final AtomicReference<Instant> now = new AtomicReference<>(Instant.now());
+
+  @Test
+  void testMinRemainingLifetime() {
+    final AccessTokenCache cache = new AccessTokenCache(10, this.createClock());
+    final BearerAccessTokenHolder token = new BearerAccessTokenHolder("Bearer abc", this.now.get().plusSeconds(60));
+    cache.put("DE:123456", token);
+
+    this.advance(Duration.ofSeconds(60).minus(AccessTokenCache.MIN_REMAINING_LIFETIME).minusMillis(1));
+    Assertions.assertSame(token, cache.get("DE:123456"));
+
+    // Less than the minimum remaining lifetime left ...
+    this.advance(Duration.ofMillis(1));
+    Assertions.assertNull(cache.get("DE:123456"));
+  }
+
+  @Test
+  void testTokenWithoutRemainingLifetime() {
+    final AccessTokenCache cache = new AccessTokenCache(10, this.createClock());
+    cache.put("DE:123456",
+        new BearerAccessTokenHolder("Bearer abc", this.now.get().plus(AccessTokenCache.MIN_REMAINING_LIFETIME)));
+    Assertions.assertNull(cache.get("DE:123456"));
+  }
+
+  @Test
+  void testNoExpirationTime() {
+    final AccessTokenCache cache = new AccessTokenCache(10);
+    cache.put("DE:123456", new BearerAccessTokenHolder("Bearer abc", null));
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertNull(cache.get("DE:123456"));
+
+    // A token without an expiration time does not replace an already cached token ...
+    final BearerAccessTokenHolder token = new BearerAccessTokenHolder("Bearer def", Instant.now().plusSeconds(3600));
+    cache.put("DE:123456", token);
+    cache.put("DE:123456", new BearerAccessTokenHolder("Bearer ghi", null));
+    Assertions.assertSame(token, cache.get("DE:123456"));
+  }
+
+  @Test
+  void testIllegalArguments() {
+    final AccessTokenCache cache = new AccessTokenCache(10);
+    Assertions.assertThrows(NullPointerException.class, () -> cache.put(null,
+        new BearerAccessTokenHolder("Bearer abc", Instant.now().plusSeconds(3600))));
+    Assertions.assertThrows(NullPointerException.class, () -> cache.put("DE:123456", null));
+  }
+
+  private Clock createClock() {
+    final Clock clock = Mockito.mock(Clock.class);
+    Mockito.when(clock.millis()).thenAnswer(a -> this.now.get().toEpochMilli());
+    return clock;
+  }
+
+  private void advance(final Duration duration) {
+    this.now.updateAndGet(n -> n.plus(duration));
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.idm;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import se.swedenconnect.eidas.connector.authn.EidasAuthenticationToken;
+import se.swedenconnect.opensaml.sweid.saml2.attribute.AttributeConstants;
+import se.swedenconnect.spring.saml.idp.attributes.UserAttribute;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for DefaultIdmClient.
+ *
+ * @author Martin Lindström
+ */
+public class DefaultIdmClientTest {
+
+  private static final String PRID = "DE:1234567890";
+
+  private HttpServer server;
+
+  private final AtomicInteger headRequests = new AtomicInteger();
+
+  private volatile int headStatus = 200;
+
+  private volatile int getStatus = 404;
+
+  private IdmRecordCache recordCache;
+
+  private DefaultIdmClient client;
+
+  @BeforeEach
+  void init() throws Exception {
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    this.server.createContext(DefaultIdmClient.IDM_BASE_PATH, exchange -> {
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        this.headRequests.incrementAndGet();
+        exchange.sendResponseHeaders(this.headStatus, -1);
+      }
+      else {
+        exchange.sendResponseHeaders(this.getStatus, -1);
+      }
+      exchange.close();
+    });
+    this.server.start();
+
+    final OAuth2Handler oauth2 = Mockito.mock(OAuth2Handler.class);
+    Mockito.when(oauth2.getCheckAccessToken()).thenReturn("Bearer check");
+    Mockito.when(oauth2.getGetAccessToken(Mockito.any())).thenReturn("Bearer get");
+
+    this.recordCache = new IdmRecordCache(10, Duration.ofMinutes(1), Duration.ofMinutes(5));
+    this.client = new DefaultIdmClient(
+        "http://localhost:%d".formatted(this.server.getAddress().getPort()), oauth2, null);
+    this.client.setRecordCache(this.recordCache);
+  }
+
+  @AfterEach
+  void destroy() throws Exception {
+    this.client.destroy();
+    this.server.stop(0);
+  }
+
+  @Test
+  void testHasRecordCached() throws Exception {
+    this.headStatus = 200;
+    Assertions.assertTrue(this.client.hasRecord(PRID));
+    Assertions.assertTrue(this.client.hasRecord(PRID));
+    Assertions.assertEquals(1, this.headRequests.get());
+    Assertions.assertEquals(Boolean.TRUE, this.recordCache.hasRecord(PRID));
+  }
+
+  @Test
+  void testHasNoRecordCached() throws Exception {
+    this.headStatus = 404;
+    Assertions.assertFalse(this.client.hasRecord(PRID));
+    Assertions.assertFalse(this.client.hasRecord(PRID));
+    Assertions.assertEquals(1, this.headRequests.get());
+    Assertions.assertEquals(Boolean.FALSE, this.recordCache.hasRecord(PRID));
+  }
+
+  @Test
+  void testErrorsNotCached() throws Exception {
+    for (final int status : new int[] { 400, 401, 500, 503 }) {
+      this.headRequests.set(0);
+      this.headStatus = status;
+      Assertions.assertFalse(this.client.hasRecord(PRID));
+      Assertions.assertFalse(this.client.hasRecord(PRID));
+      Assertions.assertEquals(2, this.headRequests.get(), "Expected no caching for status " + status);
+      Assertions.assertNull(this.recordCache.hasRecord(PRID));
+    }
+
+    // Once the IdM service gives a definite answer, it is cached ...
+    this.headStatus = 200;
+    Assertions.assertTrue(this.client.hasRecord(PRID));
+    Assertions.assertEquals(Boolean.TRUE, this.recordCache.hasRecord(PRID));
+  }
+
+  @Test
+  void testGetRecordNotFoundInvalidates() throws Exception {
+    this.headStatus = 200;
+    Assertions.assertTrue(this.client.hasRecord(PRID));
+
+    // The record has been removed at the IdM service ...
+    //
+    this.getStatus = 404;
+    Assertions.assertThrows(IdmException.class, () -> this.client.getRecord(createToken(PRID)));
+    Assertions.assertNull(this.recordCache.hasRecord(PRID));
+
+    this.headStatus = 404;
+    Assertions.assertFalse(this.client.hasRecord(PRID));
+    Assertions.assertEquals(2, this.headRequests.get());
+  }
+
+  @Test
+  void testGetRecordErrorKeepsEntry() throws Exception {
+    this.headStatus = 200;
+    Assertions.assertTrue(this.client.hasRecord(PRID));
+
+    this.getStatus = 500;
+    Assertions.assertThrows(IdmException.class, () -> this.client.getRecord(createToken(PRID)));
+    Assertions.assertEquals(Boolean.TRUE, this.recordCache.hasRecord(PRID));
+  }
+
+  @Test
+  void testInvalidateCachedRecordStatus() throws Exception {
+    this.headStatus = 404;
+    Assertions.assertFalse(this.client.hasRecord(PRID));
+    Assertions.assertFalse(this.client.hasRecord("DE:0987654321"));
+
+    this.client.invalidateCachedRecordStatus(PRID);
+    this.client.invalidateCachedRecordStatus(null);
+    Assertions.assertNull(this.recordCache.hasRecord(PRID));
+    Assertions.assertEquals(Boolean.FALSE, this.recordCache.hasRecord("DE:0987654321"));
+  }
+
+  private static EidasAuthenticationToken createToken(final String prid) {
+    final EidasAuthenticationToken token = Mockito.mock(EidasAuthenticationToken.class);
+    Mockito.when(token.getAttribute(AttributeConstants.ATTRIBUTE_NAME_PRID)).thenReturn(new UserAttribute(
+        AttributeConstants.ATTRIBUTE_NAME_PRID, AttributeConstants.ATTRIBUTE_FRIENDLY_NAME_PRID, prid));
+    return token;
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.idm;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test cases for {@link IdmRecordCache}.
+ *
+ * @author Martin Lindström
+ */
+public class IdmRecordCacheTest {
+
+  private final AtomicReference<Instant> now = new AtomicReference<>(Instant.now());
+
+  @Test
+  void testPositiveAndNegativeEntries() {
+    final IdmRecordCache cache = new IdmRecordCache(10, Duration.ofMinutes(1), Duration.ofMinutes(5));
+
+    Assertions.assertNull(cache.hasRecord("DE:123456"));
+    cache.put("DE:123456", false);
+    cache.put("NO:123456", true);
+    Assertions.assertEquals(Boolean.FALSE, cache.hasRecord("DE:123456"));
+    Assertions.assertEquals(Boolean.TRUE, cache.hasRecord("NO:123456"));
+
+    cache.put("DE:123456", true);
+    Assertions.assertEquals(Boolean.TRUE, cache.hasRecord("DE:123456"));
+
+    cache.invalidate("DE:123456");
+    Assertions.assertNull(cache.hasRecord("DE:123456"));
+    Assertions.assertEquals(Boolean.TRUE, cache.hasRecord("NO:123456"));
+  }
+
+  @Test
+  void testPositiveTimeToLive() {
+    final IdmRecordCache cache =
+        new IdmRecordCache(10, Duration.ofSeconds(60), Duration.ofSeconds(300), this.createClock());
+    cache.put("NO:123456", true);
+
+    this.advance(Duration.ofSeconds(59));
+    Assertions.assertEquals(Boolean.TRUE, cache.hasRecord("NO:123456"));
+
+    this.advance(Duration.ofSeconds(1));
+    Assertions.assertNull(cache.hasRecord("NO:123456"));
+  }
+
+  @Test
+  void testNegativeTimeToLive() {
+    final IdmRecordCache cache =
+        new IdmRecordCache(10, Duration.ofSeconds(60), Duration.ofSeconds(300), this.createClock());
+    cache.put("DE:123456", false);
+
+    // The negative entry outlives the positive time-to-live ...
+    this.advance(Duration.ofSeconds(60));
+    Assertions.assertEquals(Boolean.FALSE, cache.hasRecord("DE:123456"));
+
+    this.advance(Duration.ofSeconds(239));
+    Assertions.assertEquals(Boolean.FALSE, cache.hasRecord("DE:123456"));
+
+    this.advance(Duration.ofSeconds(1));
+    Assertions.assertNull(cache.hasRecord("DE:123456"));
+  }
+
+  @Test
+  void testNegativeTimeToLiveShorterThanPositive() {
+    final IdmRecordCache cache =
+        new IdmRecordCache(10, Duration.ofSeconds(300), Duration.ofSeconds(60), this.createClock());
+    cache.put("DE:123456", false);
+    cache.put("NO:123456", true);
+
+    this.advance(Duration.ofSeconds(60));
+    Assertions.assertNull(cache.hasRecord("DE:123456"));
+    Assertions.assertEquals(Boolean.TRUE, cache.hasRecord("NO:123456"));
+  }
+
+  @Test
+  void testIllegalArguments() {
+    Assertions.assertThrows(NullPointerException.class,
+        () -> new IdmRecordCache(10, null, Duration.ofMinutes(1)));
+    Assertions.assertThrows(NullPointerException.class,
+        () -> new IdmRecordCache(10, Duration.ofMinutes(1), null));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new IdmRecordCache(10, Duration.ZERO, Duration.ofMinutes(1)));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new IdmRecordCache(10, Duration.ofMinutes(1), Duration.ZERO));
+  }
+
+  private Clock createClock() {
+    final Clock clock = Mockito.mock(Clock.class);
+    Mockito.when(clock.millis()).thenAnswer(a -> this.now.get().toEpochMilli());
+    return clock;
+  }
+
+  private void advance(final Duration duration) {
+    this.now.updateAndGet(n -> n.plus(duration));
+  }
+
+}
@@ -32,6 +32,7 @@ import se.swedenconnect.opensaml.saml2.metadata.provider.FilesystemMetadataProvi
 import se.swedenconnect.opensaml.saml2.metadata.provider.MetadataProvider;
 import se.swedenconnect.opensaml.sweid.saml2.authn.psc.RequestedPrincipalSelection;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -174,6 +175,11 @@ public class DefaultEuMetadataProviderTest extends OpenSamlTestBase {
       Mockito.when(provider.getLastUpdate()).thenReturn(Instant.now().plusSeconds(60));
       Mockito.when(provider.getIdentityProviders()).thenReturn(provider2.getIdentityProviders());
 
+      // Readers should not trigger re-indexing ...
+      Assertions.assertEquals(16, euProvider.getCountries().size());
+      Assertions.assertEquals(1, publisher.getEvents().size());
+
+      euProvider.refreshIndex();
       Assertions.assertEquals(15, euProvider.getCountries().size());
 
       Mockito.when(provider.getLastUpdate()).thenReturn(Instant.now().minusSeconds(61));
@@ -189,6 +195,7 @@ public class DefaultEuMetadataProviderTest extends OpenSamlTestBase {
       Mockito.when(provider.getLastUpdate()).thenReturn(null);
       Mockito.when(provider.getIdentityProviders()).thenReturn(provider1.getIdentityProviders());
 
+      euProvider.refreshIndex();
       Assertions.assertEquals(16, euProvider.getCountries().size());
       Mockito.when(provider.getLastUpdate()).thenReturn(Instant.now().minusSeconds(60));
       Assertions.assertTrue(euProvider.contains("PT", false));
@@ -201,7 +208,7 @@ public class DefaultEuMetadataProviderTest extends OpenSamlTestBase {
       // No change
       Mockito.when(provider.getLastUpdate()).thenReturn(null);
 
-      euProvider.getCountries();
+      euProvider.refreshIndex();
 
       Assertions.assertEquals(4, publisher.getEvents().size());
       Assertions.assertEquals(0, publisher.getEvents().get(3).getEuMetadataUpdateData().getAddedCountries().size());
@@ -231,6 +238,22 @@ public class DefaultEuMetadataProviderTest extends OpenSamlTestBase {
     Assertions.assertEquals(error, publisher.getEvents().get(0).getEuMetadataUpdateData().getError());
   }
 
+  @Test
+  public void testIndexRefreshInterval() {
+    final DefaultEuMetadataProvider euProvider =
+        new DefaultEuMetadataProvider(Mockito.mock(MetadataProvider.class), publisher);
+    Assertions.assertEquals(DefaultEuMetadataProvider.DEFAULT_INDEX_REFRESH_INTERVAL,
+        euProvider.getIndexRefreshInterval());
+
+    euProvider.setIndexRefreshInterval(Duration.ofMinutes(1));
+    Assertions.assertEquals(Duration.ofMinutes(1), euProvider.getIndexRefreshInterval());
+
+    Assertions.assertThrows(NullPointerException.class, () -> euProvider.setIndexRefreshInterval(null));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> euProvider.setIndexRefreshInterval(Duration.ZERO));
+    Assertions.assertEquals(Duration.ofMinutes(1), euProvider.getIndexRefreshInterval());
+  }
+
   public static MetadataProvider createProvider(final String xml) throws Exception {
     final Resource resource = new ClassPathResource(xml);
     final FilesystemMetadataProvider provider = new FilesystemMetadataProvider(resource.getFile());
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.sp;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnContextComparisonTypeEnumeration;
+import org.opensaml.saml.saml2.core.RequestedAuthnContext;
+import se.swedenconnect.eidas.connector.OpenSamlTestBase;
+import se.swedenconnect.opensaml.eidas.common.EidasConstants;
+import se.swedenconnect.opensaml.sweid.saml2.authn.LevelOfAssuranceUris;
+import se.swedenconnect.spring.saml.idp.error.Saml2ErrorStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies that the precomputed decision tables of {@link AuthnContextClassRefMapper} give the same results as the
+ * previous (per call) computation for every combination of requested and supported URI:s. The previous computation is
+ * kept in {@link LegacyMapper}.
+ *
+ * @author Martin Lindström
+ */
+public class AuthnContextClassRefMapperEquivalenceTest extends OpenSamlTestBase {
+
+  private static final List<String> SWEDISH_URIS = List.of(
+      AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF,
+      LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW,
+      "http://example.com/unknown");
+
+  private static final List<String> EIDAS_URIS = List.of(
+      EidasConstants.EIDAS_LOA_HIGH,
+      EidasConstants.EIDAS_LOA_SUBSTANTIAL,
+      EidasConstants.EIDAS_LOA_LOW,
+      EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED,
+      EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2,
+      EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED,
+      EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2,
+      EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED,
+      EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2,
+      "http://example.com/unknown");
+
+  @Test
+  void testRequestedAuthnContextEquivalence() {
+    for (final List<String> requested : subsets(SWEDISH_URIS)) {
+      for (final List<String> supported : subsets(EIDAS_URIS)) {
+        final LegacyMapper.Result expected = LegacyMapper.calculateRequestedAuthnContext(supported, requested);
+
+        Assertions.assertEquals(expected != null, AuthnContextClassRefMapper.canAuthenticate(supported, requested),
+            "canAuthenticate differs - requested: %s - supported: %s".formatted(requested, supported));
+        try {
+          final RequestedAuthnContext ctx =
+              AuthnContextClassRefMapper.calculateRequestedAuthnContext(supported, requested);
+          Assertions.assertNotNull(expected,
+              "Expected failure - requested: %s - supported: %s".formatted(requested, supported));
+          Assertions.assertEquals(expected.comparison(), ctx.getComparison(),
+              "Comparison differs - requested: %s - supported: %s".formatted(requested, supported));
+          Assertions.assertEquals(expected.uris(),
+              ctx.getAuthnContextClassRefs().stream().map(AuthnContextClassRef::getURI).toList(),
+              "URI:s differ - requested: %s - supported: %s".formatted(requested, supported));
+        }
+        catch (final Saml2ErrorStatusException e) {
+          Assertions.assertNull(expected,
+              "Unexpected failure - requested: %s - supported: %s".formatted(requested, supported));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testReturnAuthnContextUriEquivalence() {
+    final List<String> received = new ArrayList<>(EIDAS_URIS);
+    received.add(AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF);
+    received.add(null);
+
+    for (final List<String> requested : subsets(SWEDISH_URIS)) {
+      for (final String eidasUri : received) {
+        final String expected = LegacyMapper.calculateReturnAuthnContextUri(eidasUri, requested);
+        try {
+          final String uri = AuthnContextClassRefMapper.calculateReturnAuthnContextUri(eidasUri, requested);
+          Assertions.assertEquals(expected, uri,
+              "Returned URI differs - received: %s - requested: %s".formatted(eidasUri, requested));
+        }
+        catch (final Saml2ErrorStatusException e) {
+          Assertions.assertNull(expected,
+              "Unexpected failure - received: %s - requested: %s".formatted(eidasUri, requested));
+        }
+      }
+    }
+  }
+
+  private static List<List<String>> subsets(final List<String> values) {
+    final List<List<String>> subsets = new ArrayList<>();
+    for (int mask = 0; mask < (1 << values.size()); mask++) {
+      final List<String> subset = new ArrayList<>();
+      for (int i = 0; i < values.size(); i++) {
+        if ((mask & (1 << i)) != 0) {
+          subset.add(values.get(i));
+        }
+      }
+      subsets.add(subset);
+    }
+    return subsets;
+  }
+
+  /**
+   * The mapping logic as it was implemented before the decision tables were introduced. Returns {@code null} where the
+   * mapper throws an exception.
+   */
+  private static class LegacyMapper {
+
+    private static final int TEST = 0b01000000;
+    private static final int HIGH_NF = 0b00100000;
+    private static final int HIGH_NF_NN = 0b00010000;
+    private static final int SUB_NF = 0b00001000;
+    private static final int SUB_NF_NN = 0b00000100;
+    private static final int LOW_NF = 0b00000010;
+    private static final int LOW_NF_NN = 0b00000001;
+
+    private static final int EIDAS_HIGH = 0b00100000;
+    private static final int EIDAS_SUB = 0b00010000;
+    private static final int EIDAS_LOW = 0b00001000;
+    private static final int EIDAS_HIGH_NN = 0b00000100;
+    private static final int EIDAS_SUB_NN = 0b00000010;
+    private static final int EIDAS_LOW_NN = 0b00000001;
+    private static final int EIDAS_NN = 0b00000111;
+
+    private static final String[] EIDAS_URI_ORDER = {
+        EidasConstants.EIDAS_LOA_HIGH, EidasConstants.EIDAS_LOA_SUBSTANTIAL, EidasConstants.EIDAS_LOA_LOW,
+        EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED, EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED,
+        EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED };
+
+    private static final int[] EIDAS_FLAG_ORDER = {
+        EIDAS_HIGH, EIDAS_SUB, EIDAS_LOW, EIDAS_HIGH_NN, EIDAS_SUB_NN, EIDAS_LOW_NN };
+
+    record Result(AuthnContextComparisonTypeEnumeration comparison, List<String> uris) {
+    }
+
+    static Result calculateRequestedAuthnContext(final List<String> supportedUris, final List<String> requestedUris) {
+      final int requested = swedishMask(requestedUris);
+      final int supported = eidasMask(supportedUris);
+
+      if ((requested & TEST) == TEST) {
+        return new Result(AuthnContextComparisonTypeEnumeration.EXACT,
+            List.of(AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF));
+      }
+
+      int minimumMatching = 0;
+      int exactMatching = 0;
+      if ((requested & HIGH_NF) != 0) {
+        minimumMatching |= EIDAS_HIGH & supported;
+      }
+      if ((requested & HIGH_NF_NN) != 0) {
+        exactMatching |= (EIDAS_HIGH_NN | EIDAS_HIGH) & supported;
+        minimumMatching |= EIDAS_HIGH & supported;
+      }
+      if ((requested & SUB_NF) != 0) {
+        minimumMatching |= EIDAS_SUB & supported;
+      }
+      if ((requested & SUB_NF_NN) != 0) {
+        exactMatching |= (EIDAS_HIGH | EIDAS_HIGH_NN | EIDAS_SUB | EIDAS_SUB_NN) & supported;
+        minimumMatching |= EIDAS_SUB & supported;
+      }
+      if ((requested & LOW_NF) != 0) {
+        minimumMatching |= EIDAS_LOW & supported;
+      }
+      if ((requested & LOW_NF_NN) != 0) {
+        exactMatching |=
+            (EIDAS_HIGH | EIDAS_HIGH_NN | EIDAS_SUB | EIDAS_SUB_NN | EIDAS_LOW | EIDAS_LOW_NN) & supported;
+        minimumMatching |= EIDAS_LOW & supported;
+      }
+
+      if ((exactMatching & EIDAS_NN) != 0) {
+        final List<String> uris = new ArrayList<>();
+        for (int i = 0; i < EIDAS_FLAG_ORDER.length; i++) {
+          if ((exactMatching & EIDAS_FLAG_ORDER[i]) != 0) {
+            uris.add(EIDAS_URI_ORDER[i]);
+          }
+        }
+        return new Result(AuthnContextComparisonTypeEnumeration.EXACT, uris);
+      }
+      if (minimumMatching == 0) {
+        return null;
+      }
+      final String uri = (minimumMatching & EIDAS_LOW) != 0
+          ? EidasConstants.EIDAS_LOA_LOW
+          : (minimumMatching & EIDAS_SUB) != 0 ? EidasConstants.EIDAS_LOA_SUBSTANTIAL : EidasConstants.EIDAS_LOA_HIGH;
+      return new Result(AuthnContextComparisonTypeEnumeration.MINIMUM, List.of(uri));
+    }
+
+    static String calculateReturnAuthnContextUri(final String eidasUri, final List<String> requestedUris) {
+      if (AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF.equals(eidasUri)
+          && requestedUris.contains(AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF)) {
+        return AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF;
+      }
+      final int requested = swedishMask(requestedUris);
+      final int[] candidates = switch (eidasUri) {
+        case EidasConstants.EIDAS_LOA_HIGH -> new int[] { HIGH_NF, HIGH_NF_NN, SUB_NF, SUB_NF_NN, LOW_NF, LOW_NF_NN };
+        case EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED, EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2 ->
+            new int[] { HIGH_NF_NN, SUB_NF_NN, LOW_NF_NN };
+        case EidasConstants.EIDAS_LOA_SUBSTANTIAL -> new int[] { SUB_NF, SUB_NF_NN, LOW_NF, LOW_NF_NN };
+        case EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED, EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2 ->
+            new int[] { SUB_NF_NN, LOW_NF_NN };
+        case EidasConstants.EIDAS_LOA_LOW -> new int[] { LOW_NF, LOW_NF_NN };
+        case EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED, EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2 ->
+            new int[] { LOW_NF_NN };
+        case null, default -> new int[0];
+      };
+      return Arrays.stream(candidates)
+          .filter(c -> (requested & c) == c)
+          .mapToObj(LegacyMapper::toSwedishUri)
+          .findFirst()
+          .orElse(null);
+    }
+
+    private static int swedishMask(final List<String> uris) {
+      if (uris.contains(AuthnContextClassRefMapper.EIDAS_TEST_AUTHN_CONTEXT_CLASS_REF)) {
+        return TEST;
+      }
+      if (uris.isEmpty()) {
+        return HIGH_NF | HIGH_NF_NN | SUB_NF | SUB_NF_NN | LOW_NF | LOW_NF_NN;
+      }
+      int mask = 0;
+      for (final String uri : uris) {
+        mask |= switch (uri) {
+          case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF -> HIGH_NF;
+          case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH -> HIGH_NF_NN;
+          case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF -> SUB_NF;
+          case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL -> SUB_NF_NN;
+          case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF -> LOW_NF;
+          case LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW -> LOW_NF_NN;
+          default -> 0;
+        };
+      }
+      return mask;
+    }
+
+    private static int eidasMask(final List<String> uris) {
+      int mask = 0;
+      for (final String uri : uris) {
+        mask |= switch (uri) {
+          case EidasConstants.EIDAS_LOA_HIGH -> EIDAS_HIGH;
+          case EidasConstants.EIDAS_LOA_SUBSTANTIAL -> EIDAS_SUB;
+          case EidasConstants.EIDAS_LOA_LOW -> EIDAS_LOW;
+          case EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED, EidasConstants.EIDAS_LOA_HIGH_NON_NOTIFIED2 -> EIDAS_HIGH_NN;
+          case EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED, EidasConstants.EIDAS_LOA_SUBSTANTIAL_NON_NOTIFIED2 ->
+              EIDAS_SUB_NN;
+          case EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED, EidasConstants.EIDAS_LOA_LOW_NON_NOTIFIED2 -> EIDAS_LOW_NN;
+          default -> 0;
+        };
+      }
+      return mask;
+    }
+
+    private static String toSwedishUri(final int flag) {
+      return switch (flag) {
+        case HIGH_NF -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH_NF;
+        case HIGH_NF_NN -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_HIGH;
+        case SUB_NF -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL_NF;
+        case SUB_NF_NN -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_SUBSTANTIAL;
+        case LOW_NF -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW_NF;
+        default -> LevelOfAssuranceUris.AUTHN_CONTEXT_URI_EIDAS_LOW;
+      };
+    }
+
+  }
+
+}
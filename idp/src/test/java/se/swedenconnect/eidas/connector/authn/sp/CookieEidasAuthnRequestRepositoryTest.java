@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.authn.sp;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.saml.saml2.core.AuthnContextClassRef;
+import org.opensaml.saml.saml2.core.AuthnContextComparisonTypeEnumeration;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.Issuer;
+import org.opensaml.saml.saml2.core.RequestedAuthnContext;
+import se.swedenconnect.eidas.connector.OpenSamlTestBase;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Test cases for CookieEidasAuthnRequestRepository.
+ *
+ * @author Martin Lindström
+ */
+public class CookieEidasAuthnRequestRepositoryTest extends OpenSamlTestBase {
+
+  private static final SecretKeySpec KEY = new SecretKeySpec(new byte[32], "AES");
+
+  @Test
+  void testSealUnseal() {
+    final CookieEidasAuthnRequestRepository repository = createRepository(KEY, Clock.systemUTC());
+    final EidasAuthnRequest request = new EidasAuthnRequest(createAuthnRequest(), "relay", "_sp-request", "DE");
+
+    final EidasAuthnRequest request2 = repository.unseal(repository.seal(request));
+    Assertions.assertNotNull(request2);
+    Assertions.assertEquals("relay", request2.getRelayState());
+    Assertions.assertEquals("_sp-request", request2.getAssociatedRequestId());
+    Assertions.assertEquals("DE", request2.getCountry());
+
+    final AuthnRequest authnRequest = request.getAuthnRequest();
+    final AuthnRequest authnRequest2 = request2.getAuthnRequest();
+    Assertions.assertEquals(authnRequest.getID(), authnRequest2.getID());
+    Assertions.assertEquals(authnRequest.getIssueInstant(), authnRequest2.getIssueInstant());
+    Assertions.assertEquals(authnRequest.getDestination(), authnRequest2.getDestination());
+    Assertions.assertEquals(authnRequest.getAssertionConsumerServiceURL(),
+        authnRequest2.getAssertionConsumerServiceURL());
+    Assertions.assertEquals(authnRequest.getIssuer().getValue(), authnRequest2.getIssuer().getValue());
+    Assertions.assertEquals(Boolean.TRUE, authnRequest2.isForceAuthn());
+    Assertions.assertNull(authnRequest2.isPassive());
+    Assertions.assertNull(authnRequest2.getNameIDPolicy());
+    Assertions.assertEquals(AuthnContextComparisonTypeEnumeration.MINIMUM,
+        authnRequest2.getRequestedAuthnContext().getComparison());
+    Assertions.assertEquals("http://eidas.europa.eu/LoA/substantial",
+        authnRequest2.getRequestedAuthnContext().getAuthnContextClassRefs().get(0).getURI());
+  }
+
+  @Test
+  void testTampered() {
+    final CookieEidasAuthnRequestRepository repository = createRepository(KEY, Clock.systemUTC());
+    final byte[] value = Base64.getUrlDecoder().decode(
+        repository.seal(new EidasAuthnRequest(createAuthnRequest(), null, "_sp-request", "DE")));
+    value[value.length - 1] ^= 1;
+    Assertions.assertNull(repository.unseal(Base64.getUrlEncoder().withoutPadding().encodeToString(value)));
+    Assertions.assertNull(repository.unseal("not-a-valid-value"));
+  }
+
+  @Test
+  void testWrongKey() {
+    final String value = createRepository(KEY, Clock.systemUTC())
+        .seal(new EidasAuthnRequest(createAuthnRequest(), null, "_sp-request", "DE"));
+    final byte[] otherKey = new byte[32];
+    otherKey[0] = 1;
+    Assertions.assertNull(
+        createRepository(new SecretKeySpec(otherKey, "AES"), Clock.systemUTC()).unseal(value));
+  }
+
+  @Test
+  void testExpired() {
+    final Instant now = Instant.now();
+    final String value = createRepository(KEY, Clock.fixed(now, ZoneOffset.UTC))
+        .seal(new EidasAuthnRequest(createAuthnRequest(), null, "_sp-request", "DE"));
+    Assertions.assertNull(createRepository(KEY, Clock.fixed(now.plus(11, ChronoUnit.MINUTES), ZoneOffset.UTC))
+        .unseal(value));
+  }
+
+  @Test
+  void testInvalidKey() {
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> createRepository(new SecretKeySpec(new byte[10], "AES"), Clock.systemUTC()));
+  }
+
+  private static CookieEidasAuthnRequestRepository createRepository(final SecretKeySpec key, final Clock clock) {
+    return new CookieEidasAuthnRequestRepository(key, CookieEidasAuthnRequestRepository.DEFAULT_COOKIE_NAME,
+        null, "/idp/extauth/saml2/post", Duration.ofMinutes(10), clock);
+  }
+
+  private static AuthnRequest createAuthnRequest() {
+    final AuthnRequest authnRequest = (AuthnRequest) XMLObjectSupport.buildXMLObject(AuthnRequest.DEFAULT_ELEMENT_NAME);
+    authnRequest.setID("_c7a4f1cf61cdd3ea4d2d3c4d6a0b1c9e");
+    authnRequest.setIssueInstant(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    authnRequest.setDestination("https://eidas.example.com/sso");
+    authnRequest.setAssertionConsumerServiceURL("https://connector.example.com/idp/extauth/saml2/post");
+    authnRequest.setForceAuthn(Boolean.TRUE);
+
+    final Issuer issuer = (Issuer) XMLObjectSupport.buildXMLObject(Issuer.DEFAULT_ELEMENT_NAME);
+    issuer.setValue("https://connector.example.com/idp/metadata/sp");
+    authnRequest.setIssuer(issuer);
+
+    final RequestedAuthnContext requestedAuthnContext =
+        (RequestedAuthnContext) XMLObjectSupport.buildXMLObject(RequestedAuthnContext.DEFAULT_ELEMENT_NAME);
+    requestedAuthnContext.setComparison(AuthnContextComparisonTypeEnumeration.MINIMUM);
+    final AuthnContextClassRef ref =
+        (AuthnContextClassRef) XMLObjectSupport.buildXMLObject(AuthnContextClassRef.DEFAULT_ELEMENT_NAME);
+    ref.setURI("http://eidas.europa.eu/LoA/substantial");
+    requestedAuthnContext.getAuthnContextClassRefs().add(ref);
+    authnRequest.setRequestedAuthnContext(requestedAuthnContext);
+
+    return authnRequest;
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Test cases for EidasAuthenticationProperties.
+ *
+ * @author Martin Lindström
+ */
+public class EidasAuthenticationPropertiesTest {
+
+  @Test
+  void testAuthServerSignatureMaxSize() {
+    final EidasAuthenticationProperties properties = createProperties();
+    properties.afterPropertiesSet();
+    Assertions.assertNull(properties.getAuthServerSignatureMaxSize());
+
+    properties.setAuthServerSignatureMaxSize(DataSize.ofKilobytes(64));
+    properties.afterPropertiesSet();
+    Assertions.assertEquals(64 * 1024, properties.getAuthServerSignatureMaxSize().toBytes());
+
+    properties.setAuthServerSignatureMaxSize(DataSize.ofBytes(Integer.MAX_VALUE));
+    properties.afterPropertiesSet();
+  }
+
+  @Test
+  void testInvalidAuthServerSignatureMaxSize() {
+    final EidasAuthenticationProperties properties = createProperties();
+
+    properties.setAuthServerSignatureMaxSize(DataSize.ofBytes(0));
+    Assertions.assertThrows(IllegalArgumentException.class, properties::afterPropertiesSet);
+
+    properties.setAuthServerSignatureMaxSize(DataSize.ofBytes(-1));
+    Assertions.assertThrows(IllegalArgumentException.class, properties::afterPropertiesSet);
+
+    // Must fit in an int ...
+    properties.setAuthServerSignatureMaxSize(DataSize.ofBytes(Integer.MAX_VALUE + 1L));
+    Assertions.assertThrows(IllegalArgumentException.class, properties::afterPropertiesSet);
+
+    properties.setAuthServerSignatureMaxSize(DataSize.ofGigabytes(4));
+    Assertions.assertThrows(IllegalArgumentException.class, properties::afterPropertiesSet);
+  }
+
+  private static EidasAuthenticationProperties createProperties() {
+    final EidasAuthenticationProperties properties = new EidasAuthenticationProperties();
+    properties.setEntityId("https://connector.example.com/sp");
+    properties.setMetadata(new EidasSpMetadataProperties());
+    return properties;
+  }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache where each entry has an expiration time.
+ * <p>
+ * Expired entries are evicted when they are accessed. When the cache has reached its maximum size, entries are evicted
+ * in insertion order. The cache keeps statistics about hits, misses and evictions.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @author Martin Lindström
+ */
+public class BoundedCache<K, V> {
+
+  /** The maximum number of entries. */
+  private final int maxSize;
+
+  /** The clock. */
+  private final Clock clock;
+
+  /** The cached entries. */
+  private final ConcurrentMap<K, Entry<K, V>> cache = new ConcurrentHashMap<>();
+
+  /**
+   * The entries in insertion order. Used for eviction. Every entry in the cache has a corresponding element in the
+   * queue, so by bounding the queue, we also bound the cache.
+   */
+  private final Queue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+
+  /** The number of elements in {@code insertionOrder}. */
+  private final AtomicInteger insertionOrderSize = new AtomicInteger();
+
+  /** The number of cache hits. */
+  private final LongAdder hits = new LongAdder();
+
+  /** The number of cache misses. */
+  private final LongAdder misses = new LongAdder();
+
+  /** The number of evicted entries. */
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   * @param clock the clock to use when checking expiration
+   */
+  public BoundedCache(final int maxSize, final Clock clock) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be greater than 0");
+    }
+    this.maxSize = maxSize;
+    this.clock = Objects.requireNonNull(clock, "clock must not be null");
+  }
+
+  /**
+   * Gets a cached value.
+   *
+   * @param key the key
+   * @return the cached value, or {@code null} if there is no (valid) entry
+   */
+  public V get(final K key) {
+    final Entry<K, V> entry = this.cache.get(key);
+    if (entry == null) {
+      this.misses.increment();
+      return null;
+    }
+    if (entry.expires() <= this.clock.millis()) {
+      if (this.cache.remove(key, entry)) {
+        this.evictions.increment();
+      }
+      this.misses.increment();
+      return null;
+    }
+    this.hits.increment();
+    return entry.value();
+  }
+
+  /**
+   * Adds a value to the cache.
+   *
+   * @param key the key
+   * @param value the value
+   * @param timeToLive the time-to-live for the entry
+   */
+  public void put(final K key, final V value, final Duration timeToLive) {
+    Objects.requireNonNull(timeToLive, "timeToLive must not be null");
+    this.put(key, value, this.clock.millis() + timeToLive.toMillis());
+  }
+
+  /**
+   * Adds a value to the cache.
+   *
+   * @param key the key
+   * @param value the value
+   * @param expires the time when the entry expires
+   */
+  public void put(final K key, final V value, final Instant expires) {
+    Objects.requireNonNull(expires, "expires must not be null");
+    this.put(key, value, expires.toEpochMilli());
+  }
+
+  /**
+   * Adds a value to the cache.
+   *
+   * @param key the key
+   * @param value the value
+   * @param expires the time when the entry expires (in millis since the epoch)
+   */
+  private void put(final K key, final V value, final long expires) {
+    final Entry<K, V> entry = new Entry<>(Objects.requireNonNull(key, "key must not be null"),
+        Objects.requireNonNull(value, "value must not be null"), expires);
+    this.cache.put(key, entry);
+    this.insertionOrder.add(entry);
+
+    if (this.insertionOrderSize.incrementAndGet() > this.maxSize) {
+      while (this.insertionOrderSize.get() > this.maxSize) {
+        final Entry<K, V> oldest = this.pollOldest();
+        if (oldest == null) {
+          break;
+        }
+        if (this.cache.remove(oldest.key(), oldest)) {
+          this.evictions.increment();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes the entry for the given key.
+   *
+   * @param key the key
+   */
+  public void remove(final K key) {
+    this.cache.remove(key);
+  }
+
+  /**
+   * Removes all entries from the cache. Both the entries and the insertion order queue are emptied, so the removed
+   * entries no longer count against the maximum size.
+   */
+  public void clear() {
+    Entry<K, V> oldest;
+    while ((oldest = this.pollOldest()) != null) {
+      this.cache.remove(oldest.key(), oldest);
+    }
+  }
+
+  /**
+   * Removes the oldest element from the insertion order queue.
+   *
+   * @return the removed element, or {@code null} if the queue is empty
+   */
+  private Entry<K, V> pollOldest() {
+    final Entry<K, V> oldest = this.insertionOrder.poll();
+    if (oldest != null) {
+      this.insertionOrderSize.decrementAndGet();
+    }
+    return oldest;
+  }
+
+  /**
+   * Gets the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return this.cache.size();
+  }
+
+  /**
+   * Gets the maximum number of entries.
+   *
+   * @return the maximum number of entries
+   */
+  public int getMaxSize() {
+    return this.maxSize;
+  }
+
+  /**
+   * Gets the number of cache hits.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return this.hits.sum();
+  }
+
+  /**
+   * Gets the number of cache misses.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return this.misses.sum();
+  }
+
+  /**
+   * Gets the number of evicted entries (expired entries and entries removed due to size restrictions).
+   *
+   * @return the number of evicted entries
+   */
+  public long getEvictionCount() {
+    return this.evictions.sum();
+  }
+
+  // A cache entry
+  private record Entry<K, V>(K key, V value, long expires) {
+  }
+
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.eidas.connector.prid.generator.PridGeneratorException;
+import se.swedenconnect.eidas.connector.prid.service.CountryPolicyNotFoundException;
+import se.swedenconnect.eidas.connector.prid.service.PridResult;
+import se.swedenconnect.eidas.connector.prid.service.PridService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Recomputes PRID values for a (large) file of eIDAS person identifiers using the current and an updated PRID policy,
+ * and writes a diff file listing all identifiers whose PRID (or persistence class) would change. This is useful when
+ * the PRID algorithm for a country is about to be changed.
+ * <p>
+ * The input file holds one eIDAS person identifier (e.g., {@code NO/SE/05068907693}) per line. Empty lines and lines
+ * starting with {@code #} are ignored. The country is given by the first two characters of the identifier.
+ * </p>
+ * <p>
+ * The input file is memory mapped and processed in chunks that are handed over to a {@link ForkJoinPool}. The number
+ * of chunks being processed at the same time is bounded, and the results are written in input order, so memory usage
+ * is independent of the size of the input.
+ * </p>
+ * <p>
+ * Each line of the diff file has the format:
+ * </p>
+ *
+ * <pre>
+ * STATUS;identifier;current-prid;current-persistence-class;updated-prid;updated-persistence-class
+ * </pre>
+ * <p>
+ * where {@code STATUS} is {@code CHANGED}, {@code ADDED} (only supported by the updated policy) or {@code REMOVED}
+ * (only supported by the current policy). For identifiers that can not be processed, the line
+ * {@code ERROR;identifier;message} is written.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+@Slf4j
+public class PridRecomputationProcessor {
+
+  /** The default chunk size (in bytes). */
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  /** The field separator used in the diff file. */
+  public static final char SEPARATOR = ';';
+
+  /** The PRID service using the current policy. */
+  private final PridService currentService;
+
+  /** The PRID service using the updated policy. */
+  private final PridService updatedService;
+
+  /** The pool used to process chunks. */
+  private final ForkJoinPool pool;
+
+  /** The chunk size (in bytes). */
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  /**
+   * Constructor using {@link ForkJoinPool#commonPool()}.
+   *
+   * @param currentService the PRID service using the current policy
+   * @param updatedService the PRID service using the updated policy
+   */
+  public PridRecomputationProcessor(final PridService currentService, final PridService updatedService) {
+    this(currentService, updatedService, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param currentService the PRID service using the current policy
+   * @param updatedService the PRID service using the updated policy
+   * @param pool the pool used to process chunks
+   */
+  public PridRecomputationProcessor(
+      final PridService currentService, final PridService updatedService, final ForkJoinPool pool) {
+    this.currentService = Objects.requireNonNull(currentService, "currentService must not be null");
+    this.updatedService = Objects.requireNonNull(updatedService, "updatedService must not be null");
+    this.pool = Objects.requireNonNull(pool, "pool must not be null");
+  }
+
+  /**
+   * Processes the input file and writes the diff file.
+   *
+   * @param input the input file (one eIDAS person identifier per line, UTF-8 encoded)
+   * @param output the diff file to write
+   * @return a summary of the processing
+   * @throws IOException for I/O errors, or if a line exceeds the chunk size
+   */
+  public PridRecomputationResult process(final Path input, final Path output) throws IOException {
+    log.info("Recomputing PRID:s for identifiers in {} - writing diff to {} ...", input, output);
+
+    final Counters totals = new Counters();
+    final int maxChunksInFlight = Math.max(2, this.pool.getParallelism() * 2);
+
+    try (final FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+        final BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+
+      writer.write("# STATUS;identifier;current-prid;current-persistence-class;updated-prid;"
+          + "updated-persistence-class");
+      writer.newLine();
+
+      final long size = channel.size();
+      final Deque<ForkJoinTask<ChunkResult>> inFlight = new ArrayDeque<>();
+      long position = 0;
+
+      while (position < size) {
+        final int length = (int) Math.min(this.chunkSize, size - position);
+        final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+        // Unless this is the last chunk, end the chunk after the last complete line ...
+        //
+        int end = length;
+        if (position + length < size) {
+          end = lastLineEnd(mapped, length);
+          if (end == 0) {
+            throw new IOException("Line starting at offset %d exceeds chunk size (%d bytes)"
+                .formatted(position, this.chunkSize));
+          }
+        }
+        final ByteBuffer chunk = mapped.slice(0, end);
+        inFlight.add(this.pool.submit(() -> this.processChunk(chunk)));
+        position += end;
+
+        if (inFlight.size() >= maxChunksInFlight) {
+          this.write(inFlight.poll(), writer, totals);
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        this.write(inFlight.poll(), writer, totals);
+      }
+    }
+
+    final PridRecomputationResult result = totals.toResult();
+    log.info("PRID recomputation finished - {}", result);
+    return result;
+  }
+
+  /**
+   * Assigns the chunk size (in bytes). A line may not be longer than the chunk size. The default is
+   * {@value #DEFAULT_CHUNK_SIZE}.
+   *
+   * @param chunkSize the chunk size
+   */
+  public void setChunkSize(final int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be greater than 0");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Waits for the supplied task and writes its result.
+   */
+  private void write(final ForkJoinTask<ChunkResult> task, final BufferedWriter writer, final Counters totals)
+      throws IOException {
+    final ChunkResult result = task.join();
+    writer.write(result.diff());
+    totals.add(result.counters());
+  }
+
+  /**
+   * Returns the position after the last newline of the buffer, or 0 if no newline is found.
+   */
+  private static int lastLineEnd(final ByteBuffer buffer, final int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer.get(i) == '\n') {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Processes all lines of a chunk.
+   *
+   * @param chunk the chunk
+   * @return the diff lines and counters for the chunk
+   */
+  private ChunkResult processChunk(final ByteBuffer chunk) {
+    final StringBuilder diff = new StringBuilder();
+    final Counters counters = new Counters();
+    byte[] line = new byte[256];
+
+    final int limit = chunk.limit();
+    int start = 0;
+    while (start < limit) {
+      int end = start;
+      while (end < limit && chunk.get(end) != '\n') {
+        end++;
+      }
+      int length = end - start;
+      if (length > 0 && chunk.get(end - 1) == '\r') {
+        length--;
+      }
+      if (line.length < length) {
+        line = new byte[Math.max(length, line.length * 2)];
+      }
+      chunk.get(start, line, 0, length);
+      this.processLine(new String(line, 0, length, StandardCharsets.UTF_8).strip(), diff, counters);
+      start = end + 1;
+    }
+    return new ChunkResult(diff.toString(), counters);
+  }
+
+  /**
+   * Processes one identifier.
+   *
+   * @param id the identifier
+   * @param diff the diff output
+   * @param counters the counters
+   */
+  private void processLine(final String id, final StringBuilder diff, final Counters counters) {
+    // Skip a byte order mark (if present) ...
+    final String identifier = !id.isEmpty() && id.charAt(0) == '\uFEFF' ? id.substring(1) : id;
+    if (identifier.isEmpty() || identifier.charAt(0) == '#') {
+      return;
+    }
+    counters.processed++;
+
+    if (identifier.length() < 3 || identifier.charAt(2) != '/') {
+      counters.errors++;
+      appendError(diff, identifier, "Invalid identifier");
+      return;
+    }
+    final String country = identifier.substring(0, 2).toUpperCase();
+
+    final PridResult current;
+    final PridResult updated;
+    try {
+      current = generate(this.currentService, identifier, country);
+      updated = generate(this.updatedService, identifier, country);
+    }
+    catch (final PridGeneratorException | IllegalArgumentException e) {
+      counters.errors++;
+      appendError(diff, identifier, e.getMessage());
+      return;
+    }
+
+    final String status;
+    if (current == null && updated == null) {
+      counters.unsupported++;
+      return;
+    }
+    else if (current == null) {
+      counters.added++;
+      status = "ADDED";
+    }
+    else if (updated == null) {
+      counters.removed++;
+      status = "REMOVED";
+    }
+    else if (current.equals(updated)) {
+      counters.unchanged++;
+      return;
+    }
+    else {
+      counters.changed++;
+      status = "CHANGED";
+    }
+
+    diff.append(status).append(SEPARATOR).append(identifier).append(SEPARATOR);
+    appendResult(diff, current);
+    diff.append(SEPARATOR);
+    appendResult(diff, updated);
+    diff.append(System.lineSeparator());
+  }
+
+  /**
+   * Generates a PRID using the supplied service.
+   *
+   * @return the result, or {@code null} if the country is not supported by the service
+   */
+  private static PridResult generate(final PridService service, final String identifier, final String country)
+      throws PridGeneratorException {
+    try {
+      return service.generatePrid(identifier, country);
+    }
+    catch (final CountryPolicyNotFoundException e) {
+      return null;
+    }
+  }
+
+  private static void appendResult(final StringBuilder diff, final PridResult result) {
+    if (result != null) {
+      diff.append(result.prid()).append(SEPARATOR).append(result.pridPersistence());
+    }
+    else {
+      diff.append(SEPARATOR);
+    }
+  }
+
+  private static void appendError(final StringBuilder diff, final String identifier, final String message) {
+    diff.append("ERROR").append(SEPARATOR).append(identifier).append(SEPARATOR).append(message)
+        .append(System.lineSeparator());
+  }
+
+  /**
+   * The result of processing one chunk.
+   *
+   * @param diff the diff lines
+   * @param counters the counters
+   */
+  private record ChunkResult(String diff, Counters counters) {
+  }
+
+  /**
+   * Counters for a chunk (or the total).
+   */
+  private static class Counters {
+    private long processed;
+    private long unchanged;
+    private long changed;
+    private long added;
+    private long removed;
+    private long unsupported;
+    private long errors;
+
+    void add(final Counters other) {
+      this.processed += other.processed;
+      this.unchanged += other.unchanged;
+      this.changed += other.changed;
+      this.added += other.added;
+      this.removed += other.removed;
+      this.unsupported += other.unsupported;
+      this.errors += other.errors;
+    }
+
+    PridRecomputationResult toResult() {
+      return new PridRecomputationResult(this.processed, this.unchanged, this.changed, this.added, this.removed,
+          this.unsupported, this.errors);
+    }
+  }
+
+}
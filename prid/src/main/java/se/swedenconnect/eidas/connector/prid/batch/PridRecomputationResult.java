@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.batch;
+
+/**
+ * Summary of a PRID recomputation performed by {@link PridRecomputationProcessor}.
+ *
+ * @param processed the number of processed identifiers
+ * @param unchanged the number of identifiers whose PRID (and persistence class) is unchanged
+ * @param changed the number of identifiers that get a new PRID or persistence class
+ * @param added the number of identifiers whose country is supported by the updated policy, but not by the current
+ * @param removed the number of identifiers whose country is supported by the current policy, but not by the updated
+ * @param unsupported the number of identifiers whose country is not supported by any of the policies
+ * @param errors the number of identifiers for which a PRID could not be calculated
+ */
+public record PridRecomputationResult(long processed, long unchanged, long changed, long added, long removed,
+    long unsupported, long errors) {
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.batch;
+
+import org.springframework.core.io.FileSystemResource;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenBase64Eidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenColResistEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenDefaultEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenTestEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenerator;
+import se.swedenconnect.eidas.connector.prid.service.PridService;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool for {@link PridRecomputationProcessor}.
+ *
+ * <pre>
+ * Usage: PridRecomputationTool --current-policy &lt;file&gt; --updated-policy &lt;file&gt; --input &lt;file&gt;
+ *          --output &lt;file&gt; [--country &lt;code&gt;] [--parallelism &lt;n&gt;] [--chunk-size &lt;bytes&gt;]
+ * </pre>
+ *
+ * @author Martin Lindström
+ */
+public final class PridRecomputationTool {
+
+  private static final String USAGE = """
+      Usage: PridRecomputationTool --current-policy <file> --updated-policy <file> --input <file> --output <file>
+               [--country <code>] [--parallelism <n>] [--chunk-size <bytes>]
+
+        --current-policy  The current PRID policy file (YAML or properties)
+        --updated-policy  The updated PRID policy file (YAML or properties)
+        --input           File holding one eIDAS person identifier per line
+        --output          The diff file to write
+        --country         The country for which the identifiers are issued (default SE)
+        --parallelism     The number of worker threads (default is the number of processors)
+        --chunk-size      The number of bytes of the input to process in each task (default 1048576)
+      """;
+
+  /** The supported options. */
+  private static final Set<String> OPTIONS =
+      Set.of("current-policy", "updated-policy", "input", "output", "country", "parallelism", "chunk-size");
+
+  // Hidden constructor
+  private PridRecomputationTool() {
+  }
+
+  /**
+   * Program entry point.
+   *
+   * @param args the program arguments
+   */
+  public static void main(final String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Runs the tool.
+   *
+   * @param args the program arguments
+   * @param out the output stream
+   * @param err the error stream
+   * @return the exit code
+   */
+  static int run(final String[] args, final PrintStream out, final PrintStream err) {
+    final Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--") || i + 1 == args.length) {
+        err.println("Invalid argument: " + args[i]);
+        err.print(USAGE);
+        return 1;
+      }
+      final String option = args[i].substring(2);
+      if (!OPTIONS.contains(option)) {
+        err.println("Unknown argument: " + args[i]);
+        err.print(USAGE);
+        return 1;
+      }
+      options.put(option, args[++i]);
+    }
+    for (final String required : List.of("current-policy", "updated-policy", "input", "output")) {
+      if (!options.containsKey(required)) {
+        err.println("Missing required argument: --" + required);
+        err.print(USAGE);
+        return 1;
+      }
+    }
+    for (final String file : List.of("current-policy", "updated-policy", "input")) {
+      if (!Files.isRegularFile(Path.of(options.get(file)))) {
+        err.println("File given by --%s does not exist: %s".formatted(file, options.get(file)));
+        return 1;
+      }
+    }
+
+    final String country = options.getOrDefault("country", "SE");
+    final int parallelism = parsePositiveInt(options, "parallelism", Runtime.getRuntime().availableProcessors(), err);
+    final int chunkSize = parsePositiveInt(options, "chunk-size", PridRecomputationProcessor.DEFAULT_CHUNK_SIZE, err);
+    if (parallelism <= 0 || chunkSize <= 0) {
+      return 1;
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      final PridRecomputationProcessor processor = new PridRecomputationProcessor(
+          createPridService(options.get("current-policy"), country),
+          createPridService(options.get("updated-policy"), country),
+          pool);
+      processor.setChunkSize(chunkSize);
+
+      final PridRecomputationResult result =
+          processor.process(Path.of(options.get("input")), Path.of(options.get("output")));
+
+      out.printf("Processed: %d, unchanged: %d, changed: %d, added: %d, removed: %d, unsupported: %d, errors: %d%n",
+          result.processed(), result.unchanged(), result.changed(), result.added(), result.removed(),
+          result.unsupported(), result.errors());
+      return 0;
+    }
+    catch (final Exception e) {
+      err.println("PRID recomputation failed - " + e.getMessage());
+      return 2;
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Parses an option that must be a positive integer.
+   *
+   * @param options the options
+   * @param option the option name
+   * @param defaultValue the value to use if the option is not given
+   * @param err the error stream
+   * @return the value, or -1 if the option value is invalid
+   */
+  private static int parsePositiveInt(
+      final Map<String, String> options, final String option, final int defaultValue, final PrintStream err) {
+    if (!options.containsKey(option)) {
+      return defaultValue;
+    }
+    try {
+      final int value = Integer.parseInt(options.get(option));
+      if (value > 0) {
+        return value;
+      }
+    }
+    catch (final NumberFormatException ignored) {
+    }
+    err.println("Invalid value for --%s - must be a positive integer".formatted(option));
+    return -1;
+  }
+
+  private static PridService createPridService(final String policyFile, final String country) throws Exception {
+    final List<PridGenerator> generators = List.of(
+        new PridGenDefaultEidas(country),
+        new PridGenColResistEidas(country),
+        new PridGenBase64Eidas(country),
+        new PridGenTestEidas(country));
+    final PridService service = new PridService(new FileSystemResource(policyFile), generators);
+    service.afterPropertiesSet();
+    return service;
+  }
+
+}
@@ -17,12 +17,12 @@ package se.swedenconnect.eidas.connector.prid.generator;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * Base class for PRID generator implementations.
@@ -32,8 +32,20 @@ import java.util.regex.Pattern;
 @Slf4j
 public abstract class AbstractPridGenerator implements PridGenerator {
 
-  /** Regexp pattern for checking if the supplied identifier can be processed. */
-  private final Pattern personIdentifierPrefixPattern;
+  /** The maximum number of idle digest objects kept in the pool. */
+  private static final int DIGEST_POOL_SIZE = 32;
+
+  /**
+   * Pool of SHA-256 digest objects. We use a pool instead of thread locals since the calling threads may be virtual
+   * threads.
+   */
+  private static final BlockingQueue<MessageDigest> digestPool = new ArrayBlockingQueue<>(DIGEST_POOL_SIZE);
+
+  /** The destination country in upper case. Used when checking if the supplied identifier can be processed. */
+  private final String destinationCountryUpper;
+
+  /** The destination country in lower case. Used when checking if the supplied identifier can be processed. */
+  private final String destinationCountryLower;
 
   /**
    * Constructor (using "SE" as destination country).
@@ -49,9 +61,8 @@ public abstract class AbstractPridGenerator implements PridGenerator {
    */
   public AbstractPridGenerator(final String destinationCountry) {
     Objects.requireNonNull(destinationCountry, "destinationCountry must not be null");
-    this.personIdentifierPrefixPattern = Pattern.compile(
-        "^[A-Za-z]{2}[\\/](%s|%s)[\\/]".formatted(
-            destinationCountry.toUpperCase(), destinationCountry.toLowerCase()));
+    this.destinationCountryUpper = destinationCountry.toUpperCase();
+    this.destinationCountryLower = destinationCountry.toLowerCase();
   }
 
   /**
@@ -74,13 +85,12 @@ public abstract class AbstractPridGenerator implements PridGenerator {
       log.error("{}: {}", this.getAlgorithmName(), msg);
       throw new IllegalArgumentException(msg);
     }
-    if (personIdentifier.length() < 6
-        || !this.personIdentifierPrefixPattern.matcher(personIdentifier.substring(0, 6)).matches()) {
+    if (!this.isValidPrefix(personIdentifier)) {
       final String msg = String.format("Illegal input - identifier '%s is not valid'", personIdentifier);
       log.error("{}: {}", this.getAlgorithmName(), msg);
       throw new IllegalArgumentException(msg);
     }
-    if (!countryCode.equalsIgnoreCase(personIdentifier.substring(0, 2))) {
+    if (!personIdentifier.regionMatches(true, 0, countryCode, 0, 2)) {
       final String msg = String.format("Mismatching country - expected '%s', but this is not present in '%s'",
           countryCode, personIdentifier);
       log.error("{}: {}", this.getAlgorithmName(), msg);
@@ -88,16 +98,72 @@ public abstract class AbstractPridGenerator implements PridGenerator {
     }
 
     // Get ID component without whitespace and non-printable characters
-    final String strippedID = personIdentifier.substring(6).replaceAll("\\s+", "");
+    final String strippedID = stripWhitespace(personIdentifier, 6);
 
-    String calculatedID = this.calculatePridIdentifier(strippedID, personIdentifier);
-    calculatedID = countryCode.toUpperCase() + ":" + calculatedID;
+    final String calculatedID =
+        countryCode.toUpperCase() + ":" + this.calculatePridIdentifier(strippedID, personIdentifier);
 
     log.debug("{}: PRID for '{}' calculated as '{}'", this.getAlgorithmName(), personIdentifier, calculatedID);
 
     return calculatedID;
   }
 
+  /**
+   * Predicate that checks that the supplied identifier starts with {@code XX/YY/}, where {@code XX} is a two-letter
+   * country code and {@code YY} is the destination country (in upper or lower case).
+   *
+   * @param personIdentifier the identifier to check
+   * @return {@code true} if the prefix is valid and {@code false} otherwise
+   */
+  private boolean isValidPrefix(final String personIdentifier) {
+    if (personIdentifier.length() < 6 || this.destinationCountryUpper.length() != 2) {
+      return false;
+    }
+    return isAsciiLetter(personIdentifier.charAt(0))
+        && isAsciiLetter(personIdentifier.charAt(1))
+        && personIdentifier.charAt(2) == '/'
+        && (personIdentifier.startsWith(this.destinationCountryUpper, 3)
+            || personIdentifier.startsWith(this.destinationCountryLower, 3))
+        && personIdentifier.charAt(5) == '/';
+  }
+
+  /**
+   * Returns the part of {@code input} starting at {@code beginIndex} with all whitespace characters removed. The
+   * whitespace characters are the same as for the regular expression {@code \s}, i.e., {@code [ \t\n\x0B\f\r]}.
+   *
+   * @param input the input string
+   * @param beginIndex the begin index
+   * @return the stripped string
+   */
+  private static String stripWhitespace(final String input, final int beginIndex) {
+    final int length = input.length();
+    int pos = beginIndex;
+    while (pos < length && !isWhitespace(input.charAt(pos))) {
+      pos++;
+    }
+    if (pos == length) {
+      return input.substring(beginIndex);
+    }
+    final char[] buffer = new char[length - beginIndex];
+    input.getChars(beginIndex, pos, buffer, 0);
+    int size = pos - beginIndex;
+    for (; pos < length; pos++) {
+      final char c = input.charAt(pos);
+      if (!isWhitespace(c)) {
+        buffer[size++] = c;
+      }
+    }
+    return new String(buffer, 0, size);
+  }
+
+  private static boolean isAsciiLetter(final char c) {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  private static boolean isWhitespace(final char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
   /**
    * Calculates the PRID identifier (minus the country code prefix) based on the checked input that also has been
    * stripped for whitespace and non-printable characters.
@@ -122,14 +188,107 @@ public abstract class AbstractPridGenerator implements PridGenerator {
    */
   protected static String getID(final String idSource, final int radix, final int length)
       throws IndexOutOfBoundsException, NullPointerException {
+    return encode(sha256(idSource.getBytes(StandardCharsets.UTF_8)), radix, length);
+  }
+
+  /**
+   * Calculates the SHA-256 digest of the supplied bytes using a pooled {@link MessageDigest}.
+   *
+   * @param input the bytes to hash
+   * @return the digest
+   */
+  private static byte[] sha256(final byte[] input) {
+    MessageDigest md = digestPool.poll();
+    if (md == null) {
+      try {
+        md = MessageDigest.getInstance("SHA-256");
+      }
+      catch (final NoSuchAlgorithmException e) {
+        throw new SecurityException(e);
+      }
+    }
     try {
-      final MessageDigest md = MessageDigest.getInstance("SHA-256");
-      final byte[] digest = md.digest(idSource.getBytes(StandardCharsets.UTF_8));
-      return new BigInteger(1, digest).toString(radix).substring(0, length);
+      return md.digest(input);
+    }
+    finally {
+      // If the pool is full, the digest is simply dropped ...
+      digestPool.offer(md);
+    }
+  }
+
+  /**
+   * Encodes the supplied bytes, interpreted as an unsigned big-endian number, using the given radix and returns the
+   * {@code length} most significant digits. The result is the same as for
+   * {@code new BigInteger(1, bytes).toString(radix).substring(0, length)}.
+   *
+   * @param bytes the bytes to encode
+   * @param radix the radix (if outside of {@link Character#MIN_RADIX} and {@link Character#MAX_RADIX}, 10 is used)
+   * @param length the number of digits to return
+   * @return the encoding
+   * @throws IndexOutOfBoundsException if the encoding has fewer than {@code length} digits
+   */
+  static String encode(final byte[] bytes, final int radix, final int length) throws IndexOutOfBoundsException {
+    final int r = radix < Character.MIN_RADIX || radix > Character.MAX_RADIX ? 10 : radix;
+
+    // Room for all digits using the smallest possible radix (plus room for leading zeros of the last chunk) ...
+    final char[] digits = new char[bytes.length * 8 + 32];
+    int pos = digits.length;
+
+    if (r == 16) {
+      for (int i = bytes.length - 1; i >= 0; i--) {
+        digits[--pos] = Character.forDigit(bytes[i] & 0x0f, 16);
+        digits[--pos] = Character.forDigit((bytes[i] >> 4) & 0x0f, 16);
+      }
+    }
+    else {
+      // Big-endian 32-bit words ...
+      final int[] words = new int[(bytes.length + 3) / 4];
+      for (int i = 0; i < bytes.length; i++) {
+        final int w = words.length - 1 - (bytes.length - 1 - i) / 4;
+        words[w] = (words[w] << 8) | (bytes[i] & 0xff);
+      }
+
+      // Find the largest power of the radix below 2^31, and repeatedly divide by it, producing
+      // several digits per division ...
+      //
+      int digitsPerChunk = 0;
+      long divisor = 1;
+      while (divisor * r < Integer.MAX_VALUE) {
+        divisor *= r;
+        digitsPerChunk++;
+      }
+
+      int first = 0;
+      while (first < words.length) {
+        long remainder = 0;
+        for (int i = first; i < words.length; i++) {
+          final long dividend = (remainder << 32) | (words[i] & 0xffffffffL);
+          words[i] = (int) (dividend / divisor);
+          remainder = dividend % divisor;
+        }
+        while (first < words.length && words[first] == 0) {
+          first++;
+        }
+        for (int i = 0; i < digitsPerChunk; i++) {
+          digits[--pos] = Character.forDigit((int) (remainder % r), r);
+          remainder /= r;
+        }
+      }
+    }
+
+    // Skip leading zeros (but keep one digit if the value is zero) ...
+    //
+    while (pos < digits.length - 1 && digits[pos] == '0') {
+      pos++;
+    }
+    if (pos == digits.length) {
+      digits[--pos] = '0';
     }
-    catch (final NoSuchAlgorithmException e) {
-      throw new SecurityException(e);
+    if (digits.length - pos < length) {
+      throw new StringIndexOutOfBoundsException(
+          "begin 0, end %d, length %d".formatted(length, digits.length - pos));
     }
+    return new String(digits, pos, length);
   }
 
 }
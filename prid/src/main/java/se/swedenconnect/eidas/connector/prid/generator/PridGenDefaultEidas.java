@@ -17,6 +17,9 @@ package se.swedenconnect.eidas.connector.prid.generator;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Locale;
+import java.util.Set;
+
 /**
  * Implementation of the "default-eIDAS" PRID calculation algorithm as described in section 2.3.1 of the <a href=
  * "https://docs.swedenconnect.se/technical-framework/latest/11_-_eIDAS_Constructed_Attributes_Specification_for_the_Swedish_eID_Framework.html#algorithm-default-eidas">
@@ -30,6 +33,12 @@ public class PridGenDefaultEidas extends AbstractPridGenerator {
   /** The algorithm name that this instance implements. */
   public static final String ALGORITHM_NAME = "default-eIDAS";
 
+  /** The minimum length of a normalized ID. Shorter ID:s are padded with zeros. */
+  private static final int MIN_LENGTH = 10;
+
+  /** Languages for which {@link String#toLowerCase()} does not map ASCII characters according to US-ASCII. */
+  private static final Set<String> TURKIC_LANGUAGES = Set.of("tr", "az");
+
   /**
    * Constructor (using "SE" as destination country).
    */
@@ -61,25 +70,14 @@ public class PridGenDefaultEidas extends AbstractPridGenerator {
   protected String calculatePridIdentifier(final String checkedStrippedInput, final String originalInput)
       throws PridGeneratorException {
 
-    // Convert to lower case
-    String normalizedID = checkedStrippedInput.toLowerCase();
+    final String normalizedID = normalize(checkedStrippedInput);
 
-    // Replace sequences of non ID characters to "-"
-    normalizedID = normalizedID.replaceAll("[^a-z0-9]+", "-");
-
-    // Remove leading and trailing "-"
-    normalizedID = normalizedID.replaceAll("^-+", "").replaceAll("-+$", "");
-
-    if (normalizedID.replaceAll("-", "").length() < 6) {
+    if (normalizedID == null) {
       final String msg = String.format("Calculated normalizedID of '%s' is shorter than 6 characters", originalInput);
       log.error("{}: {}", this.getAlgorithmName(), msg);
       throw new PridGeneratorException(msg);
     }
 
-    if (normalizedID.length() < 10) {
-      normalizedID = "0000000000".substring(normalizedID.length()) + normalizedID;
-    }
-
     if (normalizedID.length() > 30) {
       try {
         return this.generateForLongID(checkedStrippedInput);
@@ -94,6 +92,72 @@ public class PridGenDefaultEidas extends AbstractPridGenerator {
     return normalizedID;
   }
 
+  /**
+   * Normalizes the supplied input in one pass. The input is converted to lower case, each sequence of characters that
+   * are not {@code a-z} or {@code 0-9} is replaced with a {@code -}, and leading and trailing {@code -} are removed.
+   * If the result is shorter than 10 characters it is left-padded with {@code 0}.
+   *
+   * @param input the input to normalize
+   * @return the normalized ID, or {@code null} if the ID holds less than 6 ID characters
+   */
+  private static String normalize(final String input) {
+
+    // Lower case conversion for non-ASCII characters (and for 'I' using Turkic locales) may produce ASCII
+    // characters or change the length of the string. In these cases, we let String.toLowerCase do the job
+    // before scanning (this is rare).
+    //
+    final boolean asciiLowerCase = !TURKIC_LANGUAGES.contains(Locale.getDefault().getLanguage());
+    String source = asciiLowerCase ? input : input.toLowerCase();
+    boolean lowerCased = !asciiLowerCase;
+
+    // Reserve room for zero padding in the beginning of the buffer ...
+    char[] buffer = new char[source.length() + MIN_LENGTH];
+    int size = 0;
+    int idCharacters = 0;
+    boolean pendingSeparator = false;
+
+    for (int i = 0; i < source.length(); i++) {
+      char c = source.charAt(i);
+      if (c >= 0x80 && !lowerCased) {
+        // Restart using the lower case version of the input ...
+        source = input.toLowerCase();
+        lowerCased = true;
+        buffer = new char[source.length() + MIN_LENGTH];
+        size = 0;
+        idCharacters = 0;
+        pendingSeparator = false;
+        i = -1;
+        continue;
+      }
+      if (!lowerCased && c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+        if (pendingSeparator && size > 0) {
+          buffer[MIN_LENGTH + size++] = '-';
+        }
+        pendingSeparator = false;
+        buffer[MIN_LENGTH + size++] = c;
+        idCharacters++;
+      }
+      else {
+        pendingSeparator = true;
+      }
+    }
+
+    if (idCharacters < 6) {
+      return null;
+    }
+    if (size < MIN_LENGTH) {
+      final int offset = size;
+      for (int i = offset; i < MIN_LENGTH; i++) {
+        buffer[i] = '0';
+      }
+      return new String(buffer, offset, MIN_LENGTH);
+    }
+    return new String(buffer, MIN_LENGTH, size);
+  }
+
   /**
    * Performs a hash to calculate a PRID for long ID:s.
    *
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a PRID policy file and invokes a callback when the file (or its directory) changes.
+ * <p>
+ * It is the directory holding the file that is registered with the {@link WatchService}, and any event in that
+ * directory triggers the callback. This way we also catch updates that are performed by moving a new file in place, or,
+ * as is the case for Kubernetes config maps, by swapping a symbolic link. Events are collected during a short
+ * "settle" period before the callback is invoked, so that a burst of events results in a single invocation. The
+ * callback is expected to be cheap when the contents of the file has not changed (see
+ * {@link PridService#updatePolicy()}).
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+@Slf4j
+public class PridPolicyWatcher implements Closeable {
+
+  /** The default settle period. */
+  public static final Duration DEFAULT_SETTLE_PERIOD = Duration.ofMillis(100);
+
+  /** The file being watched. */
+  private final Path file;
+
+  /** The callback to invoke on changes. */
+  private final Runnable callback;
+
+  /** The settle period (in millis). */
+  private final long settlePeriod;
+
+  /** The watch service. */
+  private WatchService watchService;
+
+  /** The watcher thread. */
+  private Thread thread;
+
+  /**
+   * Constructor.
+   *
+   * @param file the file to watch
+   * @param callback the callback to invoke when changes are detected
+   */
+  public PridPolicyWatcher(final Path file, final Runnable callback) {
+    this(file, callback, DEFAULT_SETTLE_PERIOD);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param file the file to watch
+   * @param callback the callback to invoke when changes are detected
+   * @param settlePeriod the time to wait for further events before the callback is invoked
+   */
+  public PridPolicyWatcher(final Path file, final Runnable callback, final Duration settlePeriod) {
+    this.file = Objects.requireNonNull(file, "file must not be null").toAbsolutePath();
+    this.callback = Objects.requireNonNull(callback, "callback must not be null");
+    this.settlePeriod = Objects.requireNonNull(settlePeriod, "settlePeriod must not be null").toMillis();
+  }
+
+  /**
+   * Starts watching the file.
+   *
+   * @throws IOException if the directory of the file can not be watched
+   */
+  public synchronized void start() throws IOException {
+    if (this.watchService != null) {
+      return;
+    }
+    final Path directory = Objects.requireNonNull(this.file.getParent(), "file has no parent directory");
+    final WatchService service = directory.getFileSystem().newWatchService();
+    try {
+      directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.ENTRY_DELETE);
+    }
+    catch (final IOException | RuntimeException e) {
+      service.close();
+      throw e;
+    }
+    this.watchService = service;
+    this.thread = Thread.ofPlatform()
+        .name("prid-policy-watcher")
+        .daemon(true)
+        .start(() -> this.watch(service));
+    log.info("Watching PRID policy file '{}' for changes", this.file);
+  }
+
+  /**
+   * Processes events until the watch service is closed.
+   *
+   * @param service the watch service
+   */
+  private void watch(final WatchService service) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        // Drain events until the directory has been quiet for the settle period ...
+        //
+        while (key != null) {
+          key.pollEvents();
+          if (!key.reset()) {
+            log.warn("Directory of PRID policy file '{}' can no longer be watched", this.file);
+            return;
+          }
+          key = service.poll(this.settlePeriod, TimeUnit.MILLISECONDS);
+        }
+        log.debug("Change detected in directory of PRID policy file '{}'", this.file);
+        try {
+          this.callback.run();
+        }
+        catch (final RuntimeException e) {
+          log.error("Error processing change of PRID policy file '{}'", this.file, e);
+        }
+      }
+    }
+    catch (final ClosedWatchServiceException e) {
+      log.debug("Stopped watching PRID policy file '{}'", this.file);
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Predicate telling whether the watcher is running.
+   *
+   * @return {@code true} if the watcher is running and {@code false} otherwise
+   */
+  public synchronized boolean isRunning() {
+    return this.thread != null && this.thread.isAlive();
+  }
+
+  /**
+   * Stops watching the file.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.watchService != null) {
+      this.watchService.close();
+      this.watchService = null;
+      this.thread = null;
+    }
+  }
+
+}
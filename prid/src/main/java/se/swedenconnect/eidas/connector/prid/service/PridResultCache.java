@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.service;
+
+import se.swedenconnect.eidas.connector.cache.BoundedCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A bounded cache for {@link PridResult} objects used by the {@link PridService}.
+ * <p>
+ * Entries are keyed by the person identifier, the country and the PRID policy generation (see
+ * {@link PridService#getPolicyGeneration()}), which means that results calculated under an old policy are never
+ * returned. Entries are evicted when they have been in the cache longer than the configured time-to-live, or, in
+ * insertion order, when the cache has reached its maximum size.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class PridResultCache {
+
+  /** The default maximum number of entries. */
+  public static final int DEFAULT_MAX_SIZE = 10_000;
+
+  /** The default time-to-live for entries. */
+  public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+
+  /** The time-to-live for entries. */
+  private final Duration timeToLive;
+
+  /** The cached entries. */
+  private final BoundedCache<Key, PridResult> cache;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   * @param timeToLive the time-to-live for entries
+   */
+  public PridResultCache(final int maxSize, final Duration timeToLive) {
+    this(maxSize, timeToLive, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries
+   * @param timeToLive the time-to-live for entries
+   * @param clock the clock to use when checking expiration
+   */
+  public PridResultCache(final int maxSize, final Duration timeToLive, final Clock clock) {
+    this.timeToLive = Objects.requireNonNull(timeToLive, "timeToLive must not be null");
+    if (this.timeToLive.toMillis() <= 0) {
+      throw new IllegalArgumentException("timeToLive must be positive");
+    }
+    this.cache = new BoundedCache<>(maxSize, clock);
+  }
+
+  /**
+   * Gets a cached PRID result.
+   *
+   * @param id the eIDAS person identifier
+   * @param country the issuing country
+   * @param policyGeneration the current PRID policy generation
+   * @return the cached {@link PridResult}, or {@code null} if there is no (valid) entry
+   */
+  public PridResult get(final String id, final String country, final long policyGeneration) {
+    return this.cache.get(new Key(id, country, policyGeneration));
+  }
+
+  /**
+   * Adds a PRID result to the cache.
+   *
+   * @param id the eIDAS person identifier
+   * @param country the issuing country
+   * @param policyGeneration the PRID policy generation that was used when calculating the result
+   * @param result the result to cache
+   */
+  public void put(final String id, final String country, final long policyGeneration, final PridResult result) {
+    this.cache.put(new Key(id, country, policyGeneration),
+        Objects.requireNonNull(result, "result must not be null"), this.timeToLive);
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void clear() {
+    this.cache.clear();
+  }
+
+  /**
+   * Gets the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  public int size() {
+    return this.cache.size();
+  }
+
+  /**
+   * Gets the maximum number of entries.
+   *
+   * @return the maximum number of entries
+   */
+  public int getMaxSize() {
+    return this.cache.getMaxSize();
+  }
+
+  /**
+   * Gets the number of cache hits.
+   *
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return this.cache.getHitCount();
+  }
+
+  /**
+   * Gets the number of cache misses.
+   *
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return this.cache.getMissCount();
+  }
+
+  /**
+   * Gets the number of evicted entries (expired entries and entries removed due to size restrictions).
+   *
+   * @return the number of evicted entries
+   */
+  public long getEvictionCount() {
+    return this.cache.getEvictionCount();
+  }
+
+  // The cache key
+  private record Key(String id, String country, long policyGeneration) {
+  }
+
+}
@@ -17,6 +17,7 @@ package se.swedenconnect.eidas.connector.prid.service;
 
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.PropertiesFactoryBean;
@@ -26,25 +27,32 @@ import org.springframework.boot.context.properties.bind.BindResult;
 import org.springframework.boot.context.properties.bind.Bindable;
 import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.scheduling.annotation.Scheduled;
 import se.swedenconnect.eidas.connector.prid.generator.PridGenerator;
 import se.swedenconnect.eidas.connector.prid.generator.PridGeneratorException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * The PRID service that knows how to generate PRID attributes based on the PRID policy configuration.
  */
 @Slf4j
-public class PridService implements InitializingBean {
+public class PridService implements InitializingBean, DisposableBean {
 
   /** The resource holding the PRID policy configuration. */
   private final Resource policyResource;
@@ -55,12 +63,24 @@ public class PridService implements InitializingBean {
   /** The installed PRID-generators. */
   private final List<PridGenerator> pridGenerators;
 
-  /** The actual policy. */
-  private PridPolicy policy;
+  /**
+   * The installed policy compiled into a lookup table. Replaced (never modified) each time the policy is updated, which
+   * means that readers do not need any locking.
+   */
+  private volatile CompiledPolicy compiledPolicy;
+
+  /** Optional cache for PRID results. */
+  private PridResultCache resultCache;
 
   /** The latest PRID policy validation result. */
   private PridPolicyValidation latestValidationResult;
 
+  /** Whether the policy file should be watched for changes. */
+  private boolean watchPolicyResource = false;
+
+  /** The policy file watcher (if active). */
+  private PridPolicyWatcher policyWatcher;
+
   /**
    * Constructor.
    *
@@ -88,18 +108,35 @@ public class PridService implements InitializingBean {
   public PridResult generatePrid(final String id, final String country)
       throws PridGeneratorException, CountryPolicyNotFoundException {
 
-    final CountryPolicy policy = Optional.ofNullable(this.getPolicy(country))
+    // Use the same snapshot throughout the call so that the policy, generator and generation are consistent ...
+    //
+    final CompiledPolicy compiled = this.compiledPolicy;
+    if (compiled == null) {
+      throw new CountryPolicyNotFoundException("No PRID policy has been loaded");
+    }
+    if (country == null) {
+      throw new CountryPolicyNotFoundException("No country given - can not generate PRID");
+    }
+
+    final PridResultCache cache = this.resultCache;
+    if (cache != null) {
+      final PridResult cached = cache.get(id, country, compiled.generation());
+      if (cached != null) {
+        log.debug("PRID service returning cached '{}' for id: '{}' and country '{}'", cached, id, country);
+        return cached;
+      }
+    }
+
+    final CompiledCountryPolicy policy = Optional.ofNullable(compiled.countries().get(country))
         .orElseThrow(() -> new CountryPolicyNotFoundException(
             "Country '%s' is not supported by the PRID service".formatted(country)));
 
-    final PridGenerator pridGenerator = this.pridGenerators.stream()
-        .filter(p -> p.getAlgorithmName().equalsIgnoreCase(policy.getAlgorithm()))
-        .findFirst()
-        .orElseThrow(() -> new PridGeneratorException(
-            "No matching PRID generator for algorithm '%s'".formatted(policy.getAlgorithm())));
+    final PridResult result = new PridResult(
+        policy.generator().getPridIdentifierComponent(id, country), policy.policy().getPersistenceClass());
 
-    final PridResult result =
-        new PridResult(pridGenerator.getPridIdentifierComponent(id, country), policy.getPersistenceClass());
+    if (cache != null) {
+      cache.put(id, country, compiled.generation(), result);
+    }
 
     log.debug("PRID service returning '{}' for id: '{}' and country '{}'", result, id, country);
 
@@ -113,7 +150,11 @@ public class PridService implements InitializingBean {
    * @return the policy, or {@code null} if the country has not been configured
    */
   public CountryPolicy getPolicy(final String countryCode) {
-    return this.getPolicy().getPolicy(countryCode);
+    return Optional.ofNullable(this.compiledPolicy)
+        .filter(c -> countryCode != null)
+        .map(c -> c.countries().get(countryCode))
+        .map(CompiledCountryPolicy::policy)
+        .orElse(null);
   }
 
   /**
@@ -121,8 +162,65 @@ public class PridService implements InitializingBean {
    *
    * @return PRID policy
    */
-  public synchronized PridPolicy getPolicy() {
-    return this.policy;
+  public PridPolicy getPolicy() {
+    return Optional.ofNullable(this.compiledPolicy).map(CompiledPolicy::policy).orElse(null);
+  }
+
+  /**
+   * Returns the current policy generation. The generation is incremented each time the policy is updated.
+   *
+   * @return the policy generation
+   */
+  public long getPolicyGeneration() {
+    return Optional.ofNullable(this.compiledPolicy).map(CompiledPolicy::generation).orElse(0L);
+  }
+
+  /**
+   * Returns the SHA-256 hash (hex-encoded) of the contents of the policy file that the current policy was loaded from.
+   *
+   * @return the policy hash, or {@code null} if no policy has been loaded
+   */
+  public String getPolicyHash() {
+    return Optional.ofNullable(this.compiledPolicy).map(CompiledPolicy::hash).orElse(null);
+  }
+
+  /**
+   * Tells whether the policy file should be watched for changes, meaning that the policy is updated as soon as the
+   * file is changed (and not only when {@link #scheduledUpdatePolicy()} is invoked). Only applies if the policy
+   * resource is a file. The default is {@code false}.
+   *
+   * @param watchPolicyResource whether to watch the policy file
+   */
+  public void setWatchPolicyResource(final boolean watchPolicyResource) {
+    this.watchPolicyResource = watchPolicyResource;
+  }
+
+  /**
+   * Predicate telling whether the policy file is being watched for changes.
+   *
+   * @return {@code true} if the policy file is being watched and {@code false} otherwise
+   */
+  public boolean isWatchingPolicyResource() {
+    return this.policyWatcher != null && this.policyWatcher.isRunning();
+  }
+
+  /**
+   * Assigns a cache for PRID results. By default, no caching is performed. The cache is cleared each time the policy
+   * is updated.
+   *
+   * @param resultCache the cache to use
+   */
+  public void setResultCache(final PridResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * Gets the PRID result cache.
+   *
+   * @return the {@link PridResultCache}, or {@code null} if no caching is performed
+   */
+  public PridResultCache getResultCache() {
+    return this.resultCache;
   }
 
   /**
@@ -144,6 +242,10 @@ public class PridService implements InitializingBean {
 
   /**
    * Updates the PRID policy configuration by re-loading the policy file.
+   * <p>
+   * If the contents of the policy file has not changed since the current policy was installed, the policy is left as
+   * is (and the policy generation is not changed).
+   * </p>
    *
    * @return the validation result for the updated policy
    */
@@ -153,10 +255,18 @@ public class PridService implements InitializingBean {
 
     final PridPolicyValidation validation = new PridPolicyValidation();
     try {
-      final PridPolicy newPolicy = this.loadPolicy();
-      this.policy = this.validate(newPolicy, validation);
+      final byte[] contents = this.readPolicyResource();
+      final String hash = calculateHash(contents);
+      final CompiledPolicy current = this.compiledPolicy;
+      if (current != null && hash.equals(current.hash())) {
+        log.debug("PRID policy file has not been changed - no update needed");
+        this.latestValidationResult = current.validation();
+        return current.validation();
+      }
+      final PridPolicy newPolicy = this.loadPolicy(contents);
+      this.installPolicy(this.validate(newPolicy, validation), hash, validation);
       this.latestValidationResult = validation;
-      log.debug("PRID policy configuration was updated");
+      log.info("PRID policy configuration was updated (generation: {})", this.getPolicyGeneration());
     }
     catch (final BindException e) {
       final String msg = "Failed to update PRID policy - invalid format";
@@ -174,21 +284,89 @@ public class PridService implements InitializingBean {
   }
 
   /**
-   * Loads the PRID policy from the policy resource file.
+   * Compiles the supplied (validated) policy into a lookup table where each country points at its resolved
+   * {@link PridGenerator}, and publishes it. The policy generation is incremented and the result cache is cleared.
    *
+   * @param policy the validated policy
+   * @param hash the hash of the policy file contents
+   * @param validation the validation result for the policy
+   */
+  private synchronized void installPolicy(
+      final PridPolicy policy, final String hash, final PridPolicyValidation validation) {
+    final Map<String, PridGenerator> generators = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (final PridGenerator g : this.pridGenerators) {
+      generators.putIfAbsent(g.getAlgorithmName(), g);
+    }
+
+    final Map<String, CompiledCountryPolicy> countries = new HashMap<>();
+    if (!policy.isEmpty()) {
+      for (final Map.Entry<String, CountryPolicy> p : policy.getPolicy().entrySet()) {
+        final PridGenerator generator = Optional.ofNullable(p.getValue().getAlgorithm())
+            .map(generators::get)
+            .orElse(null);
+        if (generator == null) {
+          // Should not happen for a validated policy ...
+          log.warn("No matching PRID generator for algorithm '{}' - country '{}' will not be supported",
+              p.getValue().getAlgorithm(), p.getKey());
+          continue;
+        }
+        countries.put(p.getKey(), new CompiledCountryPolicy(p.getValue(), generator));
+      }
+    }
+
+    final long generation = Optional.ofNullable(this.compiledPolicy).map(CompiledPolicy::generation).orElse(0L) + 1;
+    this.compiledPolicy = new CompiledPolicy(policy, Map.copyOf(countries), generation, hash, validation);
+
+    if (this.resultCache != null) {
+      this.resultCache.clear();
+    }
+  }
+
+  /**
+   * Reads the contents of the policy resource file.
+   *
+   * @return the file contents
+   * @throws IOException for read errors
+   */
+  protected byte[] readPolicyResource() throws IOException {
+    try (final InputStream is = this.policyResource.getInputStream()) {
+      return is.readAllBytes();
+    }
+  }
+
+  /**
+   * Calculates the hex-encoded SHA-256 hash of the supplied bytes.
+   *
+   * @param contents the bytes to hash
+   * @return the hash
+   */
+  private static String calculateHash(final byte[] contents) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contents));
+    }
+    catch (final NoSuchAlgorithmException e) {
+      throw new SecurityException(e);
+    }
+  }
+
+  /**
+   * Loads the PRID policy from the contents of the policy resource file.
+   *
+   * @param contents the policy file contents (see {@link #readPolicyResource()})
    * @return a {@link PridPolicy} element
    * @throws BindException for format errors when creating a policy object
    * @throws Exception for errors reading the policy file
    */
-  protected PridPolicy loadPolicy() throws Exception, BindException {
+  protected PridPolicy loadPolicy(final byte[] contents) throws Exception, BindException {
 
     // Get hold of the properties/YAML file holding the config ...
     //
     log.debug("Loading policy file '{}' ...", this.policyResource);
+    final Resource resource = new ByteArrayResource(contents, this.policyResource.getDescription());
     final FactoryBean<Properties> factory;
     if (this.isYamlResource) {
       final YamlPropertiesFactoryBean yamlFactory = new YamlPropertiesFactoryBean();
-      yamlFactory.setResources(this.policyResource);
+      yamlFactory.setResources(resource);
       yamlFactory.setSingleton(true);
       yamlFactory.afterPropertiesSet();
       factory = yamlFactory;
@@ -196,7 +374,7 @@ public class PridService implements InitializingBean {
     else {
       final PropertiesFactoryBean pfactory = new PropertiesFactoryBean();
       pfactory.setSingleton(true);
-      pfactory.setLocation(this.policyResource);
+      pfactory.setLocation(resource);
       pfactory.afterPropertiesSet();
       factory = pfactory;
     }
@@ -301,17 +479,63 @@ public class PridService implements InitializingBean {
   }
 
   /**
-   * Loads the policy for the first time.
+   * Loads the policy for the first time, and, if configured, starts watching the policy file for changes.
    */
   @Override
   public void afterPropertiesSet() throws Exception {
-    final PridPolicy pridPolicy = this.loadPolicy();
+    final byte[] contents = this.readPolicyResource();
+    final PridPolicy pridPolicy = this.loadPolicy(contents);
     this.latestValidationResult = new PridPolicyValidation();
-    this.policy = this.validate(pridPolicy, this.latestValidationResult);
+    this.installPolicy(
+        this.validate(pridPolicy, this.latestValidationResult), calculateHash(contents), this.latestValidationResult);
     if (this.latestValidationResult.hasErrors()) {
       throw new IllegalArgumentException(
           String.format("PRID policy error - %s", this.latestValidationResult.getErrors()));
     }
+
+    if (this.watchPolicyResource) {
+      if (this.policyResource.isFile()) {
+        this.policyWatcher = new PridPolicyWatcher(this.policyResource.getFile().toPath(), this::updatePolicy);
+        this.policyWatcher.start();
+      }
+      else {
+        log.info("PRID policy resource '{}' is not a file - it will not be watched for changes",
+            this.policyResource);
+      }
+    }
+  }
+
+  /**
+   * Stops watching the policy file.
+   */
+  @Override
+  public void destroy() throws Exception {
+    if (this.policyWatcher != null) {
+      this.policyWatcher.close();
+      this.policyWatcher = null;
+    }
+  }
+
+  /**
+   * A compiled policy.
+   *
+   * @param policy the policy
+   * @param countries the per-country lookup table
+   * @param generation the policy generation
+   * @param hash the hash of the policy file contents
+   * @param validation the validation result for the policy
+   */
+  private record CompiledPolicy(PridPolicy policy, Map<String, CompiledCountryPolicy> countries, long generation,
+      String hash, PridPolicyValidation validation) {
+  }
+
+  /**
+   * A country policy along with its resolved PRID generator.
+   *
+   * @param policy the country policy
+   * @param generator the generator to use
+   */
+  private record CompiledCountryPolicy(CountryPolicy policy, PridGenerator generator) {
   }
 
   /**
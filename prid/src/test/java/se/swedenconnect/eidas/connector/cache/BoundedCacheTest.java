@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Test cases for {@link BoundedCache}.
+ *
+ * @author Martin Lindström
+ */
+public class BoundedCacheTest {
+
+  @Test
+  void testGetAndPut() {
+    final BoundedCache<String, String> cache = new BoundedCache<>(10, Clock.systemUTC());
+    Assertions.assertNull(cache.get("a"));
+    cache.put("a", "A", Duration.ofMinutes(1));
+    Assertions.assertEquals("A", cache.get("a"));
+
+    cache.put("a", "AA", Duration.ofMinutes(1));
+    Assertions.assertEquals("AA", cache.get("a"));
+    Assertions.assertEquals(1, cache.size());
+
+    cache.remove("a");
+    Assertions.assertNull(cache.get("a"));
+
+    Assertions.assertEquals(2, cache.getHitCount());
+    Assertions.assertEquals(2, cache.getMissCount());
+    Assertions.assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  void testMaxSize() {
+    final BoundedCache<String, String> cache = new BoundedCache<>(3, Clock.systemUTC());
+    for (int i = 0; i < 5; i++) {
+      cache.put("key" + i, "value" + i, Duration.ofMinutes(1));
+    }
+    Assertions.assertEquals(3, cache.size());
+    Assertions.assertEquals(2, cache.getEvictionCount());
+    Assertions.assertNull(cache.get("key0"));
+    Assertions.assertNull(cache.get("key1"));
+    Assertions.assertEquals("value4", cache.get("key4"));
+  }
+
+  @Test
+  void testExpiration() {
+    final MutableClock clock = new MutableClock();
+    final BoundedCache<String, String> cache = new BoundedCache<>(10, clock);
+    cache.put("a", "A", Duration.ofSeconds(60));
+    cache.put("b", "B", clock.instant().plusSeconds(30));
+
+    clock.advance(Duration.ofSeconds(30));
+    Assertions.assertEquals("A", cache.get("a"));
+    Assertions.assertNull(cache.get("b"));
+
+    clock.advance(Duration.ofSeconds(30));
+    Assertions.assertNull(cache.get("a"));
+    Assertions.assertEquals(2, cache.getEvictionCount());
+    Assertions.assertEquals(0, cache.size());
+  }
+
+  @Test
+  void testClear() {
+    final BoundedCache<String, String> cache = new BoundedCache<>(3, Clock.systemUTC());
+    for (int i = 0; i < 3; i++) {
+      cache.put("key" + i, "value" + i, Duration.ofMinutes(1));
+    }
+    cache.clear();
+    Assertions.assertEquals(0, cache.size());
+
+    // The cleared entries should not count against the maximum size ...
+    for (int i = 3; i < 6; i++) {
+      cache.put("key" + i, "value" + i, Duration.ofMinutes(1));
+    }
+    Assertions.assertEquals(3, cache.size());
+    Assertions.assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  void testIllegalArguments() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new BoundedCache<>(0, Clock.systemUTC()));
+    Assertions.assertThrows(NullPointerException.class, () -> new BoundedCache<>(10, null));
+    final BoundedCache<String, String> cache = new BoundedCache<>(10, Clock.systemUTC());
+    Assertions.assertThrows(NullPointerException.class, () -> cache.put(null, "A", Duration.ofMinutes(1)));
+    Assertions.assertThrows(NullPointerException.class, () -> cache.put("a", null, Duration.ofMinutes(1)));
+  }
+
+}
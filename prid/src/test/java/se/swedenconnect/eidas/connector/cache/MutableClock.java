@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A {@link Clock} that is advanced manually. Used when testing expiration of cache entries.
+ *
+ * @author Martin Lindström
+ */
+public class MutableClock extends Clock {
+
+  /** The current time. */
+  private volatile Instant now = Instant.now();
+
+  /**
+   * Advances the clock.
+   *
+   * @param duration the duration to advance the clock with
+   */
+  public void advance(final Duration duration) {
+    this.now = this.now.plus(duration);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ZoneId getZone() {
+    return ZoneOffset.UTC;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Clock withZone(final ZoneId zone) {
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Instant instant() {
+    return this.now;
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.batch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenColResistEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenDefaultEidas;
+import se.swedenconnect.eidas.connector.prid.generator.PridGenTestEidas;
+import se.swedenconnect.eidas.connector.prid.service.PridService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test cases for {@link PridRecomputationProcessor}.
+ *
+ * @author Martin Lindström
+ */
+public class PridRecomputationProcessorTest {
+
+  private static final List<String> INPUT = List.of(
+      "# Test input",
+      "SE/SE/1234567890",
+      "NO/SE/05068907693",
+      "",
+      "DE/SE/1234567890123456789012345678901",
+      "DE/SE/12345-3456",
+      "DK/SE/09208-2002-2-194967071622",
+      "XA/SE/11111",
+      "FI/SE/123456789",
+      "NO/DK/05068907693",
+      "NO/SE/123");
+
+  @Test
+  void testProcess(@TempDir final Path dir) throws Exception {
+    final Path input = dir.resolve("input.txt");
+    Files.write(input, INPUT, StandardCharsets.UTF_8);
+    final Path output = dir.resolve("diff.txt");
+
+    final PridRecomputationProcessor processor = new PridRecomputationProcessor(
+        createService("policy.yml"), createService("policy-updated.yml"), new ForkJoinPool(2));
+    // Small chunks, so that we get several chunks ...
+    processor.setChunkSize(40);
+
+    final PridRecomputationResult result = processor.process(input, output);
+    Assertions.assertEquals(new PridRecomputationResult(9, 2, 2, 1, 1, 1, 2), result);
+
+    final List<String> diff = Files.readAllLines(output, StandardCharsets.UTF_8);
+    Assertions.assertEquals(List.of(
+        "REMOVED;SE/SE/1234567890;SE:1234567890;A;;",
+        "CHANGED;NO/SE/05068907693;NO:05068907693;A;NO:05068907693;B",
+        "CHANGED;DE/SE/1234567890123456789012345678901;DE:3b7184c0ceaf76a9607a31e4e1f87f;B;"
+            + "DE:" + new PridGenColResistEidas().getPridIdentifierComponent(
+                "DE/SE/1234567890123456789012345678901", "DE").substring(3) + ";B",
+        "ADDED;DK/SE/09208-2002-2-194967071622;;;DK:09208-2002-2-194967071622;A"),
+        diff.subList(1, 5));
+    Assertions.assertTrue(diff.get(5).startsWith("ERROR;NO/DK/05068907693;"));
+    Assertions.assertTrue(diff.get(6).startsWith("ERROR;NO/SE/123;"));
+    Assertions.assertEquals(7, diff.size());
+  }
+
+  @Test
+  void testLargeInput(@TempDir final Path dir) throws Exception {
+    final Path input = dir.resolve("input.txt");
+    final List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      lines.add("NO/SE/%011d".formatted(i * 7919L));
+    }
+    Files.write(input, lines, StandardCharsets.UTF_8);
+    final Path output = dir.resolve("diff.txt");
+
+    final PridRecomputationProcessor processor = new PridRecomputationProcessor(
+        createService("policy.yml"), createService("policy-updated.yml"));
+    processor.setChunkSize(4096);
+    final PridRecomputationResult result = processor.process(input, output);
+    Assertions.assertEquals(20_000, result.processed());
+    Assertions.assertEquals(20_000, result.changed());
+
+    // Order is preserved
+    final List<String> diff = Files.readAllLines(output, StandardCharsets.UTF_8);
+    for (int i = 0; i < lines.size(); i++) {
+      Assertions.assertTrue(diff.get(i + 1).startsWith("CHANGED;" + lines.get(i) + ";"));
+    }
+  }
+
+  @Test
+  void testLineTooLong(@TempDir final Path dir) throws Exception {
+    final Path input = dir.resolve("input.txt");
+    Files.write(input, List.of("NO/SE/05068907693", "NO/SE/05068907693"), StandardCharsets.UTF_8);
+
+    final PridRecomputationProcessor processor = new PridRecomputationProcessor(
+        createService("policy.yml"), createService("policy-updated.yml"));
+    processor.setChunkSize(10);
+    Assertions.assertThrows(IOException.class, () -> processor.process(input, dir.resolve("diff.txt")));
+  }
+
+  private static PridService createService(final String policy) throws Exception {
+    final PridService service = new PridService(new ClassPathResource(policy),
+        List.of(new PridGenDefaultEidas(), new PridGenColResistEidas(), new PridGenTestEidas()));
+    service.afterPropertiesSet();
+    return service;
+  }
+
+}
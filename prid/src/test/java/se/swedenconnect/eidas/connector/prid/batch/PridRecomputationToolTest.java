@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.batch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Test cases for {@link PridRecomputationTool}.
+ *
+ * @author Martin Lindström
+ */
+public class PridRecomputationToolTest {
+
+  @TempDir
+  private Path dir;
+
+  private Path input;
+
+  private Path current;
+
+  private Path updated;
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  @BeforeEach
+  void setup() throws IOException {
+    this.input = this.dir.resolve("input.txt");
+    Files.write(this.input, List.of("SE/SE/1234567890", "NO/SE/05068907693", "DK/SE/09208-2002-2-194967071622"),
+        StandardCharsets.UTF_8);
+    this.current = this.dir.resolve("current.yml");
+    this.updated = this.dir.resolve("updated.yml");
+    try (final InputStream in = new ClassPathResource("policy.yml").getInputStream()) {
+      Files.copy(in, this.current);
+    }
+    try (final InputStream in = new ClassPathResource("policy-updated.yml").getInputStream()) {
+      Files.copy(in, this.updated);
+    }
+  }
+
+  @Test
+  void testRun() throws Exception {
+    final Path output = this.dir.resolve("diff.txt");
+    Assertions.assertEquals(0, this.run(
+        "--current-policy", this.current.toString(), "--updated-policy", this.updated.toString(),
+        "--input", this.input.toString(), "--output", output.toString(),
+        "--parallelism", "2", "--chunk-size", "64"), this.err.toString());
+    Assertions.assertTrue(this.out.toString().contains("Processed: 3, unchanged: 0, changed: 1, added: 1, removed: 1"),
+        this.out.toString());
+    Assertions.assertEquals(4, Files.readAllLines(output, StandardCharsets.UTF_8).size());
+  }
+
+  @Test
+  void testMissingArgument() {
+    Assertions.assertEquals(1, this.run("--input", this.input.toString()));
+    Assertions.assertTrue(this.err.toString().contains("Missing required argument: --current-policy"));
+  }
+
+  @Test
+  void testUnknownArgument() {
+    Assertions.assertEquals(1, this.run(this.args("--threads", "2")));
+    Assertions.assertTrue(this.err.toString().contains("Unknown argument: --threads"));
+  }
+
+  @Test
+  void testMissingValue() {
+    Assertions.assertEquals(1, this.run("--input"));
+    Assertions.assertTrue(this.err.toString().contains("Invalid argument: --input"));
+  }
+
+  @Test
+  void testMissingFile() {
+    Assertions.assertEquals(1, this.run("--current-policy", this.current.toString(),
+        "--updated-policy", this.updated.toString(), "--input", this.dir.resolve("not-there.txt").toString(),
+        "--output", this.dir.resolve("diff.txt").toString()));
+    Assertions.assertTrue(this.err.toString().contains("File given by --input does not exist"));
+  }
+
+  @Test
+  void testInvalidParallelism() {
+    for (final String value : List.of("0", "-1", "many")) {
+      this.err.reset();
+      Assertions.assertEquals(1, this.run(this.args("--parallelism", value)));
+      Assertions.assertTrue(this.err.toString().contains("Invalid value for --parallelism"));
+    }
+  }
+
+  @Test
+  void testInvalidChunkSize() {
+    Assertions.assertEquals(1, this.run(this.args("--chunk-size", "0")));
+    Assertions.assertTrue(this.err.toString().contains("Invalid value for --chunk-size"));
+  }
+
+  private String[] args(final String option, final String value) {
+    return new String[] {
+        "--current-policy", this.current.toString(), "--updated-policy", this.updated.toString(),
+        "--input", this.input.toString(), "--output", this.dir.resolve("diff.txt").toString(), option, value };
+  }
+
+  private int run(final String... args) {
+    return PridRecomputationTool.run(args, new PrintStream(this.out), new PrintStream(this.err));
+  }
+
+}
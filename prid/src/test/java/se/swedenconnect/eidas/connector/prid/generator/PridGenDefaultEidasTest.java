@@ -18,6 +18,15 @@ package se.swedenconnect.eidas.connector.prid.generator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
 /**
  * Test cases for {@code PridGenDefaultEidas}. Also tests functions of {@code AbstractPridGenerator}.
  */
@@ -81,6 +90,147 @@ public class PridGenDefaultEidasTest {
     });
   }
 
+  /**
+   * Property based test that asserts that the normalization gives exactly the same result as the original regexp-based
+   * implementation for randomly generated identifiers.
+   */
+  @Test
+  public void testNormalizationEquivalence() {
+    final Locale defaultLocale = Locale.getDefault();
+    try {
+      for (final Locale locale : List.of(Locale.ROOT, Locale.forLanguageTag("tr"), Locale.forLanguageTag("lt"))) {
+        Locale.setDefault(locale);
+        final Random random = new Random(4711);
+        for (final String destination : List.of("SE", "dk")) {
+          final List<PridGenDefaultEidas> generators =
+              List.of(new PridGenDefaultEidas(destination), new PridGenColResistEidas(destination));
+          for (final PridGenDefaultEidas gen : generators) {
+            final int radix = gen instanceof PridGenColResistEidas ? 36 : 16;
+            for (int i = 0; i < 1000; i++) {
+              final String id = randomIdentifier(random, destination);
+              final String country = random.nextInt(10) == 0 ? "XX" : id.substring(0, Math.min(2, id.length()));
+              final String expected = outcome(() -> legacyGenerate(id, country, destination, radix));
+              final String actual = outcome(() -> gen.getPridIdentifierComponent(id, country));
+              Assertions.assertEquals(expected, actual, "Mismatch for '%s' (%s)".formatted(id, locale));
+            }
+          }
+        }
+      }
+    }
+    finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
+  @Test
+  public void testGetIdEquivalence() throws Exception {
+    final Random random = new Random(4711);
+    final MessageDigest md = MessageDigest.getInstance("SHA-256");
+    for (int i = 0; i < 5000; i++) {
+      final String input = Long.toString(random.nextLong(), 36) + i;
+      final byte[] digest = md.digest(input.getBytes(StandardCharsets.UTF_8));
+      for (final int radix : new int[] { 16, 36 }) {
+        Assertions.assertEquals(new BigInteger(1, digest).toString(radix).substring(0, 30),
+            AbstractPridGenerator.getID(input, radix, 30));
+      }
+    }
+
+    // Arbitrary byte arrays, including leading zeros and other radices
+    for (int i = 0; i < 2000; i++) {
+      final byte[] bytes = new byte[random.nextInt(40)];
+      random.nextBytes(bytes);
+      for (int j = 0; j < bytes.length && random.nextBoolean(); j++) {
+        bytes[j] = 0;
+      }
+      final int radix = random.nextInt(40);
+      final String expected = new BigInteger(1, bytes).toString(radix);
+      final int length = random.nextInt(expected.length() + 1);
+      Assertions.assertEquals(expected.substring(0, length), AbstractPridGenerator.encode(bytes, radix, length));
+      Assertions.assertThrows(IndexOutOfBoundsException.class,
+          () -> AbstractPridGenerator.encode(bytes, radix, expected.length() + 1));
+    }
+  }
+
+  private static final String[] ALPHABET = {
+      "a", "Z", "I", "i", "k", "K", "0", "9", "5", "-", "--", "/", "#", "(", ")", ".", "_", " ", "\t", "\n",
+      "\u000B", "\f", "\r", "\u00A0", "\u00E9", "\u00C5", "\u0130", "\u0131", "\u212A", "\u00DF", "\u0307",
+      "\u0300", "\uD83D\uDE00" };
+
+  private static String randomIdentifier(final Random random, final String destination) {
+    final StringBuilder sb = new StringBuilder();
+    final int prefix = random.nextInt(20);
+    if (prefix == 0) {
+      sb.append("D");
+    }
+    else if (prefix == 1) {
+      sb.append("D1/").append(destination).append('/');
+    }
+    else if (prefix == 2) {
+      sb.append("DE/").append(destination.toLowerCase().charAt(0)).append(destination.toUpperCase().charAt(1))
+          .append('/');
+    }
+    else {
+      sb.append(random.nextBoolean() ? "DE" : "se").append('/')
+          .append(random.nextBoolean() ? destination.toUpperCase() : destination.toLowerCase()).append('/');
+    }
+    final int length = random.nextInt(45);
+    for (int i = 0; i < length; i++) {
+      // Favour ordinary ID characters ...
+      sb.append(random.nextInt(3) > 0 ? ALPHABET[random.nextInt(10)] : ALPHABET[random.nextInt(ALPHABET.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static String outcome(final Callable<String> callable) {
+    try {
+      return "OK:" + callable.call();
+    }
+    catch (final Exception e) {
+      return e.getClass().getSimpleName() + ":" + e.getMessage();
+    }
+  }
+
+  /**
+   * The original (regexp-based) implementation of the default-eIDAS and colresist-eIDAS algorithms.
+   */
+  private static String legacyGenerate(final String personIdentifier, final String countryCode,
+      final String destinationCountry, final int radix) throws PridGeneratorException {
+
+    final Pattern prefixPattern = Pattern.compile("^[A-Za-z]{2}[\\/](%s|%s)[\\/]".formatted(
+        destinationCountry.toUpperCase(), destinationCountry.toLowerCase()));
+
+    if (personIdentifier == null) {
+      throw new IllegalArgumentException("Supplied personIdentifier must not be null");
+    }
+    if (countryCode == null || countryCode.length() != 2) {
+      throw new IllegalArgumentException("Supplied country code must be 2 characters");
+    }
+    if (personIdentifier.length() < 6 || !prefixPattern.matcher(personIdentifier.substring(0, 6)).matches()) {
+      throw new IllegalArgumentException(
+          String.format("Illegal input - identifier '%s is not valid'", personIdentifier));
+    }
+    if (!countryCode.equalsIgnoreCase(personIdentifier.substring(0, 2))) {
+      throw new PridGeneratorException(String.format(
+          "Mismatching country - expected '%s', but this is not present in '%s'", countryCode, personIdentifier));
+    }
+    final String strippedID = personIdentifier.substring(6).replaceAll("\\s+", "");
+
+    String normalizedID = strippedID.toLowerCase();
+    normalizedID = normalizedID.replaceAll("[^a-z0-9]+", "-");
+    normalizedID = normalizedID.replaceAll("^-+", "").replaceAll("-+$", "");
+    if (normalizedID.replaceAll("-", "").length() < 6) {
+      throw new PridGeneratorException(
+          String.format("Calculated normalizedID of '%s' is shorter than 6 characters", personIdentifier));
+    }
+    if (normalizedID.length() < 10) {
+      normalizedID = "0000000000".substring(normalizedID.length()) + normalizedID;
+    }
+    if (normalizedID.length() > 30) {
+      normalizedID = AbstractPridGenerator.getID(strippedID, radix, 30);
+    }
+    return countryCode.toUpperCase() + ":" + normalizedID;
+  }
+
   @Test
   public void testMismatchingCountryCode() {
     Assertions.assertThrows(PridGeneratorException.class, () -> {
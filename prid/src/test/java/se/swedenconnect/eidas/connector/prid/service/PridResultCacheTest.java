@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.eidas.connector.prid.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.eidas.connector.cache.MutableClock;
+
+import java.time.Duration;
+
+/**
+ * Test cases for {@link PridResultCache}.
+ *
+ * @author Martin Lindström
+ */
+public class PridResultCacheTest {
+
+  private static final String ID = "SE/SE/1234567890";
+
+  @Test
+  void testKeyedByPolicyGeneration() {
+    final PridResultCache cache = new PridResultCache(10, Duration.ofMinutes(1));
+    final PridResult result1 = new PridResult("SE:1234567890", "A");
+    final PridResult result2 = new PridResult("SE:0987654321", "A");
+
+    cache.put(ID, "SE", 1, result1);
+    Assertions.assertNull(cache.get(ID, "SE", 2));
+
+    // A result for a new generation does not replace the result for the old generation ...
+    cache.put(ID, "SE", 2, result2);
+    Assertions.assertEquals(result1, cache.get(ID, "SE", 1));
+    Assertions.assertEquals(result2, cache.get(ID, "SE", 2));
+    Assertions.assertEquals(2, cache.size());
+  }
+
+  @Test
+  void testKeyedByCountry() {
+    final PridResultCache cache = new PridResultCache(10, Duration.ofMinutes(1));
+    final PridResult result1 = new PridResult("SE:1234567890", "A");
+    final PridResult result2 = new PridResult("NO:1234567890", "A");
+
+    cache.put(ID, "SE", 1, result1);
+    Assertions.assertNull(cache.get(ID, "NO", 1));
+
+    cache.put(ID, "NO", 1, result2);
+    Assertions.assertEquals(result1, cache.get(ID, "SE", 1));
+    Assertions.assertEquals(result2, cache.get(ID, "NO", 1));
+    Assertions.assertNull(cache.get("SE/SE/0987654321", "SE", 1));
+  }
+
+  @Test
+  void testTimeToLive() {
+    final MutableClock clock = new MutableClock();
+    final PridResultCache cache = new PridResultCache(10, Duration.ofSeconds(60), clock);
+    cache.put(ID, "SE", 1, new PridResult("SE:1234567890", "A"));
+
+    clock.advance(Duration.ofSeconds(59));
+    Assertions.assertNotNull(cache.get(ID, "SE", 1));
+
+    clock.advance(Duration.ofSeconds(1));
+    Assertions.assertNull(cache.get(ID, "SE", 1));
+  }
+
+  @Test
+  void testIllegalArguments() {
+    Assertions.assertThrows(NullPointerException.class, () -> new PridResultCache(10, null));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new PridResultCache(10, Duration.ZERO));
+    final PridResultCache cache = new PridResultCache(10, Duration.ofMinutes(1));
+    Assertions.assertThrows(NullPointerException.class, () -> cache.put(ID, "SE", 1, null));
+  }
+
+}
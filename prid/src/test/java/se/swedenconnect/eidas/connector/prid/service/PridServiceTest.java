@@ -17,10 +17,18 @@ package se.swedenconnect.eidas.connector.prid.service;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import se.swedenconnect.eidas.connector.prid.generator.PridGenDefaultEidas;
 import se.swedenconnect.eidas.connector.prid.generator.PridGenTestEidas;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -64,10 +72,110 @@ public class PridServiceTest {
     Assertions.assertNotNull(service.getPolicy("XA"));
 
     Assertions.assertNull(service.getPolicy("DK"));
+    Assertions.assertNull(service.getPolicy(null));
+    Assertions.assertThrows(CountryPolicyNotFoundException.class, () -> service.generatePrid("SE/SE/1234567890", null));
 
     Assertions.assertFalse(service.getLatestValidationResult().hasErrors());
   }
 
+  @Test
+  void testNoPolicyLoaded() {
+    final PridService service = new PridService(new ClassPathResource("policy.yml"),
+        List.of(new PridGenDefaultEidas(), new PridGenTestEidas()));
+    Assertions.assertNull(service.getPolicy());
+    Assertions.assertNull(service.getPolicy("SE"));
+    Assertions.assertEquals(0, service.getPolicyGeneration());
+    Assertions.assertThrows(CountryPolicyNotFoundException.class, () -> service.generatePrid("SE/SE/1234567890", "SE"));
+  }
+
+  @Test
+  void testResultCache(@TempDir final Path dir) throws Exception {
+    final Path policyFile = copyPolicy("policy.yml", dir);
+    final PridService service = new PridService(new FileSystemResource(policyFile),
+        List.of(new PridGenDefaultEidas(), new PridGenTestEidas()));
+    service.setResultCache(new PridResultCache(100, Duration.ofMinutes(10)));
+    service.afterPropertiesSet();
+
+    final long generation = service.getPolicyGeneration();
+
+    final PridResult result = service.generatePrid("SE/SE/1234567890", "SE");
+    Assertions.assertEquals(new PridResult("SE:1234567890", "A"), result);
+    Assertions.assertEquals(0, service.getResultCache().getHitCount());
+    Assertions.assertEquals(1, service.getResultCache().getMissCount());
+
+    Assertions.assertSame(result, service.generatePrid("SE/SE/1234567890", "SE"));
+    Assertions.assertEquals(1, service.getResultCache().getHitCount());
+
+    // Errors should not be cached
+    Assertions.assertThrows(CountryPolicyNotFoundException.class, () -> service.generatePrid("DK/SE/123456", "DK"));
+    Assertions.assertEquals(1, service.getResultCache().size());
+
+    // Updating the policy should invalidate the cache
+    Files.writeString(policyFile, "\n# Updated\n", StandardOpenOption.APPEND);
+    Assertions.assertFalse(service.updatePolicy().hasErrors());
+    Assertions.assertEquals(generation + 1, service.getPolicyGeneration());
+    Assertions.assertEquals(0, service.getResultCache().size());
+
+    Assertions.assertNotSame(result, service.generatePrid("SE/SE/1234567890", "SE"));
+    Assertions.assertEquals(1, service.getResultCache().getHitCount());
+  }
+
+  @Test
+  void testUpdateUnchangedPolicy(@TempDir final Path dir) throws Exception {
+    final Path policyFile = copyPolicy("policy.yml", dir);
+    final PridService service = new PridService(new FileSystemResource(policyFile),
+        List.of(new PridGenDefaultEidas(), new PridGenTestEidas()));
+    service.afterPropertiesSet();
+
+    final long generation = service.getPolicyGeneration();
+    final String hash = service.getPolicyHash();
+    final PridPolicy policy = service.getPolicy();
+    Assertions.assertNotNull(hash);
+
+    // Same contents - nothing should be updated
+    Assertions.assertFalse(service.updatePolicy().hasErrors());
+    Assertions.assertEquals(generation, service.getPolicyGeneration());
+    Assertions.assertEquals(hash, service.getPolicyHash());
+    Assertions.assertSame(policy, service.getPolicy());
+
+    // Changed contents
+    Files.writeString(policyFile, Files.readString(policyFile).replace("XA:", "DK:"));
+    Assertions.assertFalse(service.updatePolicy().hasErrors());
+    Assertions.assertEquals(generation + 1, service.getPolicyGeneration());
+    Assertions.assertNotEquals(hash, service.getPolicyHash());
+    Assertions.assertNotNull(service.getPolicy("DK"));
+    Assertions.assertNull(service.getPolicy("XA"));
+  }
+
+  @Test
+  void testWatchPolicy(@TempDir final Path dir) throws Exception {
+    final Path policyFile = copyPolicy("policy.yml", dir);
+    final PridService service = new PridService(new FileSystemResource(policyFile),
+        List.of(new PridGenDefaultEidas(), new PridGenTestEidas()));
+    service.setWatchPolicyResource(true);
+    service.afterPropertiesSet();
+    try {
+      Assertions.assertTrue(service.isWatchingPolicyResource());
+      final long generation = service.getPolicyGeneration();
+
+      // Replace the file the way most deployments do it - write a new file and move it in place ...
+      final Path tmp = dir.resolve("policy.yml.tmp");
+      Files.writeString(tmp, Files.readString(policyFile).replace("XA:", "DK:"));
+      Files.move(tmp, policyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      final long deadline = System.currentTimeMillis() + 10_000;
+      while (service.getPolicyGeneration() == generation && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      Assertions.assertEquals(generation + 1, service.getPolicyGeneration());
+      Assertions.assertNotNull(service.getPolicy("DK"));
+    }
+    finally {
+      service.destroy();
+    }
+    Assertions.assertFalse(service.isWatchingPolicyResource());
+  }
+
   @Test
   void testValidationErrors() throws Exception {
     final PridService service = new PridService(new ClassPathResource("policy-missing.properties"),
@@ -86,4 +194,13 @@ public class PridServiceTest {
     Assertions.assertTrue(result2.hasErrors());
     Assertions.assertEquals(2, result2.getErrors().size());
   }
+
+  private static Path copyPolicy(final String resource, final Path dir) throws Exception {
+    final Path file = dir.resolve(resource);
+    try (final InputStream is = new ClassPathResource(resource).getInputStream()) {
+      Files.copy(is, file);
+    }
+    return file;
+  }
+
 }
@@ -0,0 +1,26 @@
+#!/bin/bash
+#
+# Builds and runs the JMH benchmarks. The results are written in JSON format to
+# benchmarks/results/<version>.json (or to the file given by the RESULT_FILE variable).
+#
+# Additional arguments are passed to JMH.
+#
+# Set MVN_OPTS=-o to build offline.
+#
+set -e
+
+SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+BASE_DIR="${SCRIPT_DIR}/.."
+
+VERSION=$(sed -n 's:.*<version>\(.*\)</version>.*:\1:p' "${BASE_DIR}/pom.xml" | head -1)
+
+if [ -z "$RESULT_FILE" ]; then
+  mkdir -p "${BASE_DIR}/benchmarks/results"
+  RESULT_FILE="${BASE_DIR}/benchmarks/results/${VERSION}.json"
+fi
+
+mvn -f "${BASE_DIR}/pom.xml" ${MVN_OPTS} -P benchmarks -pl benchmarks -am -DskipTests clean package
+
+java -jar "${BASE_DIR}/benchmarks/target/benchmarks.jar" -rf json -rff "${RESULT_FILE}" "$@"
+
+echo "Benchmark results written to ${RESULT_FILE}"